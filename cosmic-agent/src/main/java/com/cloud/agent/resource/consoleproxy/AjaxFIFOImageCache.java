@@ -1,39 +1,52 @@
 package com.cloud.agent.resource.consoleproxy;
 
-import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.List;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.Map;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+/**
+ * AjaxFIFOImageCache keeps the latest images of the AJAX viewer of a console session until the viewer fetches them.
+ * The oldest images are removed when either the number of images or their total size would exceed the limits, the
+ * image that is put is always kept.
+ */
 public class AjaxFIFOImageCache {
     private static final Logger s_logger = LoggerFactory.getLogger(AjaxFIFOImageCache.class);
 
-    private final List<Integer> fifoQueue;
-    private final Map<Integer, byte[]> cache;
+    // Iterates in the order the images were put
+    private final LinkedHashMap<Integer, byte[]> cache;
     private final int cacheSize;
+    private final long maxCacheBytes;
+    private long cacheBytes = 0;
     private int nextKey = 0;
 
     public AjaxFIFOImageCache(final int cacheSize) {
+        this(cacheSize, Long.MAX_VALUE);
+    }
+
+    public AjaxFIFOImageCache(final int cacheSize, final long maxCacheBytes) {
         this.cacheSize = cacheSize;
-        this.fifoQueue = new ArrayList<>();
-        this.cache = new HashMap<>();
+        this.maxCacheBytes = maxCacheBytes;
+        this.cache = new LinkedHashMap<>();
     }
 
     public synchronized void clear() {
-        this.fifoQueue.clear();
         this.cache.clear();
+        this.cacheBytes = 0;
     }
 
     public synchronized int putImage(final byte[] image) {
-        while (this.cache.size() >= this.cacheSize) {
-            final Integer keyToRemove = this.fifoQueue.remove(0);
-            this.cache.remove(keyToRemove);
+        final int imageBytes = sizeOf(image);
+        final Iterator<Map.Entry<Integer, byte[]>> it = this.cache.entrySet().iterator();
+        while (it.hasNext() && (this.cache.size() >= this.cacheSize || this.cacheBytes + imageBytes > this.maxCacheBytes)) {
+            final Map.Entry<Integer, byte[]> entry = it.next();
+            it.remove();
+            this.cacheBytes -= sizeOf(entry.getValue());
 
             if (s_logger.isTraceEnabled()) {
-                s_logger.trace("Remove image from cache, key: " + keyToRemove);
+                s_logger.trace("Remove image from cache, key: " + entry.getKey());
             }
         }
 
@@ -44,7 +57,7 @@ public class AjaxFIFOImageCache {
         }
 
         this.cache.put(key, image);
-        this.fifoQueue.add(key);
+        this.cacheBytes += imageBytes;
         return key;
     }
 
@@ -69,4 +82,12 @@ public class AjaxFIFOImageCache {
         }
         return null;
     }
+
+    public synchronized long getCacheBytes() {
+        return this.cacheBytes;
+    }
+
+    private static int sizeOf(final byte[] image) {
+        return image != null ? image.length : 0;
+    }
 }
@@ -0,0 +1,47 @@
+package com.cloud.agent.resource.consoleproxy;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * AjaxImageStats counts the images encoded for the AJAX viewer of a console session, the time it took to encode them
+ * and the image bytes served to the viewer.
+ */
+public class AjaxImageStats {
+    private final AtomicLong encodedImages = new AtomicLong();
+    private final AtomicLong encodedBytes = new AtomicLong();
+    private final AtomicLong encodeTimeNanos = new AtomicLong();
+    private final AtomicLong servedImages = new AtomicLong();
+    private final AtomicLong servedBytes = new AtomicLong();
+
+    public void imageEncoded(final long timeNanos, final int bytes) {
+        this.encodedImages.incrementAndGet();
+        this.encodedBytes.addAndGet(bytes);
+        this.encodeTimeNanos.addAndGet(timeNanos);
+    }
+
+    public void imageServed(final int bytes) {
+        this.servedImages.incrementAndGet();
+        this.servedBytes.addAndGet(bytes);
+    }
+
+    public long getEncodedImages() {
+        return this.encodedImages.get();
+    }
+
+    public long getEncodedBytes() {
+        return this.encodedBytes.get();
+    }
+
+    public long getEncodeTimeMs() {
+        return TimeUnit.NANOSECONDS.toMillis(this.encodeTimeNanos.get());
+    }
+
+    public long getServedImages() {
+        return this.servedImages.get();
+    }
+
+    public long getServedBytes() {
+        return this.servedBytes.get();
+    }
+}
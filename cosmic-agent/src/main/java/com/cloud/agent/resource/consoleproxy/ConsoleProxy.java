@@ -6,6 +6,7 @@ import com.cloud.utils.PropertiesUtil;
 import com.google.gson.Gson;
 import com.sun.net.httpserver.Headers;
 import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
 import com.sun.net.httpserver.HttpServer;
 import org.apache.commons.codec.binary.Base64;
 import org.slf4j.Logger;
@@ -22,10 +23,11 @@ import java.net.InetSocketAddress;
 import java.security.NoSuchAlgorithmException;
 import java.security.SecureRandom;
 import java.security.Security;
+import java.util.ArrayList;
 import java.util.Hashtable;
+import java.util.List;
 import java.util.Map;
 import java.util.Properties;
-import java.util.concurrent.Executor;
 
 /**
  * ConsoleProxy, singleton class that manages overall activities in console proxy process. To make legacy code work, we still
@@ -52,10 +54,19 @@ public class ConsoleProxy {
     static int httpCmdListenPort = 8001;
     static int reconnectMaxRetry = 5;
     static int readTimeoutSeconds = 90;
+    static int httpMaxThreads = 500;
+    static int httpQueueSize = 1000;
+    static int httpCmdMaxThreads = 4;
+    static long ajaxImageCacheBytes = 4 * 1024 * 1024;
     static int keyboardType = KEYBOARD_RAW;
     static String factoryClzName;
     static boolean standaloneStart = false;
 
+    static ConsoleProxyHttpExecutor httpExecutor;
+    static ConsoleProxyHttpExecutor httpCmdExecutor;
+    static HttpServer httpServer;
+    static HttpServer httpCmdServer;
+
     static String encryptorPassword = genDefaultEncryptorPassword();
 
     private static String genDefaultEncryptorPassword() {
@@ -178,6 +189,8 @@ public class ConsoleProxy {
             s_logger.info("HTTP command port is disabled");
         }
 
+        Runtime.getRuntime().addShutdownHook(new Thread(ConsoleProxy::stop, "Console Proxy Shutdown"));
+
         final ConsoleProxyGCThread cthread = new ConsoleProxyGCThread(connectionMap);
         cthread.setName("Console Proxy GC Thread");
         cthread.start();
@@ -221,6 +234,30 @@ public class ConsoleProxy {
             readTimeoutSeconds = Integer.parseInt(s);
             s_logger.info("Setting readTimeoutSeconds=" + readTimeoutSeconds);
         }
+
+        s = conf.getProperty("consoleproxy.httpMaxThreads");
+        if (s != null) {
+            httpMaxThreads = Integer.parseInt(s);
+            s_logger.info("Setting httpMaxThreads=" + httpMaxThreads);
+        }
+
+        s = conf.getProperty("consoleproxy.httpQueueSize");
+        if (s != null) {
+            httpQueueSize = Integer.parseInt(s);
+            s_logger.info("Setting httpQueueSize=" + httpQueueSize);
+        }
+
+        s = conf.getProperty("consoleproxy.httpCmdMaxThreads");
+        if (s != null) {
+            httpCmdMaxThreads = Integer.parseInt(s);
+            s_logger.info("Setting httpCmdMaxThreads=" + httpCmdMaxThreads);
+        }
+
+        s = conf.getProperty("consoleproxy.ajaxImageCacheBytes");
+        if (s != null) {
+            ajaxImageCacheBytes = Long.parseLong(s);
+            s_logger.info("Setting ajaxImageCacheBytes=" + ajaxImageCacheBytes);
+        }
     }
 
     public static ConsoleProxyServerFactory getHttpServerFactory() {
@@ -249,12 +286,14 @@ public class ConsoleProxy {
             }
 
             final HttpServer server = factory.createHttpServerInstance(httpListenPort);
-            server.createContext("/getscreen", new ConsoleProxyThumbnailHandler());
-            server.createContext("/resource/", new ConsoleProxyResourceHandler());
-            server.createContext("/ajax", new ConsoleProxyAjaxHandler());
-            server.createContext("/ajaximg", new ConsoleProxyAjaxImageHandler());
-            server.setExecutor(new ThreadExecutor()); // creates a default executor
+            createContext(server, "/getscreen", new ConsoleProxyThumbnailHandler());
+            createContext(server, "/resource/", new ConsoleProxyResourceHandler());
+            createContext(server, "/ajax", new ConsoleProxyAjaxHandler());
+            createContext(server, "/ajaximg", new ConsoleProxyAjaxImageHandler());
+            httpExecutor = new ConsoleProxyHttpExecutor("ConsoleProxy-HTTP", httpMaxThreads, httpQueueSize);
+            server.setExecutor(httpExecutor);
             server.start();
+            httpServer = server;
         } catch (final Exception e) {
             s_logger.error(e.getMessage(), e);
             System.exit(1);
@@ -265,15 +304,38 @@ public class ConsoleProxy {
         try {
             s_logger.info("Listening for HTTP CMDs on port " + httpCmdListenPort);
             final HttpServer cmdServer = HttpServer.create(new InetSocketAddress(httpCmdListenPort), 2);
-            cmdServer.createContext("/cmd", new ConsoleProxyCmdHandler());
-            cmdServer.setExecutor(new ThreadExecutor()); // creates a default executor
+            createContext(cmdServer, "/cmd", new ConsoleProxyCmdHandler());
+            httpCmdExecutor = new ConsoleProxyHttpExecutor("ConsoleProxy-HTTP-CMD", httpCmdMaxThreads, httpQueueSize);
+            cmdServer.setExecutor(httpCmdExecutor);
             cmdServer.start();
+            httpCmdServer = cmdServer;
         } catch (final Exception e) {
             s_logger.error(e.getMessage(), e);
             System.exit(1);
         }
     }
 
+    private static void createContext(final HttpServer server, final String path, final HttpHandler handler) {
+        server.createContext(path, handler).getFilters().add(ConsoleProxyHttpExecutor.OVERLOAD_FILTER);
+    }
+
+    /**
+     * Stops the HTTP servers and the threads running their requests.
+     */
+    public static synchronized void stop() {
+        if (httpServer != null) {
+            httpServer.stop(0);
+            httpServer = null;
+        }
+        if (httpCmdServer != null) {
+            httpCmdServer.stop(0);
+            httpCmdServer = null;
+        }
+        for (final ConsoleProxyHttpExecutor executor : getHttpExecutors()) {
+            executor.shutdown();
+        }
+    }
+
     public static ConsoleProxyClient getVncViewer(final ConsoleProxyClientParam param) {
         ConsoleProxyClient viewer = null;
 
@@ -320,6 +382,17 @@ public class ConsoleProxy {
         }
     }
 
+    static List<ConsoleProxyHttpExecutor> getHttpExecutors() {
+        final List<ConsoleProxyHttpExecutor> executors = new ArrayList<>();
+        if (httpExecutor != null) {
+            executors.add(httpExecutor);
+        }
+        if (httpCmdExecutor != null) {
+            executors.add(httpCmdExecutor);
+        }
+        return executors;
+    }
+
     public static void reportLoadInfo(final String gsonLoadInfo) {
         if (reportMethod != null) {
             try {
@@ -459,11 +532,4 @@ public class ConsoleProxy {
     public static String getAuthenticationKey() {
         return ksAuthenticationKey;
     }
-
-    static class ThreadExecutor implements Executor {
-        @Override
-        public void execute(final Runnable r) {
-            new Thread(r).start();
-        }
-    }
 }
@@ -2,10 +2,11 @@ package com.cloud.agent.resource.consoleproxy;
 
 import static com.cloud.utils.security.SecurityHeaders.addSecurityHeaders;
 
+import com.cloud.agent.resource.consoleproxy.util.ImageHelper;
+
 import java.awt.Graphics2D;
 import java.awt.Image;
 import java.awt.image.BufferedImage;
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.util.Map;
@@ -110,9 +111,7 @@ public class ConsoleProxyAjaxImageHandler implements HttpHandler {
             final BufferedImage bufferedImage = new BufferedImage(width, height, BufferedImage.TYPE_3BYTE_BGR);
             final Graphics2D bufImageGraphics = bufferedImage.createGraphics();
             bufImageGraphics.drawImage(scaledImage, 0, 0, null);
-            final ByteArrayOutputStream bos = new ByteArrayOutputStream(8196);
-            javax.imageio.ImageIO.write(bufferedImage, "jpg", bos);
-            final byte[] bs = bos.toByteArray();
+            final byte[] bs = ImageHelper.jpegFromImage(bufferedImage);
             final Headers hds = t.getResponseHeaders();
             hds.set("Content-Type", "image/jpeg");
             hds.set("Cache-Control", "no-cache");
@@ -122,6 +121,7 @@ public class ConsoleProxyAjaxImageHandler implements HttpHandler {
             final OutputStream os = t.getResponseBody();
             os.write(bs);
             os.close();
+            viewer.getAjaxImageStats().imageServed(bs.length);
         } else {
             final AjaxFIFOImageCache imageCache = viewer.getAjaxImageCache();
             final byte[] img = imageCache.getImage(key);
@@ -138,6 +138,7 @@ public class ConsoleProxyAjaxImageHandler implements HttpHandler {
                 } finally {
                     os.close();
                 }
+                viewer.getAjaxImageStats().imageServed(img.length);
             } else {
                 if (s_logger.isInfoEnabled()) {
                     s_logger.info("Image has already been swept out, key: " + key);
@@ -26,6 +26,8 @@ public interface ConsoleProxyClient {
 
     AjaxFIFOImageCache getAjaxImageCache();
 
+    AjaxImageStats getAjaxImageStats();
+
     Image getClientScaledImage(int width, int height);                  // client thumbnail support
 
     String onAjaxClientStart(String title, List<String> languages, String guest);
@@ -27,7 +27,8 @@ public abstract class ConsoleProxyClientBase implements ConsoleProxyClient, Cons
     protected boolean dirtyFlag = false;
     protected Object tileDirtyEvent = new Object();
     protected TileTracker tracker;
-    protected AjaxFIFOImageCache ajaxImageCache = new AjaxFIFOImageCache(2);
+    protected AjaxFIFOImageCache ajaxImageCache = new AjaxFIFOImageCache(2, ConsoleProxy.ajaxImageCacheBytes);
+    protected AjaxImageStats ajaxImageStats = new AjaxImageStats();
 
     protected ConsoleProxyClientParam clientParam;
     protected String clientToken;
@@ -75,6 +76,11 @@ public abstract class ConsoleProxyClientBase implements ConsoleProxyClient, Cons
         return this.ajaxImageCache;
     }
 
+    @Override
+    public AjaxImageStats getAjaxImageStats() {
+        return this.ajaxImageStats;
+    }
+
     @Override
     public Image getClientScaledImage(final int width, final int height) {
         final FrameBufferCanvas canvas = getFrameBufferCavas();
@@ -272,6 +278,7 @@ public abstract class ConsoleProxyClientBase implements ConsoleProxyClient, Cons
     }
 
     private String prepareAjaxImage(final List<TileInfo> tiles, final boolean init) {
+        final long startTick = System.nanoTime();
         final byte[] imgBits;
         if (init) {
             imgBits = getFrameBufferJpeg();
@@ -282,6 +289,7 @@ public abstract class ConsoleProxyClientBase implements ConsoleProxyClient, Cons
         if (imgBits == null) {
             s_logger.warn("Unable to generate jpeg image");
         } else {
+            this.ajaxImageStats.imageEncoded(System.nanoTime() - startTick, imgBits.length);
             if (s_logger.isTraceEnabled()) {
                 s_logger.trace("Generated jpeg image size: " + imgBits.length);
             }
@@ -4,6 +4,7 @@ import java.io.OutputStreamWriter;
 import java.util.ArrayList;
 import java.util.Enumeration;
 import java.util.Hashtable;
+import java.util.List;
 
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
@@ -14,12 +15,15 @@ import com.google.gson.GsonBuilder;
 public class ConsoleProxyClientStatsCollector {
 
     ArrayList<ConsoleProxyConnection> connections;
+    int activeSessions;
+    ArrayList<HttpExecutorStats> httpExecutors;
 
     public ConsoleProxyClientStatsCollector() {
     }
 
     public ConsoleProxyClientStatsCollector(final Hashtable<String, ConsoleProxyClient> connMap) {
         setConnections(connMap);
+        setHttpExecutors(ConsoleProxy.getHttpExecutors());
     }
 
     private void setConnections(final Hashtable<String, ConsoleProxyClient> connMap) {
@@ -40,10 +44,36 @@ public class ConsoleProxyClientStatsCollector {
                 conn.tag = client.getClientTag();
                 conn.createTime = client.getClientCreateTime();
                 conn.lastUsedTime = client.getClientLastFrontEndActivityTime();
+
+                final AjaxImageStats imageStats = client.getAjaxImageStats();
+                conn.encodedImages = imageStats.getEncodedImages();
+                conn.encodedBytes = imageStats.getEncodedBytes();
+                conn.encodeTimeMs = imageStats.getEncodeTimeMs();
+                conn.servedImages = imageStats.getServedImages();
+                conn.servedBytes = imageStats.getServedBytes();
+                conn.cachedImageBytes = client.getAjaxImageCache().getCacheBytes();
                 conns.add(conn);
             }
         }
         this.connections = conns;
+        this.activeSessions = conns.size();
+    }
+
+    void setHttpExecutors(final List<ConsoleProxyHttpExecutor> executors) {
+        final ArrayList<HttpExecutorStats> stats = new ArrayList<>();
+        for (final ConsoleProxyHttpExecutor executor : executors) {
+            final HttpExecutorStats stat = new HttpExecutorStats();
+
+            stat.name = executor.getName();
+            stat.maxThreads = executor.getMaxThreads();
+            stat.poolSize = executor.getPoolSize();
+            stat.activeThreads = executor.getActiveThreads();
+            stat.queueDepth = executor.getQueueDepth();
+            stat.completedRequests = executor.getCompletedRequests();
+            stat.overflowRequests = executor.getOverflowRequests();
+            stats.add(stat);
+        }
+        this.httpExecutors = stats;
     }
 
     public String getStatsReport() {
@@ -64,8 +94,27 @@ public class ConsoleProxyClientStatsCollector {
         public String tag;
         public long createTime;
         public long lastUsedTime;
+        public long encodedImages;
+        public long encodedBytes;
+        public long encodeTimeMs;
+        public long servedImages;
+        public long servedBytes;
+        public long cachedImageBytes;
 
         public ConsoleProxyConnection() {
         }
     }
+
+    public static class HttpExecutorStats {
+        public String name;
+        public int maxThreads;
+        public int poolSize;
+        public int activeThreads;
+        public int queueDepth;
+        public long completedRequests;
+        public long overflowRequests;
+
+        public HttpExecutorStats() {
+        }
+    }
 }
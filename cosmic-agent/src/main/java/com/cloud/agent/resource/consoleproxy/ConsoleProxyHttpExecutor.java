@@ -0,0 +1,138 @@
+package com.cloud.agent.resource.consoleproxy;
+
+import com.cloud.utils.concurrency.NamedThreadFactory;
+import com.sun.net.httpserver.Filter;
+import com.sun.net.httpserver.HttpExchange;
+
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * ConsoleProxyHttpExecutor runs the requests of a console proxy HTTP server on a bounded pool of threads. Every thread
+ * of the pool may be busy at the same time, AJAX update requests wait for screen changes, so threads are started up to
+ * the maximum before requests are queued and stop again once they have been idle for a while. When the queue is full
+ * as well, the request is passed to a single overflow thread, where the {@link #OVERLOAD_FILTER} of the contexts
+ * answers it with 503 Service Unavailable. The thread accepting the connections never runs a request itself, it only
+ * answers requests with 503 when the overflow thread can't take them either or the executor is shut down.
+ */
+public class ConsoleProxyHttpExecutor implements Executor {
+    private static final Logger s_logger = LoggerFactory.getLogger(ConsoleProxyHttpExecutor.class);
+
+    static final int IDLE_THREAD_SECONDS = 60;
+
+    private static final ThreadLocal<Boolean> s_overloaded = new ThreadLocal<>();
+
+    /**
+     * Answers the requests passed to the overflow thread with 503 Service Unavailable, add it to every context of a
+     * server that uses this executor.
+     */
+    public static final Filter OVERLOAD_FILTER = new Filter() {
+        @Override
+        public void doFilter(final HttpExchange exchange, final Chain chain) throws IOException {
+            if (s_overloaded.get() == null) {
+                chain.doFilter(exchange);
+                return;
+            }
+            try {
+                exchange.getResponseHeaders().set("Retry-After", "1");
+                exchange.sendResponseHeaders(HttpURLConnection.HTTP_UNAVAILABLE, -1);
+            } finally {
+                exchange.close();
+            }
+        }
+
+        @Override
+        public String description() {
+            return "Answers requests with 503 when all request threads are busy";
+        }
+    };
+
+    private final String _name;
+    private final ThreadPoolExecutor _executor;
+    private final ThreadPoolExecutor _overflowExecutor;
+    private final AtomicLong _overflowRequests = new AtomicLong();
+
+    public ConsoleProxyHttpExecutor(final String name, final int maxThreads, final int queueSize) {
+        _name = name;
+        _executor = new ThreadPoolExecutor(maxThreads, maxThreads, IDLE_THREAD_SECONDS, TimeUnit.SECONDS, new LinkedBlockingQueue<>(queueSize),
+                new NamedThreadFactory(name), (r, executor) -> runOverflowRequest(r, executor));
+        _executor.allowCoreThreadTimeOut(true);
+        _overflowExecutor = new ThreadPoolExecutor(1, 1, IDLE_THREAD_SECONDS, TimeUnit.SECONDS, new LinkedBlockingQueue<>(queueSize),
+                new NamedThreadFactory(name + "-Overflow"), (r, executor) -> {
+                    s_logger.warn("Answering request to " + _name + " with 503 on the accepting thread, its overflow queue is full or it is shut down");
+                    r.run();
+                });
+        _overflowExecutor.allowCoreThreadTimeOut(true);
+    }
+
+    private void runOverflowRequest(final Runnable r, final ThreadPoolExecutor executor) {
+        if (executor.isShutdown()) {
+            s_logger.warn("Answering request to " + _name + " with 503, it is shut down");
+            answerUnavailable(r);
+            return;
+        }
+        if (_overflowRequests.getAndIncrement() == 0) {
+            s_logger.warn("All " + executor.getMaximumPoolSize() + " threads and the queue of " + _name + " are in use, requests are answered with 503");
+        }
+        _overflowExecutor.execute(() -> answerUnavailable(r));
+    }
+
+    /**
+     * Runs the request so the {@link #OVERLOAD_FILTER} answers it with 503 and closes the exchange, instead of leaving
+     * the client waiting for an answer that never comes.
+     */
+    private static void answerUnavailable(final Runnable r) {
+        s_overloaded.set(Boolean.TRUE);
+        try {
+            r.run();
+        } finally {
+            s_overloaded.remove();
+        }
+    }
+
+    @Override
+    public void execute(final Runnable r) {
+        _executor.execute(r);
+    }
+
+    public void shutdown() {
+        _executor.shutdown();
+        _overflowExecutor.shutdown();
+    }
+
+    public String getName() {
+        return _name;
+    }
+
+    public int getMaxThreads() {
+        return _executor.getMaximumPoolSize();
+    }
+
+    public int getPoolSize() {
+        return _executor.getPoolSize();
+    }
+
+    public int getActiveThreads() {
+        return _executor.getActiveCount();
+    }
+
+    public int getQueueDepth() {
+        return _executor.getQueue().size();
+    }
+
+    public long getCompletedRequests() {
+        return _executor.getCompletedTaskCount();
+    }
+
+    public long getOverflowRequests() {
+        return _overflowRequests.get();
+    }
+}
@@ -0,0 +1,54 @@
+package com.cloud.agent.resource.consoleproxy.util;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageOutputStream;
+import javax.imageio.stream.MemoryCacheImageOutputStream;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.Iterator;
+
+/**
+ * JpegEncoder encodes images to JPEG with the same image writer and output buffer every time. ImageIO.write looks up
+ * a new writer for every image and, with the default ImageIO settings, caches its output in a temporary file.
+ * <p>
+ * An encoder is not thread safe, callers have to serialize the use of it. The writer holds native resources, close the
+ * encoder when it is no longer used.
+ */
+public class JpegEncoder implements Closeable {
+    private final ImageWriter writer;
+    private final ByteArrayOutputStream bos = new ByteArrayOutputStream(128000);
+    private boolean closed;
+
+    public JpegEncoder() {
+        final Iterator<ImageWriter> writers = ImageIO.getImageWritersByFormatName("jpg");
+        if (!writers.hasNext()) {
+            throw new IllegalStateException("There is no JPEG image writer available");
+        }
+        writer = writers.next();
+    }
+
+    public byte[] encode(final BufferedImage image) throws IOException {
+        if (closed) {
+            throw new IOException("The JPEG encoder is closed");
+        }
+        bos.reset();
+        try (ImageOutputStream ios = new MemoryCacheImageOutputStream(bos)) {
+            writer.setOutput(ios);
+            writer.write(image);
+        } finally {
+            writer.setOutput(null);
+        }
+        return bos.toByteArray();
+    }
+
+    @Override
+    public void close() {
+        if (!closed) {
+            closed = true;
+            writer.dispose();
+        }
+    }
+}
@@ -1,6 +1,6 @@
 package com.cloud.agent.resource.consoleproxy.vnc;
 
-import com.cloud.agent.resource.consoleproxy.util.ImageHelper;
+import com.cloud.agent.resource.consoleproxy.util.JpegEncoder;
 import com.cloud.agent.resource.consoleproxy.util.TileInfo;
 
 import java.awt.Canvas;
@@ -22,12 +22,18 @@ import org.slf4j.LoggerFactory;
  */
 public class BufferedImageCanvas extends Canvas implements FrameBufferCanvas {
     private static final Logger s_logger = LoggerFactory.getLogger(BufferedImageCanvas.class);
+    private static final int MAX_REUSED_TILES_IMAGE_PIXELS = 64 * 64 * 32;
     private final PaintNotificationListener listener;
     // Offline screen buffer
     private BufferedImage offlineImage;
     // Cached Graphics2D object for offline screen buffer
     private Graphics2D graphics;
 
+    // Images of the AJAX viewer are encoded one at a time with the same encoder, small images of merged tiles are
+    // drawn on the same image as well. Both are guarded by the encoder.
+    private final JpegEncoder jpegEncoder = new JpegEncoder();
+    private BufferedImage tilesImage;
+
     public BufferedImageCanvas(final PaintNotificationListener listener, final int width, final int height) {
         super();
         this.listener = listener;
@@ -101,10 +107,13 @@ public class BufferedImageCanvas extends Canvas implements FrameBufferCanvas {
         synchronized (offlineImage) {
             g.drawImage(offlineImage, 0, 0, width, height, 0, 0, width, height, null);
         }
+        g.dispose();
 
         byte[] imgBits = null;
         try {
-            imgBits = ImageHelper.jpegFromImage(bufferedImage);
+            synchronized (jpegEncoder) {
+                imgBits = jpegEncoder.encode(bufferedImage);
+            }
         } catch (final IOException e) {
             s_logger.info("[ignored] read error on image", e);
         }
@@ -114,24 +123,57 @@ public class BufferedImageCanvas extends Canvas implements FrameBufferCanvas {
     @Override
     public byte[] getTilesMergedJpeg(final List<TileInfo> tileList, final int tileWidth, final int tileHeight) {
         final int width = Math.max(tileWidth, tileWidth * tileList.size());
-        final BufferedImage bufferedImage = new BufferedImage(width, tileHeight, BufferedImage.TYPE_3BYTE_BGR);
-        final Graphics2D g = bufferedImage.createGraphics();
 
-        synchronized (offlineImage) {
-            int i = 0;
-            for (final TileInfo tile : tileList) {
-                final Rectangle rc = tile.getTileRect();
-                g.drawImage(offlineImage, i * tileWidth, 0, i * tileWidth + rc.width, rc.height, rc.x, rc.y, rc.x + rc.width, rc.y + rc.height, null);
-                i++;
+        byte[] imgBits = null;
+        synchronized (jpegEncoder) {
+            final BufferedImage bufferedImage = getTilesImage(width, tileHeight);
+            final Graphics2D g = bufferedImage.createGraphics();
+
+            synchronized (offlineImage) {
+                int i = 0;
+                for (final TileInfo tile : tileList) {
+                    final Rectangle rc = tile.getTileRect();
+                    g.drawImage(offlineImage, i * tileWidth, 0, i * tileWidth + rc.width, rc.height, rc.x, rc.y, rc.x + rc.width, rc.y + rc.height, null);
+                    i++;
+                }
             }
-        }
+            g.dispose();
 
-        byte[] imgBits = null;
-        try {
-            imgBits = ImageHelper.jpegFromImage(bufferedImage);
-        } catch (final IOException e) {
-            s_logger.info("[ignored] read error on image tiles", e);
+            try {
+                imgBits = jpegEncoder.encode(bufferedImage);
+            } catch (final IOException e) {
+                s_logger.info("[ignored] read error on image tiles", e);
+            }
         }
         return imgBits;
     }
+
+    /**
+     * Releases the JPEG encoder when the session ends, images requested after that are not encoded anymore.
+     */
+    public void close() {
+        synchronized (jpegEncoder) {
+            jpegEncoder.close();
+            tilesImage = null;
+        }
+    }
+
+    /**
+     * Returns an image to draw merged tiles on. Updates of a few tiles are the common case, so an image for those is
+     * kept, larger ones get an image of their own.
+     */
+    private BufferedImage getTilesImage(final int width, final int height) {
+        if (width * height > MAX_REUSED_TILES_IMAGE_PIXELS) {
+            return new BufferedImage(width, height, BufferedImage.TYPE_3BYTE_BGR);
+        }
+        if (tilesImage == null || tilesImage.getWidth() < width || tilesImage.getHeight() < height) {
+            final int reusedWidth = tilesImage == null ? width : Math.max(width, tilesImage.getWidth());
+            final int reusedHeight = tilesImage == null ? height : Math.max(height, tilesImage.getHeight());
+            if (reusedWidth * reusedHeight > MAX_REUSED_TILES_IMAGE_PIXELS) {
+                return new BufferedImage(width, height, BufferedImage.TYPE_3BYTE_BGR);
+            }
+            tilesImage = new BufferedImage(reusedWidth, reusedHeight, BufferedImage.TYPE_3BYTE_BGR);
+        }
+        return tilesImage.getSubimage(0, 0, width, height);
+    }
 }
@@ -33,7 +33,7 @@ public interface RfbConstants {
     /**
      * Encodings.
      */
-    public final static int ENCODING_RAW = 0, ENCODING_COPY_RECT = 1, ENCODING_RRE = 2, ENCODING_CO_RRE = 4, ENCODING_HEXTILE = 5, ENCODING_ZRLE = 16;
+    public final static int ENCODING_RAW = 0, ENCODING_COPY_RECT = 1, ENCODING_RRE = 2, ENCODING_CO_RRE = 4, ENCODING_HEXTILE = 5, ENCODING_TIGHT = 7, ENCODING_ZRLE = 16;
 
     /**
      * Pseudo-encodings.
@@ -41,9 +41,21 @@ public interface RfbConstants {
     public final static int ENCODING_CURSOR = -239 /* 0xFFFFFF11 */, ENCODING_DESKTOP_SIZE = -223 /* 0xFFFFFF21 */;
 
     /**
-     * Encodings, which we support.
+     * Tight compression level pseudo-encodings, from level 0 (fast) up to level 9 (best compression).
      */
-    public final static int[] SUPPORTED_ENCODINGS_ARRAY = {ENCODING_RAW, ENCODING_COPY_RECT, ENCODING_DESKTOP_SIZE};
+    public final static int ENCODING_COMPRESS_LEVEL_0 = -256 /* 0xFFFFFF00 */;
+
+    /**
+     * Compression level asked from servers which support Tight encoding.
+     */
+    public final static int TIGHT_COMPRESS_LEVEL = 6;
+
+    /**
+     * Encodings, which we support, in order of preference. JPEG quality levels are not asked for, so Tight
+     * rectangles stay lossless.
+     */
+    public final static int[] SUPPORTED_ENCODINGS_ARRAY = {ENCODING_TIGHT, ENCODING_ZRLE, ENCODING_HEXTILE, ENCODING_COPY_RECT, ENCODING_RAW, ENCODING_DESKTOP_SIZE,
+            ENCODING_COMPRESS_LEVEL_0 + TIGHT_COMPRESS_LEVEL};
 
     /**
      * Frame buffer update request type: update of whole screen or partial
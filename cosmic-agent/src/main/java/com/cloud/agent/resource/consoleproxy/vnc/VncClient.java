@@ -13,6 +13,7 @@ import java.awt.Frame;
 import java.awt.ScrollPane;
 import java.awt.event.WindowAdapter;
 import java.awt.event.WindowEvent;
+import java.io.BufferedInputStream;
 import java.io.DataInputStream;
 import java.io.DataOutputStream;
 import java.io.IOException;
@@ -56,7 +57,7 @@ public class VncClient {
     }
 
     private void doConnect(final String password) throws IOException {
-        this.is = new DataInputStream(this.socket.getInputStream());
+        this.is = new DataInputStream(new BufferedInputStream(this.socket.getInputStream()));
         this.os = new DataOutputStream(this.socket.getOutputStream());
 
         // Initialize connection
@@ -93,6 +94,7 @@ public class VncClient {
                 frame.setVisible(false);
                 frame.dispose();
             }
+            canvas.close();
             shutdown();
         }
     }
@@ -3,6 +3,7 @@ package com.cloud.agent.resource.consoleproxy.vnc;
 import com.cloud.agent.resource.consoleproxy.ConsoleProxyClientListener;
 import com.cloud.agent.resource.consoleproxy.vnc.packet.server.FramebufferUpdatePacket;
 import com.cloud.agent.resource.consoleproxy.vnc.packet.server.ServerCutText;
+import com.cloud.agent.resource.consoleproxy.vnc.packet.server.ZlibStreams;
 
 import java.awt.Toolkit;
 import java.awt.datatransfer.StringSelection;
@@ -22,6 +23,8 @@ public class VncServerPacketReceiver implements Runnable {
     private final DataInputStream is;
     private boolean connectionAlive = true;
     private final VncClient vncConnection;
+    // The zlib streams of ZRLE and Tight encoding last for the whole connection
+    private final ZlibStreams zlibStreams = new ZlibStreams();
 
     public VncServerPacketReceiver(final DataInputStream is, final BufferedImageCanvas canvas, final VncScreenDescription screen, final VncClient vncConnection,
                                    final FrameBufferUpdateListener fburListener, final ConsoleProxyClientListener clientListener) {
@@ -53,7 +56,7 @@ public class VncServerPacketReceiver implements Runnable {
                         // so it can send another frame buffer update request
                         this.fburListener.frameBufferPacketReceived();
                         // Handle frame buffer update
-                        new FramebufferUpdatePacket(this.canvas, this.screen, this.is, this.clientListener);
+                        new FramebufferUpdatePacket(this.canvas, this.screen, this.is, this.clientListener, this.zlibStreams);
                         break;
                     }
 
@@ -78,6 +81,7 @@ public class VncServerPacketReceiver implements Runnable {
             }
         } finally {
             s_logger.info("Receiving thread exit processing, shutdown connection");
+            this.zlibStreams.close();
             this.vncConnection.shutdown();
         }
     }
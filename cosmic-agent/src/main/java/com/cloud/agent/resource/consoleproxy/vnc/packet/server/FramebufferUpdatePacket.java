@@ -13,13 +13,15 @@ public class FramebufferUpdatePacket {
     private final VncScreenDescription screen;
     private final BufferedImageCanvas canvas;
     private final ConsoleProxyClientListener clientListener;
+    private final ZlibStreams zlibStreams;
 
-    public FramebufferUpdatePacket(final BufferedImageCanvas canvas, final VncScreenDescription screen, final DataInputStream is, final ConsoleProxyClientListener clientListener)
-            throws IOException {
+    public FramebufferUpdatePacket(final BufferedImageCanvas canvas, final VncScreenDescription screen, final DataInputStream is, final ConsoleProxyClientListener clientListener,
+                                   final ZlibStreams zlibStreams) throws IOException {
 
         this.screen = screen;
         this.canvas = canvas;
         this.clientListener = clientListener;
+        this.zlibStreams = zlibStreams;
         readPacketData(is);
     }
 
@@ -54,6 +56,21 @@ public class FramebufferUpdatePacket {
                     break;
                 }
 
+                case RfbConstants.ENCODING_HEXTILE: {
+                    rect = new HextileRect(x, y, width, height, is);
+                    break;
+                }
+
+                case RfbConstants.ENCODING_ZRLE: {
+                    rect = new ZrleRect(x, y, width, height, is, this.zlibStreams);
+                    break;
+                }
+
+                case RfbConstants.ENCODING_TIGHT: {
+                    rect = new TightRect(x, y, width, height, is, this.zlibStreams);
+                    break;
+                }
+
                 case RfbConstants.ENCODING_DESKTOP_SIZE: {
                     rect = new FrameBufferSizeChangeRequest(this.canvas, width, height);
                     if (this.clientListener != null) {
@@ -0,0 +1,77 @@
+package com.cloud.agent.resource.consoleproxy.vnc.packet.server;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+
+/**
+ * HextileRect decodes a rectangle in Hextile encoding: tiles of 16x16 pixels which are either raw or a background
+ * color with subrectangles of other colors on top. Pixels are RGB888 packed into 32bit little-endian ints.
+ */
+public class HextileRect extends PixelRect {
+    private static final int TILE_SIZE = 16;
+
+    private static final int RAW = 1, BACKGROUND_SPECIFIED = 2, FOREGROUND_SPECIFIED = 4, ANY_SUBRECTS = 8, SUBRECTS_COLOURED = 16;
+
+    private final byte[] pixel = new byte[4];
+
+    public HextileRect(final int x, final int y, final int width, final int height, final DataInputStream is) throws IOException {
+        super(x, y, width, height);
+
+        // The background and foreground carry over from one tile to the next
+        int background = 0;
+        int foreground = 0;
+        byte[] rawTile = null;
+
+        for (int tileY = 0; tileY < height; tileY += TILE_SIZE) {
+            final int tileHeight = Math.min(TILE_SIZE, height - tileY);
+            for (int tileX = 0; tileX < width; tileX += TILE_SIZE) {
+                final int tileWidth = Math.min(TILE_SIZE, width - tileX);
+
+                final int subencoding = is.readUnsignedByte();
+                if ((subencoding & RAW) != 0) {
+                    if (rawTile == null) {
+                        rawTile = new byte[TILE_SIZE * TILE_SIZE * 4];
+                    }
+                    readRawTile(is, rawTile, tileX, tileY, tileWidth, tileHeight);
+                    continue;
+                }
+
+                if ((subencoding & BACKGROUND_SPECIFIED) != 0) {
+                    background = readPixel(is);
+                }
+                fill(tileX, tileY, tileWidth, tileHeight, background);
+
+                if ((subencoding & FOREGROUND_SPECIFIED) != 0) {
+                    foreground = readPixel(is);
+                }
+
+                if ((subencoding & ANY_SUBRECTS) != 0) {
+                    final int numberOfSubrects = is.readUnsignedByte();
+                    for (int i = 0; i < numberOfSubrects; i++) {
+                        final int color = (subencoding & SUBRECTS_COLOURED) != 0 ? readPixel(is) : foreground;
+                        final int position = is.readUnsignedByte();
+                        final int size = is.readUnsignedByte();
+                        fill(tileX + (position >> 4), tileY + (position & 0x0F), (size >> 4) + 1, (size & 0x0F) + 1, color);
+                    }
+                }
+            }
+        }
+    }
+
+    private int readPixel(final DataInputStream is) throws IOException {
+        is.readFully(pixel);
+        return (pixel[0] & 0xFF) | ((pixel[1] & 0xFF) << 8) | ((pixel[2] & 0xFF) << 16) | ((pixel[3] & 0xFF) << 24);
+    }
+
+    private void readRawTile(final DataInputStream is, final byte[] rawTile, final int tileX, final int tileY, final int tileWidth, final int tileHeight)
+            throws IOException {
+        is.readFully(rawTile, 0, tileWidth * tileHeight * 4);
+        int j = 0;
+        for (int line = tileY; line < tileY + tileHeight; line++) {
+            final int offset = line * width;
+            for (int column = tileX; column < tileX + tileWidth; column++, j += 4) {
+                buf[offset + column] = (rawTile[j] & 0xFF) | ((rawTile[j + 1] & 0xFF) << 8) | ((rawTile[j + 2] & 0xFF) << 16) | ((rawTile[j + 3] & 0xFF) << 24);
+            }
+        }
+    }
+}
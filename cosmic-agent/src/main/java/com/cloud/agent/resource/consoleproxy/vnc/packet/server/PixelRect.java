@@ -0,0 +1,70 @@
+package com.cloud.agent.resource.consoleproxy.vnc.packet.server;
+
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBuffer;
+import java.awt.image.DataBufferInt;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * PixelRect is a rectangle that is decoded into a buffer of RGB888 pixels, which is painted on the image as a whole.
+ */
+public abstract class PixelRect extends AbstractRect {
+    private static final Logger s_logger = LoggerFactory.getLogger(PixelRect.class);
+
+    protected final int[] buf;
+
+    public PixelRect(final int x, final int y, final int width, final int height) {
+        super(x, y, width, height);
+
+        buf = new int[width * height];
+    }
+
+    /**
+     * Fills a part of the rectangle with one color, the part is cut off at the borders of the rectangle.
+     */
+    protected void fill(final int fillX, final int fillY, final int fillWidth, final int fillHeight, final int color) {
+        final int right = Math.min(fillX + fillWidth, width);
+        final int bottom = Math.min(fillY + fillHeight, height);
+        for (int line = fillY; line < bottom; line++) {
+            final int offset = line * width;
+            for (int column = fillX; column < right; column++) {
+                buf[offset + column] = color;
+            }
+        }
+    }
+
+    @Override
+    public void paint(final BufferedImage image, final Graphics2D graphics) {
+
+        final DataBuffer dataBuf = image.getRaster().getDataBuffer();
+
+        switch (dataBuf.getDataType()) {
+
+            case DataBuffer.TYPE_INT: {
+                // We chose RGB888 model, so Raster will use DataBufferInt type
+                final DataBufferInt dataBuffer = (DataBufferInt) dataBuf;
+
+                final int imageWidth = image.getWidth();
+                final int imageHeight = image.getHeight();
+
+                // Paint rectangle directly on buffer, line by line
+                final int[] imageBuffer = dataBuffer.getData();
+                for (int srcLine = 0, dstLine = y; srcLine < height && dstLine < imageHeight; srcLine++, dstLine++) {
+                    try {
+                        System.arraycopy(buf, srcLine * width, imageBuffer, x + dstLine * imageWidth, width);
+                    } catch (final IndexOutOfBoundsException e) {
+                        s_logger.info("[ignored] buffer overflow!?!", e);
+                    }
+                }
+                break;
+            }
+
+            default:
+                throw new RuntimeException("Unsupported data buffer in buffered image: expected data buffer of type int (DataBufferInt). Actual data buffer type: " +
+                        dataBuf.getClass().getSimpleName());
+        }
+    }
+}
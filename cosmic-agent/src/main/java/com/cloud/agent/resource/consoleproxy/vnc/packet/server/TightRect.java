@@ -0,0 +1,155 @@
+package com.cloud.agent.resource.consoleproxy.vnc.packet.server;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+
+/**
+ * TightRect decodes a rectangle in Tight encoding: a solid color, a JPEG image or pixels which are filtered and
+ * compressed with one of four zlib streams. The pixels (TPIXEL) of the RGB888 pixel format are 3 bytes: red, green
+ * and blue.
+ */
+public class TightRect extends PixelRect {
+    private static final int FILL_COMPRESSION = 0x08, JPEG_COMPRESSION = 0x09, MAX_BASIC_COMPRESSION = 0x07;
+
+    private static final int EXPLICIT_FILTER = 0x04, STREAM_ID_MASK = 0x03;
+
+    private static final int FILTER_COPY = 0, FILTER_PALETTE = 1, FILTER_GRADIENT = 2;
+
+    // Data shorter than this is sent without compression
+    private static final int MIN_DATA_TO_COMPRESS = 12;
+
+    private final int[] palette = new int[256];
+
+    public TightRect(final int x, final int y, final int width, final int height, final DataInputStream is, final ZlibStreams streams) throws IOException {
+        super(x, y, width, height);
+
+        final int compressionControl = is.readUnsignedByte();
+        for (int id = 0; id < ZlibStreams.TIGHT_STREAM_COUNT; id++) {
+            if ((compressionControl & (1 << id)) != 0) {
+                streams.getTightStream(id).reset();
+            }
+        }
+
+        final int compression = compressionControl >> 4;
+        if (compression == FILL_COMPRESSION) {
+            fill(0, 0, width, height, readTPixel(is));
+        } else if (compression == JPEG_COMPRESSION) {
+            readJpeg(is);
+        } else if (compression <= MAX_BASIC_COMPRESSION) {
+            final ZlibStream zlib = streams.getTightStream(compression & STREAM_ID_MASK);
+            final int filter = (compression & EXPLICIT_FILTER) != 0 ? is.readUnsignedByte() : FILTER_COPY;
+            switch (filter) {
+                case FILTER_COPY:
+                    readCopy(is, zlib);
+                    break;
+                case FILTER_PALETTE:
+                    readPalette(is, zlib);
+                    break;
+                case FILTER_GRADIENT:
+                    readGradient(is, zlib);
+                    break;
+                default:
+                    throw new IOException("Unsupported Tight filter: " + filter);
+            }
+        } else {
+            throw new IOException("Unsupported Tight compression: " + compression);
+        }
+    }
+
+    private void readCopy(final DataInputStream is, final ZlibStream zlib) throws IOException {
+        final byte[] data = readData(is, zlib, width * height * 3);
+        for (int i = 0, j = 0; i < buf.length; i++, j += 3) {
+            buf[i] = ((data[j] & 0xFF) << 16) | ((data[j + 1] & 0xFF) << 8) | (data[j + 2] & 0xFF);
+        }
+    }
+
+    private void readPalette(final DataInputStream is, final ZlibStream zlib) throws IOException {
+        final int paletteSize = is.readUnsignedByte() + 1;
+        for (int i = 0; i < paletteSize; i++) {
+            palette[i] = readTPixel(is);
+        }
+
+        if (paletteSize == 2) {
+            // One bit per pixel, every line starts at a new byte
+            final int bytesPerLine = (width + 7) / 8;
+            final byte[] data = readData(is, zlib, bytesPerLine * height);
+            for (int line = 0; line < height; line++) {
+                final int offset = line * width;
+                for (int column = 0; column < width; column++) {
+                    buf[offset + column] = palette[(data[line * bytesPerLine + column / 8] >> (7 - column % 8)) & 1];
+                }
+            }
+        } else {
+            final byte[] data = readData(is, zlib, width * height);
+            for (int i = 0; i < buf.length; i++) {
+                buf[i] = palette[data[i] & 0xFF];
+            }
+        }
+    }
+
+    private void readGradient(final DataInputStream is, final ZlibStream zlib) throws IOException {
+        final byte[] data = readData(is, zlib, width * height * 3);
+        int j = 0;
+        for (int line = 0; line < height; line++) {
+            for (int column = 0; column < width; column++) {
+                final int left = column > 0 ? buf[line * width + column - 1] : 0;
+                final int up = line > 0 ? buf[(line - 1) * width + column] : 0;
+                final int upLeft = line > 0 && column > 0 ? buf[(line - 1) * width + column - 1] : 0;
+
+                int pixel = 0;
+                for (int shift = 16; shift >= 0; shift -= 8, j++) {
+                    int prediction = ((left >> shift) & 0xFF) + ((up >> shift) & 0xFF) - ((upLeft >> shift) & 0xFF);
+                    prediction = Math.max(0, Math.min(255, prediction));
+                    pixel |= ((prediction + data[j]) & 0xFF) << shift;
+                }
+                buf[line * width + column] = pixel;
+            }
+        }
+    }
+
+    private void readJpeg(final DataInputStream is) throws IOException {
+        final byte[] jpeg = new byte[readCompactLength(is)];
+        is.readFully(jpeg);
+
+        final BufferedImage image = ImageIO.read(new ByteArrayInputStream(jpeg));
+        if (image == null) {
+            throw new IOException("Unable to decode the JPEG image of a Tight rectangle");
+        }
+        image.getRGB(0, 0, Math.min(width, image.getWidth()), Math.min(height, image.getHeight()), buf, 0, width);
+    }
+
+    private static byte[] readData(final DataInputStream is, final ZlibStream zlib, final int length) throws IOException {
+        final byte[] data = new byte[length];
+        if (length < MIN_DATA_TO_COMPRESS) {
+            is.readFully(data);
+        } else {
+            zlib.setInput(is, readCompactLength(is));
+            zlib.readFully(data, 0, length);
+            zlib.finishInput();
+        }
+        return data;
+    }
+
+    /**
+     * Reads a length of 1 to 3 bytes, with 7 bits in the first two bytes and the high bit set when another byte follows.
+     */
+    private static int readCompactLength(final DataInputStream is) throws IOException {
+        int b = is.readUnsignedByte();
+        int length = b & 0x7F;
+        if ((b & 0x80) != 0) {
+            b = is.readUnsignedByte();
+            length |= (b & 0x7F) << 7;
+            if ((b & 0x80) != 0) {
+                length |= is.readUnsignedByte() << 14;
+            }
+        }
+        return length;
+    }
+
+    private static int readTPixel(final DataInputStream is) throws IOException {
+        return (is.readUnsignedByte() << 16) | (is.readUnsignedByte() << 8) | is.readUnsignedByte();
+    }
+}
@@ -0,0 +1,98 @@
+package com.cloud.agent.resource.consoleproxy.vnc.packet.server;
+
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * ZlibStream reads the compressed data of one zlib stream of a VNC connection. The server compresses the data of all
+ * rectangles with the same stream and flushes it at the end of every rectangle, so the inflater lives as long as the
+ * connection and only gets the data of the next rectangle as new input.
+ */
+class ZlibStream {
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final Inflater inflater = new Inflater();
+    private final byte[] buffer = new byte[BUFFER_SIZE];
+    private byte[] input = new byte[BUFFER_SIZE];
+    private int position;
+    private int limit;
+
+    /**
+     * Reads the compressed data of a rectangle from the connection.
+     */
+    void setInput(final DataInputStream is, final int length) throws IOException {
+        if (input.length < length) {
+            input = new byte[length];
+        }
+        is.readFully(input, 0, length);
+        inflater.setInput(input, 0, length);
+        position = 0;
+        limit = 0;
+    }
+
+    /**
+     * Inflates what is left of the input of a rectangle, so the inflater ends up at the flush point of the server.
+     */
+    void finishInput() throws IOException {
+        try {
+            while (!inflater.needsInput()) {
+                if (inflater.inflate(buffer) == 0) {
+                    break;
+                }
+            }
+        } catch (final DataFormatException e) {
+            throw new IOException("Corrupt zlib data: " + e.getMessage(), e);
+        }
+        position = 0;
+        limit = 0;
+    }
+
+    int readUnsignedByte() throws IOException {
+        if (position == limit) {
+            fill();
+        }
+        return buffer[position++] & 0xFF;
+    }
+
+    void readFully(final byte[] b, int offset, int length) throws IOException {
+        while (length > 0) {
+            if (position == limit) {
+                fill();
+            }
+            final int count = Math.min(length, limit - position);
+            System.arraycopy(buffer, position, b, offset, count);
+            position += count;
+            offset += count;
+            length -= count;
+        }
+    }
+
+    void reset() {
+        inflater.reset();
+        position = 0;
+        limit = 0;
+    }
+
+    void end() {
+        inflater.end();
+    }
+
+    private void fill() throws IOException {
+        try {
+            int count;
+            do {
+                count = inflater.inflate(buffer);
+                if (count == 0 && (inflater.needsInput() || inflater.needsDictionary() || inflater.finished())) {
+                    throw new EOFException("Unexpected end of the zlib data of a rectangle");
+                }
+            } while (count == 0);
+            position = 0;
+            limit = count;
+        } catch (final DataFormatException e) {
+            throw new IOException("Corrupt zlib data: " + e.getMessage(), e);
+        }
+    }
+}
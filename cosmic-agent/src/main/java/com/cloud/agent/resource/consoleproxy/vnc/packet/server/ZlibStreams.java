@@ -0,0 +1,33 @@
+package com.cloud.agent.resource.consoleproxy.vnc.packet.server;
+
+/**
+ * ZlibStreams holds the zlib streams of a VNC connection: one for ZRLE and four for Tight, which the server selects
+ * per rectangle.
+ */
+public class ZlibStreams {
+    public static final int TIGHT_STREAM_COUNT = 4;
+
+    private final ZlibStream zrleStream = new ZlibStream();
+    private final ZlibStream[] tightStreams = new ZlibStream[TIGHT_STREAM_COUNT];
+
+    public ZlibStreams() {
+        for (int i = 0; i < TIGHT_STREAM_COUNT; i++) {
+            tightStreams[i] = new ZlibStream();
+        }
+    }
+
+    ZlibStream getZrleStream() {
+        return zrleStream;
+    }
+
+    ZlibStream getTightStream(final int id) {
+        return tightStreams[id];
+    }
+
+    public void close() {
+        zrleStream.end();
+        for (final ZlibStream stream : tightStreams) {
+            stream.end();
+        }
+    }
+}
@@ -0,0 +1,128 @@
+package com.cloud.agent.resource.consoleproxy.vnc.packet.server;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+
+/**
+ * ZrleRect decodes a rectangle in ZRLE encoding: zlib compressed tiles of 64x64 pixels which are raw, a solid color,
+ * packed palette indexes or run-length encoded. The compressed pixels (CPIXEL) of the RGB888 little-endian pixel
+ * format are 3 bytes: blue, green and red.
+ */
+public class ZrleRect extends PixelRect {
+    private static final int TILE_SIZE = 64;
+
+    private static final int SUBENCODING_RAW = 0, SUBENCODING_SOLID = 1, SUBENCODING_MAX_PACKED_PALETTE = 16, SUBENCODING_PLAIN_RLE = 128,
+            SUBENCODING_MIN_PALETTE_RLE = 130;
+
+    private final int[] palette = new int[128];
+
+    public ZrleRect(final int x, final int y, final int width, final int height, final DataInputStream is, final ZlibStreams streams) throws IOException {
+        super(x, y, width, height);
+
+        final ZlibStream zlib = streams.getZrleStream();
+        zlib.setInput(is, is.readInt());
+
+        for (int tileY = 0; tileY < height; tileY += TILE_SIZE) {
+            final int tileHeight = Math.min(TILE_SIZE, height - tileY);
+            for (int tileX = 0; tileX < width; tileX += TILE_SIZE) {
+                final int tileWidth = Math.min(TILE_SIZE, width - tileX);
+                readTile(zlib, tileX, tileY, tileWidth, tileHeight);
+            }
+        }
+
+        zlib.finishInput();
+    }
+
+    private void readTile(final ZlibStream zlib, final int tileX, final int tileY, final int tileWidth, final int tileHeight) throws IOException {
+        final int subencoding = zlib.readUnsignedByte();
+
+        if (subencoding == SUBENCODING_RAW) {
+            for (int line = tileY; line < tileY + tileHeight; line++) {
+                final int offset = line * width;
+                for (int column = tileX; column < tileX + tileWidth; column++) {
+                    buf[offset + column] = readCPixel(zlib);
+                }
+            }
+        } else if (subencoding == SUBENCODING_SOLID) {
+            fill(tileX, tileY, tileWidth, tileHeight, readCPixel(zlib));
+        } else if (subencoding <= SUBENCODING_MAX_PACKED_PALETTE) {
+            readPalette(zlib, subencoding);
+            readPackedPalette(zlib, subencoding, tileX, tileY, tileWidth, tileHeight);
+        } else if (subencoding == SUBENCODING_PLAIN_RLE) {
+            readRle(zlib, false, tileX, tileY, tileWidth, tileHeight);
+        } else if (subencoding >= SUBENCODING_MIN_PALETTE_RLE) {
+            readPalette(zlib, subencoding - SUBENCODING_PLAIN_RLE);
+            readRle(zlib, true, tileX, tileY, tileWidth, tileHeight);
+        } else {
+            throw new IOException("Unsupported ZRLE tile subencoding: " + subencoding);
+        }
+    }
+
+    private void readPalette(final ZlibStream zlib, final int paletteSize) throws IOException {
+        for (int i = 0; i < paletteSize; i++) {
+            palette[i] = readCPixel(zlib);
+        }
+    }
+
+    private void readPackedPalette(final ZlibStream zlib, final int paletteSize, final int tileX, final int tileY, final int tileWidth, final int tileHeight)
+            throws IOException {
+        final int bitsPerIndex = paletteSize == 2 ? 1 : paletteSize <= 4 ? 2 : 4;
+        final int indexMask = (1 << bitsPerIndex) - 1;
+
+        for (int line = tileY; line < tileY + tileHeight; line++) {
+            final int offset = line * width;
+            // Every line starts at a new byte
+            int bits = 0;
+            int bitsLeft = 0;
+            for (int column = tileX; column < tileX + tileWidth; column++) {
+                if (bitsLeft == 0) {
+                    bits = zlib.readUnsignedByte();
+                    bitsLeft = 8;
+                }
+                bitsLeft -= bitsPerIndex;
+                buf[offset + column] = palette[(bits >> bitsLeft) & indexMask];
+            }
+        }
+    }
+
+    private void readRle(final ZlibStream zlib, final boolean withPalette, final int tileX, final int tileY, final int tileWidth, final int tileHeight)
+            throws IOException {
+        final int tileSize = tileWidth * tileHeight;
+        int i = 0;
+        while (i < tileSize) {
+            final int color;
+            int runLength = 1;
+            if (withPalette) {
+                final int index = zlib.readUnsignedByte();
+                color = palette[index & 0x7F];
+                if ((index & 0x80) != 0) {
+                    runLength = readRunLength(zlib);
+                }
+            } else {
+                color = readCPixel(zlib);
+                runLength = readRunLength(zlib);
+            }
+
+            if (i + runLength > tileSize) {
+                throw new IOException("ZRLE run of " + runLength + " pixels does not fit in the tile");
+            }
+            for (final int end = i + runLength; i < end; i++) {
+                buf[(tileY + i / tileWidth) * width + tileX + i % tileWidth] = color;
+            }
+        }
+    }
+
+    private static int readRunLength(final ZlibStream zlib) throws IOException {
+        int runLength = 1;
+        int b;
+        do {
+            b = zlib.readUnsignedByte();
+            runLength += b;
+        } while (b == 255);
+        return runLength;
+    }
+
+    private static int readCPixel(final ZlibStream zlib) throws IOException {
+        return zlib.readUnsignedByte() | (zlib.readUnsignedByte() << 8) | (zlib.readUnsignedByte() << 16);
+    }
+}
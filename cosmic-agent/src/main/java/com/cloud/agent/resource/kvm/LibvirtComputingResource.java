@@ -111,9 +111,8 @@ import com.cloud.utils.linux.CpuStat;
 import com.cloud.utils.linux.MemStat;
 import com.cloud.utils.net.NetUtils;
 import com.cloud.utils.script.OutputInterpreter;
-import com.cloud.utils.script.OutputInterpreter.AllLinesParser;
 import com.cloud.utils.script.Script;
-import com.cloud.utils.ssh.SshHelper;
+import com.cloud.utils.ssh.SshConnectionPool;
 import com.cloud.utils.storage.JavaStorageLayer;
 import com.cloud.utils.storage.StorageLayer;
 
@@ -191,6 +190,7 @@ public class LibvirtComputingResource extends AgentResourceBase implements Agent
     public static final String SSHPRVKEYPATH = SSHKEYSPATH + File.separator + "id_rsa.cloud";
     public static final String SSHPUBKEYPATH = SSHKEYSPATH + File.separator + "id_rsa.pub.cloud";
     public static final String BASH_SCRIPT_PATH = "/bin/bash";
+    public static final int DEFAULT_DOMR_SSHPORT = 3922;
 
     protected static final String DEFAULT_OVS_VIF_DRIVER_CLASS = "com.cloud.agent.resource.kvm.vif.OvsVifDriver";
     protected static final String DEFAULT_BRIDGE_VIF_DRIVER_CLASS = "com.cloud.agent.resource.kvm.vif.BridgeVifDriver";
@@ -275,6 +275,8 @@ public class LibvirtComputingResource extends AgentResourceBase implements Agent
     private String routerProxyPath;
     private long hvVersion;
     private VirtualRoutingResource virtRouterResource;
+    private SshConnectionPool routerSshPool;
+    private LibvirtVmStatsCollector vmStatsCollector;
     private String pingTestPath;
     private String updateHostPasswdPath;
     private KvmHaMonitor monitor;
@@ -291,33 +293,31 @@ public class LibvirtComputingResource extends AgentResourceBase implements Agent
 
     @Override
     public ExecutionResult executeInVR(final String routerIp, final String script, final String args, final int timeout) {
-        final Script command = new Script(this.routerProxyPath, timeout * 1000, logger);
-        final AllLinesParser parser = new AllLinesParser();
-        command.add(script);
-        command.add(routerIp);
+        final StringBuilder command = new StringBuilder(VRScripts.ROUTER_SCRIPTS_LOCATION).append(script);
         if (args != null) {
-            command.add(args);
-        }
-        String details = command.execute(parser);
-        if (details == null) {
-            details = parser.getLines().trim();
+            command.append(' ').append(args);
         }
 
         logger.debug("Executing script in VR " + script);
 
-        return new ExecutionResult(command.getExitValue() == 0, details);
+        try {
+            final Pair<Boolean, String> result = this.routerSshPool.sshExecute(routerIp, DEFAULT_DOMR_SSHPORT, command.toString(), timeout * 1000);
+            return new ExecutionResult(result.first(), result.second().trim());
+        } catch (final Exception e) {
+            logger.warn("Fail to execute " + script + " in VR " + routerIp, e);
+            return new ExecutionResult(false, e.getMessage());
+        }
     }
 
     @Override
     public ExecutionResult createFileInVR(final String routerIp, final String path, final String filename,
                                           final String content) {
-        final File permKey = new File("/root/.ssh/id_rsa.cloud");
         String error = null;
 
         logger.debug("Creating file in VR " + filename);
 
         try {
-            SshHelper.scpTo(routerIp, 3922, "root", permKey, null, path, content.getBytes(), filename, null);
+            this.routerSshPool.scpTo(routerIp, DEFAULT_DOMR_SSHPORT, path, content.getBytes(), filename, null);
         } catch (final Exception e) {
             logger.warn("Fail to create file " + path + filename + " in VR " + routerIp, e);
             error = e.getMessage();
@@ -622,6 +622,7 @@ public class LibvirtComputingResource extends AgentResourceBase implements Agent
 
         initConnectionToLibvirtDaemon(this.libvirtComputingResourceProperties);
         initMonitorThread();
+        this.vmStatsCollector = new LibvirtVmStatsCollector(this, this.libvirtComputingResourceProperties.getVmStatsThreads());
 
         initStoragePoolManager();
         if (checkSystemvmIso(this.libvirtComputingResourceProperties)) {
@@ -801,6 +802,7 @@ public class LibvirtComputingResource extends AgentResourceBase implements Agent
 
     private boolean initVirtualRoutingResource(final Map<String, Object> propertiesMap) throws ConfigurationException {
         this.virtRouterResource = new VirtualRoutingResource(this);
+        this.routerSshPool = new SshConnectionPool("RouterSsh", "root", new File(SSHPRVKEYPATH), this.libvirtComputingResourceProperties.getRouterSshIdleTimeout());
 
         return !this.virtRouterResource.configure(propertiesMap);
     }
@@ -1058,6 +1060,13 @@ public class LibvirtComputingResource extends AgentResourceBase implements Agent
 
     @Override
     public boolean stop() {
+        if (this.routerSshPool != null) {
+            this.routerSshPool.shutdown();
+        }
+        if (this.vmStatsCollector != null) {
+            this.vmStatsCollector.shutdown();
+        }
+
         try {
             final Connect conn = LibvirtConnection.getConnection();
             conn.close();
@@ -2354,30 +2363,59 @@ public class LibvirtComputingResource extends AgentResourceBase implements Agent
         Domain dm = null;
         try {
             dm = getDomain(conn, vmName);
+            return getVmDiskStat(dm, vmName, getDisks(conn, vmName));
+        } finally {
+            if (dm != null) {
+                dm.free();
+            }
+        }
+    }
 
-            final List<VmDiskStatsEntry> stats = new ArrayList<>();
-
-            final List<LibvirtDiskDef> disks = getDisks(conn, vmName);
+    public List<VmDiskStatsEntry> getVmDiskStat(final Domain dm, final String vmName, final List<LibvirtDiskDef> disks) throws LibvirtException {
+        final List<VmDiskStatsEntry> stats = new ArrayList<>();
 
-            for (final LibvirtDiskDef disk : disks) {
-                if (disk.getDeviceType() != DeviceType.DISK) {
-                    break;
-                }
-                final DomainBlockStats blockStats = dm.blockStats(disk.getDiskLabel());
-                final String path = disk.getDiskPath(); // for example, path = /mnt/pool_uuid/disk_path/
-                String diskPath = null;
-                if (path != null) {
-                    final String[] token = path.split("/");
-                    if (token.length > 3) {
-                        diskPath = token[3];
-                        final VmDiskStatsEntry stat = new VmDiskStatsEntry(vmName, diskPath, blockStats.wr_req, blockStats.rd_req,
-                                blockStats.wr_bytes, blockStats.rd_bytes);
-                        stats.add(stat);
-                    }
+        for (final LibvirtDiskDef disk : disks) {
+            if (disk.getDeviceType() != DeviceType.DISK) {
+                break;
+            }
+            final DomainBlockStats blockStats = dm.blockStats(disk.getDiskLabel());
+            final String path = disk.getDiskPath(); // for example, path = /mnt/pool_uuid/disk_path/
+            String diskPath = null;
+            if (path != null) {
+                final String[] token = path.split("/");
+                if (token.length > 3) {
+                    diskPath = token[3];
+                    final VmDiskStatsEntry stat = new VmDiskStatsEntry(vmName, diskPath, blockStats.wr_req, blockStats.rd_req,
+                            blockStats.wr_bytes, blockStats.rd_bytes);
+                    stats.add(stat);
                 }
             }
+        }
+
+        return stats;
+    }
+
+    /**
+     * Collects the disk stats of the VMs in parallel, VMs for which they can't be collected are left out.
+     */
+    public Map<String, List<VmDiskStatsEntry>> getVmDiskStats(final Connect conn, final List<String> vmNames) {
+        return this.vmStatsCollector.getVmDiskStats(conn, vmNames);
+    }
+
+    /**
+     * Collects the stats of the VMs in parallel, VMs for which they can't be collected are left out.
+     *
+     * @param connections the libvirt connection of each VM
+     */
+    public Map<String, VmStatsEntry> getVmStats(final Map<String, Connect> connections) {
+        return this.vmStatsCollector.getVmStats(connections);
+    }
 
-            return stats;
+    public VmStatsEntry getVmStat(final Connect conn, final String vmName) throws LibvirtException {
+        Domain dm = null;
+        try {
+            dm = getDomain(conn, vmName);
+            return getVmStat(dm, vmName, conn.nodeInfo().cpus, getInterfaces(conn, vmName), getDisks(conn, vmName));
         } finally {
             if (dm != null) {
                 dm.free();
@@ -2385,110 +2423,99 @@ public class LibvirtComputingResource extends AgentResourceBase implements Agent
         }
     }
 
-    public VmStatsEntry getVmStat(final Connect conn, final String vmName) throws LibvirtException {
-        Domain dm = null;
-        try {
-            dm = getDomain(conn, vmName);
-            final DomainInfo info = dm.getInfo();
+    public VmStatsEntry getVmStat(final Domain dm, final String vmName, final int hostCpus, final List<InterfaceDef> vifs, final List<LibvirtDiskDef> disks)
+            throws LibvirtException {
+        final DomainInfo info = dm.getInfo();
 
-            final VmStatsEntry stats = new VmStatsEntry();
-            stats.setNumCPUs(info.nrVirtCpu);
-            stats.setEntityType("vm");
+        final VmStatsEntry stats = new VmStatsEntry();
+        stats.setNumCPUs(info.nrVirtCpu);
+        stats.setEntityType("vm");
 
-            /* get cpu utilization */
-            VmStats oldStats = null;
+        /* get cpu utilization */
+        VmStats oldStats = null;
 
-            final Calendar now = Calendar.getInstance();
+        final Calendar now = Calendar.getInstance();
 
-            oldStats = this.vmStats.get(vmName);
+        oldStats = this.vmStats.get(vmName);
 
-            long elapsedTime = 0;
-            if (oldStats != null) {
-                elapsedTime = now.getTimeInMillis() - oldStats.timestamp.getTimeInMillis();
-                double utilization = (info.cpuTime - oldStats.usedTime) / ((double) elapsedTime * 1000000);
+        long elapsedTime = 0;
+        if (oldStats != null) {
+            elapsedTime = now.getTimeInMillis() - oldStats.timestamp.getTimeInMillis();
+            double utilization = (info.cpuTime - oldStats.usedTime) / ((double) elapsedTime * 1000000);
 
-                final NodeInfo node = conn.nodeInfo();
-                utilization = utilization / node.cpus;
-                if (utilization > 0) {
-                    stats.setCPUUtilization(utilization * 100);
-                }
+            utilization = utilization / hostCpus;
+            if (utilization > 0) {
+                stats.setCPUUtilization(utilization * 100);
             }
+        }
 
-            /* get network stats */
+        /* get network stats */
+        long rx = 0;
+        long tx = 0;
+        for (final InterfaceDef vif : vifs) {
+            final DomainInterfaceStats ifStats = dm.interfaceStats(vif.getDevName());
+            rx += ifStats.rx_bytes;
+            tx += ifStats.tx_bytes;
+        }
 
-            final List<InterfaceDef> vifs = getInterfaces(conn, vmName);
-            long rx = 0;
-            long tx = 0;
-            for (final InterfaceDef vif : vifs) {
-                final DomainInterfaceStats ifStats = dm.interfaceStats(vif.getDevName());
-                rx += ifStats.rx_bytes;
-                tx += ifStats.tx_bytes;
+        if (oldStats != null) {
+            final double deltarx = rx - oldStats.rx;
+            if (deltarx > 0) {
+                stats.setNetworkReadKBs(deltarx / 1024);
             }
-
-            if (oldStats != null) {
-                final double deltarx = rx - oldStats.rx;
-                if (deltarx > 0) {
-                    stats.setNetworkReadKBs(deltarx / 1024);
-                }
-                final double deltatx = tx - oldStats.tx;
-                if (deltatx > 0) {
-                    stats.setNetworkWriteKBs(deltatx / 1024);
-                }
+            final double deltatx = tx - oldStats.tx;
+            if (deltatx > 0) {
+                stats.setNetworkWriteKBs(deltatx / 1024);
             }
+        }
 
-            /* get disk stats */
-            final List<LibvirtDiskDef> disks = getDisks(conn, vmName);
-            long ioRd = 0;
-            long ioWr = 0;
-            long bytesRd = 0;
-            long bytesWr = 0;
-            for (final LibvirtDiskDef disk : disks) {
-                if (disk.getDeviceType() == DeviceType.CDROM || disk.getDeviceType() == DeviceType.FLOPPY) {
-                    continue;
-                }
-                final DomainBlockStats blockStats = dm.blockStats(disk.getDiskLabel());
-                ioRd += blockStats.rd_req;
-                ioWr += blockStats.wr_req;
-                bytesRd += blockStats.rd_bytes;
-                bytesWr += blockStats.wr_bytes;
+        /* get disk stats */
+        long ioRd = 0;
+        long ioWr = 0;
+        long bytesRd = 0;
+        long bytesWr = 0;
+        for (final LibvirtDiskDef disk : disks) {
+            if (disk.getDeviceType() == DeviceType.CDROM || disk.getDeviceType() == DeviceType.FLOPPY) {
+                continue;
             }
+            final DomainBlockStats blockStats = dm.blockStats(disk.getDiskLabel());
+            ioRd += blockStats.rd_req;
+            ioWr += blockStats.wr_req;
+            bytesRd += blockStats.rd_bytes;
+            bytesWr += blockStats.wr_bytes;
+        }
 
-            if (oldStats != null) {
-                final long deltaiord = ioRd - oldStats.ioRead;
-                if (deltaiord > 0) {
-                    stats.setDiskReadIOs(deltaiord);
-                }
-                final long deltaiowr = ioWr - oldStats.ioWrote;
-                if (deltaiowr > 0) {
-                    stats.setDiskWriteIOs(deltaiowr);
-                }
-                final double deltabytesrd = bytesRd - oldStats.bytesRead;
-                if (deltabytesrd > 0) {
-                    stats.setDiskReadKBs(deltabytesrd / 1024);
-                }
-                final double deltabyteswr = bytesWr - oldStats.bytesWrote;
-                if (deltabyteswr > 0) {
-                    stats.setDiskWriteKBs(deltabyteswr / 1024);
-                }
+        if (oldStats != null) {
+            final long deltaiord = ioRd - oldStats.ioRead;
+            if (deltaiord > 0) {
+                stats.setDiskReadIOs(deltaiord);
             }
-
-            /* save to Hashmap */
-            final VmStats newStat = new VmStats();
-            newStat.usedTime = info.cpuTime;
-            newStat.rx = rx;
-            newStat.tx = tx;
-            newStat.ioRead = ioRd;
-            newStat.ioWrote = ioWr;
-            newStat.bytesRead = bytesRd;
-            newStat.bytesWrote = bytesWr;
-            newStat.timestamp = now;
-            this.vmStats.put(vmName, newStat);
-            return stats;
-        } finally {
-            if (dm != null) {
-                dm.free();
+            final long deltaiowr = ioWr - oldStats.ioWrote;
+            if (deltaiowr > 0) {
+                stats.setDiskWriteIOs(deltaiowr);
+            }
+            final double deltabytesrd = bytesRd - oldStats.bytesRead;
+            if (deltabytesrd > 0) {
+                stats.setDiskReadKBs(deltabytesrd / 1024);
+            }
+            final double deltabyteswr = bytesWr - oldStats.bytesWrote;
+            if (deltabyteswr > 0) {
+                stats.setDiskWriteKBs(deltabyteswr / 1024);
             }
         }
+
+        /* save to Hashmap */
+        final VmStats newStat = new VmStats();
+        newStat.usedTime = info.cpuTime;
+        newStat.rx = rx;
+        newStat.tx = tx;
+        newStat.ioRead = ioRd;
+        newStat.ioWrote = ioWr;
+        newStat.bytesRead = bytesRd;
+        newStat.bytesWrote = bytesWr;
+        newStat.timestamp = now;
+        this.vmStats.put(vmName, newStat);
+        return stats;
     }
 
     private String executeBashScript(final String script) {
@@ -16,6 +16,7 @@ import static com.cloud.agent.resource.kvm.LibvirtComputingResourceProperties.Co
 import static com.cloud.agent.resource.kvm.LibvirtComputingResourceProperties.Constants.DEFAULT_PRIVATE_NETWORK_DEVICE;
 import static com.cloud.agent.resource.kvm.LibvirtComputingResourceProperties.Constants.DEFAULT_PRIVATE_NETWORK_NAME;
 import static com.cloud.agent.resource.kvm.LibvirtComputingResourceProperties.Constants.DEFAULT_PUBLIC_NETWORK_DEVICE;
+import static com.cloud.agent.resource.kvm.LibvirtComputingResourceProperties.Constants.DEFAULT_ROUTER_SSH_IDLE_TIMEOUT;
 import static com.cloud.agent.resource.kvm.LibvirtComputingResourceProperties.Constants.DEFAULT_SCRIPTS_TIMEOUT;
 import static com.cloud.agent.resource.kvm.LibvirtComputingResourceProperties.Constants.DEFAULT_STOP_SCRIPT_TIMEOUT;
 import static com.cloud.agent.resource.kvm.LibvirtComputingResourceProperties.Constants.DEFAULT_STORAGE_SCRIPTS_DIR;
@@ -32,6 +33,7 @@ import static com.cloud.agent.resource.kvm.LibvirtComputingResourceProperties.Co
 import static com.cloud.agent.resource.kvm.LibvirtComputingResourceProperties.Constants.DEFAULT_VM_MIGRATE_SPEED_ACROSS_CLUSTER;
 import static com.cloud.agent.resource.kvm.LibvirtComputingResourceProperties.Constants.DEFAULT_VM_MIGRATE_BLOCK_COPY_SPEED;
 import static com.cloud.agent.resource.kvm.LibvirtComputingResourceProperties.Constants.DEFAULT_VM_RNG_PATH;
+import static com.cloud.agent.resource.kvm.LibvirtComputingResourceProperties.Constants.DEFAULT_VM_STATS_THREADS;
 import static com.cloud.agent.resource.kvm.LibvirtComputingResourceProperties.Constants.DEFAULT_VM_VIDEO_RAM;
 import static com.cloud.agent.resource.kvm.LibvirtComputingResourceProperties.Constants.FORMAT_PRIVATE_BRIDGE_NAME;
 import static com.cloud.agent.resource.kvm.LibvirtComputingResourceProperties.Constants.FORMAT_PRIVATE_NETWORK_NAME;
@@ -62,6 +64,7 @@ import static com.cloud.agent.resource.kvm.LibvirtComputingResourceProperties.Co
 import static com.cloud.agent.resource.kvm.LibvirtComputingResourceProperties.Constants.PROPERTY_KEY_PRIVATE_NETWORK_DEVICE;
 import static com.cloud.agent.resource.kvm.LibvirtComputingResourceProperties.Constants.PROPERTY_KEY_PRIVATE_NETWORK_NAME;
 import static com.cloud.agent.resource.kvm.LibvirtComputingResourceProperties.Constants.PROPERTY_KEY_PUBLIC_NETWORK_DEVICE;
+import static com.cloud.agent.resource.kvm.LibvirtComputingResourceProperties.Constants.PROPERTY_KEY_ROUTER_SSH_IDLE_TIMEOUT;
 import static com.cloud.agent.resource.kvm.LibvirtComputingResourceProperties.Constants.PROPERTY_KEY_SCRIPTS_TIMEOUT;
 import static com.cloud.agent.resource.kvm.LibvirtComputingResourceProperties.Constants.PROPERTY_KEY_STOP_SCRIPT_TIMEOUT;
 import static com.cloud.agent.resource.kvm.LibvirtComputingResourceProperties.Constants.PROPERTY_KEY_STORAGE_SCRIPTS_DIR;
@@ -81,6 +84,7 @@ import static com.cloud.agent.resource.kvm.LibvirtComputingResourceProperties.Co
 import static com.cloud.agent.resource.kvm.LibvirtComputingResourceProperties.Constants.PROPERTY_KEY_VM_RNG_ENABLE;
 import static com.cloud.agent.resource.kvm.LibvirtComputingResourceProperties.Constants.PROPERTY_KEY_VM_RNG_MODEL;
 import static com.cloud.agent.resource.kvm.LibvirtComputingResourceProperties.Constants.PROPERTY_KEY_VM_RNG_PATH;
+import static com.cloud.agent.resource.kvm.LibvirtComputingResourceProperties.Constants.PROPERTY_KEY_VM_STATS_THREADS;
 import static com.cloud.agent.resource.kvm.LibvirtComputingResourceProperties.Constants.PROPERTY_KEY_VM_VIDEO_HARDWARE;
 import static com.cloud.agent.resource.kvm.LibvirtComputingResourceProperties.Constants.PROPERTY_KEY_VM_VIDEO_RAM;
 import static com.cloud.agent.resource.kvm.LibvirtComputingResourceProperties.Constants.PROPERTY_KEY_VM_WATCHDOG_ACTION;
@@ -144,6 +148,8 @@ public class LibvirtComputingResourceProperties implements PropertiesPojo {
     private String publicNetworkDevice = DEFAULT_PUBLIC_NETWORK_DEVICE;
     private String privateNetworkDevice = DEFAULT_PRIVATE_NETWORK_DEVICE;
     private String privateNetworkName = DEFAULT_PRIVATE_NETWORK_NAME;
+    private int routerSshIdleTimeout = DEFAULT_ROUTER_SSH_IDLE_TIMEOUT;
+    private int vmStatsThreads = DEFAULT_VM_STATS_THREADS;
     private String storageScriptsDir = DEFAULT_STORAGE_SCRIPTS_DIR;
     private int scriptsTimeout = DEFAULT_SCRIPTS_TIMEOUT;
     private int stopScriptTimeout = DEFAULT_STOP_SCRIPT_TIMEOUT;
@@ -203,6 +209,8 @@ public class LibvirtComputingResourceProperties implements PropertiesPojo {
         this.publicNetworkDevice = parse(properties, PROPERTY_KEY_PUBLIC_NETWORK_DEVICE, this.publicNetworkDevice);
         this.privateNetworkDevice = parse(properties, PROPERTY_KEY_PRIVATE_NETWORK_DEVICE, this.privateNetworkDevice);
         this.privateNetworkName = parse(properties, PROPERTY_KEY_PRIVATE_NETWORK_NAME, this.privateNetworkName);
+        this.routerSshIdleTimeout = parse(properties, PROPERTY_KEY_ROUTER_SSH_IDLE_TIMEOUT, this.routerSshIdleTimeout);
+        this.vmStatsThreads = parse(properties, PROPERTY_KEY_VM_STATS_THREADS, this.vmStatsThreads);
         this.storageScriptsDir = parse(properties, PROPERTY_KEY_STORAGE_SCRIPTS_DIR, this.storageScriptsDir);
         this.scriptsTimeout = parse(properties, PROPERTY_KEY_SCRIPTS_TIMEOUT, this.scriptsTimeout);
         this.stopScriptTimeout = parse(properties, PROPERTY_KEY_STOP_SCRIPT_TIMEOUT, this.stopScriptTimeout);
@@ -279,6 +287,8 @@ public class LibvirtComputingResourceProperties implements PropertiesPojo {
         propertiesMap.put(PROPERTY_KEY_PUBLIC_NETWORK_DEVICE, this.publicNetworkDevice);
         propertiesMap.put(PROPERTY_KEY_PRIVATE_NETWORK_DEVICE, this.privateNetworkDevice);
         propertiesMap.put(PROPERTY_KEY_PRIVATE_NETWORK_NAME, this.privateNetworkName);
+        propertiesMap.put(PROPERTY_KEY_ROUTER_SSH_IDLE_TIMEOUT, this.routerSshIdleTimeout);
+        propertiesMap.put(PROPERTY_KEY_VM_STATS_THREADS, this.vmStatsThreads);
         propertiesMap.put(PROPERTY_KEY_STORAGE_SCRIPTS_DIR, this.storageScriptsDir);
         propertiesMap.put(PROPERTY_KEY_SCRIPTS_TIMEOUT, this.scriptsTimeout);
         propertiesMap.put(PROPERTY_KEY_STOP_SCRIPT_TIMEOUT, this.stopScriptTimeout);
@@ -388,6 +398,14 @@ public class LibvirtComputingResourceProperties implements PropertiesPojo {
         return this.storageScriptsDir;
     }
 
+    public int getRouterSshIdleTimeout() {
+        return this.routerSshIdleTimeout;
+    }
+
+    public int getVmStatsThreads() {
+        return this.vmStatsThreads;
+    }
+
     public int getScriptsTimeout() {
         return this.scriptsTimeout * 1000;
     }
@@ -526,6 +544,8 @@ public class LibvirtComputingResourceProperties implements PropertiesPojo {
         public static final String PROPERTY_KEY_PRIVATE_NETWORK_DEVICE = "private.network.device";
         public static final String PROPERTY_KEY_GUEST_NETWORK_DEVICE = "guest.network.device";
         public static final String PROPERTY_KEY_PRIVATE_NETWORK_NAME = "private.network.name";
+        public static final String PROPERTY_KEY_ROUTER_SSH_IDLE_TIMEOUT = "router.ssh.idle.timeout";
+        public static final String PROPERTY_KEY_VM_STATS_THREADS = "vm.stats.threads";
         public static final String PROPERTY_KEY_LOCAL_STORAGE_PATH = "local.storage.path";
         public static final String PROPERTY_KEY_LOCAL_STORAGE_UUID = "local.storage.uuid";
         public static final String PROPERTY_KEY_SCRIPTS_TIMEOUT = "scripts.timeout";
@@ -576,6 +596,8 @@ public class LibvirtComputingResourceProperties implements PropertiesPojo {
         public static final String DEFAULT_PUBLIC_NETWORK_DEVICE = "cloudbr0";
         public static final String DEFAULT_PRIVATE_NETWORK_DEVICE = "cloudbr1";
         public static final String DEFAULT_PRIVATE_NETWORK_NAME = "cloud-private";
+        public static final int DEFAULT_ROUTER_SSH_IDLE_TIMEOUT = 5 * 60;
+        public static final int DEFAULT_VM_STATS_THREADS = 8;
         public static final int DEFAULT_SCRIPTS_TIMEOUT = 30 * 60;
         public static final int DEFAULT_STOP_SCRIPT_TIMEOUT = 120;
         public static final String DEFAULT_STORAGE_SCRIPTS_DIR = "scripts/storage/qcow2";
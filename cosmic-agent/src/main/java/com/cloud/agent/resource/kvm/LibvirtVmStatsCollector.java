@@ -0,0 +1,189 @@
+package com.cloud.agent.resource.kvm;
+
+import com.cloud.agent.resource.kvm.xml.LibvirtDiskDef;
+import com.cloud.agent.resource.kvm.xml.LibvirtDomainXmlParser;
+import com.cloud.agent.resource.kvm.xml.LibvirtVmDef.InterfaceDef;
+import com.cloud.legacymodel.storage.VmDiskStatsEntry;
+import com.cloud.legacymodel.vm.VmStatsEntry;
+import com.cloud.utils.concurrency.NamedThreadFactory;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import org.libvirt.Connect;
+import org.libvirt.Domain;
+import org.libvirt.LibvirtException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * LibvirtVmStatsCollector collects the stats of all VMs of a stats command at once. The domains are queried in
+ * parallel, each with one lookup and one XML description, and the devices parsed from the XML of a domain are kept
+ * until its XML changes.
+ */
+public class LibvirtVmStatsCollector {
+    private static final Logger s_logger = LoggerFactory.getLogger(LibvirtVmStatsCollector.class);
+
+    private static final int IDLE_THREAD_SECONDS = 60;
+
+    private final LibvirtComputingResource resource;
+    private final ThreadPoolExecutor executor;
+    private final Map<String, DomainDevices> devicesByVm = new ConcurrentHashMap<>();
+
+    public LibvirtVmStatsCollector(final LibvirtComputingResource resource, final int threads) {
+        this.resource = resource;
+        this.executor = new ThreadPoolExecutor(threads, threads, IDLE_THREAD_SECONDS, TimeUnit.SECONDS, new LinkedBlockingQueue<>(),
+                new NamedThreadFactory("LibvirtVmStats"));
+        this.executor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * @param connections the libvirt connection of each VM
+     * @return the stats of the VMs, VMs for which they can't be collected are left out
+     */
+    public Map<String, VmStatsEntry> getVmStats(final Map<String, Connect> connections) {
+        final Map<Connect, Integer> hostCpus = new IdentityHashMap<>();
+        final Map<String, Future<VmStatsEntry>> futures = new LinkedHashMap<>();
+        for (final Map.Entry<String, Connect> entry : connections.entrySet()) {
+            final String vmName = entry.getKey();
+            final Connect conn = entry.getValue();
+            final int cpus;
+            try {
+                cpus = getHostCpus(hostCpus, conn);
+            } catch (final LibvirtException e) {
+                s_logger.warn("Can't get vm stats of " + vmName + ": " + e.toString() + ", continue");
+                continue;
+            }
+            futures.put(vmName, this.executor.submit(() -> getVmStat(conn, vmName, cpus)));
+        }
+
+        final Map<String, VmStatsEntry> stats = new HashMap<>();
+        for (final Map.Entry<String, Future<VmStatsEntry>> entry : futures.entrySet()) {
+            final VmStatsEntry stat = waitFor(entry.getKey(), entry.getValue());
+            if (stat != null) {
+                stats.put(entry.getKey(), stat);
+            }
+        }
+
+        // The stats command has all VMs of the host, forget the devices of the others
+        this.devicesByVm.keySet().retainAll(connections.keySet());
+        return stats;
+    }
+
+    /**
+     * @return the disk stats of the VMs, VMs for which they can't be collected are left out
+     */
+    public Map<String, List<VmDiskStatsEntry>> getVmDiskStats(final Connect conn, final List<String> vmNames) {
+        final Map<String, Future<List<VmDiskStatsEntry>>> futures = new LinkedHashMap<>();
+        for (final String vmName : vmNames) {
+            futures.put(vmName, this.executor.submit(() -> getVmDiskStat(conn, vmName)));
+        }
+
+        final Map<String, List<VmDiskStatsEntry>> stats = new HashMap<>();
+        for (final Map.Entry<String, Future<List<VmDiskStatsEntry>>> entry : futures.entrySet()) {
+            final List<VmDiskStatsEntry> stat = waitFor(entry.getKey(), entry.getValue());
+            if (stat != null) {
+                stats.put(entry.getKey(), stat);
+            }
+        }
+        return stats;
+    }
+
+    public void shutdown() {
+        this.executor.shutdownNow();
+    }
+
+    private static int getHostCpus(final Map<Connect, Integer> hostCpus, final Connect conn) throws LibvirtException {
+        Integer cpus = hostCpus.get(conn);
+        if (cpus == null) {
+            cpus = conn.nodeInfo().cpus;
+            hostCpus.put(conn, cpus);
+        }
+        return cpus;
+    }
+
+    private VmStatsEntry getVmStat(final Connect conn, final String vmName, final int hostCpus) throws LibvirtException {
+        Domain dm = null;
+        try {
+            dm = this.resource.getDomain(conn, vmName);
+            final DomainDevices devices = getDevices(dm, vmName);
+            return this.resource.getVmStat(dm, vmName, hostCpus, devices.interfaces, devices.disks);
+        } finally {
+            if (dm != null) {
+                dm.free();
+            }
+        }
+    }
+
+    private List<VmDiskStatsEntry> getVmDiskStat(final Connect conn, final String vmName) throws LibvirtException {
+        Domain dm = null;
+        try {
+            dm = this.resource.getDomain(conn, vmName);
+            return this.resource.getVmDiskStat(dm, vmName, getDevices(dm, vmName).disks);
+        } finally {
+            if (dm != null) {
+                dm.free();
+            }
+        }
+    }
+
+    private DomainDevices getDevices(final Domain dm, final String vmName) {
+        final String xml;
+        try {
+            xml = dm.getXMLDesc(0);
+        } catch (final LibvirtException e) {
+            s_logger.debug("Failed to get dom xml: " + e.toString());
+            return DomainDevices.NONE;
+        }
+
+        final DomainDevices cached = this.devicesByVm.get(vmName);
+        if (cached != null && cached.xml.equals(xml)) {
+            return cached;
+        }
+
+        final LibvirtDomainXmlParser parser = new LibvirtDomainXmlParser();
+        if (xml == null || !parser.parseDomainXml(xml)) {
+            return DomainDevices.NONE;
+        }
+        final DomainDevices devices = new DomainDevices(xml, parser.getInterfaces(), parser.getDisks());
+        this.devicesByVm.put(vmName, devices);
+        return devices;
+    }
+
+    private static <T> T waitFor(final String vmName, final Future<T> future) {
+        try {
+            return future.get();
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            future.cancel(true);
+        } catch (final ExecutionException e) {
+            s_logger.warn("Can't get vm stats of " + vmName + ": " + e.getCause().toString() + ", continue");
+        }
+        return null;
+    }
+
+    private static class DomainDevices {
+        static final DomainDevices NONE = new DomainDevices("", Collections.emptyList(), Collections.emptyList());
+
+        final String xml;
+        final List<InterfaceDef> interfaces;
+        final List<LibvirtDiskDef> disks;
+
+        DomainDevices(final String xml, final List<InterfaceDef> interfaces, final List<LibvirtDiskDef> disks) {
+            this.xml = xml;
+            this.interfaces = new ArrayList<>(interfaces);
+            this.disks = new ArrayList<>(disks);
+        }
+    }
+}
@@ -27,20 +27,8 @@ public final class LibvirtGetVmDiskStatsCommandWrapper
         final LibvirtUtilitiesHelper libvirtUtilitiesHelper = libvirtComputingResource.getLibvirtUtilitiesHelper();
 
         try {
-            final HashMap<String, List<VmDiskStatsEntry>> vmDiskStatsNameMap = new HashMap<>();
             final Connect conn = libvirtUtilitiesHelper.getConnection();
-            for (final String vmName : vmNames) {
-                try {
-                    final List<VmDiskStatsEntry> statEntry = libvirtComputingResource.getVmDiskStat(conn, vmName);
-                    if (statEntry == null) {
-                        continue;
-                    }
-
-                    vmDiskStatsNameMap.put(vmName, statEntry);
-                } catch (final LibvirtException e) {
-                    s_logger.warn("Can't get vm disk stats: " + e.toString() + ", continue");
-                }
-            }
+            final HashMap<String, List<VmDiskStatsEntry>> vmDiskStatsNameMap = new HashMap<>(libvirtComputingResource.getVmDiskStats(conn, vmNames));
             return new GetVmDiskStatsAnswer(command, "", command.getHostName(), vmDiskStatsNameMap);
         } catch (final LibvirtException e) {
             s_logger.debug("Can't get vm disk stats: " + e.toString());
@@ -8,7 +8,9 @@ import com.cloud.legacymodel.communication.command.GetVmStatsCommand;
 import com.cloud.legacymodel.vm.VmStatsEntry;
 
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 import org.libvirt.Connect;
 import org.libvirt.LibvirtException;
@@ -25,23 +27,14 @@ public final class LibvirtGetVmStatsCommandWrapper
     public Answer execute(final GetVmStatsCommand command, final LibvirtComputingResource libvirtComputingResource) {
         final List<String> vmNames = command.getVmNames();
         try {
-            final HashMap<String, VmStatsEntry> vmStatsNameMap = new HashMap<>();
-            for (final String vmName : vmNames) {
-
-                final LibvirtUtilitiesHelper libvirtUtilitiesHelper = libvirtComputingResource.getLibvirtUtilitiesHelper();
-
-                final Connect conn = libvirtUtilitiesHelper.getConnectionByVmName(vmName);
-                try {
-                    final VmStatsEntry statEntry = libvirtComputingResource.getVmStat(conn, vmName);
-                    if (statEntry == null) {
-                        continue;
-                    }
+            final LibvirtUtilitiesHelper libvirtUtilitiesHelper = libvirtComputingResource.getLibvirtUtilitiesHelper();
 
-                    vmStatsNameMap.put(vmName, statEntry);
-                } catch (final LibvirtException e) {
-                    s_logger.warn("Can't get vm stats: " + e.toString() + ", continue");
-                }
+            final Map<String, Connect> connections = new LinkedHashMap<>();
+            for (final String vmName : vmNames) {
+                connections.put(vmName, libvirtUtilitiesHelper.getConnectionByVmName(vmName));
             }
+
+            final HashMap<String, VmStatsEntry> vmStatsNameMap = new HashMap<>(libvirtComputingResource.getVmStats(connections));
             return new GetVmStatsAnswer(command, vmStatsNameMap);
         } catch (final LibvirtException e) {
             s_logger.debug("Can't get vm stats: " + e.toString());
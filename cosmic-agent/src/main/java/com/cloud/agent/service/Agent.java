@@ -4,6 +4,7 @@ import com.cloud.agent.resource.AgentResource;
 import com.cloud.common.agent.IAgentControl;
 import com.cloud.common.agent.IAgentControlListener;
 import com.cloud.common.managed.context.ManagedContextTimerTask;
+import com.cloud.common.transport.CompressionCodec;
 import com.cloud.common.transport.Request;
 import com.cloud.common.transport.Response;
 import com.cloud.legacymodel.communication.answer.AgentControlAnswer;
@@ -89,6 +90,8 @@ public class Agent implements HandlerFactory, IAgentControl {
     private long _startupWait = this._startupWaitDefault;
     private boolean _reconnectAllowed = true;
     private final ExecutorService _executor;
+    /* Codec negotiated with the management server in the startup answer */
+    private volatile CompressionCodec _compressionCodec = CompressionCodec.GZIP;
 
     public Agent(final AgentConfiguration agentConfiguration, final BackoffAlgorithm backOffAlgorithm, final AgentResource resource) {
         this.agentConfiguration = agentConfiguration;
@@ -96,6 +99,7 @@ public class Agent implements HandlerFactory, IAgentControl {
         this.resource = resource;
 
         configDefaults();
+        configureCompression();
 
         resource.setAgentControl(this);
 
@@ -128,6 +132,17 @@ public class Agent implements HandlerFactory, IAgentControl {
         }
     }
 
+    private void configureCompression() {
+        final AgentConfiguration.Compression compression = this.agentConfiguration.getCompression();
+        CompressionCodec codec = CompressionCodec.GZIP;
+        try {
+            codec = CompressionCodec.valueOf(compression.getCodec().toUpperCase());
+        } catch (final IllegalArgumentException e) {
+            logger.warn("Unknown compression codec " + compression.getCodec() + ", using " + codec);
+        }
+        Request.configureCompression(codec, compression.getThreshold());
+    }
+
     private void createNioClient(final AgentConfiguration agentProperties) {
         final String host = rotateHost();
         logger.debug("Creating new NIO Client");
@@ -184,6 +199,7 @@ public class Agent implements HandlerFactory, IAgentControl {
             try {
                 if (this._link != null) {
                     final Request req = new Request(this._id != null ? this._id : -1, -1, cmd, false);
+                    req.setCompressionCodec(this._compressionCodec);
                     this._link.send(req.toBytes());
                 }
             } catch (final ClosedChannelException e) {
@@ -226,6 +242,7 @@ public class Agent implements HandlerFactory, IAgentControl {
                 logger.debug("Sending Startup: " + request.toString());
             }
             lockStartupTask(link);
+            this._compressionCodec = CompressionCodec.GZIP;
             try {
                 link.send(request.toBytes());
             } catch (final ClosedChannelException e) {
@@ -527,6 +544,7 @@ public class Agent implements HandlerFactory, IAgentControl {
         logger.info("Process agent startup answer, agent id = " + startup.getHostId());
 
         setId(startup.getHostId());
+        this._compressionCodec = CompressionCodec.negotiate(Request.getPreferredCodec(), response.getAcceptedCodecs());
         this._pingInterval = (long) startup.getPingInterval() * 1000; // change to ms.
 
         setLastPingResponseTime();
@@ -803,6 +821,7 @@ public class Agent implements HandlerFactory, IAgentControl {
     private void postRequest(final Request request) throws AgentControlChannelException {
         if (this._link != null) {
             try {
+                request.setCompressionCodec(this._compressionCodec);
                 this._link.send(request.toBytes());
             } catch (final ClosedChannelException e) {
                 logger.warn("Unable to post agent control request: " + request.toString());
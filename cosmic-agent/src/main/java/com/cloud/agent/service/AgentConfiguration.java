@@ -25,6 +25,7 @@ public class AgentConfiguration {
     @NotNull private Integer pingRetries = 5;
 
     @NotNull private Cmds cmds = new Cmds();
+    @NotNull private Compression compression = new Compression();
     @NotNull private Domr domr = new Domr();
     @NotNull private Guest guest = new Guest();
     @NotNull private Hypervisor hypervisor = new Hypervisor();
@@ -163,6 +164,14 @@ public class AgentConfiguration {
         this.cmds = cmds;
     }
 
+    public Compression getCompression() {
+        return compression;
+    }
+
+    public void setCompression(final Compression compression) {
+        this.compression = compression;
+    }
+
     public Domr getDomr() {
         return domr;
     }
@@ -488,6 +497,27 @@ public class AgentConfiguration {
         }
     }
 
+    public static class Compression {
+        @NotNull private String codec = "gzip";
+        @NotNull private Integer threshold = 8192;
+
+        public String getCodec() {
+            return codec;
+        }
+
+        public void setCodec(final String codec) {
+            this.codec = codec;
+        }
+
+        public Integer getThreshold() {
+            return threshold;
+        }
+
+        public void setThreshold(final Integer threshold) {
+            this.threshold = threshold;
+        }
+    }
+
     public static class Domr {
         @NotNull private Scripts scripts = new Scripts();
 
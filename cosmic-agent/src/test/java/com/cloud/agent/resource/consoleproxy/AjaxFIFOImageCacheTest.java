@@ -0,0 +1,58 @@
+package com.cloud.agent.resource.consoleproxy;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import org.junit.Test;
+
+public class AjaxFIFOImageCacheTest {
+
+    @Test
+    public void testOldestImagesAreRemovedAtImageLimit() {
+        final AjaxFIFOImageCache cache = new AjaxFIFOImageCache(2);
+        final int first = cache.putImage(new byte[10]);
+        final int second = cache.putImage(new byte[10]);
+        final int third = cache.putImage(new byte[10]);
+
+        assertNull(cache.getImage(first));
+        assertNotNull(cache.getImage(second));
+        assertNotNull(cache.getImage(third));
+        assertEquals(20, cache.getCacheBytes());
+    }
+
+    @Test
+    public void testOldestImagesAreRemovedAtByteLimit() {
+        final AjaxFIFOImageCache cache = new AjaxFIFOImageCache(10, 100);
+        final int first = cache.putImage(new byte[60]);
+        final int second = cache.putImage(new byte[30]);
+        final int third = cache.putImage(new byte[50]);
+
+        assertNull(cache.getImage(first));
+        assertNotNull(cache.getImage(second));
+        assertNotNull(cache.getImage(third));
+        assertEquals(80, cache.getCacheBytes());
+    }
+
+    @Test
+    public void testImageOverByteLimitIsKept() {
+        final AjaxFIFOImageCache cache = new AjaxFIFOImageCache(10, 100);
+        cache.putImage(new byte[60]);
+        final int large = cache.putImage(new byte[500]);
+
+        assertEquals(500, cache.getImage(large).length);
+        assertEquals(500, cache.getCacheBytes());
+        // Key 0 is the latest image
+        assertEquals(500, cache.getImage(0).length);
+    }
+
+    @Test
+    public void testClear() {
+        final AjaxFIFOImageCache cache = new AjaxFIFOImageCache(2, 100);
+        final int key = cache.putImage(new byte[10]);
+        cache.clear();
+
+        assertNull(cache.getImage(key));
+        assertEquals(0, cache.getCacheBytes());
+    }
+}
@@ -0,0 +1,138 @@
+package com.cloud.agent.resource.consoleproxy;
+
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ConsoleProxyHttpExecutorTest {
+
+    private final CountDownLatch release = new CountDownLatch(1);
+    private ConsoleProxyHttpExecutor executor;
+
+    @Before
+    public void setUp() {
+        executor = new ConsoleProxyHttpExecutor("Test-HTTP", 1, 1);
+    }
+
+    @After
+    public void tearDown() {
+        release.countDown();
+        executor.shutdown();
+    }
+
+    @Test
+    public void testRequestsBeyondTheQueueAreNotRunByTheCaller() throws Exception {
+        final CountDownLatch started = new CountDownLatch(1);
+        executor.execute(() -> {
+            started.countDown();
+            await(release);
+        });
+        Assert.assertTrue(started.await(10, TimeUnit.SECONDS));
+        executor.execute(() -> {
+        });
+
+        final Thread caller = Thread.currentThread();
+        final AtomicBoolean ranOnCaller = new AtomicBoolean();
+        final CountDownLatch overflowed = new CountDownLatch(1);
+        executor.execute(() -> {
+            ranOnCaller.set(Thread.currentThread() == caller);
+            overflowed.countDown();
+        });
+
+        Assert.assertTrue(overflowed.await(10, TimeUnit.SECONDS));
+        Assert.assertFalse(ranOnCaller.get());
+        Assert.assertEquals(1, executor.getOverflowRequests());
+        Assert.assertEquals(1, executor.getQueueDepth());
+    }
+
+    @Test
+    public void testServerAnswersRequestsAfterShutdownWith503() throws Exception {
+        final AtomicBoolean handled = new AtomicBoolean();
+        final HttpServer server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/", exchange -> {
+            handled.set(true);
+            exchange.sendResponseHeaders(HttpURLConnection.HTTP_OK, -1);
+            exchange.close();
+        }).getFilters().add(ConsoleProxyHttpExecutor.OVERLOAD_FILTER);
+        server.setExecutor(executor);
+        server.start();
+        executor.shutdown();
+
+        try {
+            final URL url = new URL("http://127.0.0.1:" + server.getAddress().getPort() + "/");
+            Assert.assertEquals(HttpURLConnection.HTTP_UNAVAILABLE, request(url));
+            Assert.assertFalse(handled.get());
+            Assert.assertEquals(0, executor.getOverflowRequests());
+        } finally {
+            server.stop(0);
+        }
+    }
+
+    @Test
+    public void testServerAnswersOverflowWith503() throws Exception {
+        final CountDownLatch started = new CountDownLatch(1);
+        final HttpServer server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/", exchange -> {
+            started.countDown();
+            await(release);
+            exchange.sendResponseHeaders(HttpURLConnection.HTTP_OK, -1);
+            exchange.close();
+        }).getFilters().add(ConsoleProxyHttpExecutor.OVERLOAD_FILTER);
+        server.setExecutor(executor);
+        server.start();
+
+        final ExecutorService clients = Executors.newFixedThreadPool(2);
+        try {
+            final URL url = new URL("http://127.0.0.1:" + server.getAddress().getPort() + "/");
+            // One request keeps the only thread busy, the next one waits in the queue
+            final Future<Integer> running = clients.submit(() -> request(url));
+            Assert.assertTrue(started.await(10, TimeUnit.SECONDS));
+            final Future<Integer> queued = clients.submit(() -> request(url));
+            while (executor.getQueueDepth() == 0) {
+                Thread.sleep(10);
+            }
+
+            Assert.assertEquals(HttpURLConnection.HTTP_UNAVAILABLE, request(url));
+
+            release.countDown();
+            Assert.assertEquals(HttpURLConnection.HTTP_OK, running.get(10, TimeUnit.SECONDS).intValue());
+            Assert.assertEquals(HttpURLConnection.HTTP_OK, queued.get(10, TimeUnit.SECONDS).intValue());
+        } finally {
+            clients.shutdownNow();
+            server.stop(0);
+        }
+    }
+
+    private static int request(final URL url) throws IOException {
+        final HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+        connection.setConnectTimeout(10000);
+        connection.setReadTimeout(10000);
+        try {
+            return connection.getResponseCode();
+        } finally {
+            connection.disconnect();
+        }
+    }
+
+    private static void await(final CountDownLatch latch) {
+        try {
+            latch.await(10, TimeUnit.SECONDS);
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,32 @@
+package com.cloud.agent.resource.consoleproxy.util;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class JpegEncoderTest {
+
+    @Test
+    public void testEncodeImagesWithSameEncoder() throws IOException {
+        try (JpegEncoder encoder = new JpegEncoder()) {
+            final byte[] first = encoder.encode(new BufferedImage(64, 64, BufferedImage.TYPE_3BYTE_BGR));
+            final byte[] second = encoder.encode(new BufferedImage(32, 16, BufferedImage.TYPE_3BYTE_BGR));
+
+            // Both start with the JPEG start of image marker
+            Assert.assertEquals((byte) 0xFF, first[0]);
+            Assert.assertEquals((byte) 0xD8, first[1]);
+            Assert.assertEquals((byte) 0xFF, second[0]);
+            Assert.assertEquals((byte) 0xD8, second[1]);
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void testEncodeAfterClose() throws IOException {
+        final JpegEncoder encoder = new JpegEncoder();
+        encoder.close();
+        encoder.close();
+        encoder.encode(new BufferedImage(8, 8, BufferedImage.TYPE_3BYTE_BGR));
+    }
+}
@@ -0,0 +1,294 @@
+package com.cloud.agent.resource.consoleproxy.vnc.packet.server;
+
+import static org.junit.Assert.assertEquals;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.zip.Deflater;
+
+import org.junit.After;
+import org.junit.Test;
+
+public class EncodedRectTest {
+    private static final int RED = 0xFF0000, GREEN = 0x00FF00, BLUE = 0x0000FF, WHITE = 0xFFFFFF;
+
+    private final ZlibStreams streams = new ZlibStreams();
+    private final BufferedImage image = new BufferedImage(80, 80, BufferedImage.TYPE_INT_RGB);
+
+    @After
+    public void tearDown() {
+        streams.close();
+    }
+
+    @Test
+    public void testHextile() throws IOException {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        final DataOutputStream os = new DataOutputStream(bytes);
+        // Tile 0,0 (16x16): red background, a green 2x3 subrect at 1,2
+        os.writeByte(2 | 4 | 8);
+        writePixel(os, RED);
+        writePixel(os, GREEN);
+        os.writeByte(1);
+        os.writeByte(0x12);
+        os.writeByte(0x12);
+        // Tile 16,0 (4x16): raw
+        os.writeByte(1);
+        for (int i = 0; i < 4 * 16; i++) {
+            writePixel(os, i % 2 == 0 ? BLUE : WHITE);
+        }
+        // Tile 0,16 (16x2): background of the previous tile that was not raw, a coloured subrect
+        os.writeByte(8 | 16);
+        os.writeByte(1);
+        writePixel(os, BLUE);
+        os.writeByte(0x30);
+        os.writeByte(0x00);
+        // Tile 16,16 (4x2): no changes to the background
+        os.writeByte(0);
+
+        paint(new HextileRect(10, 10, 20, 18, input(bytes)));
+
+        assertPixel(RED, 10, 10);
+        assertPixel(GREEN, 11, 12);
+        assertPixel(GREEN, 12, 14);
+        assertPixel(RED, 13, 14);
+        assertPixel(BLUE, 26, 10);
+        assertPixel(WHITE, 27, 10);
+        assertPixel(BLUE, 13, 26);
+        assertPixel(RED, 14, 26);
+        assertPixel(RED, 29, 27);
+        assertPixel(0, 30, 27);
+    }
+
+    @Test
+    public void testZrle() throws IOException {
+        final Deflater deflater = new Deflater();
+
+        // A 70x2 rectangle has a 64x2 and a 6x2 tile
+        final ByteArrayOutputStream tiles = new ByteArrayOutputStream();
+        // Solid tile
+        tiles.write(1);
+        writeCPixel(tiles, RED);
+        // Packed palette tile of 2 colors, one bit per pixel and every line starts at a new byte
+        tiles.write(2);
+        writeCPixel(tiles, GREEN);
+        writeCPixel(tiles, BLUE);
+        tiles.write(0b10100000);
+        tiles.write(0b01000000);
+
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        writeZlib(new DataOutputStream(bytes), deflater, tiles.toByteArray(), true);
+        paint(new ZrleRect(0, 0, 70, 2, input(bytes), streams));
+
+        assertPixel(RED, 0, 0);
+        assertPixel(RED, 63, 1);
+        assertPixel(BLUE, 64, 0);
+        assertPixel(GREEN, 65, 0);
+        assertPixel(BLUE, 66, 0);
+        assertPixel(GREEN, 64, 1);
+        assertPixel(BLUE, 65, 1);
+        assertPixel(GREEN, 69, 1);
+
+        // The next rectangle continues the zlib stream of the previous one
+        tiles.reset();
+        // Plain RLE tile of 4x3: 5 white pixels and 7 red ones
+        tiles.write(128);
+        writeCPixel(tiles, WHITE);
+        tiles.write(4);
+        writeCPixel(tiles, RED);
+        tiles.write(6);
+        bytes.reset();
+        writeZlib(new DataOutputStream(bytes), deflater, tiles.toByteArray(), true);
+
+        tiles.reset();
+        // Palette RLE tile of 4x3: a run of 10 green pixels, then single blue and green pixels
+        tiles.write(130);
+        writeCPixel(tiles, GREEN);
+        writeCPixel(tiles, BLUE);
+        tiles.write(0x80);
+        tiles.write(9);
+        tiles.write(1);
+        tiles.write(0);
+        writeZlib(new DataOutputStream(bytes), deflater, tiles.toByteArray(), true);
+
+        final DataInputStream is = input(bytes);
+        paint(new ZrleRect(0, 10, 4, 3, is, streams));
+        paint(new ZrleRect(10, 10, 4, 3, is, streams));
+
+        assertPixel(WHITE, 0, 10);
+        assertPixel(WHITE, 0, 11);
+        assertPixel(RED, 1, 11);
+        assertPixel(RED, 3, 12);
+        assertPixel(GREEN, 10, 10);
+        assertPixel(GREEN, 11, 12);
+        assertPixel(BLUE, 12, 12);
+        assertPixel(GREEN, 13, 12);
+        deflater.end();
+    }
+
+    @Test
+    public void testZrleRaw() throws IOException {
+        final ByteArrayOutputStream tiles = new ByteArrayOutputStream();
+        tiles.write(0);
+        writeCPixel(tiles, RED);
+        writeCPixel(tiles, GREEN);
+        writeCPixel(tiles, BLUE);
+        writeCPixel(tiles, WHITE);
+
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        final Deflater deflater = new Deflater();
+        writeZlib(new DataOutputStream(bytes), deflater, tiles.toByteArray(), true);
+        deflater.end();
+        paint(new ZrleRect(5, 5, 2, 2, input(bytes), streams));
+
+        assertPixel(RED, 5, 5);
+        assertPixel(GREEN, 6, 5);
+        assertPixel(BLUE, 5, 6);
+        assertPixel(WHITE, 6, 6);
+    }
+
+    @Test
+    public void testTightFill() throws IOException {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        bytes.write(0x80);
+        writeTPixel(bytes, GREEN);
+
+        paint(new TightRect(1, 1, 3, 3, input(bytes), streams));
+
+        assertPixel(GREEN, 1, 1);
+        assertPixel(GREEN, 3, 3);
+        assertPixel(0, 4, 4);
+    }
+
+    @Test
+    public void testTightCopy() throws IOException {
+        final Deflater deflater = new Deflater();
+        final ByteArrayOutputStream pixels = new ByteArrayOutputStream();
+        for (int i = 0; i < 8 * 2; i++) {
+            writeTPixel(pixels, i < 8 ? RED : BLUE);
+        }
+
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        // Basic compression on stream 1 without a filter
+        bytes.write(0x10);
+        writeZlib(new DataOutputStream(bytes), deflater, pixels.toByteArray(), false);
+        // The next rectangle continues the stream
+        bytes.write(0x10);
+        writeZlib(new DataOutputStream(bytes), deflater, pixels.toByteArray(), false);
+        // After a reset of the stream, the next rectangle starts a new one
+        deflater.reset();
+        bytes.write(0x12);
+        writeZlib(new DataOutputStream(bytes), deflater, pixels.toByteArray(), false);
+        deflater.end();
+
+        final DataInputStream is = input(bytes);
+        paint(new TightRect(0, 0, 8, 2, is, streams));
+        paint(new TightRect(0, 2, 8, 2, is, streams));
+        paint(new TightRect(0, 4, 8, 2, is, streams));
+
+        for (int y = 0; y < 6; y += 2) {
+            assertPixel(RED, 0, y);
+            assertPixel(RED, 7, y);
+            assertPixel(BLUE, 0, y + 1);
+            assertPixel(BLUE, 7, y + 1);
+        }
+    }
+
+    @Test
+    public void testTightPalette() throws IOException {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        // Basic compression on stream 0 with the palette filter
+        bytes.write(0x40);
+        bytes.write(1);
+        bytes.write(1);
+        writeTPixel(bytes, WHITE);
+        writeTPixel(bytes, BLUE);
+        // 10x2 pixels take 2 bytes per line, too short to be compressed
+        bytes.write(0b10000000);
+        bytes.write(0b01000000);
+        bytes.write(0b00000000);
+        bytes.write(0b11000000);
+
+        paint(new TightRect(0, 0, 10, 2, input(bytes), streams));
+
+        assertPixel(BLUE, 0, 0);
+        assertPixel(WHITE, 1, 0);
+        assertPixel(BLUE, 9, 0);
+        assertPixel(WHITE, 0, 1);
+        assertPixel(BLUE, 8, 1);
+        assertPixel(BLUE, 9, 1);
+    }
+
+    @Test
+    public void testTightGradient() throws IOException {
+        // Pixels of 2x2 where red grows to the right and green downwards
+        final int[][] expected = {{0x102030, 0x302030}, {0x104030, 0x304030}};
+        final byte[] differences = {
+                0x10, 0x20, 0x30, 0x20, 0x00, 0x00,
+                0x00, 0x20, 0x00, 0x00, 0x00, 0x00
+        };
+
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        // Basic compression on stream 2 with the gradient filter
+        bytes.write(0x60);
+        bytes.write(2);
+        final Deflater deflater = new Deflater();
+        writeZlib(new DataOutputStream(bytes), deflater, differences, false);
+        deflater.end();
+
+        paint(new TightRect(0, 0, 2, 2, input(bytes), streams));
+
+        assertPixel(expected[0][0], 0, 0);
+        assertPixel(expected[0][1], 1, 0);
+        assertPixel(expected[1][0], 0, 1);
+        assertPixel(expected[1][1], 1, 1);
+    }
+
+    private void paint(final Rect rect) {
+        rect.paint(image, image.createGraphics());
+    }
+
+    private void assertPixel(final int expected, final int x, final int y) {
+        assertEquals("Pixel at " + x + "," + y, Integer.toHexString(expected), Integer.toHexString(image.getRGB(x, y) & 0xFFFFFF));
+    }
+
+    private static DataInputStream input(final ByteArrayOutputStream bytes) {
+        return new DataInputStream(new ByteArrayInputStream(bytes.toByteArray()));
+    }
+
+    private static void writePixel(final DataOutputStream os, final int color) throws IOException {
+        os.writeInt(Integer.reverseBytes(color));
+    }
+
+    private static void writeCPixel(final ByteArrayOutputStream os, final int color) {
+        os.write(color & 0xFF);
+        os.write((color >> 8) & 0xFF);
+        os.write((color >> 16) & 0xFF);
+    }
+
+    private static void writeTPixel(final ByteArrayOutputStream os, final int color) {
+        os.write((color >> 16) & 0xFF);
+        os.write((color >> 8) & 0xFF);
+        os.write(color & 0xFF);
+    }
+
+    /**
+     * Compresses the data the way servers do, flushing the stream at the end of every rectangle. ZRLE prefixes the
+     * data with a 4 byte length, Tight with a compact length.
+     */
+    private static void writeZlib(final DataOutputStream os, final Deflater deflater, final byte[] data, final boolean zrle) throws IOException {
+        deflater.setInput(data);
+        final byte[] compressed = new byte[data.length + 64];
+        final int length = deflater.deflate(compressed, 0, compressed.length, Deflater.SYNC_FLUSH);
+        if (zrle) {
+            os.writeInt(length);
+        } else {
+            os.writeByte(0x80 | (length & 0x7F));
+            os.writeByte(length >> 7);
+        }
+        os.write(compressed, 0, length);
+    }
+}
@@ -0,0 +1,140 @@
+package com.cloud.agent.resource.kvm;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.cloud.agent.resource.kvm.xml.LibvirtDiskDef;
+import com.cloud.agent.resource.kvm.xml.LibvirtVmDef.InterfaceDef;
+import com.cloud.legacymodel.storage.VmDiskStatsEntry;
+import com.cloud.legacymodel.vm.VmStatsEntry;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.libvirt.Connect;
+import org.libvirt.Domain;
+import org.libvirt.LibvirtException;
+import org.libvirt.NodeInfo;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Matchers;
+
+public class LibvirtVmStatsCollectorTest {
+
+    private static final String DOMAIN_XML = "<domain type='kvm'><devices>" +
+            "<disk type='file' device='disk'><source file='/mnt/pool/disk'/><target dev='vda' bus='virtio'/></disk>" +
+            "<interface type='bridge'><mac address='02:00:00:00:00:01'/><source bridge='cloudbr0'/><model type='virtio'/></interface>" +
+            "</devices></domain>";
+
+    private final LibvirtComputingResource resource = mock(LibvirtComputingResource.class);
+    private final Connect conn = mock(Connect.class);
+    private LibvirtVmStatsCollector collector;
+
+    @Before
+    public void setUp() throws LibvirtException {
+        final NodeInfo nodeInfo = new NodeInfo();
+        nodeInfo.cpus = 4;
+        when(this.conn.nodeInfo()).thenReturn(nodeInfo);
+        this.collector = new LibvirtVmStatsCollector(this.resource, 2);
+    }
+
+    @After
+    public void tearDown() {
+        this.collector.shutdown();
+    }
+
+    @Test
+    public void testGetVmStats() throws LibvirtException {
+        final Domain vm1 = mockDomain("vm1", DOMAIN_XML);
+        final Domain vm2 = mockDomain("vm2", DOMAIN_XML);
+        final VmStatsEntry stat1 = new VmStatsEntry();
+        final VmStatsEntry stat2 = new VmStatsEntry();
+        when(this.resource.getVmStat(Matchers.eq(vm1), Matchers.eq("vm1"), Matchers.eq(4), Matchers.anyListOf(InterfaceDef.class),
+                Matchers.anyListOf(LibvirtDiskDef.class))).thenReturn(stat1);
+        when(this.resource.getVmStat(Matchers.eq(vm2), Matchers.eq("vm2"), Matchers.eq(4), Matchers.anyListOf(InterfaceDef.class),
+                Matchers.anyListOf(LibvirtDiskDef.class))).thenReturn(stat2);
+
+        final Map<String, VmStatsEntry> stats = this.collector.getVmStats(connections("vm1", "vm2"));
+
+        assertEquals(2, stats.size());
+        assertSame(stat1, stats.get("vm1"));
+        assertSame(stat2, stats.get("vm2"));
+        verify(this.conn, times(1)).nodeInfo();
+        verify(vm1, times(1)).free();
+        verify(vm2, times(1)).free();
+    }
+
+    @Test
+    public void testDevicesAreParsedOncePerXml() throws LibvirtException {
+        final Domain vm1 = mockDomain("vm1", DOMAIN_XML);
+
+        this.collector.getVmStats(connections("vm1"));
+        this.collector.getVmStats(connections("vm1"));
+        when(vm1.getXMLDesc(0)).thenReturn(DOMAIN_XML.replace("vda", "vdb"));
+        this.collector.getVmStats(connections("vm1"));
+
+        final ArgumentCaptor<List> vifs = ArgumentCaptor.forClass(List.class);
+        final ArgumentCaptor<List> disks = ArgumentCaptor.forClass(List.class);
+        verify(this.resource, times(3)).getVmStat(Matchers.eq(vm1), Matchers.eq("vm1"), Matchers.eq(4), vifs.capture(), disks.capture());
+        assertEquals(1, vifs.getValue().size());
+        assertEquals(1, disks.getValue().size());
+        assertSame(disks.getAllValues().get(0), disks.getAllValues().get(1));
+        assertNotSame(disks.getAllValues().get(1), disks.getAllValues().get(2));
+        assertEquals("vdb", ((LibvirtDiskDef) disks.getValue().get(0)).getDiskLabel());
+    }
+
+    @Test
+    public void testFailedVmIsLeftOut() throws LibvirtException {
+        final Domain vm1 = mockDomain("vm1", DOMAIN_XML);
+        when(this.resource.getDomain(this.conn, "vm2")).thenThrow(LibvirtException.class);
+        final VmStatsEntry stat1 = new VmStatsEntry();
+        when(this.resource.getVmStat(Matchers.eq(vm1), Matchers.eq("vm1"), Matchers.eq(4), Matchers.anyListOf(InterfaceDef.class),
+                Matchers.anyListOf(LibvirtDiskDef.class))).thenReturn(stat1);
+
+        final Map<String, VmStatsEntry> stats = this.collector.getVmStats(connections("vm1", "vm2"));
+
+        assertEquals(Collections.singletonMap("vm1", stat1), stats);
+    }
+
+    @Test
+    public void testGetVmDiskStats() throws LibvirtException {
+        final Domain vm1 = mockDomain("vm1", DOMAIN_XML);
+        final Domain vm2 = mockDomain("vm2", DOMAIN_XML);
+        final List<VmDiskStatsEntry> stat1 = Collections.singletonList(new VmDiskStatsEntry("vm1", "disk", 1, 1, 1, 1));
+        when(this.resource.getVmDiskStat(Matchers.eq(vm1), Matchers.eq("vm1"), Matchers.anyListOf(LibvirtDiskDef.class))).thenReturn(stat1);
+        when(this.resource.getVmDiskStat(Matchers.eq(vm2), Matchers.eq("vm2"), Matchers.anyListOf(LibvirtDiskDef.class))).thenThrow(LibvirtException.class);
+
+        final Map<String, List<VmDiskStatsEntry>> stats = this.collector.getVmDiskStats(this.conn, Arrays.asList("vm1", "vm2"));
+
+        assertEquals(1, stats.size());
+        assertSame(stat1, stats.get("vm1"));
+        assertFalse(stats.containsKey("vm2"));
+        verify(vm2, times(1)).free();
+    }
+
+    private Domain mockDomain(final String vmName, final String xml) throws LibvirtException {
+        final Domain domain = mock(Domain.class);
+        when(domain.getXMLDesc(0)).thenReturn(xml);
+        when(this.resource.getDomain(this.conn, vmName)).thenReturn(domain);
+        return domain;
+    }
+
+    private Map<String, Connect> connections(final String... vmNames) {
+        final Map<String, Connect> connections = new LinkedHashMap<>();
+        for (final String vmName : vmNames) {
+            connections.put(vmName, this.conn);
+        }
+        return connections;
+    }
+}
@@ -0,0 +1,61 @@
+package com.cloud.common.request;
+
+import com.cloud.legacymodel.communication.command.Command;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * CommandDispatchIndex finds the wrapper that executes a command on a resource.  Wrappers are registered per resource
+ * class; a resource also uses the wrappers of its superclasses, and a wrapper also handles subclasses of its command.
+ * The wrapper found for a resource and command class is remembered, so the class hierarchies are only walked once.
+ */
+public class CommandDispatchIndex<W> {
+    private static final Object NOT_FOUND = new Object();
+
+    private final Map<Class<?>, Map<Class<? extends Command>, W>> _wrappers = new HashMap<>();
+    private final ConcurrentHashMap<Class<?>, ConcurrentHashMap<Class<?>, Object>> _resolved = new ConcurrentHashMap<>();
+
+    public void register(final Class<?> resourceClass, final Map<Class<? extends Command>, W> wrappers) {
+        _wrappers.put(resourceClass, Collections.unmodifiableMap(new HashMap<>(wrappers)));
+        _resolved.clear();
+    }
+
+    /**
+     * @throws NullPointerException if neither the resource nor any of its superclasses has a wrapper for the command,
+     *                              same as the lookup through the class hierarchies always did
+     */
+    @SuppressWarnings("unchecked")
+    public W getWrapper(final Class<?> resourceClass, final Class<? extends Command> commandClass) {
+        ConcurrentHashMap<Class<?>, Object> resolved = _resolved.get(resourceClass);
+        if (resolved == null) {
+            resolved = _resolved.computeIfAbsent(resourceClass, k -> new ConcurrentHashMap<>());
+        }
+        Object wrapper = resolved.get(commandClass);
+        if (wrapper == null) {
+            wrapper = resolved.computeIfAbsent(commandClass, k -> resolve(resourceClass, commandClass));
+        }
+        if (wrapper == NOT_FOUND) {
+            throw new NullPointerException("All the SERVER-RESOURCE hierarchy tree has been visited but no compliant key has been found for '" + commandClass + "'.");
+        }
+        return (W) wrapper;
+    }
+
+    private Object resolve(final Class<?> resourceClass, final Class<? extends Command> commandClass) {
+        for (Class<?> resource = resourceClass; resource != null; resource = resource.getSuperclass()) {
+            final Map<Class<? extends Command>, W> commands = _wrappers.get(resource);
+            if (commands == null) {
+                continue;
+            }
+            for (Class<?> command = commandClass; command != null; command = command.getSuperclass()) {
+                final W wrapper = commands.get(command);
+                if (wrapper != null) {
+                    return wrapper;
+                }
+            }
+        }
+        return NOT_FOUND;
+    }
+}
@@ -0,0 +1,108 @@
+package com.cloud.common.request;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.type.MirroredTypeException;
+import javax.lang.model.util.ElementFilter;
+import javax.tools.Diagnostic;
+import javax.tools.JavaFileObject;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * ResourceWrapperProcessor generates a ResourceWrapperIndex class in every package with {@link ResourceWrapper}
+ * annotated classes.  Its createWrappers() method instantiates the wrappers of the package and maps them by the
+ * command they handle, so a request wrapper does not have to scan the classpath for them when it starts.
+ */
+@SupportedAnnotationTypes("com.cloud.common.request.ResourceWrapper")
+public class ResourceWrapperProcessor extends AbstractProcessor {
+    public static final String INDEX_CLASS_NAME = "ResourceWrapperIndex";
+
+    private final Set<String> _generatedPackages = new HashSet<>();
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(final Set<? extends TypeElement> annotations, final RoundEnvironment roundEnv) {
+        final Map<String, List<TypeElement>> wrappersByPackage = new TreeMap<>();
+        for (final Element element : roundEnv.getElementsAnnotatedWith(ResourceWrapper.class)) {
+            if (element.getKind() != ElementKind.CLASS || element.getModifiers().contains(Modifier.ABSTRACT)) {
+                processingEnv.getMessager().printMessage(Diagnostic.Kind.WARNING, "Ignoring @ResourceWrapper on a type that cannot be instantiated", element);
+                continue;
+            }
+            final TypeElement wrapper = (TypeElement) element;
+            if (!hasNoArgConstructor(wrapper)) {
+                processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, "A @ResourceWrapper needs a constructor without arguments", element);
+                continue;
+            }
+            final String packageName = processingEnv.getElementUtils().getPackageOf(wrapper).getQualifiedName().toString();
+            wrappersByPackage.computeIfAbsent(packageName, k -> new ArrayList<>()).add(wrapper);
+        }
+
+        for (final Map.Entry<String, List<TypeElement>> entry : wrappersByPackage.entrySet()) {
+            if (!_generatedPackages.add(entry.getKey())) {
+                processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, "The " + INDEX_CLASS_NAME + " of package " + entry.getKey() + " was generated already");
+                continue;
+            }
+            try {
+                writeIndex(entry.getKey(), entry.getValue());
+            } catch (final IOException e) {
+                processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, "Unable to write the " + INDEX_CLASS_NAME + " of package " + entry.getKey() + ": " + e.getMessage());
+            }
+        }
+        return true;
+    }
+
+    private static boolean hasNoArgConstructor(final TypeElement wrapper) {
+        for (final ExecutableElement constructor : ElementFilter.constructorsIn(wrapper.getEnclosedElements())) {
+            if (constructor.getParameters().isEmpty() && !constructor.getModifiers().contains(Modifier.PRIVATE)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void writeIndex(final String packageName, final List<TypeElement> wrappers) throws IOException {
+        final JavaFileObject file = processingEnv.getFiler().createSourceFile(packageName + "." + INDEX_CLASS_NAME, wrappers.toArray(new Element[wrappers.size()]));
+        try (Writer writer = file.openWriter()) {
+            writer.write("package " + packageName + ";\n\n");
+            writer.write("// Generated by " + ResourceWrapperProcessor.class.getName() + ", do not edit\n");
+            writer.write("public final class " + INDEX_CLASS_NAME + " {\n\n");
+            writer.write("    private " + INDEX_CLASS_NAME + "() {\n    }\n\n");
+            writer.write("    @SuppressWarnings(\"unchecked\")\n");
+            writer.write("    public static <W> java.util.Map<Class<? extends com.cloud.legacymodel.communication.command.Command>, W> createWrappers() {\n");
+            writer.write("        final java.util.Map<Class<? extends com.cloud.legacymodel.communication.command.Command>, W> wrappers = new java.util.HashMap<>();\n");
+            for (final TypeElement wrapper : wrappers) {
+                writer.write("        wrappers.put(" + getHandledCommand(wrapper) + ".class, (W) new " + wrapper.getQualifiedName() + "());\n");
+            }
+            writer.write("        return wrappers;\n");
+            writer.write("    }\n");
+            writer.write("}\n");
+        }
+    }
+
+    private static String getHandledCommand(final TypeElement wrapper) {
+        try {
+            // Fails on purpose, the class it refers to may not have been compiled yet
+            return wrapper.getAnnotation(ResourceWrapper.class).handles().getCanonicalName();
+        } catch (final MirroredTypeException e) {
+            return e.getTypeMirror().toString();
+        }
+    }
+}
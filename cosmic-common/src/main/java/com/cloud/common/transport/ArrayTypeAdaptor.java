@@ -2,27 +2,28 @@ package com.cloud.common.transport;
 
 import com.cloud.legacymodel.exceptions.CloudRuntimeException;
 
+import java.io.IOException;
 import java.lang.reflect.Array;
-import java.lang.reflect.Type;
 import java.util.ArrayList;
-import java.util.Iterator;
-import java.util.Map;
 
 import com.google.gson.Gson;
-import com.google.gson.JsonArray;
-import com.google.gson.JsonDeserializationContext;
-import com.google.gson.JsonDeserializer;
-import com.google.gson.JsonElement;
-import com.google.gson.JsonObject;
-import com.google.gson.JsonParseException;
-import com.google.gson.JsonSerializationContext;
-import com.google.gson.JsonSerializer;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
 
-public class ArrayTypeAdaptor<T> implements JsonDeserializer<T[]>, JsonSerializer<T[]> {
+/**
+ * Streams arrays of commands or answers, each element wrapped in an object
+ * keyed by its class name.  The elements are written to and read from the
+ * stream directly, without building a JSON tree of the whole array first.
+ */
+public class ArrayTypeAdaptor<T> extends TypeAdapter<T[]> {
 
     protected Gson _gson = null;
+    private final Class<T> _type;
 
-    public ArrayTypeAdaptor() {
+    public ArrayTypeAdaptor(final Class<T> type) {
+        _type = type;
     }
 
     public void initGson(final Gson gson) {
@@ -30,44 +31,48 @@ public class ArrayTypeAdaptor<T> implements JsonDeserializer<T[]>, JsonSerialize
     }
 
     @Override
-    public JsonElement serialize(final T[] src, final Type typeOfSrc, final JsonSerializationContext context) {
-        final JsonArray array = new JsonArray();
+    public void write(final JsonWriter out, final T[] src) throws IOException {
+        if (src == null) {
+            out.nullValue();
+            return;
+        }
+        out.beginArray();
         for (final T cmd : src) {
-            final JsonObject obj = new JsonObject();
-            obj.add(cmd.getClass().getName(), _gson.toJsonTree(cmd));
-            array.add(obj);
+            out.beginObject();
+            out.name(cmd.getClass().getName());
+            _gson.toJson(cmd, cmd.getClass(), out);
+            out.endObject();
         }
-
-        return array;
+        out.endArray();
     }
 
     @Override
-    public T[] deserialize(final JsonElement json, final Type typeOfT, final JsonDeserializationContext context) throws JsonParseException {
-        final JsonArray array = json.getAsJsonArray();
-        final Iterator<JsonElement> it = array.iterator();
+    public T[] read(final JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
         final ArrayList<T> cmds = new ArrayList<>();
-        while (it.hasNext()) {
-            final JsonObject element = (JsonObject) it.next();
-            final Map.Entry<String, JsonElement> entry = element.entrySet().iterator().next();
-
-            final String name = entry.getKey();
+        in.beginArray();
+        while (in.hasNext()) {
+            in.beginObject();
+            final String name = in.nextName();
             final Class<?> clazz;
             try {
                 clazz = Class.forName(name);
             } catch (final ClassNotFoundException e) {
                 throw new CloudRuntimeException("can't find " + name);
             }
-            final T cmd = (T) _gson.fromJson(entry.getValue(), clazz);
+            final T cmd = (T) _gson.fromJson(in, clazz);
             cmds.add(cmd);
+            while (in.hasNext()) {
+                in.nextName();
+                in.skipValue();
+            }
+            in.endObject();
         }
-        final Class<?> type;
-        final String typeOfTClass = typeOfT.getTypeName().replace("[]", "");
-        try {
-            type = Class.forName(typeOfTClass);
-        } catch (ClassNotFoundException e) {
-            throw new CloudRuntimeException("can't find " + typeOfTClass);
-        }
-        final T[] ts = (T[]) Array.newInstance(type, cmds.size());
+        in.endArray();
+        final T[] ts = (T[]) Array.newInstance(_type, cmds.size());
         return cmds.toArray(ts);
     }
 }
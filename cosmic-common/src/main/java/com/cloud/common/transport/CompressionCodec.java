@@ -0,0 +1,211 @@
+package com.cloud.common.transport;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.Inflater;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * CompressionCodec is the compression used for the data package of a Request.
+ * <p>
+ * The codec used for a package is stored in the lower 4 bits of the second
+ * header byte, the codecs the sender is able to decompress are stored as a
+ * bitmask in the upper 4 bits. Peers that do not know about codecs send 0
+ * there, which means gzip is used and it is the only codec they understand.
+ */
+public enum CompressionCodec {
+    GZIP((byte) 0) {
+        @Override
+        public ByteBuffer compress(final ByteBuffer buffer, final int length) {
+            final ByteArrayOutputStream byteOut = new ByteArrayOutputStream(length);
+            try {
+                final GZIPOutputStream out = new GZIPOutputStream(byteOut, length);
+                if (buffer.hasArray()) {
+                    out.write(buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining());
+                } else {
+                    final byte[] array = new byte[buffer.remaining()];
+                    buffer.get(array);
+                    out.write(array);
+                }
+                out.finish();
+                out.close();
+            } catch (final IOException e) {
+                s_logger.error("Fail to compress the request!", e);
+            }
+            return ByteBuffer.wrap(byteOut.toByteArray());
+        }
+
+        @Override
+        public ByteBuffer decompress(final ByteBuffer buffer, final int length) {
+            final ByteArrayInputStream byteIn = toInputStream(buffer);
+            final ByteBuffer retBuff = ByteBuffer.allocate(length);
+            final byte[] out = retBuff.array();
+            int len = 0;
+            try {
+                final GZIPInputStream in = new GZIPInputStream(byteIn);
+                while (retBuff.hasRemaining() && (len = in.read(out, retBuff.position(), retBuff.remaining())) > 0) {
+                    retBuff.position(retBuff.position() + len);
+                }
+                in.close();
+            } catch (final IOException e) {
+                s_logger.error("Fail to decompress the request!", e);
+            }
+            retBuff.flip();
+            return retBuff;
+        }
+    },
+    DEFLATE((byte) 1) {
+        @Override
+        public ByteBuffer compress(final ByteBuffer buffer, final int length) {
+            final Deflater deflater = s_deflater.get();
+            deflater.reset();
+            if (buffer.hasArray()) {
+                deflater.setInput(buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining());
+            } else {
+                final byte[] array = new byte[buffer.remaining()];
+                buffer.get(array);
+                deflater.setInput(array);
+            }
+            deflater.finish();
+
+            // Deflate never expands incompressible data by more than a few bytes per 16k block
+            byte[] out = new byte[length + (length >> 12) + 64];
+            int size = 0;
+            while (!deflater.finished()) {
+                if (size == out.length) {
+                    final byte[] grown = new byte[out.length * 2];
+                    System.arraycopy(out, 0, grown, 0, size);
+                    out = grown;
+                }
+                size += deflater.deflate(out, size, out.length - size);
+            }
+            return ByteBuffer.wrap(out, 0, size);
+        }
+
+        @Override
+        public ByteBuffer decompress(final ByteBuffer buffer, final int length) {
+            final Inflater inflater = s_inflater.get();
+            inflater.reset();
+            if (buffer.hasArray()) {
+                inflater.setInput(buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining());
+            } else {
+                final byte[] array = new byte[buffer.remaining()];
+                buffer.get(array);
+                inflater.setInput(array);
+            }
+
+            final ByteBuffer retBuff = ByteBuffer.allocate(length);
+            try {
+                int size = 0;
+                while (size < length && !inflater.finished()) {
+                    final int len = inflater.inflate(retBuff.array(), size, length - size);
+                    if (len == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                        break;
+                    }
+                    size += len;
+                }
+                retBuff.limit(size);
+            } catch (final DataFormatException e) {
+                s_logger.error("Fail to decompress the request!", e);
+                retBuff.limit(0);
+            }
+            return retBuff;
+        }
+    },
+    NONE((byte) 0xF) {
+        @Override
+        public ByteBuffer compress(final ByteBuffer buffer, final int length) {
+            return buffer;
+        }
+
+        @Override
+        public ByteBuffer decompress(final ByteBuffer buffer, final int length) {
+            return buffer;
+        }
+    };
+
+    /**
+     * Codecs this side is able to decompress, advertised to the peer in every header.
+     */
+    public static final int SUPPORTED_CODECS = GZIP.mask() | DEFLATE.mask();
+
+    private static final Logger s_logger = LoggerFactory.getLogger(CompressionCodec.class);
+    private static final ThreadLocal<Deflater> s_deflater = ThreadLocal.withInitial(() -> new Deflater(Deflater.BEST_SPEED, true));
+    private static final ThreadLocal<Inflater> s_inflater = ThreadLocal.withInitial(() -> new Inflater(true));
+
+    private final byte _id;
+
+    CompressionCodec(final byte id) {
+        _id = id;
+    }
+
+    private static ByteArrayInputStream toInputStream(final ByteBuffer buffer) {
+        if (buffer.hasArray()) {
+            return new ByteArrayInputStream(buffer.array(), buffer.position() + buffer.arrayOffset(), buffer.remaining());
+        }
+        final byte[] array = new byte[buffer.remaining()];
+        buffer.get(array);
+        return new ByteArrayInputStream(array);
+    }
+
+    public static CompressionCodec fromId(final int id) {
+        for (final CompressionCodec codec : values()) {
+            if (codec._id == id) {
+                return codec;
+            }
+        }
+        throw new IllegalArgumentException("Unknown compression codec: " + id);
+    }
+
+    /**
+     * Picks the codec to use for sending to a peer.
+     *
+     * @param preferred codec configured on this side.
+     * @param accepted  bitmask of the codecs the peer is able to decompress.
+     * @return the preferred codec if the peer understands it, otherwise gzip.
+     */
+    public static CompressionCodec negotiate(final CompressionCodec preferred, final int accepted) {
+        if (preferred == NONE || (accepted & preferred.mask()) != 0) {
+            return preferred;
+        }
+        return GZIP;
+    }
+
+    public byte getId() {
+        return _id;
+    }
+
+    public int mask() {
+        return this == NONE ? 0 : 1 << _id;
+    }
+
+    public boolean isCompressing() {
+        return this != NONE;
+    }
+
+    /**
+     * Compresses the remaining bytes of the buffer.
+     *
+     * @param buffer data to compress.
+     * @param length number of bytes in the buffer.
+     * @return buffer with the compressed data.
+     */
+    public abstract ByteBuffer compress(ByteBuffer buffer, int length);
+
+    /**
+     * Decompresses the remaining bytes of the buffer.
+     *
+     * @param buffer data to decompress.
+     * @param length uncompressed size of the data, as sent in the header.
+     * @return buffer with the decompressed data.
+     */
+    public abstract ByteBuffer decompress(ByteBuffer buffer, int length);
+}
@@ -0,0 +1,91 @@
+package com.cloud.common.transport;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * CompressionStatistics keeps track of how well and how fast the data
+ * packages of requests are compressed, per command type.
+ */
+public class CompressionStatistics {
+    private static final ConcurrentHashMap<String, Entry> s_entries = new ConcurrentHashMap<>();
+
+    private CompressionStatistics() {
+    }
+
+    public static void recordCompression(final String type, final int rawBytes, final int compressedBytes, final long nanos) {
+        final Entry entry = getEntry(type);
+        entry._compressed.incrementAndGet();
+        entry._rawBytes.addAndGet(rawBytes);
+        entry._compressedBytes.addAndGet(compressedBytes);
+        entry._compressNanos.addAndGet(nanos);
+    }
+
+    public static void recordDecompression(final String type, final long nanos) {
+        final Entry entry = getEntry(type);
+        entry._decompressed.incrementAndGet();
+        entry._decompressNanos.addAndGet(nanos);
+    }
+
+    private static Entry getEntry(final String type) {
+        return s_entries.computeIfAbsent(type, k -> new Entry());
+    }
+
+    /**
+     * @return a snapshot of the statistics, keyed by command type.
+     */
+    public static Map<String, Entry> getStatistics() {
+        return Collections.unmodifiableMap(new HashMap<>(s_entries));
+    }
+
+    public static void reset() {
+        s_entries.clear();
+    }
+
+    public static class Entry {
+        private final AtomicLong _compressed = new AtomicLong();
+        private final AtomicLong _decompressed = new AtomicLong();
+        private final AtomicLong _rawBytes = new AtomicLong();
+        private final AtomicLong _compressedBytes = new AtomicLong();
+        private final AtomicLong _compressNanos = new AtomicLong();
+        private final AtomicLong _decompressNanos = new AtomicLong();
+
+        public long getCompressedCount() {
+            return _compressed.get();
+        }
+
+        public long getDecompressedCount() {
+            return _decompressed.get();
+        }
+
+        public long getRawBytes() {
+            return _rawBytes.get();
+        }
+
+        public long getCompressedBytes() {
+            return _compressedBytes.get();
+        }
+
+        public long getCompressNanos() {
+            return _compressNanos.get();
+        }
+
+        public long getDecompressNanos() {
+            return _decompressNanos.get();
+        }
+
+        public double getCompressionRatio() {
+            final long compressedBytes = getCompressedBytes();
+            return compressedBytes == 0 ? 0 : (double) getRawBytes() / compressedBytes;
+        }
+
+        @Override
+        public String toString() {
+            return "compressed=" + getCompressedCount() + ", ratio=" + String.format("%.2f", getCompressionRatio()) + ", compressMs=" + getCompressNanos() / 1000000 +
+                    ", decompressed=" + getDecompressedCount() + ", decompressMs=" + getDecompressNanos() / 1000000;
+        }
+    }
+}
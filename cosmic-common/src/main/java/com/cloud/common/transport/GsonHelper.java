@@ -36,11 +36,11 @@ public class GsonHelper {
         final InterfaceTypeAdaptor<DataTO> dtAdaptor = new InterfaceTypeAdaptor<>();
         builder.registerTypeAdapter(DataTO.class, dtAdaptor);
 
-        final ArrayTypeAdaptor<Command> cmdAdaptor = new ArrayTypeAdaptor<>();
+        final ArrayTypeAdaptor<Command> cmdAdaptor = new ArrayTypeAdaptor<>(Command.class);
         builder.registerTypeAdapter(new TypeToken<Command[]>() {
         }.getType(), cmdAdaptor);
 
-        final ArrayTypeAdaptor<Answer> ansAdaptor = new ArrayTypeAdaptor<>();
+        final ArrayTypeAdaptor<Answer> ansAdaptor = new ArrayTypeAdaptor<>(Answer.class);
         builder.registerTypeAdapter(new TypeToken<Answer[]>() {
         }.getType(), ansAdaptor);
 
@@ -10,17 +10,16 @@ import com.cloud.utils.NumbersUtil;
 import com.cloud.utils.StringUtils;
 
 import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
-import java.io.StringReader;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
 import java.lang.reflect.Type;
 import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
-import java.util.zip.GZIPInputStream;
-import java.util.zip.GZIPOutputStream;
 
 import com.google.gson.Gson;
 import com.google.gson.JsonArray;
@@ -32,6 +31,7 @@ import com.google.gson.JsonParseException;
 import com.google.gson.JsonSerializationContext;
 import com.google.gson.JsonSerializer;
 import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -44,12 +44,13 @@ import org.slf4j.LoggerFactory;
  * <p>
  * A request looks as follows:
  * 1. Version - 1 byte;
- * 2. Flags - 3 bytes;
- * 3. Sequence - 8 bytes;
- * 4. Length - 4 bytes;
- * 5. ManagementServerId - 8 bytes;
- * 6. AgentId - 8 bytes;
- * 7. Data Package.
+ * 2. Compression codec - 1 byte, see {@link CompressionCodec};
+ * 3. Flags - 2 bytes;
+ * 4. Sequence - 8 bytes;
+ * 5. Length - 4 bytes;
+ * 6. ManagementServerId - 8 bytes;
+ * 7. AgentId - 8 bytes;
+ * 8. Data Package.
  */
 public class Request {
     protected static final Gson s_gson = GsonHelper.getGson();
@@ -63,7 +64,14 @@ public class Request {
     protected static final short FLAG_FROM_SERVER = 0x20;
     protected static final short FLAG_CONTROL = 0x40;
     protected static final short FLAG_COMPRESSED = 0x80;
+    protected static final int DEFAULT_COMPRESSION_THRESHOLD = 8192;
+    protected static final int SERIALIZATION_BUFFER_SIZE = 8192;
+    protected static final int MAX_RETAINED_SERIALIZATION_BUFFER_SIZE = 1024 * 1024;
     private static final Logger s_logger = LoggerFactory.getLogger(Request.class);
+    private static volatile CompressionCodec s_preferredCodec = CompressionCodec.GZIP;
+    private static volatile int s_compressionThreshold = DEFAULT_COMPRESSION_THRESHOLD;
+    private static final ThreadLocal<SerializationBuffer> s_serializationBuffer =
+            ThreadLocal.withInitial(() -> new SerializationBuffer(SERIALIZATION_BUFFER_SIZE, MAX_RETAINED_SERIALIZATION_BUFFER_SIZE));
     protected Version _ver;
     protected long _session;
     protected long _seq;
@@ -72,15 +80,18 @@ public class Request {
     protected long _via;
     protected long _agentId;
     protected Command[] _cmds;
-    protected String _content;
+    protected ByteBuffer _data;
     protected String _agentName;
+    protected CompressionCodec _codec = CompressionCodec.GZIP;
+    protected int _acceptedCodecs = CompressionCodec.GZIP.mask();
+    protected long _decompressNanos;
 
     protected Request() {
     }
 
-    protected Request(final Version ver, final long seq, final long agentId, final long mgmtId, final long via, final short flags, final String content) {
+    protected Request(final Version ver, final long seq, final long agentId, final long mgmtId, final long via, final short flags, final ByteBuffer data) {
         this(ver, seq, agentId, mgmtId, via, flags, (Command[]) null);
-        _content = content;
+        _data = data;
     }
 
     protected Request(final Version ver, final long seq, final long agentId, final long mgmtId, final long via, final short flags, final Command[] cmds) {
@@ -147,9 +158,30 @@ public class Request {
         _via = that._via;
         _agentId = that._agentId;
         _agentName = that._agentName;
+        _codec = CompressionCodec.negotiate(s_preferredCodec, that._acceptedCodecs);
         setFromServer(!that.isFromServer());
     }
 
+    /**
+     * Sets the codec and minimum size used to compress the data package of
+     * the requests sent from this process.
+     *
+     * @param preferredCodec codec to use when the peer supports it.
+     * @param threshold      minimum size in bytes before the data package is compressed.
+     */
+    public static void configureCompression(final CompressionCodec preferredCodec, final int threshold) {
+        s_preferredCodec = preferredCodec;
+        s_compressionThreshold = threshold;
+    }
+
+    public static CompressionCodec getPreferredCodec() {
+        return s_preferredCodec;
+    }
+
+    public static int getCompressionThreshold() {
+        return s_compressionThreshold;
+    }
+
     public boolean executeInSequence() {
         return (_flags & FLAG_IN_SEQUENCE) > 0;
     }
@@ -184,7 +216,7 @@ public class Request {
         if (version.ordinal() != Version.v1.ordinal() && version.ordinal() != Version.v3.ordinal()) {
             throw new UnsupportedVersionException("This version is no longer supported: " + version.toString(), UnsupportedVersionException.IncompatibleVersion);
         }
-        buff.get();
+        final byte codecs = buff.get();
         final short flags = buff.getShort();
         final boolean isRequest = (flags & FLAG_REQUEST) > 0;
 
@@ -201,53 +233,29 @@ public class Request {
             via = agentId;
         }
 
+        long decompressNanos = 0;
         if ((flags & FLAG_COMPRESSED) != 0) {
-            buff = doDecompress(buff, size);
+            final long start = System.nanoTime();
+            buff = CompressionCodec.fromId(codecs & 0x0F).decompress(buff, size);
+            decompressNanos = System.nanoTime() - start;
         }
 
-        byte[] command = null;
-        int offset = 0;
-        if (buff.hasArray()) {
-            command = buff.array();
-            offset = buff.arrayOffset() + buff.position();
-        } else {
-            command = new byte[buff.remaining()];
-            buff.get(command);
-            offset = 0;
-        }
-
-        final String content = new String(command, offset, command.length - offset);
+        // The data package is kept as received and only deserialized when the commands are asked for
+        final ByteBuffer data = buff.slice();
 
+        final Request request;
         if (isRequest) {
-            return new Request(version, seq, agentId, mgmtId, via, flags, content);
+            request = new Request(version, seq, agentId, mgmtId, via, flags, data);
         } else {
-            return new Response(Version.get(ver), seq, agentId, mgmtId, via, flags, content);
+            request = new Response(Version.get(ver), seq, agentId, mgmtId, via, flags, data);
         }
+        request._acceptedCodecs = CompressionCodec.GZIP.mask() | (codecs >> 4 & 0x0F);
+        request._decompressNanos = decompressNanos;
+        return request;
     }
 
     public static ByteBuffer doDecompress(final ByteBuffer buffer, final int length) {
-        final byte[] byteArrayIn = new byte[1024];
-        final ByteArrayInputStream byteIn;
-        if (buffer.hasArray()) {
-            byteIn = new ByteArrayInputStream(buffer.array(), buffer.position() + buffer.arrayOffset(), buffer.remaining());
-        } else {
-            final byte[] array = new byte[buffer.limit() - buffer.position()];
-            buffer.get(array);
-            byteIn = new ByteArrayInputStream(array);
-        }
-        final ByteBuffer retBuff = ByteBuffer.allocate(length);
-        int len = 0;
-        try {
-            final GZIPInputStream in = new GZIPInputStream(byteIn);
-            while ((len = in.read(byteArrayIn)) > 0) {
-                retBuff.put(byteArrayIn, 0, len);
-            }
-            in.close();
-        } catch (final IOException e) {
-            s_logger.error("Fail to decompress the request!", e);
-        }
-        retBuff.flip();
-        return retBuff;
+        return CompressionCodec.GZIP.decompress(buffer, length);
     }
 
     public static boolean requiresSequentialExecution(final byte[] bytes) {
@@ -326,18 +334,86 @@ public class Request {
     public Command[] getCommands() {
         if (_cmds == null) {
             try {
-                final StringReader reader = new StringReader(_content);
-                final JsonReader jsonReader = new JsonReader(reader);
-                jsonReader.setLenient(true);
-                _cmds = s_gson.fromJson(jsonReader, Command[].class);
+                _cmds = deserialize(Command[].class);
             } catch (final RuntimeException | NoClassDefFoundError e) {
-                s_logger.error("Caught problem with " + _content, e);
+                s_logger.error("Caught problem with " + getContent(), e);
                 throw e;
             }
         }
         return _cmds;
     }
 
+    /**
+     * Reads the commands or answers straight from the received data package,
+     * without turning it into a String first.
+     */
+    protected Command[] deserialize(final Class<? extends Command[]> type) {
+        final ByteBuffer data = _data.duplicate();
+        final int length = data.remaining();
+        final byte[] bytes;
+        final int offset;
+        if (data.hasArray()) {
+            bytes = data.array();
+            offset = data.arrayOffset() + data.position();
+        } else {
+            bytes = new byte[data.remaining()];
+            data.get(bytes);
+            offset = 0;
+        }
+        final JsonReader jsonReader = new JsonReader(new InputStreamReader(new ByteArrayInputStream(bytes, offset, length), StandardCharsets.UTF_8));
+        jsonReader.setLenient(true);
+        final Command[] cmds = s_gson.fromJson(jsonReader, type);
+        recordDecompression();
+        return cmds;
+    }
+
+    protected String getContent() {
+        if (_data == null) {
+            return null;
+        }
+        final ByteBuffer data = _data.duplicate();
+        final byte[] bytes = new byte[data.remaining()];
+        data.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Sets the codec used to compress the data package, normally the codec
+     * negotiated with the peer on the link this request is sent over.
+     */
+    public void setCompressionCodec(final CompressionCodec codec) {
+        _codec = codec;
+    }
+
+    public CompressionCodec getCompressionCodec() {
+        return _codec;
+    }
+
+    /**
+     * @return bitmask of the codecs the peer that sent this request is able to decompress.
+     */
+    public int getAcceptedCodecs() {
+        return _acceptedCodecs;
+    }
+
+    protected String getCommandType() {
+        if (_cmds == null || _cmds.length == 0 || _cmds[0] == null) {
+            return "Unknown";
+        }
+        return _cmds[0].getClass().getSimpleName();
+    }
+
+    /**
+     * The command type of a received request is only known once its data
+     * package is deserialized, so the decompression time is recorded then.
+     */
+    protected void recordDecompression() {
+        if (_decompressNanos > 0) {
+            CompressionStatistics.recordDecompression(getCommandType(), _decompressNanos);
+            _decompressNanos = 0;
+        }
+    }
+
     public byte[] getBytes() {
         final ByteBuffer[] buffers = toBytes();
         final int len1 = buffers[0].remaining();
@@ -348,50 +424,63 @@ public class Request {
         return bytes;
     }
 
+    /**
+     * Serializes the request. The commands are written as JSON straight into
+     * a buffer that is reused by the thread, which is then compressed or
+     * copied, so the data package only exists once more on the heap.
+     */
     public ByteBuffer[] toBytes() {
         final ByteBuffer[] buffers = new ByteBuffer[2];
-        ByteBuffer tmp;
-
-        if (_content == null) {
-            _content = s_gson.toJson(_cmds, _cmds.getClass());
-        }
-        tmp = ByteBuffer.wrap(_content.getBytes());
-        final int capacity = tmp.capacity();
-        /* Check if we need to compress the data */
-        if (capacity >= 8192) {
-            tmp = doCompress(tmp, capacity);
-            _flags |= FLAG_COMPRESSED;
+        final SerializationBuffer buffer = s_serializationBuffer.get();
+        try {
+            ByteBuffer tmp;
+            if (_data != null) {
+                tmp = _data.duplicate();
+            } else {
+                serialize(buffer);
+                tmp = buffer.toByteBuffer();
+            }
+            final int capacity = tmp.remaining();
+            /* Check if we need to compress the data */
+            if (capacity >= s_compressionThreshold && _codec.isCompressing()) {
+                final long start = System.nanoTime();
+                tmp = _codec.compress(tmp, capacity);
+                CompressionStatistics.recordCompression(getCommandType(), capacity, tmp.remaining(), System.nanoTime() - start);
+                _flags |= FLAG_COMPRESSED;
+            } else {
+                // A request parsed with the flag set is forwarded uncompressed when this process doesn't compress it
+                _flags &= ~FLAG_COMPRESSED;
+                if (_data == null) {
+                    tmp = ByteBuffer.wrap(buffer.toByteArray());
+                }
+            }
+            buffers[1] = tmp;
+            buffers[0] = serializeHeader(capacity);
+        } finally {
+            buffer.reset();
         }
-        buffers[1] = tmp;
-        buffers[0] = serializeHeader(capacity);
 
         return buffers;
     }
 
-    public static ByteBuffer doCompress(final ByteBuffer buffer, final int length) {
-        final ByteArrayOutputStream byteOut = new ByteArrayOutputStream(length);
-        final byte[] array;
-        if (buffer.hasArray()) {
-            array = buffer.array();
-        } else {
-            array = new byte[buffer.capacity()];
-            buffer.get(array);
-        }
+    private void serialize(final SerializationBuffer buffer) {
         try {
-            final GZIPOutputStream out = new GZIPOutputStream(byteOut, length);
-            out.write(array);
-            out.finish();
-            out.close();
+            final JsonWriter writer = new JsonWriter(new OutputStreamWriter(buffer, StandardCharsets.UTF_8));
+            s_gson.toJson(_cmds, _cmds.getClass(), writer);
+            writer.flush();
         } catch (final IOException e) {
-            s_logger.error("Fail to compress the request!", e);
+            throw new CloudRuntimeException("Unable to serialize " + getCommandType(), e);
         }
-        return ByteBuffer.wrap(byteOut.toByteArray());
+    }
+
+    public static ByteBuffer doCompress(final ByteBuffer buffer, final int length) {
+        return CompressionCodec.GZIP.compress(buffer, length);
     }
 
     protected ByteBuffer serializeHeader(final int contentSize) {
         final ByteBuffer buffer = ByteBuffer.allocate(40);
         buffer.put(getVersionInByte());
-        buffer.put((byte) 0);
+        buffer.put(getCodecsInByte());
         buffer.putShort(getFlags());
         buffer.putLong(_seq);
         // The size here is uncompressed size, if the data is compressed.
@@ -408,6 +497,11 @@ public class Request {
         return (byte) _ver.ordinal();
     }
 
+    protected byte getCodecsInByte() {
+        final int codec = (_flags & FLAG_COMPRESSED) != 0 ? _codec.getId() : 0;
+        return (byte) (CompressionCodec.SUPPORTED_CODECS << 4 | codec);
+    }
+
     protected short getFlags() {
         return (short) (((this instanceof Response) ? FLAG_RESPONSE : FLAG_REQUEST) | _flags);
     }
@@ -430,9 +524,9 @@ public class Request {
         if (logContent) {
             if (_cmds == null) {
                 try {
-                    _cmds = s_gson.fromJson(_content, this instanceof Response ? Answer[].class : Command[].class);
+                    _cmds = deserialize(this instanceof Response ? Answer[].class : Command[].class);
                 } catch (final RuntimeException e) {
-                    s_logger.error("Unable to convert to json: " + _content);
+                    s_logger.error("Unable to convert to json: " + getContent());
                     throw e;
                 }
             }
@@ -442,7 +536,7 @@ public class Request {
             }
         } else {
             if (_cmds == null) {
-                _cmds = s_gson.fromJson(_content, this instanceof Response ? Answer[].class : Command[].class);
+                _cmds = deserialize(this instanceof Response ? Answer[].class : Command[].class);
             }
             content.append("{ ");
             for (final Command cmd : _cmds) {
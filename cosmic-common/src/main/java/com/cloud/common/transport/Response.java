@@ -3,6 +3,8 @@ package com.cloud.common.transport;
 import com.cloud.legacymodel.communication.answer.Answer;
 import com.cloud.legacymodel.exceptions.UnsupportedVersionException;
 
+import java.nio.ByteBuffer;
+
 /**
  *
  */
@@ -28,7 +30,7 @@ public class Response extends Request {
         _via = agentId;
     }
 
-    protected Response(final Version ver, final long seq, final long agentId, final long mgmtId, final long via, final short flags, final String ans) {
+    protected Response(final Version ver, final long seq, final long agentId, final long mgmtId, final long via, final short flags, final ByteBuffer ans) {
         super(ver, seq, agentId, mgmtId, via, flags, ans);
     }
 
@@ -43,7 +45,7 @@ public class Response extends Request {
 
     public Answer[] getAnswers() {
         if (_cmds == null) {
-            _cmds = s_gson.fromJson(_content, Answer[].class);
+            _cmds = deserialize(Answer[].class);
         }
         return (Answer[]) _cmds;
     }
@@ -0,0 +1,79 @@
+package com.cloud.common.transport;
+
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * SerializationBuffer is a growable byte buffer the data package of a request
+ * is serialized into.  Unlike ByteArrayOutputStream it exposes its contents
+ * without copying, so one buffer per thread can be reused for every request
+ * serialized on that thread.  Buffers that grew beyond the retained size for a
+ * large request are dropped again on reset, so an occasional huge command does
+ * not pin its memory.
+ */
+public class SerializationBuffer extends OutputStream {
+    private final int _initialSize;
+    private final int _maxRetainedSize;
+    private byte[] _buf;
+    private int _count;
+
+    public SerializationBuffer(final int initialSize, final int maxRetainedSize) {
+        _initialSize = initialSize;
+        _maxRetainedSize = maxRetainedSize;
+        _buf = new byte[initialSize];
+    }
+
+    private void ensureCapacity(final int minCapacity) {
+        if (minCapacity - _buf.length > 0) {
+            int newCapacity = _buf.length << 1;
+            if (newCapacity - minCapacity < 0) {
+                newCapacity = minCapacity;
+            }
+            _buf = Arrays.copyOf(_buf, newCapacity);
+        }
+    }
+
+    @Override
+    public void write(final int b) {
+        ensureCapacity(_count + 1);
+        _buf[_count] = (byte) b;
+        _count += 1;
+    }
+
+    @Override
+    public void write(final byte[] b, final int off, final int len) {
+        if (off < 0 || len < 0 || off + len > b.length) {
+            throw new IndexOutOfBoundsException();
+        }
+        ensureCapacity(_count + len);
+        System.arraycopy(b, off, _buf, _count, len);
+        _count += len;
+    }
+
+    public int size() {
+        return _count;
+    }
+
+    /**
+     * @return buffer backed by the contents, only valid until the next reset.
+     */
+    public ByteBuffer toByteBuffer() {
+        return ByteBuffer.wrap(_buf, 0, _count);
+    }
+
+    public byte[] toByteArray() {
+        return Arrays.copyOf(_buf, _count);
+    }
+
+    public void reset() {
+        _count = 0;
+        if (_buf.length > _maxRetainedSize) {
+            _buf = new byte[_initialSize];
+        }
+    }
+
+    public int capacity() {
+        return _buf.length;
+    }
+}
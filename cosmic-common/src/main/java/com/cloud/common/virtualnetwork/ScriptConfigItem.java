@@ -1,5 +1,7 @@
 package com.cloud.common.virtualnetwork;
 
+import com.cloud.legacymodel.network.VRScripts;
+
 public class ScriptConfigItem extends ConfigItem {
     private String script;
     private String args;
@@ -29,10 +31,12 @@ public class ScriptConfigItem extends ConfigItem {
     public String getAggregateCommand() {
         final StringBuilder sb = new StringBuilder();
         sb.append("<script>\n");
-        sb.append("/opt/cosmic/router/");
+        sb.append(VRScripts.ROUTER_SCRIPTS_LOCATION);
         sb.append(script);
-        sb.append(' ');
-        sb.append(args);
+        if (args != null) {
+            sb.append(' ');
+            sb.append(args);
+        }
         sb.append("\n</script>\n");
         return sb.toString();
     }
@@ -27,10 +27,13 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Queue;
+import java.util.UUID;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
 
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -44,12 +47,16 @@ import org.slf4j.LoggerFactory;
 public class VirtualRoutingResource {
 
     private static final Logger s_logger = LoggerFactory.getLogger(VirtualRoutingResource.class);
+    private static final Gson s_gson = new Gson();
+    private static final String BUNDLE_CHECK = "--check";
+    private static final String BUNDLE_REMOVE = "--remove";
     private final Map<String, Lock> _vrLockMap = new HashMap<>();
     private final VirtualRouterDeployer _vrDeployer;
     private Map<String, Queue<NetworkElementCommand>> _vrAggregateCommandsSet;
     private int _sleep;
     private int _port;
     private int _eachTimeout;
+    private boolean _bundleConfig;
 
     public VirtualRoutingResource(final VirtualRouterDeployer deployer) {
         this._vrDeployer = deployer;
@@ -146,12 +153,40 @@ public class VirtualRoutingResource {
             return new Answer(cmd, true, "Nothing to do");
         }
 
-        final List<ExecutionResult> results = new ArrayList<>();
+        // A single command is a file and a script, bundling only saves round trips when there is more
+        List<ExecutionResult> results = null;
+        if (this._bundleConfig && cfg.size() > 2) {
+            results = applyConfigBundle(cmd.getRouterAccessIp(), cfg);
+        }
+        if (results == null) {
+            results = applyConfigItems(cmd.getRouterAccessIp(), cfg);
+        }
+
         final List<String> details = new ArrayList<>();
         boolean finalResult = false;
+        for (int i = 0; i < results.size(); i++) {
+            final ExecutionResult result = results.get(i);
+            details.add(cfg.get(i).getInfo() + (result.isSuccess() ? " - success: " : " - failed: ") + result.getDetails());
+            finalResult = result.isSuccess();
+        }
+
+        // Not sure why this matters, but log it anyway
+        if (cmd.getAnswersCount() != results.size()) {
+            s_logger.warn("Expected " + cmd.getAnswersCount() + " answers while executing " + cmd.getClass().getSimpleName() + " but received " + results.size());
+        }
+
+        if (results.size() == 1) {
+            return new Answer(cmd, finalResult, results.get(0).getDetails());
+        } else {
+            return new GroupAnswer(cmd, finalResult, results.size(), details.toArray(new String[details.size()]));
+        }
+    }
+
+    private List<ExecutionResult> applyConfigItems(final String routerAccessIp, final List<ConfigItem> cfg) {
+        final List<ExecutionResult> results = new ArrayList<>();
         for (final ConfigItem configItem : cfg) {
             final long startTimestamp = System.currentTimeMillis();
-            ExecutionResult result = applyConfigToVR(cmd.getRouterAccessIp(), configItem);
+            ExecutionResult result = applyConfigToVR(routerAccessIp, configItem);
             if (s_logger.isDebugEnabled()) {
                 final long elapsed = System.currentTimeMillis() - startTimestamp;
                 s_logger.debug("Processing " + configItem + " took " + elapsed + "ms");
@@ -160,19 +195,99 @@ public class VirtualRoutingResource {
                 result = new ExecutionResult(false, "null execution result");
             }
             results.add(result);
-            details.add(configItem.getInfo() + (result.isSuccess() ? " - success: " : " - failed: ") + result.getDetails());
-            finalResult = result.isSuccess();
         }
+        return results;
+    }
 
-        // Not sure why this matters, but log it anyway
-        if (cmd.getAnswersCount() != results.size()) {
-            s_logger.warn("Expected " + cmd.getAnswersCount() + " answers while executing " + cmd.getClass().getSimpleName() + " but received " + results.size());
+    /**
+     * Copies all config items to the router as one bundle and applies them with a single script run.  The router
+     * stops at the first item that fails, the items after it are reported as failed.
+     *
+     * @return the result of every config item, or null if the template of the router doesn't have the bundle script
+     */
+    private List<ExecutionResult> applyConfigBundle(final String routerAccessIp, final List<ConfigItem> cfg) {
+        final long startTimestamp = System.currentTimeMillis();
+
+        // Only a router without the script may get the config items one by one, otherwise items could be applied twice
+        final ExecutionResult check = this._vrDeployer.executeInVR(routerAccessIp, VRScripts.APPLY_CONFIG_BUNDLE, BUNDLE_CHECK, VRScripts.DEFAULT_EXECUTEINVR_TIMEOUT);
+        if (check == null || !check.isSuccess()) {
+            final String details = check != null ? check.getDetails() : null;
+            if (details != null && details.contains(VRScripts.APPLY_CONFIG_BUNDLE)) {
+                s_logger.info("Router " + routerAccessIp + " doesn't have the config bundle script, applying the config items one by one");
+                return null;
+            }
+            return failedResults(cfg, "Unable to check the config bundle script on the router: " + details);
         }
 
-        if (results.size() == 1) {
-            return new Answer(cmd, finalResult, results.get(0).getDetails());
-        } else {
-            return new GroupAnswer(cmd, finalResult, results.size(), details.toArray(new String[details.size()]));
+        final StringBuilder bundle = new StringBuilder();
+        int scripts = 0;
+        for (final ConfigItem configItem : cfg) {
+            bundle.append(configItem.getAggregateCommand());
+            if (configItem instanceof ScriptConfigItem) {
+                scripts++;
+            }
+        }
+
+        final String bundleFileName = VRScripts.CONFIG_BUNDLE + "." + UUID.randomUUID().toString();
+        final String bundlePath = VRScripts.CONFIG_PERSIST_LOCATION + bundleFileName;
+        BundleItemResult[] itemResults = null;
+        ExecutionResult result = null;
+        try {
+            result = this._vrDeployer.createFileInVR(routerAccessIp, VRScripts.CONFIG_PERSIST_LOCATION, bundleFileName, bundle.toString());
+            if (result != null && result.isSuccess()) {
+                final int timeout = Math.max(VRScripts.DEFAULT_EXECUTEINVR_TIMEOUT, scripts * this._eachTimeout);
+                result = this._vrDeployer.executeInVR(routerAccessIp, VRScripts.APPLY_CONFIG_BUNDLE, bundlePath, timeout);
+                itemResults = parseBundleResult(result);
+            }
+        } finally {
+            if (itemResults == null) {
+                // The script removes the bundle as soon as it read it, so it is only left behind when the script didn't get that far
+                this._vrDeployer.executeInVR(routerAccessIp, VRScripts.APPLY_CONFIG_BUNDLE, BUNDLE_REMOVE + " " + bundlePath, VRScripts.DEFAULT_EXECUTEINVR_TIMEOUT);
+            }
+        }
+        if (itemResults == null) {
+            final String details = result != null ? result.getDetails() : null;
+            s_logger.warn("Router " + routerAccessIp + " was unable to apply config bundle " + bundleFileName + ": " + details);
+            return failedResults(cfg, "Unable to apply the config bundle: " + details);
+        }
+
+        final List<ExecutionResult> results = new ArrayList<>(cfg.size());
+        for (int i = 0; i < cfg.size(); i++) {
+            if (i < itemResults.length) {
+                results.add(new ExecutionResult(itemResults[i].success, itemResults[i].details));
+            } else {
+                results.add(new ExecutionResult(false, "Not applied because an earlier config item failed"));
+            }
+        }
+        if (s_logger.isDebugEnabled()) {
+            final long elapsed = System.currentTimeMillis() - startTimestamp;
+            s_logger.debug("Processing a bundle of " + cfg.size() + " config items took " + elapsed + "ms");
+        }
+        return results;
+    }
+
+    private static List<ExecutionResult> failedResults(final List<ConfigItem> cfg, final String details) {
+        final List<ExecutionResult> results = new ArrayList<>(cfg.size());
+        for (int i = 0; i < cfg.size(); i++) {
+            results.add(new ExecutionResult(false, details));
+        }
+        return results;
+    }
+
+    private static BundleItemResult[] parseBundleResult(final ExecutionResult result) {
+        if (result == null || result.getDetails() == null) {
+            return null;
+        }
+        // The results are printed last, anything before it is not ours
+        final String details = result.getDetails().trim();
+        final String json = details.substring(details.lastIndexOf('\n') + 1);
+        if (!json.startsWith("[")) {
+            return null;
+        }
+        try {
+            return s_gson.fromJson(json, BundleItemResult[].class);
+        } catch (final JsonParseException e) {
+            return null;
         }
     }
 
@@ -216,6 +331,9 @@ public class VirtualRoutingResource {
         value = (String) params.get("router.aggregation.command.each.timeout");
         this._eachTimeout = NumbersUtil.parseInt(value, 3);
 
+        value = (String) params.get("router.aggregation.bundle");
+        this._bundleConfig = value == null || Boolean.parseBoolean(value);
+
         if (this._vrDeployer == null) {
             throw new ConfigurationException("Unable to find the resource for VirtualRouterDeployer!");
         }
@@ -290,6 +408,13 @@ public class VirtualRoutingResource {
         } else if (Action.Finish.equals(action)) {
             final Queue<NetworkElementCommand> queue = this._vrAggregateCommandsSet.get(routerName);
             try {
+                if (this._bundleConfig) {
+                    final Answer answer = applyAggregatedConfigBundle(aggregationCommand, queue);
+                    if (answer != null) {
+                        return answer;
+                    }
+                }
+
                 for (final NetworkElementCommand command : queue) {
                     final List<ConfigItem> cfg = generateCommandCfg(command);
                     if (cfg == null) {
@@ -312,4 +437,44 @@ public class VirtualRoutingResource {
 
         return new Answer(aggregationCommand, false, "Fail to recognize aggregation action " + action.toString());
     }
+
+    /**
+     * Applies the config items of all aggregated commands as one bundle.
+     *
+     * @return a GroupAnswer with the result of every config item, or null if the router doesn't have the bundle script
+     */
+    private Answer applyAggregatedConfigBundle(final AggregationControlCommand aggregationCommand, final Queue<NetworkElementCommand> queue) {
+        final List<ConfigItem> cfg = new ArrayList<>();
+        for (final NetworkElementCommand command : queue) {
+            final List<ConfigItem> commandCfg = generateCommandCfg(command);
+            if (commandCfg == null) {
+                s_logger.warn("Unknown commands for VirtualRoutingResource, but continue: " + aggregationCommand.toString());
+                continue;
+            }
+            cfg.addAll(commandCfg);
+        }
+
+        if (cfg.isEmpty()) {
+            return new Answer(aggregationCommand, true, "Command aggregation finished");
+        }
+
+        final List<ExecutionResult> results = applyConfigBundle(aggregationCommand.getRouterAccessIp(), cfg);
+        if (results == null) {
+            return null;
+        }
+
+        final String[] details = new String[results.size()];
+        boolean finalResult = true;
+        for (int i = 0; i < results.size(); i++) {
+            final ExecutionResult result = results.get(i);
+            details[i] = cfg.get(i).getInfo() + (result.isSuccess() ? " - success: " : " - failed: ") + result.getDetails();
+            finalResult &= result.isSuccess();
+        }
+        return new GroupAnswer(aggregationCommand, finalResult, details.length, details);
+    }
+
+    private static class BundleItemResult {
+        boolean success;
+        String details;
+    }
 }
@@ -0,0 +1,109 @@
+package com.cloud.utils.nio;
+
+import java.nio.ByteBuffer;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * BufferPool hands out direct ByteBuffers for the SSL packet and application
+ * buffers of the links of one NioConnection, so reading and writing does not
+ * allocate a fresh buffer per packet.  Buffers are pooled by capacity, which is
+ * stable for all links of a connection since it is derived from the SSL session.
+ */
+public class BufferPool {
+    private static final Logger s_logger = LoggerFactory.getLogger(BufferPool.class);
+
+    private final ConcurrentHashMap<Integer, Queue<ByteBuffer>> _pools = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<Integer, AtomicInteger> _pooledCounts = new ConcurrentHashMap<>();
+    private final int _maxPooledPerCapacity;
+
+    private final AtomicLong _hits = new AtomicLong();
+    private final AtomicLong _misses = new AtomicLong();
+    private final AtomicLong _bytesInFlight = new AtomicLong();
+
+    public BufferPool(final int maxPooledPerCapacity) {
+        _maxPooledPerCapacity = maxPooledPerCapacity;
+    }
+
+    /**
+     * Takes a cleared buffer of exactly the given capacity out of the pool, or
+     * allocates a new direct buffer if none is available.
+     *
+     * @param capacity capacity of the buffer.
+     * @return buffer ready for use.
+     */
+    public ByteBuffer acquire(final int capacity) {
+        ByteBuffer buffer = null;
+        final Queue<ByteBuffer> pool = _pools.get(capacity);
+        if (pool != null) {
+            buffer = pool.poll();
+        }
+
+        if (buffer != null) {
+            _pooledCounts.get(capacity).decrementAndGet();
+            _hits.incrementAndGet();
+            buffer.clear();
+        } else {
+            _misses.incrementAndGet();
+            buffer = ByteBuffer.allocateDirect(capacity);
+        }
+        _bytesInFlight.addAndGet(capacity);
+        return buffer;
+    }
+
+    /**
+     * Hands a buffer obtained by acquire back to the pool.  If the pool is full
+     * the buffer is dropped and left to the garbage collector.
+     *
+     * @param buffer buffer to release, may be null.
+     */
+    public void release(final ByteBuffer buffer) {
+        if (buffer == null) {
+            return;
+        }
+        final int capacity = buffer.capacity();
+        _bytesInFlight.addAndGet(-capacity);
+
+        final AtomicInteger pooledCount = _pooledCounts.computeIfAbsent(capacity, k -> new AtomicInteger());
+        if (pooledCount.incrementAndGet() > _maxPooledPerCapacity) {
+            pooledCount.decrementAndGet();
+            if (s_logger.isTraceEnabled()) {
+                s_logger.trace("Buffer pool is full for capacity " + capacity + ", dropping buffer");
+            }
+            return;
+        }
+        buffer.clear();
+        _pools.computeIfAbsent(capacity, k -> new ConcurrentLinkedQueue<>()).offer(buffer);
+    }
+
+    public long getHits() {
+        return _hits.get();
+    }
+
+    public long getMisses() {
+        return _misses.get();
+    }
+
+    public long getBytesInFlight() {
+        return _bytesInFlight.get();
+    }
+
+    public int getPooledCount() {
+        int count = 0;
+        for (final AtomicInteger pooledCount : _pooledCounts.values()) {
+            count += pooledCount.get();
+        }
+        return count;
+    }
+
+    @Override
+    public String toString() {
+        return "BufferPool[hits=" + getHits() + ", misses=" + getMisses() + ", bytesInFlight=" + getBytesInFlight() + ", pooled=" + getPooledCount() + "]";
+    }
+}
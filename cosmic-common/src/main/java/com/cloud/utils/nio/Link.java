@@ -38,13 +38,26 @@ public class Link {
     /* SSL has limitation of 16k, we may need to split packets. 18000 is 16k + some extra SSL informations */
     protected static final int MAX_SIZE_PER_PACKET = 18000;
     protected static final int HEADER_FLAG_FOLLOWING = 0x10000;
+    /* Plaintext buffers grown beyond this size for a large message are not kept around for the next one */
+    protected static final int MAX_RETAINED_PLAINTEXT_SIZE = 65536;
+    protected static final int INITIAL_PLAINTEXT_SIZE = 2000;
     private static final Logger s_logger = LoggerFactory.getLogger(Link.class);
+    /* Buffers of the static write, which is called by threads other than the selector of the link */
+    private static final ThreadLocal<WriteBuffers> s_writeBuffers = ThreadLocal.withInitial(WriteBuffers::new);
     private final InetSocketAddress _addr;
     private final NioConnection _connection;
     private final ConcurrentLinkedQueue<ByteBuffer[]> _writeQueue;
+    private final BufferPool _bufferPool;
+    private final ByteBuffer _headerBuffer;
+    private final ByteBuffer[] _packetWithHeader;
     private SelectionKey _key;
     private ByteBuffer _readBuffer;
     private ByteBuffer _plaintextBuffer;
+    /* Guards the pooled buffers, terminated() can be called by any thread while the selector reads or writes */
+    private final Object _bufferLock = new Object();
+    private ByteBuffer _appBuffer;
+    private ByteBuffer _packetBuffer;
+    private boolean _buffersReleased;
     private Object _attach;
     private boolean _readHeader;
     private boolean _gotFollowingPacket;
@@ -61,6 +74,9 @@ public class Link {
         _attach = null;
         _key = null;
         _writeQueue = new ConcurrentLinkedQueue<>();
+        _bufferPool = connection != null ? connection.getBufferPool() : new BufferPool(0);
+        _headerBuffer = ByteBuffer.allocate(4);
+        _packetWithHeader = new ByteBuffer[2];
         _readHeader = true;
         _gotFollowingPacket = false;
     }
@@ -75,8 +91,10 @@ public class Link {
      * @throws IOException if unable to write to completion.
      */
     public static void write(final SocketChannel ch, final ByteBuffer[] buffers, final SSLEngine sslEngine) throws IOException {
+        final WriteBuffers writeBuffers = s_writeBuffers.get();
+        final ByteBuffer pkgBuf = writeBuffers.getPacketBuffer(sslEngine.getSession().getPacketBufferSize() + 40);
         synchronized (ch) {
-            doWrite(ch, buffers, sslEngine);
+            doWrite(ch, buffers, sslEngine, pkgBuf, writeBuffers.headBuf, writeBuffers.packetWithHeader);
         }
     }
 
@@ -124,12 +142,15 @@ public class Link {
      *                     }
      */
 
-    private static void doWrite(final SocketChannel ch, final ByteBuffer[] buffers, final SSLEngine sslEngine) throws IOException {
-        final SSLSession sslSession = sslEngine.getSession();
-        final ByteBuffer pkgBuf = ByteBuffer.allocate(sslSession.getPacketBufferSize() + 40);
+    /**
+     * Wraps the buffers into SSL packets and writes each packet prefixed with its
+     * header in a single gathering write, reusing the given packet and header buffers.
+     */
+    private static void doWrite(final SocketChannel ch, final ByteBuffer[] buffers, final SSLEngine sslEngine, final ByteBuffer pkgBuf, final ByteBuffer headBuf,
+                                final ByteBuffer[] packetWithHeader) throws IOException {
         SSLEngineResult engResult;
-
-        final ByteBuffer headBuf = ByteBuffer.allocate(4);
+        packetWithHeader[0] = headBuf;
+        packetWithHeader[1] = pkgBuf;
 
         int totalLen = 0;
         for (final ByteBuffer buffer : buffers) {
@@ -151,9 +172,8 @@ public class Link {
                 processedLen += buffer.position();
             }
 
-            int dataRemaining = pkgBuf.position();
-            int header = dataRemaining;
-            int headRemaining = 4;
+            int header = pkgBuf.position();
+            long remaining = header + 4;
             pkgBuf.flip();
             if (processedLen < totalLen) {
                 header = header | HEADER_FLAG_FOLLOWING;
@@ -161,19 +181,11 @@ public class Link {
             headBuf.putInt(header);
             headBuf.flip();
 
-            while (headRemaining > 0) {
+            while (remaining > 0) {
                 if (s_logger.isTraceEnabled()) {
-                    s_logger.trace("Writing Header " + headRemaining);
+                    s_logger.trace("Writing Header and Data " + remaining);
                 }
-                final long count = ch.write(headBuf);
-                headRemaining -= count;
-            }
-            while (dataRemaining > 0) {
-                if (s_logger.isTraceEnabled()) {
-                    s_logger.trace("Writing Data " + dataRemaining);
-                }
-                final long count = ch.write(pkgBuf);
-                dataRemaining -= count;
+                remaining -= ch.write(packetWithHeader);
             }
         }
     }
@@ -379,7 +391,10 @@ public class Link {
             }
 
             if (!_gotFollowingPacket) {
-                _plaintextBuffer = ByteBuffer.allocate(2000);
+                if (_plaintextBuffer == null) {
+                    _plaintextBuffer = ByteBuffer.allocate(INITIAL_PLAINTEXT_SIZE);
+                }
+                _plaintextBuffer.clear();
             }
 
             if ((header & HEADER_FLAG_FOLLOWING) != 0) {
@@ -413,15 +428,36 @@ public class Link {
 
         _readBuffer.flip();
 
-        ByteBuffer appBuf;
+        synchronized (_bufferLock) {
+            unwrap(getAppBuffer());
+        }
+
+        _readBuffer.clear();
+        _readHeader = true;
 
-        final SSLSession sslSession = _sslEngine.getSession();
+        if (!_gotFollowingPacket) {
+            _plaintextBuffer.flip();
+            final byte[] result = new byte[_plaintextBuffer.limit()];
+            _plaintextBuffer.get(result);
+            if (_plaintextBuffer.capacity() > MAX_RETAINED_PLAINTEXT_SIZE) {
+                _plaintextBuffer = null;
+            }
+            return result;
+        } else {
+            if (s_logger.isTraceEnabled()) {
+                s_logger.trace("Waiting for more packets");
+            }
+            return null;
+        }
+    }
+
+    private void unwrap(final ByteBuffer appBuf) throws IOException {
         SSLEngineResult engResult;
         int remaining = 0;
 
         while (_readBuffer.hasRemaining()) {
             remaining = _readBuffer.remaining();
-            appBuf = ByteBuffer.allocate(sslSession.getApplicationBufferSize() + 40);
+            appBuf.clear();
             engResult = _sslEngine.unwrap(_readBuffer, appBuf);
             if (engResult.getHandshakeStatus() != HandshakeStatus.FINISHED && engResult.getHandshakeStatus() != HandshakeStatus.NOT_HANDSHAKING &&
                     engResult.getStatus() != SSLEngineResult.Status.OK) {
@@ -444,21 +480,6 @@ public class Link {
                 s_logger.trace("Done with packet: " + appBuf.limit());
             }
         }
-
-        _readBuffer.clear();
-        _readHeader = true;
-
-        if (!_gotFollowingPacket) {
-            _plaintextBuffer.flip();
-            final byte[] result = new byte[_plaintextBuffer.limit()];
-            _plaintextBuffer.get(result);
-            return result;
-        } else {
-            if (s_logger.isTraceEnabled()) {
-                s_logger.trace("Waiting for more packets");
-            }
-            return null;
-        }
     }
 
     public void send(final byte[] data) throws ClosedChannelException {
@@ -470,22 +491,15 @@ public class Link {
     }
 
     public void send(final ByteBuffer[] data, final boolean close) throws ClosedChannelException {
-        final ByteBuffer[] item = new ByteBuffer[data.length + 1];
-        int remaining = 0;
-        for (int i = 0; i < data.length; i++) {
-            remaining += data[i].remaining();
-            item[i + 1] = data[i];
-        }
-
-        item[0] = ByteBuffer.allocate(4);
-        item[0].putInt(remaining);
-        item[0].flip();
-
         if (s_logger.isTraceEnabled()) {
+            int remaining = 0;
+            for (final ByteBuffer buffer : data) {
+                remaining += buffer.remaining();
+            }
             s_logger.trace("Sending packet of length " + remaining);
         }
 
-        _writeQueue.add(item);
+        _writeQueue.add(data);
         if (close) {
             _writeQueue.add(new ByteBuffer[0]);
         }
@@ -517,14 +531,33 @@ public class Link {
                 return true;
             }
 
-            final ByteBuffer[] raw_data = new ByteBuffer[data.length - 1];
-            System.arraycopy(data, 1, raw_data, 0, data.length - 1);
-
-            doWrite(ch, raw_data, _sslEngine);
+            synchronized (_bufferLock) {
+                doWrite(ch, data, _sslEngine, getPacketBuffer(), _headerBuffer, _packetWithHeader);
+            }
         }
         return false;
     }
 
+    private ByteBuffer getAppBuffer() throws ClosedChannelException {
+        if (_buffersReleased) {
+            throw new ClosedChannelException();
+        }
+        if (_appBuffer == null) {
+            _appBuffer = _bufferPool.acquire(_sslEngine.getSession().getApplicationBufferSize() + 40);
+        }
+        return _appBuffer;
+    }
+
+    private ByteBuffer getPacketBuffer() throws ClosedChannelException {
+        if (_buffersReleased) {
+            throw new ClosedChannelException();
+        }
+        if (_packetBuffer == null) {
+            _packetBuffer = _bufferPool.acquire(_sslEngine.getSession().getPacketBufferSize() + 40);
+        }
+        return _packetBuffer;
+    }
+
     public InetSocketAddress getSocketAddress() {
         return _addr;
     }
@@ -535,6 +568,14 @@ public class Link {
 
     public synchronized void terminated() {
         _key = null;
+        // Waits for a read or write of the selector that still uses the buffers, later ones fail on the closed link
+        synchronized (_bufferLock) {
+            _buffersReleased = true;
+            _bufferPool.release(_appBuffer);
+            _appBuffer = null;
+            _bufferPool.release(_packetBuffer);
+            _packetBuffer = null;
+        }
     }
 
     public synchronized void schedule(final Task task) throws ClosedChannelException {
@@ -543,4 +584,17 @@ public class Link {
         }
         _connection.scheduleTask(task);
     }
+
+    private static class WriteBuffers {
+        final ByteBuffer headBuf = ByteBuffer.allocate(4);
+        final ByteBuffer[] packetWithHeader = new ByteBuffer[2];
+        ByteBuffer pkgBuf;
+
+        ByteBuffer getPacketBuffer(final int size) {
+            if (pkgBuf == null || pkgBuf.capacity() < size) {
+                pkgBuf = ByteBuffer.allocate(size);
+            }
+            return pkgBuf;
+        }
+    }
 }
@@ -40,6 +40,8 @@ import org.slf4j.LoggerFactory;
  */
 public abstract class NioConnection implements Callable<Boolean> {
     private static final Logger s_logger = LoggerFactory.getLogger(NioConnection.class);
+    /* Number of SSL buffers of one size kept for reuse by links (re)connecting to this connection */
+    private static final int MAX_POOLED_BUFFERS = 256;
 
     protected Selector _selector;
     protected ExecutorService _threadExecutor;
@@ -52,6 +54,7 @@ public abstract class NioConnection implements Callable<Boolean> {
     protected HandlerFactory _factory;
     protected String _name;
     protected ExecutorService _executor;
+    protected BufferPool _bufferPool;
 
     public NioConnection(final String name, final int port, final int workers, final HandlerFactory factory) {
         _name = name;
@@ -59,6 +62,7 @@ public abstract class NioConnection implements Callable<Boolean> {
         _selector = null;
         _port = port;
         _factory = factory;
+        _bufferPool = new BufferPool(MAX_POOLED_BUFFERS);
         _executor = new ThreadPoolExecutor(workers, 5 * workers, 1, TimeUnit.DAYS, new LinkedBlockingQueue<>(), new NamedThreadFactory(name + "-Handler"));
     }
 
@@ -94,6 +98,9 @@ public abstract class NioConnection implements Callable<Boolean> {
             _futureTask.cancel(false);
             _threadExecutor.shutdown();
         }
+        if (s_logger.isDebugEnabled()) {
+            s_logger.debug("Stopped " + _name + " with " + _bufferPool);
+        }
     }
 
     public boolean isRunning() {
@@ -104,6 +111,10 @@ public abstract class NioConnection implements Callable<Boolean> {
         return _isStartup;
     }
 
+    public BufferPool getBufferPool() {
+        return _bufferPool;
+    }
+
     @Override
     public Boolean call() throws NioConnectionException {
         while (_isRunning) {
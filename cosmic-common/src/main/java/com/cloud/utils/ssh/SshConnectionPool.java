@@ -0,0 +1,360 @@
+package com.cloud.utils.ssh;
+
+import com.cloud.legacymodel.utils.Pair;
+import com.cloud.utils.concurrency.NamedThreadFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.trilead.ssh2.Connection;
+import com.trilead.ssh2.Session;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * SshConnectionPool keeps one authenticated SSH connection per host open, and runs commands and file copies over
+ * channels of that connection.  SSH multiplexes channels, so concurrent commands to the same host share the
+ * connection instead of doing a key exchange each.  Connections that have not been used for the idle timeout are
+ * closed, and a connection that was lost is set up again on its next use.
+ */
+public class SshConnectionPool {
+    private static final Logger s_logger = LoggerFactory.getLogger(SshConnectionPool.class);
+
+    private static final int DEFAULT_CONNECT_TIMEOUT = 10000;
+    private static final int DEFAULT_KEX_TIMEOUT = 60000;
+    private static final int CONNECT_RETRIES = 5;
+    private static final int CONNECT_RETRY_INTERVAL = 1000;
+
+    private final String _user;
+    private final File _pemKeyFile;
+    private final long _idleTimeoutInMs;
+    private final Map<String, PooledConnection> _connections = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService _evictor;
+
+    private final AtomicLong _handshakes = new AtomicLong();
+    private final AtomicLong _reuses = new AtomicLong();
+    private final AtomicLong _executions = new AtomicLong();
+    private final AtomicLong _executionTimeInMs = new AtomicLong();
+
+    /**
+     * @param name          name of the pool, used for the eviction thread
+     * @param user          user to log in as
+     * @param pemKeyFile    private key to authenticate with
+     * @param idleTimeoutInSec seconds a connection may be unused before it is closed
+     */
+    public SshConnectionPool(final String name, final String user, final File pemKeyFile, final int idleTimeoutInSec) {
+        _user = user;
+        _pemKeyFile = pemKeyFile;
+        _idleTimeoutInMs = TimeUnit.SECONDS.toMillis(idleTimeoutInSec);
+
+        final long interval = Math.max(1, idleTimeoutInSec / 2);
+        _evictor = Executors.newSingleThreadScheduledExecutor(new NamedThreadFactory(name + "-Evictor"));
+        _evictor.scheduleWithFixedDelay(this::evictIdleConnections, interval, interval, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Executes a command on the host, the same way {@link SshHelper#sshExecute} does but over the pooled connection.
+     */
+    public Pair<Boolean, String> sshExecute(final String host, final int port, final String command, final int waitResultTimeoutInMs) throws Exception {
+        final long startTimestamp = System.currentTimeMillis();
+        final PooledConnection pooled = acquire(host, port);
+        try {
+            final Session sess = openSession(pooled);
+            try {
+                return SshHelper.executeInSession(sess, command, waitResultTimeoutInMs);
+            } finally {
+                sess.close();
+            }
+        } finally {
+            release(pooled, startTimestamp);
+        }
+    }
+
+    /**
+     * Copies data to a file on the host, the same way {@link SshHelper#scpTo} does but over the pooled connection.
+     */
+    public void scpTo(final String host, final int port, final String remoteTargetDirectory, final byte[] data, final String remoteFileName, final String fileMode)
+            throws Exception {
+        final long startTimestamp = System.currentTimeMillis();
+        final PooledConnection pooled = acquire(host, port);
+        try {
+            try {
+                put(pooled.getConnection(), remoteTargetDirectory, data, remoteFileName, fileMode);
+            } catch (final IOException e) {
+                if (pooled.isConnected()) {
+                    throw e;
+                }
+                // Writing the file again is harmless, so retry on a new connection when the old one was lost
+                s_logger.debug("Pooled SSH connection to " + pooled + " was lost, reconnecting: " + e.getMessage());
+                put(pooled.getConnection(), remoteTargetDirectory, data, remoteFileName, fileMode);
+            }
+        } finally {
+            release(pooled, startTimestamp);
+        }
+    }
+
+    private static Session openSession(final PooledConnection pooled) throws Exception {
+        final Connection conn = pooled.getConnection();
+        try {
+            return conn.openSession();
+        } catch (final IOException e) {
+            if (pooled.isConnected(conn)) {
+                // The server refused another channel, for example because sshd's MaxSessions was hit, the other sessions
+                // on the connection are fine so only this one fails
+                throw e;
+            }
+            // The connection died while it was idle, nothing was executed yet so it is safe to try once more
+            s_logger.debug("Pooled SSH connection to " + pooled + " is no longer usable, reconnecting: " + e.getMessage());
+            return pooled.getConnection().openSession();
+        }
+    }
+
+    private static void put(final Connection conn, final String remoteTargetDirectory, final byte[] data, final String remoteFileName, final String fileMode)
+            throws IOException {
+        if (fileMode != null) {
+            conn.createSCPClient().put(data, remoteFileName, remoteTargetDirectory, fileMode);
+        } else {
+            conn.createSCPClient().put(data, remoteFileName, remoteTargetDirectory);
+        }
+    }
+
+    private PooledConnection acquire(final String host, final int port) {
+        final String key = host + ":" + port;
+        while (true) {
+            final PooledConnection pooled = _connections.computeIfAbsent(key, k -> new PooledConnection(host, port));
+            if (pooled.acquire()) {
+                return pooled;
+            }
+            // Evicted right after the lookup, it is removed from the map already
+        }
+    }
+
+    private void release(final PooledConnection pooled, final long startTimestamp) {
+        pooled.release();
+        _executions.incrementAndGet();
+        _executionTimeInMs.addAndGet(System.currentTimeMillis() - startTimestamp);
+    }
+
+    /**
+     * Closes all connections and stops the eviction of idle connections.
+     */
+    public void shutdown() {
+        _evictor.shutdownNow();
+        for (final PooledConnection pooled : _connections.values()) {
+            pooled.evict(true);
+        }
+        _connections.clear();
+        s_logger.info(getStatistics());
+    }
+
+    protected void evictIdleConnections() {
+        try {
+            final long idleSince = System.currentTimeMillis() - _idleTimeoutInMs;
+            final Iterator<PooledConnection> it = _connections.values().iterator();
+            while (it.hasNext()) {
+                final PooledConnection pooled = it.next();
+                if (pooled.getLastUsed() <= idleSince && pooled.evict(false)) {
+                    it.remove();
+                    s_logger.debug("Closed idle SSH connection to " + pooled);
+                }
+            }
+            if (s_logger.isDebugEnabled()) {
+                s_logger.debug(getStatistics());
+            }
+        } catch (final Throwable t) {
+            s_logger.warn("Unable to evict idle SSH connections", t);
+        }
+    }
+
+    public String getStatistics() {
+        final long executions = getExecutions();
+        return "SSH connection pool: " + getConnectionCount() + " connections, " + getHandshakes() + " handshakes, " + getReuses() + " handshakes saved, " + executions +
+                " executions taking " + (executions == 0 ? 0 : getExecutionTimeInMs() / executions) + "ms on average";
+    }
+
+    public int getConnectionCount() {
+        return _connections.size();
+    }
+
+    public long getHandshakes() {
+        return _handshakes.get();
+    }
+
+    /**
+     * @return number of times an open connection was used instead of setting up a new one
+     */
+    public long getReuses() {
+        return _reuses.get();
+    }
+
+    public long getExecutions() {
+        return _executions.get();
+    }
+
+    public long getExecutionTimeInMs() {
+        return _executionTimeInMs.get();
+    }
+
+    protected Connection connect(final String host, final int port) throws Exception {
+        Exception lastException = null;
+        for (int i = 0; i < CONNECT_RETRIES; i++) {
+            final Connection conn = new Connection(host, port);
+            try {
+                conn.connect(null, DEFAULT_CONNECT_TIMEOUT, DEFAULT_KEX_TIMEOUT);
+                SshHelper.authenticate(conn, host, _user, _pemKeyFile, null);
+                return conn;
+            } catch (final IOException e) {
+                // The host may not be up yet, give it a few tries like router_proxy.sh does
+                conn.close();
+                lastException = e;
+                s_logger.debug("Unable to connect to " + host + ":" + port + ", attempt " + (i + 1) + " of " + CONNECT_RETRIES + ": " + e.getMessage());
+                if (i + 1 < CONNECT_RETRIES) {
+                    Thread.sleep(CONNECT_RETRY_INTERVAL);
+                }
+            } catch (final Exception e) {
+                conn.close();
+                throw e;
+            }
+        }
+        throw lastException;
+    }
+
+    private class PooledConnection {
+        private final String _host;
+        private final int _port;
+        private Connection _connection;
+        // Set while a thread connects, without holding the monitor, the other threads wait for it
+        private CompletableFuture<Connection> _connecting;
+        private int _active;
+        private boolean _evicted;
+        private volatile Connection _lostConnection;
+        private volatile long _lastUsed = System.currentTimeMillis();
+
+        PooledConnection(final String host, final int port) {
+            _host = host;
+            _port = port;
+        }
+
+        synchronized boolean acquire() {
+            if (_evicted) {
+                return false;
+            }
+            _active++;
+            _lastUsed = System.currentTimeMillis();
+            return true;
+        }
+
+        synchronized void release() {
+            _active--;
+            _lastUsed = System.currentTimeMillis();
+        }
+
+        /**
+         * @param force close the connection even when it is in use
+         * @return whether the connection was evicted
+         */
+        synchronized boolean evict(final boolean force) {
+            if (!force && _active > 0) {
+                return false;
+            }
+            _evicted = true;
+            disconnect();
+            return true;
+        }
+
+        Connection getConnection() throws Exception {
+            final CompletableFuture<Connection> connecting;
+            final boolean connect;
+            synchronized (this) {
+                if (_connection != null && _connection == _lostConnection) {
+                    disconnect();
+                }
+                if (_connection != null) {
+                    _reuses.incrementAndGet();
+                    return _connection;
+                }
+                if (_evicted) {
+                    throw new IOException("SSH connection to " + this + " was closed");
+                }
+                connect = _connecting == null;
+                if (connect) {
+                    _connecting = new CompletableFuture<>();
+                } else {
+                    _reuses.incrementAndGet();
+                }
+                connecting = _connecting;
+            }
+
+            if (connect) {
+                // Connecting can take several retries, the monitor is not held so releases and evictions don't wait for it
+                try {
+                    final Connection conn = connect(_host, _port);
+                    conn.addConnectionMonitor(reason -> _lostConnection = conn);
+                    synchronized (this) {
+                        _connecting = null;
+                        if (_evicted) {
+                            conn.close();
+                            throw new IOException("SSH connection to " + this + " was closed while connecting");
+                        }
+                        _connection = conn;
+                        _handshakes.incrementAndGet();
+                    }
+                    connecting.complete(conn);
+                } catch (final Exception e) {
+                    synchronized (this) {
+                        if (_connecting == connecting) {
+                            _connecting = null;
+                        }
+                    }
+                    connecting.completeExceptionally(e);
+                    throw e;
+                }
+            }
+
+            try {
+                return connecting.get();
+            } catch (final ExecutionException e) {
+                if (e.getCause() instanceof Exception) {
+                    throw (Exception) e.getCause();
+                }
+                throw e;
+            }
+        }
+
+        synchronized boolean isConnected() {
+            return _connection != null && _connection != _lostConnection;
+        }
+
+        /**
+         * @return whether the connection is still the one of this host and was not lost
+         */
+        synchronized boolean isConnected(final Connection conn) {
+            return _connection == conn && conn != _lostConnection;
+        }
+
+        synchronized void disconnect() {
+            if (_connection != null) {
+                _connection.close();
+                _connection = null;
+            }
+        }
+
+        long getLastUsed() {
+            return _lastUsed;
+        }
+
+        @Override
+        public String toString() {
+            return _host + ":" + _port;
+        }
+    }
+}
@@ -35,82 +35,94 @@ public class SshHelper {
             conn = new com.trilead.ssh2.Connection(host, port);
             conn.connect(null, connectTimeoutInMs, kexTimeoutInMs);
 
-            if (pemKeyFile == null) {
-                if (!conn.authenticateWithPassword(user, password)) {
-                    final String msg = "Failed to authentication SSH user " + user + " on host " + host;
-                    s_logger.error(msg);
-                    throw new Exception(msg);
-                }
-            } else {
-                if (!conn.authenticateWithPublicKey(user, pemKeyFile, password)) {
-                    final String msg = "Failed to authentication SSH user " + user + " on host " + host;
-                    s_logger.error(msg);
-                    throw new Exception(msg);
-                }
-            }
+            authenticate(conn, host, user, pemKeyFile, password);
             sess = openConnectionSession(conn);
 
-            sess.execCommand(command);
+            return executeInSession(sess, command, waitResultTimeoutInMs);
+        } finally {
+            if (sess != null) {
+                sess.close();
+            }
 
-            final InputStream stdout = sess.getStdout();
-            final InputStream stderr = sess.getStderr();
+            if (conn != null) {
+                conn.close();
+            }
+        }
+    }
 
-            final byte[] buffer = new byte[8192];
-            final StringBuffer sbResult = new StringBuffer();
+    /**
+     * Authenticates the connection with the key file, or with the password if there is no key file.
+     */
+    static void authenticate(final Connection conn, final String host, final String user, final File pemKeyFile, final String password) throws Exception {
+        final boolean authenticated;
+        if (pemKeyFile == null) {
+            authenticated = conn.authenticateWithPassword(user, password);
+        } else {
+            authenticated = conn.authenticateWithPublicKey(user, pemKeyFile, password);
+        }
+        if (!authenticated) {
+            final String msg = "Failed to authentication SSH user " + user + " on host " + host;
+            s_logger.error(msg);
+            throw new Exception(msg);
+        }
+    }
 
-            int currentReadBytes = 0;
-            while (true) {
-                throwSshExceptionIfStdoutOrStdeerIsNull(stdout, stderr);
+    /**
+     * Executes the command in the session and collects its output, the session is left open.
+     */
+    static Pair<Boolean, String> executeInSession(final Session sess, final String command, final int waitResultTimeoutInMs) throws Exception {
+        sess.execCommand(command);
 
-                if ((stdout.available() == 0) && (stderr.available() == 0)) {
-                    final int conditions = sess.waitForCondition(ChannelCondition.STDOUT_DATA | ChannelCondition.STDERR_DATA | ChannelCondition.EOF | ChannelCondition.EXIT_STATUS,
-                            waitResultTimeoutInMs);
+        final InputStream stdout = sess.getStdout();
+        final InputStream stderr = sess.getStderr();
 
-                    throwSshExceptionIfConditionsTimeout(conditions);
+        final byte[] buffer = new byte[8192];
+        final StringBuffer sbResult = new StringBuffer();
 
-                    if ((conditions & ChannelCondition.EXIT_STATUS) != 0) {
-                        break;
-                    }
+        int currentReadBytes = 0;
+        while (true) {
+            throwSshExceptionIfStdoutOrStdeerIsNull(stdout, stderr);
 
-                    if (canEndTheSshConnection(waitResultTimeoutInMs, sess, conditions)) {
-                        break;
-                    }
-                }
+            if ((stdout.available() == 0) && (stderr.available() == 0)) {
+                final int conditions = sess.waitForCondition(ChannelCondition.STDOUT_DATA | ChannelCondition.STDERR_DATA | ChannelCondition.EOF | ChannelCondition.EXIT_STATUS,
+                        waitResultTimeoutInMs);
 
-                while (stdout.available() > 0) {
-                    currentReadBytes = stdout.read(buffer);
-                    sbResult.append(new String(buffer, 0, currentReadBytes));
+                throwSshExceptionIfConditionsTimeout(conditions);
+
+                if ((conditions & ChannelCondition.EXIT_STATUS) != 0) {
+                    break;
                 }
 
-                while (stderr.available() > 0) {
-                    currentReadBytes = stderr.read(buffer);
-                    sbResult.append(new String(buffer, 0, currentReadBytes));
+                if (canEndTheSshConnection(waitResultTimeoutInMs, sess, conditions)) {
+                    break;
                 }
             }
 
-            final String result = sbResult.toString();
-
-            if (sess.getExitStatus() == null) {
-                //Exit status is NOT available. Returning failure result.
-                s_logger.error(String.format("SSH execution of command %s has no exit status set. Result output: %s", command, result));
-                return new Pair<>(false, result);
+            while (stdout.available() > 0) {
+                currentReadBytes = stdout.read(buffer);
+                sbResult.append(new String(buffer, 0, currentReadBytes));
             }
 
-            if (sess.getExitStatus() != null && sess.getExitStatus().intValue() != 0) {
-                s_logger.error(String.format("SSH execution of command %s has an error status code in return. Result output: %s", command, result));
-                return new Pair<>(false, result);
+            while (stderr.available() > 0) {
+                currentReadBytes = stderr.read(buffer);
+                sbResult.append(new String(buffer, 0, currentReadBytes));
             }
+        }
 
-            return new Pair<>(true, result);
-        } finally {
-            if (sess != null) {
-                sess.close();
-            }
+        final String result = sbResult.toString();
 
-            if (conn != null) {
-                conn.close();
-            }
+        if (sess.getExitStatus() == null) {
+            //Exit status is NOT available. Returning failure result.
+            s_logger.error(String.format("SSH execution of command %s has no exit status set. Result output: %s", command, result));
+            return new Pair<>(false, result);
         }
+
+        if (sess.getExitStatus() != null && sess.getExitStatus().intValue() != 0) {
+            s_logger.error(String.format("SSH execution of command %s has an error status code in return. Result output: %s", command, result));
+            return new Pair<>(false, result);
+        }
+
+        return new Pair<>(true, result);
     }
 
     protected static Session openConnectionSession(final Connection conn) throws IOException {
@@ -186,19 +198,7 @@ public class SshHelper {
             conn = new com.trilead.ssh2.Connection(host, port);
             conn.connect(null, connectTimeoutInMs, kexTimeoutInMs);
 
-            if (pemKeyFile == null) {
-                if (!conn.authenticateWithPassword(user, password)) {
-                    final String msg = "Failed to authentication SSH user " + user + " on host " + host;
-                    s_logger.error(msg);
-                    throw new Exception(msg);
-                }
-            } else {
-                if (!conn.authenticateWithPublicKey(user, pemKeyFile, password)) {
-                    final String msg = "Failed to authentication SSH user " + user + " on host " + host;
-                    s_logger.error(msg);
-                    throw new Exception(msg);
-                }
-            }
+            authenticate(conn, host, user, pemKeyFile, password);
 
             scpClient = conn.createSCPClient();
 
@@ -232,19 +232,7 @@ public class SshHelper {
             conn = new com.trilead.ssh2.Connection(host, port);
             conn.connect(null, connectTimeoutInMs, kexTimeoutInMs);
 
-            if (pemKeyFile == null) {
-                if (!conn.authenticateWithPassword(user, password)) {
-                    final String msg = "Failed to authentication SSH user " + user + " on host " + host;
-                    s_logger.error(msg);
-                    throw new Exception(msg);
-                }
-            } else {
-                if (!conn.authenticateWithPublicKey(user, pemKeyFile, password)) {
-                    final String msg = "Failed to authentication SSH user " + user + " on host " + host;
-                    s_logger.error(msg);
-                    throw new Exception(msg);
-                }
-            }
+            authenticate(conn, host, user, pemKeyFile, password);
 
             scpClient = conn.createSCPClient();
             if (fileMode != null) {
@@ -0,0 +1,86 @@
+package com.cloud.common.request;
+
+import static org.junit.Assert.assertEquals;
+
+import com.cloud.legacymodel.communication.command.Command;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class CommandDispatchIndexTest {
+
+    private final CommandDispatchIndex<String> index = new CommandDispatchIndex<>();
+
+    @Before
+    public void setUp() {
+        final Map<Class<? extends Command>, String> baseWrappers = new HashMap<>();
+        baseWrappers.put(BaseCommand.class, "base");
+        baseWrappers.put(OverriddenCommand.class, "base-overridden");
+        index.register(BaseResource.class, baseWrappers);
+
+        final Map<Class<? extends Command>, String> specificWrappers = new HashMap<>();
+        specificWrappers.put(OverriddenCommand.class, "specific-overridden");
+        index.register(SpecificResource.class, specificWrappers);
+    }
+
+    @Test
+    public void testWrapperOfResource() {
+        assertEquals("base", index.getWrapper(BaseResource.class, BaseCommand.class));
+        assertEquals("specific-overridden", index.getWrapper(SpecificResource.class, OverriddenCommand.class));
+    }
+
+    @Test
+    public void testWrapperOfSuperclasses() {
+        assertEquals("base", index.getWrapper(SpecificResource.class, BaseCommand.class));
+        assertEquals("base", index.getWrapper(SubclassedResource.class, DerivedCommand.class));
+        assertEquals("specific-overridden", index.getWrapper(SubclassedResource.class, OverriddenCommand.class));
+        // Looked up again from the cache
+        assertEquals("specific-overridden", index.getWrapper(SubclassedResource.class, OverriddenCommand.class));
+    }
+
+    @Test(expected = NullPointerException.class)
+    public void testUnknownCommand() {
+        index.getWrapper(SpecificResource.class, UnknownCommand.class);
+    }
+
+    @Test(expected = NullPointerException.class)
+    public void testUnknownResource() {
+        index.getWrapper(Object.class, BaseCommand.class);
+    }
+
+    private static class BaseResource {
+    }
+
+    private static class SpecificResource extends BaseResource {
+    }
+
+    private static class SubclassedResource extends SpecificResource {
+    }
+
+    private static class BaseCommand extends Command {
+        @Override
+        public boolean executeInSequence() {
+            return false;
+        }
+    }
+
+    private static class DerivedCommand extends BaseCommand {
+    }
+
+    private static class OverriddenCommand extends Command {
+        @Override
+        public boolean executeInSequence() {
+            return false;
+        }
+    }
+
+    private static class UnknownCommand extends Command {
+        @Override
+        public boolean executeInSequence() {
+            return false;
+        }
+    }
+}
@@ -13,6 +13,7 @@ import com.cloud.legacymodel.to.NfsTO;
 import com.cloud.model.enumeration.DataStoreRole;
 
 import java.nio.ByteBuffer;
+import java.util.Arrays;
 
 import org.junit.Assert;
 import org.junit.Ignore;
@@ -149,6 +150,58 @@ public class RequestTest {
         assertEquals("nfs://192.168.56.10/opt/storage/secondary", ((NfsTO) ((ListTemplateCommand) creq.getCommand()).getDataStore()).getUrl());
     }
 
+    @Test
+    public void testSerDeserResponse() throws Exception {
+        final GetHostStatsCommand cmd = new GetHostStatsCommand("hostguid", "hostname", 101);
+        final Request creq = Request.parse(new Request(2, 3, cmd, true).getBytes());
+        final Response sresp = new Response(creq, new Answer(creq.getCommand(), true, "Host stats \u00e9\u00fc collected"));
+
+        final Response cresp = Response.parse(sresp.getBytes());
+
+        assertEquals(creq.getSequence(), cresp.getSequence());
+        assertEquals(1, cresp.getAnswers().length);
+        assertEquals("Host stats \u00e9\u00fc collected", cresp.getAnswer().getDetails());
+    }
+
+    @Test
+    public void testForwardParsedRequest() throws Exception {
+        final GetHostStatsCommand cmd = new GetHostStatsCommand("hostguid", "hostname", 101);
+        final Request sreq = new Request(2, 3, cmd, true);
+        sreq.setSequence(892403720);
+        final byte[] bytes = sreq.getBytes();
+
+        final Request creq = Request.parse(bytes);
+        Assert.assertArrayEquals(bytes, creq.getBytes());
+
+        creq.getCommands();
+        Assert.assertArrayEquals(bytes, creq.getBytes());
+    }
+
+    @Test
+    public void testForwardCompressedRequestUncompressed() throws Exception {
+        final char[] hostname = new char[10000];
+        Arrays.fill(hostname, 'h');
+        final Request sreq = new Request(2, 3, new GetHostStatsCommand("hostguid", new String(hostname), 101), true);
+        final byte[] bytes = sreq.getBytes();
+        assertEquals(CompressionCodec.GZIP.getId(), bytes[1] & 0x0F);
+
+        final Request creq = Request.parse(bytes);
+        final CompressionCodec preferredCodec = Request.getPreferredCodec();
+        final int threshold = Request.getCompressionThreshold();
+        try {
+            // The forwarding node doesn't compress requests of this size
+            Request.configureCompression(preferredCodec, Integer.MAX_VALUE);
+            final byte[] forwarded = creq.getBytes();
+
+            assertEquals(0, forwarded[1] & 0x0F);
+            assertEquals(0, creq.getFlags() & Request.FLAG_COMPRESSED);
+            final Request freq = Request.parse(forwarded);
+            assertEquals(new String(hostname), ((GetHostStatsCommand) freq.getCommand()).getHostName());
+        } finally {
+            Request.configureCompression(preferredCodec, threshold);
+        }
+    }
+
     @Test
     public void testCompress() {
         s_logger.info("testCompress");
@@ -170,6 +223,54 @@ public class RequestTest {
         }
     }
 
+    @Test
+    public void testCompressDeflate() {
+        final int len = 800000;
+        final ByteBuffer inputBuffer = ByteBuffer.allocate(len);
+        for (int i = 0; i < len; i++) {
+            inputBuffer.array()[i] = (byte) (i % 7);
+        }
+        final ByteBuffer compressedBuffer = CompressionCodec.DEFLATE.compress(inputBuffer, len);
+        Assert.assertTrue(compressedBuffer.remaining() < len);
+
+        final ByteBuffer decompressedBuffer = CompressionCodec.DEFLATE.decompress(compressedBuffer, len);
+        assertEquals(len, decompressedBuffer.remaining());
+        Assert.assertArrayEquals(inputBuffer.array(), Arrays.copyOf(decompressedBuffer.array(), decompressedBuffer.remaining()));
+    }
+
+    @Test
+    public void testSerDeserWithNegotiatedCodec() throws Exception {
+        final char[] hostname = new char[10000];
+        Arrays.fill(hostname, 'h');
+        final GetHostStatsCommand cmd = new GetHostStatsCommand("hostguid", new String(hostname), 101);
+        final Request sreq = new Request(2, 3, cmd, true);
+        sreq.setSequence(892403719);
+        sreq.setCompressionCodec(CompressionCodec.negotiate(CompressionCodec.DEFLATE, CompressionCodec.SUPPORTED_CODECS));
+
+        final byte[] bytes = sreq.getBytes();
+        assertEquals(CompressionCodec.DEFLATE.getId(), bytes[1] & 0x0F);
+
+        final Request creq = Request.parse(bytes);
+        compareRequest(creq, sreq);
+        assertEquals(new String(hostname), ((GetHostStatsCommand) creq.getCommand()).getHostName());
+        assertEquals(CompressionCodec.SUPPORTED_CODECS, creq.getAcceptedCodecs());
+    }
+
+    @Test
+    public void testNegotiateWithLegacyPeer() throws Exception {
+        final char[] hostname = new char[10000];
+        Arrays.fill(hostname, 'h');
+        final Request sreq = new Request(2, 3, new GetHostStatsCommand("hostguid", new String(hostname), 101), true);
+        final byte[] bytes = sreq.getBytes();
+        // A peer that does not know about codecs leaves the second header byte empty
+        bytes[1] = 0;
+
+        final Request creq = Request.parse(bytes);
+        assertEquals(CompressionCodec.GZIP.mask(), creq.getAcceptedCodecs());
+        assertEquals(CompressionCodec.GZIP, CompressionCodec.negotiate(CompressionCodec.DEFLATE, creq.getAcceptedCodecs()));
+        assertEquals(new String(hostname), ((GetHostStatsCommand) creq.getCommand()).getHostName());
+    }
+
     @Test
     @Ignore
     public void testLogging() {
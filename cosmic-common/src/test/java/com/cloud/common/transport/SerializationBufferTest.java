@@ -0,0 +1,39 @@
+package com.cloud.common.transport;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.nio.ByteBuffer;
+
+import org.junit.Test;
+
+public class SerializationBufferTest {
+
+    @Test
+    public void testWriteGrowsBuffer() {
+        final SerializationBuffer buffer = new SerializationBuffer(4, 1024);
+        final byte[] data = new byte[]{1, 2, 3, 4, 5, 6, 7};
+
+        buffer.write(data, 0, data.length);
+        buffer.write(8);
+
+        assertEquals(8, buffer.size());
+        final ByteBuffer contents = buffer.toByteBuffer();
+        assertEquals(8, contents.remaining());
+        assertArrayEquals(new byte[]{1, 2, 3, 4, 5, 6, 7, 8}, buffer.toByteArray());
+    }
+
+    @Test
+    public void testResetKeepsBufferUpToRetainedSize() {
+        final SerializationBuffer buffer = new SerializationBuffer(4, 16);
+
+        buffer.write(new byte[16], 0, 16);
+        buffer.reset();
+        assertEquals(0, buffer.size());
+        assertEquals(16, buffer.capacity());
+
+        buffer.write(new byte[64], 0, 64);
+        buffer.reset();
+        assertEquals(4, buffer.capacity());
+    }
+}
@@ -0,0 +1,147 @@
+package com.cloud.common.virtualnetwork;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import com.cloud.legacymodel.ExecutionResult;
+import com.cloud.legacymodel.communication.answer.Answer;
+import com.cloud.legacymodel.communication.answer.GroupAnswer;
+import com.cloud.legacymodel.communication.command.AggregationControlCommand;
+import com.cloud.legacymodel.communication.command.AggregationControlCommand.Action;
+import com.cloud.legacymodel.communication.command.NetworkElementCommand;
+import com.cloud.legacymodel.communication.command.SavePasswordCommand;
+import com.cloud.legacymodel.network.VRScripts;
+import com.cloud.legacymodel.network.VirtualRouterDeployer;
+
+import java.util.HashMap;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Matchers;
+import org.mockito.Mockito;
+
+public class VirtualRoutingResourceTest {
+
+    private static final String ROUTER_NAME = "r-1-VM";
+    private static final String ROUTER_IP = "169.254.0.10";
+
+    private VirtualRouterDeployer deployer;
+    private VirtualRoutingResource resource;
+
+    @Before
+    public void setUp() throws Exception {
+        deployer = Mockito.mock(VirtualRouterDeployer.class);
+        Mockito.when(deployer.prepareCommand(Matchers.any(NetworkElementCommand.class))).thenAnswer(invocation -> {
+            final NetworkElementCommand cmd = (NetworkElementCommand) invocation.getArguments()[0];
+            cmd.setRouterAccessIp(cmd.getAccessDetail(NetworkElementCommand.ROUTER_IP));
+            return new ExecutionResult(true, null);
+        });
+        Mockito.when(deployer.cleanupCommand(Matchers.any(NetworkElementCommand.class))).thenReturn(new ExecutionResult(true, null));
+        Mockito.when(deployer.createFileInVR(Matchers.anyString(), Matchers.anyString(), Matchers.anyString(), Matchers.anyString())).thenReturn(new ExecutionResult(true, null));
+        bundleCheckResult(true, "ok");
+        Mockito.when(deployer.executeInVR(Matchers.eq(ROUTER_IP), Matchers.eq(VRScripts.APPLY_CONFIG_BUNDLE), Matchers.startsWith("--remove"), Matchers.anyInt()))
+               .thenReturn(new ExecutionResult(true, null));
+
+        resource = new VirtualRoutingResource(deployer);
+        resource.configure(new HashMap<>());
+    }
+
+    private Answer aggregate(final NetworkElementCommand... cmds) {
+        resource.executeRequest(new AggregationControlCommand(Action.Start, ROUTER_NAME, ROUTER_IP, null));
+        for (final NetworkElementCommand cmd : cmds) {
+            cmd.setAccessDetail(NetworkElementCommand.ROUTER_NAME, ROUTER_NAME);
+            cmd.setAccessDetail(NetworkElementCommand.ROUTER_IP, ROUTER_IP);
+            resource.executeRequest(cmd);
+        }
+        return resource.executeRequest(new AggregationControlCommand(Action.Finish, ROUTER_NAME, ROUTER_IP, null));
+    }
+
+    private void bundleCheckResult(final boolean success, final String output) {
+        Mockito.when(deployer.executeInVR(Matchers.eq(ROUTER_IP), Matchers.eq(VRScripts.APPLY_CONFIG_BUNDLE), Matchers.eq("--check"), Matchers.anyInt()))
+               .thenReturn(new ExecutionResult(success, output));
+    }
+
+    private void bundleResult(final boolean success, final String output) {
+        Mockito.when(deployer.executeInVR(Matchers.eq(ROUTER_IP), Matchers.eq(VRScripts.APPLY_CONFIG_BUNDLE), Matchers.startsWith(VRScripts.CONFIG_PERSIST_LOCATION), Matchers.anyInt()))
+               .thenReturn(new ExecutionResult(success, output));
+    }
+
+    private void verifyBundleRemoved(final int times) {
+        Mockito.verify(deployer, Mockito.times(times)).executeInVR(Matchers.eq(ROUTER_IP), Matchers.eq(VRScripts.APPLY_CONFIG_BUNDLE), Matchers.startsWith("--remove"), Matchers.anyInt());
+    }
+
+    @Test
+    public void testAggregatedCommandsAreAppliedAsOneBundle() {
+        bundleResult(true, "[{\"success\": true, \"details\": \"\"}, {\"success\": true, \"details\": \"done\"}, "
+                + "{\"success\": true, \"details\": \"\"}, {\"success\": true, \"details\": \"done\"}]");
+
+        final Answer answer = aggregate(new SavePasswordCommand("secret", "10.1.1.2", "vm1", true), new SavePasswordCommand("secret", "10.1.1.3", "vm2", true));
+
+        assertTrue(answer.getResult());
+        assertTrue(answer instanceof GroupAnswer);
+        assertEquals(4, ((GroupAnswer) answer).getResults().length);
+
+        final ArgumentCaptor<String> fileName = ArgumentCaptor.forClass(String.class);
+        final ArgumentCaptor<String> contents = ArgumentCaptor.forClass(String.class);
+        Mockito.verify(deployer).createFileInVR(Matchers.eq(ROUTER_IP), Matchers.eq(VRScripts.CONFIG_PERSIST_LOCATION), fileName.capture(), contents.capture());
+        assertTrue(fileName.getValue().startsWith(VRScripts.CONFIG_BUNDLE));
+        assertTrue(contents.getValue().contains("<script>\n" + VRScripts.ROUTER_SCRIPTS_LOCATION + VRScripts.UPDATE_CONFIG + " " + VRScripts.VM_PASSWORD_CONFIG));
+        Mockito.verify(deployer, Mockito.never()).executeInVR(Matchers.anyString(), Matchers.eq(VRScripts.UPDATE_CONFIG), Matchers.anyString(), Matchers.anyInt());
+        // The script removed the bundle itself
+        verifyBundleRemoved(0);
+    }
+
+    @Test
+    public void testBundleStopsAtFailedItem() {
+        bundleResult(false, "[{\"success\": true, \"details\": \"\"}, {\"success\": false, \"details\": \"broken\"}]");
+
+        final Answer answer = aggregate(new SavePasswordCommand("secret", "10.1.1.2", "vm1", true), new SavePasswordCommand("secret", "10.1.1.3", "vm2", true));
+
+        assertFalse(answer.getResult());
+        final String[] results = ((GroupAnswer) answer).getResults();
+        assertEquals(4, results.length);
+        assertTrue(results[1].endsWith("failed: broken"));
+        assertTrue(results[3].contains("Not applied"));
+    }
+
+    @Test
+    public void testFallbackWhenRouterHasNoBundleScript() {
+        bundleCheckResult(false, "bash: /opt/cosmic/router/bin/apply_config_bundle.py: No such file or directory");
+        Mockito.when(deployer.executeInVR(Matchers.eq(ROUTER_IP), Matchers.eq(VRScripts.UPDATE_CONFIG), Matchers.anyString(), Matchers.anyInt()))
+               .thenReturn(new ExecutionResult(true, null));
+
+        final Answer answer = aggregate(new SavePasswordCommand("secret", "10.1.1.2", "vm1", true), new SavePasswordCommand("secret", "10.1.1.3", "vm2", true));
+
+        assertTrue(answer.getResult());
+        assertFalse(answer instanceof GroupAnswer);
+        Mockito.verify(deployer, Mockito.times(2)).executeInVR(Matchers.eq(ROUTER_IP), Matchers.eq(VRScripts.UPDATE_CONFIG), Matchers.anyString(), Matchers.anyInt());
+        // No bundle is copied to a router that can't apply it
+        Mockito.verify(deployer, Mockito.never()).createFileInVR(Matchers.anyString(), Matchers.anyString(), Matchers.startsWith(VRScripts.CONFIG_BUNDLE), Matchers.anyString());
+    }
+
+    @Test
+    public void testBundleWithoutResultFailsWithoutFallback() {
+        bundleResult(false, "Traceback (most recent call last):");
+
+        final Answer answer = aggregate(new SavePasswordCommand("secret", "10.1.1.2", "vm1", true), new SavePasswordCommand("secret", "10.1.1.3", "vm2", true));
+
+        assertFalse(answer.getResult());
+        assertEquals(4, ((GroupAnswer) answer).getResults().length);
+        // Some items may have been applied already, they must not be applied a second time
+        Mockito.verify(deployer, Mockito.never()).executeInVR(Matchers.anyString(), Matchers.eq(VRScripts.UPDATE_CONFIG), Matchers.anyString(), Matchers.anyInt());
+        verifyBundleRemoved(1);
+    }
+
+    @Test
+    public void testBundleRemovedWhenCopyFails() {
+        Mockito.when(deployer.createFileInVR(Matchers.anyString(), Matchers.anyString(), Matchers.anyString(), Matchers.anyString())).thenReturn(new ExecutionResult(false, "scp failed"));
+
+        final Answer answer = aggregate(new SavePasswordCommand("secret", "10.1.1.2", "vm1", true), new SavePasswordCommand("secret", "10.1.1.3", "vm2", true));
+
+        assertFalse(answer.getResult());
+        Mockito.verify(deployer, Mockito.never()).executeInVR(Matchers.anyString(), Matchers.eq(VRScripts.UPDATE_CONFIG), Matchers.anyString(), Matchers.anyInt());
+        verifyBundleRemoved(1);
+    }
+}
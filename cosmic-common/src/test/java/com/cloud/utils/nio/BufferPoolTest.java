@@ -0,0 +1,60 @@
+package com.cloud.utils.nio;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.ByteBuffer;
+
+import org.junit.Test;
+
+public class BufferPoolTest {
+
+    @Test
+    public void testAcquireReusesReleasedBuffer() {
+        final BufferPool pool = new BufferPool(2);
+
+        final ByteBuffer buffer = pool.acquire(1024);
+        assertTrue(buffer.isDirect());
+        assertEquals(1024, buffer.capacity());
+        assertEquals(1, pool.getMisses());
+        assertEquals(1024, pool.getBytesInFlight());
+
+        buffer.put((byte) 1);
+        pool.release(buffer);
+        assertEquals(0, pool.getBytesInFlight());
+        assertEquals(1, pool.getPooledCount());
+
+        final ByteBuffer reused = pool.acquire(1024);
+        assertSame(buffer, reused);
+        assertEquals(0, reused.position());
+        assertEquals(1, pool.getHits());
+        assertEquals(0, pool.getPooledCount());
+    }
+
+    @Test
+    public void testBuffersArePooledPerCapacity() {
+        final BufferPool pool = new BufferPool(2);
+
+        pool.release(pool.acquire(1024));
+        final ByteBuffer other = pool.acquire(2048);
+
+        assertEquals(2048, other.capacity());
+        assertEquals(2, pool.getMisses());
+        assertEquals(0, pool.getHits());
+    }
+
+    @Test
+    public void testReleaseDropsBuffersWhenFull() {
+        final BufferPool pool = new BufferPool(1);
+
+        final ByteBuffer first = pool.acquire(512);
+        final ByteBuffer second = pool.acquire(512);
+        pool.release(first);
+        pool.release(second);
+        pool.release(null);
+
+        assertEquals(1, pool.getPooledCount());
+        assertEquals(0, pool.getBytesInFlight());
+    }
+}
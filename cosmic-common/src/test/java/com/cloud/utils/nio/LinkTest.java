@@ -0,0 +1,40 @@
+package com.cloud.utils.nio;
+
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+
+import org.junit.Test;
+
+public class LinkTest {
+
+    @Test
+    public void testWriteAfterTerminatedDoesNotUseReleasedBuffers() throws IOException {
+        final Link link = new Link(new InetSocketAddress("127.0.0.1", 8250), null);
+        link.terminated();
+
+        try {
+            link.send(new ByteBuffer[]{ByteBuffer.wrap(new byte[]{1, 2, 3})});
+            fail("A terminated link can't be scheduled for writing");
+        } catch (final ClosedChannelException e) {
+            // The data is queued before the key is checked, the selector may still try to write it
+        }
+
+        try {
+            link.write(null);
+            fail("A terminated link must not write with its released buffers");
+        } catch (final ClosedChannelException e) {
+            // Expected, the buffers went back to the pool when the link was terminated
+        }
+    }
+
+    @Test
+    public void testTerminatedTwice() {
+        final Link link = new Link(new InetSocketAddress("127.0.0.1", 8250), null);
+        link.terminated();
+        link.terminated();
+    }
+}
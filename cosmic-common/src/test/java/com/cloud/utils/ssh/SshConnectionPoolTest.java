@@ -0,0 +1,181 @@
+package com.cloud.utils.ssh;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import com.cloud.legacymodel.utils.Pair;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import com.trilead.ssh2.ChannelCondition;
+import com.trilead.ssh2.Connection;
+import com.trilead.ssh2.ConnectionMonitor;
+import com.trilead.ssh2.SCPClient;
+import com.trilead.ssh2.Session;
+import org.junit.After;
+import org.junit.Test;
+import org.mockito.Matchers;
+import org.mockito.Mockito;
+
+public class SshConnectionPoolTest {
+
+    private final List<Connection> connections = new ArrayList<>();
+    private SshConnectionPool pool;
+
+    private SshConnectionPool createPool(final int idleTimeoutInSec, final Connection... conns) {
+        for (final Connection conn : conns) {
+            connections.add(conn);
+        }
+        pool = new SshConnectionPool("Test", "root", null, idleTimeoutInSec) {
+            @Override
+            protected Connection connect(final String host, final int port) {
+                return connections.remove(0);
+            }
+        };
+        return pool;
+    }
+
+    @After
+    public void tearDown() {
+        pool.shutdown();
+    }
+
+    private static Connection mockScpConnection(final SCPClient scpClient) throws IOException {
+        final Connection conn = Mockito.mock(Connection.class);
+        Mockito.when(conn.createSCPClient()).thenReturn(scpClient);
+        return conn;
+    }
+
+    @Test
+    public void testConnectionIsReused() throws Exception {
+        final SCPClient scpClient = Mockito.mock(SCPClient.class);
+        createPool(60, mockScpConnection(scpClient));
+
+        pool.scpTo("10.0.0.1", 3922, "/tmp", new byte[]{1}, "file1", null);
+        pool.scpTo("10.0.0.1", 3922, "/tmp", new byte[]{2}, "file2", "0644");
+
+        Mockito.verify(scpClient).put(Matchers.any(byte[].class), Matchers.eq("file1"), Matchers.eq("/tmp"));
+        Mockito.verify(scpClient).put(Matchers.any(byte[].class), Matchers.eq("file2"), Matchers.eq("/tmp"), Matchers.eq("0644"));
+        assertEquals(1, pool.getConnectionCount());
+        assertEquals(1, pool.getHandshakes());
+        assertEquals(1, pool.getReuses());
+        assertEquals(2, pool.getExecutions());
+    }
+
+    @Test
+    public void testIdleConnectionIsEvicted() throws Exception {
+        final Connection first = mockScpConnection(Mockito.mock(SCPClient.class));
+        final Connection second = mockScpConnection(Mockito.mock(SCPClient.class));
+        createPool(0, first, second);
+
+        pool.scpTo("10.0.0.1", 3922, "/tmp", new byte[]{1}, "file", null);
+        pool.evictIdleConnections();
+
+        Mockito.verify(first).close();
+        assertEquals(0, pool.getConnectionCount());
+
+        pool.scpTo("10.0.0.1", 3922, "/tmp", new byte[]{1}, "file", null);
+        Mockito.verify(second).createSCPClient();
+        assertEquals(2, pool.getHandshakes());
+    }
+
+    private static Session mockSession() throws IOException {
+        final Session session = Mockito.mock(Session.class);
+        Mockito.when(session.getStdout()).thenReturn(new ByteArrayInputStream("ok".getBytes()));
+        Mockito.when(session.getStderr()).thenReturn(new ByteArrayInputStream(new byte[0]));
+        Mockito.when(session.waitForCondition(Matchers.anyInt(), Matchers.anyLong())).thenReturn(ChannelCondition.EXIT_STATUS);
+        Mockito.when(session.getExitStatus()).thenReturn(0);
+        return session;
+    }
+
+    @Test
+    public void testExecuteReconnectsWhenConnectionWasLost() throws Exception {
+        final Connection lost = Mockito.mock(Connection.class);
+        final ConnectionMonitor[] monitor = new ConnectionMonitor[1];
+        Mockito.doAnswer(invocation -> {
+            monitor[0] = (ConnectionMonitor) invocation.getArguments()[0];
+            return null;
+        }).when(lost).addConnectionMonitor(Matchers.any(ConnectionMonitor.class));
+        Mockito.when(lost.openSession()).thenAnswer(invocation -> {
+            monitor[0].connectionLost(new IOException("connection lost"));
+            throw new IOException("connection lost");
+        });
+
+        final Session session = mockSession();
+        final Connection reconnected = Mockito.mock(Connection.class);
+        Mockito.when(reconnected.openSession()).thenReturn(session);
+
+        createPool(60, lost, reconnected);
+
+        final Pair<Boolean, String> result = pool.sshExecute("10.0.0.1", 3922, "/opt/cosmic/router/scripts/checkrouter.sh", 1000);
+
+        assertTrue(result.first());
+        assertEquals("ok", result.second());
+        Mockito.verify(lost).close();
+        Mockito.verify(session).execCommand("/opt/cosmic/router/scripts/checkrouter.sh");
+        Mockito.verify(session).close();
+        assertEquals(2, pool.getHandshakes());
+    }
+
+    @Test
+    public void testRefusedSessionKeepsConnection() throws Exception {
+        final Session session = mockSession();
+        final Connection conn = Mockito.mock(Connection.class);
+        Mockito.when(conn.openSession()).thenThrow(new IOException("The server refused to open the channel")).thenReturn(session);
+        createPool(60, conn);
+
+        try {
+            pool.sshExecute("10.0.0.1", 3922, "/opt/cosmic/router/scripts/checkrouter.sh", 1000);
+            fail("The refused session must fail");
+        } catch (final IOException e) {
+            // Only this session fails
+        }
+        Mockito.verify(conn, Mockito.never()).close();
+
+        assertTrue(pool.sshExecute("10.0.0.1", 3922, "/opt/cosmic/router/scripts/checkrouter.sh", 1000).first());
+        assertEquals(1, pool.getHandshakes());
+        assertEquals(1, pool.getConnectionCount());
+    }
+
+    @Test
+    public void testEvictionDoesNotWaitForConnect() throws Exception {
+        final Connection conn = mockScpConnection(Mockito.mock(SCPClient.class));
+        final CountDownLatch connecting = new CountDownLatch(1);
+        final CountDownLatch connected = new CountDownLatch(1);
+        pool = new SshConnectionPool("Test", "root", null, 0) {
+            @Override
+            protected Connection connect(final String host, final int port) throws Exception {
+                connecting.countDown();
+                connected.await();
+                return conn;
+            }
+        };
+
+        final ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            final Future<?> copy = executor.submit(() -> {
+                pool.scpTo("10.0.0.1", 3922, "/tmp", new byte[]{1}, "file", null);
+                return null;
+            });
+            connecting.await();
+
+            // The connection is in use, so it is not evicted, but checking it must not block behind the connect
+            executor.submit(pool::evictIdleConnections).get(5, TimeUnit.SECONDS);
+
+            connected.countDown();
+            copy.get(5, TimeUnit.SECONDS);
+            assertEquals(1, pool.getHandshakes());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
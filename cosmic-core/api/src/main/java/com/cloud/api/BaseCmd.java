@@ -1,6 +1,5 @@
 package com.cloud.api;
 
-import com.cloud.acl.RoleType;
 import com.cloud.affinity.AffinityGroupService;
 import com.cloud.alert.AlertService;
 import com.cloud.configuration.ConfigurationService;
@@ -16,7 +15,6 @@ import com.cloud.legacymodel.exceptions.InvalidParameterValueException;
 import com.cloud.legacymodel.exceptions.NetworkRuleConflictException;
 import com.cloud.legacymodel.exceptions.ResourceAllocationException;
 import com.cloud.legacymodel.exceptions.ResourceUnavailableException;
-import com.cloud.legacymodel.user.Account;
 import com.cloud.network.NetworkModel;
 import com.cloud.network.NetworkService;
 import com.cloud.network.StorageNetworkService;
@@ -44,18 +42,13 @@ import com.cloud.user.AccountService;
 import com.cloud.user.DomainService;
 import com.cloud.user.ResourceLimitService;
 import com.cloud.utils.HttpUtils;
-import com.cloud.utils.ReflectUtil;
 import com.cloud.vm.UserVmService;
 import com.cloud.vm.snapshot.VMSnapshotService;
 
 import javax.inject.Inject;
-import java.lang.reflect.Field;
 import java.text.DateFormat;
 import java.text.SimpleDateFormat;
-import java.util.ArrayList;
 import java.util.Date;
-import java.util.HashMap;
-import java.util.List;
 import java.util.Map;
 import java.util.regex.Pattern;
 
@@ -66,7 +59,6 @@ public abstract class BaseCmd {
     public static final String RESPONSE_TYPE_XML = HttpUtils.RESPONSE_TYPE_XML;
     public static final String RESPONSE_TYPE_JSON = HttpUtils.RESPONSE_TYPE_JSON;
     public static final String USER_ERROR_MESSAGE = "Internal error executing command, please contact your system administrator";
-    protected static final Map<Class<?>, List<Field>> fieldsForCmdClass = new HashMap<>();
     private static final Logger s_logger = LoggerFactory.getLogger(BaseCmd.class.getName());
     private static final DateFormat s_outputFormat = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ssZ");
     public static Pattern newInputDateFormat = Pattern.compile("[\\d]+-[\\d]+-[\\d]+ [\\d]+:[\\d]+:[\\d]+");
@@ -238,67 +230,6 @@ public abstract class BaseCmd {
         _responseObject = responseObject;
     }
 
-    /**
-     * This method doesn't return all the @{link Parameter}, but only the ones exposed
-     * and allowed for current @{link RoleType}. This method will get the fields for a given
-     * Cmd class only once and never again, so in case of a dynamic update the result would
-     * be obsolete (this might be a plugin update. It is agreed upon that we will not do
-     * upgrades dynamically but in case we come back on that decision we need to revisit this)
-     *
-     * @return
-     */
-    public List<Field> getParamFields() {
-        final List<Field> allFields = getAllFieldsForClass(this.getClass());
-        final List<Field> validFields = new ArrayList<>();
-        final Account caller = CallContext.current().getCallingAccount();
-
-        for (final Field field : allFields) {
-            final Parameter parameterAnnotation = field.getAnnotation(Parameter.class);
-
-            //TODO: Annotate @Validate on API Cmd classes, FIXME how to process Validate
-            final RoleType[] allowedRoles = parameterAnnotation.authorized();
-            boolean roleIsAllowed = true;
-            if (allowedRoles.length > 0) {
-                roleIsAllowed = false;
-                for (final RoleType allowedRole : allowedRoles) {
-                    if (allowedRole.getValue() == caller.getType()) {
-                        roleIsAllowed = true;
-                        break;
-                    }
-                }
-            }
-
-            if (roleIsAllowed) {
-                validFields.add(field);
-            } else {
-                s_logger.debug("Ignoring paremeter " + parameterAnnotation.name() + " as the caller is not authorized to pass it in");
-            }
-        }
-
-        return validFields;
-    }
-
-    protected List<Field> getAllFieldsForClass(final Class<?> clazz) {
-        List<Field> filteredFields = fieldsForCmdClass.get(clazz);
-
-        // If list of fields was not cached yet
-        if (filteredFields == null) {
-            final List<Field> allFields = ReflectUtil.getAllFieldsForClass(this.getClass(), BaseCmd.class);
-            filteredFields = new ArrayList<>();
-
-            for (final Field field : allFields) {
-                final Parameter parameterAnnotation = field.getAnnotation(Parameter.class);
-                if ((parameterAnnotation != null) && parameterAnnotation.expose()) {
-                    filteredFields.add(field);
-                }
-            }
-
-            // Cache the prepared list for future use
-            fieldsForCmdClass.put(clazz, filteredFields);
-        }
-        return filteredFields;
-    }
-
     public Map<String, String> getFullUrlParams() {
         return fullUrlParams;
     }
@@ -25,6 +25,10 @@ public class QueryAsyncJobResultCmd extends BaseCmd {
     @Parameter(name = ApiConstants.JOB_ID, type = CommandType.UUID, entityType = AsyncJobResponse.class, required = true, description = "the ID of the asychronous job")
     private Long id;
 
+    @Parameter(name = ApiConstants.TIMEOUT, type = CommandType.INTEGER, description = "if specified, wait up to this number of seconds for the job to complete before " +
+            "returning its status")
+    private Integer timeout;
+
     /////////////////////////////////////////////////////
     /////////////////// Accessors ///////////////////////
     /////////////////////////////////////////////////////
@@ -33,6 +37,10 @@ public class QueryAsyncJobResultCmd extends BaseCmd {
         return id;
     }
 
+    public Integer getTimeout() {
+        return timeout;
+    }
+
     /////////////////////////////////////////////////////
     /////////////// API Implementation///////////////////
     /////////////////////////////////////////////////////
@@ -0,0 +1,10 @@
+-- Add settings of the parallel StatsCollector host collection and the metrics outputs
+INSERT IGNORE INTO `configuration` (`category`, `instance`, `component`, `name`, `value`, `description`, `default_value`, `updated`, `scope`, `is_dynamic`)
+VALUES
+	('Advanced', 'DEFAULT', 'management-server', 'stats.collector.parallelism', '16', 'Maximum number of hosts the StatsCollector collects host and vm statistics from at the same time', '16', NULL, NULL, 0),
+	('Advanced', 'DEFAULT', 'management-server', 'stats.collector.host.timeout', '30000', 'Time (in milliseconds) a host may take to return its statistics before it is skipped for the current collection', '30000', NULL, NULL, 0),
+	('Advanced', 'DEFAULT', 'management-server', 'stats.collector.partial.result.policy', 'keep_previous', 'What to do with the statistics of hosts that did not answer in time in a collection: keep_previous or drop', 'keep_previous', NULL, NULL, 0),
+	('Advanced', 'DEFAULT', 'management-server', 'stats.output.queue.size', '64', 'Number of StatsCollector metric batches queued per output before the oldest are dropped', '64', NULL, NULL, 0);
+
+-- The setting takes a list of outputs now
+UPDATE `configuration` SET `description` = 'Comma separated URIs to additionally send StatsCollector statistics to, like graphite://host:2003/prefix, prometheus://0.0.0.0:9595/ or file:///path' WHERE `name` = 'stats.output.uri';
@@ -6,6 +6,9 @@ import com.cloud.legacymodel.vm.VirtualMachine;
 import com.cloud.storage.VMTemplateVO;
 import com.cloud.storage.datastore.db.StoragePoolVO;
 
+import java.util.List;
+import java.util.Map;
+
 /**
  * Capacity Manager manages the different capacities
  * available within the Cloud Stack.
@@ -39,6 +42,8 @@ public interface CapacityManager {
                     "Percentage (as a value between 0 and 1) of allocated storage utilization above which allocators will disable using the pool for low allocated storage " +
                             "available.",
                     true, ConfigKey.Scope.Zone);
+    static final ConfigKey<Integer> HostCapacitySnapshotTtl = new ConfigKey<>("Advanced", Integer.class, "host.capacity.snapshot.ttl", "30",
+            "Time in seconds the in-memory capacity of a host is used by the allocators before it is reloaded from the database", true);
 
     public boolean releaseVmCapacity(VirtualMachine vm, boolean moveFromReserved, boolean moveToReservered, Long hostId);
 
@@ -55,6 +60,15 @@ public interface CapacityManager {
 
     void updateCapacityForHost(Host host);
 
+    /**
+     * Returns the capacity of the given hosts from memory, loading the hosts that are not known yet or whose
+     * capacity changed since it was loaded in bulk. Hosts without cpu or memory capacity are left out.
+     *
+     * @param hosts the hosts to get the capacity of
+     * @return the capacity snapshots by host id
+     */
+    Map<Long, HostCapacitySnapshot> getHostCapacitySnapshots(List<? extends Host> hosts);
+
     /**
      * @param pool                  storage pool
      * @param templateForVmCreation template that will be used for vm creation
@@ -0,0 +1,101 @@
+package com.cloud.capacity;
+
+/**
+ * A point in time copy of the cpu and memory capacity of a host, together with the number of active vms on it
+ * and the maximum its hypervisor allows. Allocators use it to filter hosts without querying the database per
+ * host; the capacity is still checked against the database when it is reserved.
+ */
+public class HostCapacitySnapshot {
+    private final long _hostId;
+    private final long _usedCpu;
+    private final long _reservedCpu;
+    private final long _totalCpu;
+    private final long _usedMem;
+    private final long _reservedMem;
+    private final long _totalMem;
+    private final long _activeVms;
+    private final long _maxGuests;
+    private final long _created;
+
+    public HostCapacitySnapshot(final long hostId, final long usedCpu, final long reservedCpu, final long totalCpu, final long usedMem, final long reservedMem,
+                                final long totalMem, final long activeVms, final long maxGuests) {
+        _hostId = hostId;
+        _usedCpu = usedCpu;
+        _reservedCpu = reservedCpu;
+        _totalCpu = totalCpu;
+        _usedMem = usedMem;
+        _reservedMem = reservedMem;
+        _totalMem = totalMem;
+        _activeVms = activeVms;
+        _maxGuests = maxGuests;
+        _created = System.currentTimeMillis();
+    }
+
+    /**
+     * Same check as {@link CapacityManager#checkIfHostHasCapacity}, on the values of this snapshot.
+     */
+    public boolean hasCapacity(final int cpu, final long ram, final boolean checkFromReservedCapacity, final float cpuOvercommitRatio, final float memoryOvercommitRatio,
+                               final boolean considerReservedCapacity) {
+        if (checkFromReservedCapacity) {
+            return _reservedCpu >= cpu && _reservedMem >= ram;
+        }
+        final long reservedCpu = considerReservedCapacity ? _reservedCpu : 0;
+        final long reservedMem = considerReservedCapacity ? _reservedMem : 0;
+        final long totalCpu = (long) (_totalCpu * cpuOvercommitRatio);
+        final long totalMem = (long) (_totalMem * memoryOvercommitRatio);
+        return reservedCpu + _usedCpu + cpu <= totalCpu && reservedMem + _usedMem + ram <= totalMem;
+    }
+
+    /**
+     * Same check as {@link CapacityManager#checkIfHostReachMaxGuestLimit}, on the values of this snapshot.
+     */
+    public boolean reachedMaxGuestLimit() {
+        return _activeVms >= _maxGuests;
+    }
+
+    public boolean isOlderThan(final long millis) {
+        return System.currentTimeMillis() - _created > millis;
+    }
+
+    public long getHostId() {
+        return _hostId;
+    }
+
+    public long getUsedCpu() {
+        return _usedCpu;
+    }
+
+    public long getReservedCpu() {
+        return _reservedCpu;
+    }
+
+    public long getTotalCpu() {
+        return _totalCpu;
+    }
+
+    public long getUsedMem() {
+        return _usedMem;
+    }
+
+    public long getReservedMem() {
+        return _reservedMem;
+    }
+
+    public long getTotalMem() {
+        return _totalMem;
+    }
+
+    public long getActiveVms() {
+        return _activeVms;
+    }
+
+    public long getMaxGuests() {
+        return _maxGuests;
+    }
+
+    @Override
+    public String toString() {
+        return "HostCapacitySnapshot[host=" + _hostId + ", cpu=" + _usedCpu + "/" + _reservedCpu + "/" + _totalCpu + ", mem=" + _usedMem + "/" + _reservedMem + "/" +
+                _totalMem + ", vms=" + _activeVms + "/" + _maxGuests + "]";
+    }
+}
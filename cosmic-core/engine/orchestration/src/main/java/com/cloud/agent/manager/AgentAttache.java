@@ -2,6 +2,7 @@ package com.cloud.agent.manager;
 
 import com.cloud.agent.Listener;
 import com.cloud.legacymodel.communication.command.PvlanSetupCommand;
+import com.cloud.common.transport.CompressionCodec;
 import com.cloud.common.transport.Request;
 import com.cloud.common.transport.Response;
 import com.cloud.legacymodel.communication.answer.Answer;
@@ -27,15 +28,13 @@ import com.cloud.utils.concurrency.NamedThreadFactory;
 
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Collections;
-import java.util.Comparator;
 import java.util.Iterator;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Random;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
@@ -51,18 +50,6 @@ public abstract class AgentAttache {
             StopCommand.class.toString(), CheckVirtualMachineCommand.class.toString(), PingTestCommand.class.toString(), CheckHealthCommand.class.toString(),
             ReadyCommand.class.toString(), ShutdownCommand.class.toString(), SetupCommand.class.toString(), CheckNetworkCommand.class.toString(), PvlanSetupCommand.class.toString(),
             CheckOnHostCommand.class.toString()};
-    protected static final Comparator<Request> s_reqComparator = (o1, o2) -> {
-        final long seq1 = o1.getSequence();
-        final long seq2 = o2.getSequence();
-        return Long.compare(seq1, seq2);
-    };
-
-    protected static final Comparator<Object> s_seqComparator = (o1, o2) -> {
-        final long seq1 = ((Request) o1).getSequence();
-        final long seq2 = (Long) o2;
-        return Long.compare(seq1, seq2);
-    };
-
     protected final static String[] s_commandsNotAllowedInConnectingMode = new String[]{StartCommand.class.toString(), CreateCommand.class.toString()};
     private static final Logger s_logger = LoggerFactory.getLogger(AgentAttache.class);
     private static final ScheduledExecutorService s_listenerExecutor = Executors.newScheduledThreadPool(10, new NamedThreadFactory("ListenerTimer"));
@@ -75,13 +62,16 @@ public abstract class AgentAttache {
 
     protected final long _id;
     protected final ConcurrentHashMap<Long, Listener> _waitForList;
-    protected final LinkedList<Request> _requests;
+    /* Requests waiting for the current sequence to finish, ordered and indexed by sequence */
+    protected final ConcurrentSkipListMap<Long, Request> _requests;
     protected String _name = null;
     protected Long _currentSequence;
     protected HostStatus _status = HostStatus.Connecting;
     protected boolean _maintenance;
     protected long _nextSequence;
     protected AgentManagerImpl _agentMgr;
+    /* Codec negotiated with the agent when it connected */
+    protected volatile CompressionCodec _compressionCodec = CompressionCodec.GZIP;
 
     protected AgentAttache(final AgentManagerImpl agentMgr, final long id, final String name, final boolean maintenance) {
         _id = id;
@@ -89,7 +79,7 @@ public abstract class AgentAttache {
         _waitForList = new ConcurrentHashMap<>();
         _currentSequence = null;
         _maintenance = maintenance;
-        _requests = new LinkedList<>();
+        _requests = new ConcurrentSkipListMap<>();
         _agentMgr = agentMgr;
         _nextSequence = new Long(s_rand.nextInt(Short.MAX_VALUE)).longValue() << 48;
     }
@@ -140,10 +130,9 @@ public abstract class AgentAttache {
         }
     }
 
-    protected synchronized void addRequest(final Request req) {
-        final int index = findRequest(req);
-        assert (index < 0) : "How can we get index again? " + index + ":" + req.toString();
-        _requests.add(-index - 1, req);
+    protected void addRequest(final Request req) {
+        final Request previous = _requests.putIfAbsent(req.getSequence(), req);
+        assert (previous == null) : "How can we get the same sequence again? " + req.toString();
     }
 
     protected void cancel(final Request req) {
@@ -151,7 +140,7 @@ public abstract class AgentAttache {
         cancel(seq);
     }
 
-    protected synchronized void cancel(final long seq) {
+    protected void cancel(final long seq) {
         if (s_logger.isDebugEnabled()) {
             s_logger.debug(log(seq, "Cancelling."));
         }
@@ -159,22 +148,15 @@ public abstract class AgentAttache {
         if (listener != null) {
             listener.processDisconnect(_id, HostStatus.Disconnected);
         }
-        final int index = findRequest(seq);
-        if (index >= 0) {
-            _requests.remove(index);
-        }
+        _requests.remove(seq);
     }
 
     protected String log(final long seq, final String msg) {
         return "Seq " + _id + "-" + seq + ": " + msg;
     }
 
-    protected synchronized int findRequest(final long seq) {
-        return Collections.binarySearch(_requests, seq, s_seqComparator);
-    }
-
-    protected synchronized int findRequest(final Request req) {
-        return Collections.binarySearch(_requests, req, s_reqComparator);
+    protected Request findRequest(final long seq) {
+        return _requests.get(seq);
     }
 
     protected void registerListener(final long seq, final Listener listener) {
@@ -195,6 +177,14 @@ public abstract class AgentAttache {
         return _name;
     }
 
+    public CompressionCodec getCompressionCodec() {
+        return _compressionCodec;
+    }
+
+    public void setCompressionCodec(final CompressionCodec compressionCodec) {
+        _compressionCodec = compressionCodec;
+    }
+
     public int getQueueSize() {
         return _requests.size();
     }
@@ -272,14 +262,15 @@ public abstract class AgentAttache {
 
     protected synchronized void sendNext(final long seq) {
         _currentSequence = null;
-        if (_requests.isEmpty()) {
+        final Map.Entry<Long, Request> next = _requests.pollFirstEntry();
+        if (next == null) {
             if (s_logger.isDebugEnabled()) {
                 s_logger.debug(log(seq, "No more commands found"));
             }
             return;
         }
 
-        final Request req = _requests.pop();
+        final Request req = next.getValue();
         if (s_logger.isDebugEnabled()) {
             s_logger.debug(log(req.getSequence(), "Sending now.  is current sequence."));
         }
@@ -6,6 +6,7 @@ import com.cloud.alert.AlertManager;
 import com.cloud.common.agent.StartupCommandProcessor;
 import com.cloud.common.managed.context.ManagedContextRunnable;
 import com.cloud.common.resource.ServerResource;
+import com.cloud.common.transport.CompressionCodec;
 import com.cloud.common.transport.Request;
 import com.cloud.common.transport.Response;
 import com.cloud.dao.EntityManager;
@@ -120,6 +121,10 @@ public class AgentManagerImpl extends ManagerBase implements AgentManager, Handl
             "Default size for DirectAgentPool", false);
     protected final ConfigKey<Float> DirectAgentThreadCap = new ConfigKey<>("Advanced", Float.class, "direct.agent.thread.cap", "1",
             "Percentage (as a value between 0 and 1) of direct.agent.pool.size to be used as upper thread cap for a single direct agent to process requests", false);
+    protected final ConfigKey<String> Compression = new ConfigKey<>("Advanced", String.class, "agent.compression.codec", "gzip",
+            "Codec used to compress large commands sent to agents that support it: gzip, deflate or none", false);
+    protected final ConfigKey<Integer> CompressionThreshold = new ConfigKey<>("Advanced", Integer.class, "agent.compression.threshold", "8192",
+            "Minimum size in bytes of a command before it is compressed", false);
     protected final ConfigKey<Boolean> CheckTxnBeforeSending = new ConfigKey<>(
             "Developer",
             Boolean.class,
@@ -207,9 +212,22 @@ public class AgentManagerImpl extends ManagerBase implements AgentManager, Handl
 
         this._monitorExecutor = new ScheduledThreadPoolExecutor(1, new NamedThreadFactory("AgentMonitor"));
 
+        configureCompression();
+
         return true;
     }
 
+    private void configureCompression() {
+        CompressionCodec codec = CompressionCodec.GZIP;
+        try {
+            codec = CompressionCodec.valueOf(this.Compression.value().toUpperCase());
+        } catch (final IllegalArgumentException e) {
+            s_logger.warn("Unknown compression codec " + this.Compression.value() + ", using " + codec);
+        }
+        Request.configureCompression(codec, this.CompressionThreshold.value());
+        s_logger.info("Compressing commands of " + this.CompressionThreshold.value() + " bytes or more with " + codec);
+    }
+
     @Override
     public boolean start() {
         startDirectlyConnectedHosts();
@@ -735,6 +753,7 @@ public class AgentManagerImpl extends ManagerBase implements AgentManager, Handl
             if (host != null) {
                 ready = new ReadyCommand(host.getDataCenterId(), host.getId());
                 attache = createAttacheForConnect(host, link);
+                attache.setCompressionCodec(CompressionCodec.negotiate(Request.getPreferredCodec(), request.getAcceptedCodecs()));
                 attache = notifyMonitorsOfConnection(attache, startup, false);
             }
         } catch (final Exception e) {
@@ -1224,7 +1243,7 @@ public class AgentManagerImpl extends ManagerBase implements AgentManager, Handl
     @Override
     public ConfigKey<?>[] getConfigKeys() {
         return new ConfigKey<?>[]{this.CheckTxnBeforeSending, this.Workers, this.Port, this.PingInterval, this.PingTimeout, Wait, this.AlertWait, this.DirectAgentLoadSize, this.DirectAgentPoolSize,
-                this.DirectAgentThreadCap};
+                this.DirectAgentThreadCap, this.Compression, this.CompressionThreshold};
     }
 
     protected class DisconnectTask extends ManagedContextRunnable {
@@ -12,8 +12,8 @@ import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.nio.channels.ClosedChannelException;
 import java.nio.channels.SocketChannel;
-import java.util.Collections;
-import java.util.LinkedList;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -21,7 +21,7 @@ import org.slf4j.LoggerFactory;
 public class ClusteredAgentAttache extends ConnectedAgentAttache implements Routable {
     private final static Logger s_logger = LoggerFactory.getLogger(ClusteredAgentAttache.class);
     private static ClusteredAgentManagerImpl s_clusteredAgentMgr;
-    protected final LinkedList<Request> _transferRequests;
+    protected final ConcurrentSkipListMap<Long, Request> _transferRequests;
     protected ByteBuffer _buffer = ByteBuffer.allocate(2048);
     protected boolean _transferMode = false;
     private boolean _forward = false;
@@ -29,13 +29,13 @@ public class ClusteredAgentAttache extends ConnectedAgentAttache implements Rout
     public ClusteredAgentAttache(final AgentManagerImpl agentMgr, final long id, final String name) {
         super(agentMgr, id, name, null, false);
         _forward = true;
-        _transferRequests = new LinkedList<>();
+        _transferRequests = new ConcurrentSkipListMap<>();
     }
 
     public ClusteredAgentAttache(final AgentManagerImpl agentMgr, final long id, final String name, final Link link, final boolean maintenance) {
         super(agentMgr, id, name, link, maintenance);
         _forward = link == null;
-        _transferRequests = new LinkedList<>();
+        _transferRequests = new ConcurrentSkipListMap<>();
     }
 
     static public void initialize(final ClusteredAgentManagerImpl agentMgr) {
@@ -112,11 +112,8 @@ public class ClusteredAgentAttache extends ConnectedAgentAttache implements Rout
     }
 
     public Request getRequestToTransfer() {
-        if (_transferRequests.isEmpty()) {
-            return null;
-        } else {
-            return _transferRequests.pop();
-        }
+        final Map.Entry<Long, Request> next = _transferRequests.pollFirstEntry();
+        return next == null ? null : next.getValue();
     }
 
     @Override
@@ -200,6 +197,7 @@ public class ClusteredAgentAttache extends ConnectedAgentAttache implements Rout
                         final SynchronousListener synchronous = (SynchronousListener) listener;
                         synchronous.setPeer(peerName);
                     }
+                    req.setCompressionCodec(_compressionCodec);
                     Link.write(ch, req.toBytes(), sslEngine);
                     error = false;
                     return;
@@ -221,14 +219,13 @@ public class ClusteredAgentAttache extends ConnectedAgentAttache implements Rout
         throw new AgentUnavailableException("Unable to reach the peer that the agent is connected", _id);
     }
 
-    protected synchronized void addRequestToTransfer(final Request req) {
-        final int index = findTransferRequest(req);
-        assert (index < 0) : "How can we get index again? " + index + ":" + req.toString();
-        _transferRequests.add(-index - 1, req);
+    protected void addRequestToTransfer(final Request req) {
+        final Request previous = _transferRequests.putIfAbsent(req.getSequence(), req);
+        assert (previous == null) : "How can we get the same sequence again? " + req.toString();
     }
 
-    protected synchronized int findTransferRequest(final Request req) {
-        return Collections.binarySearch(_transferRequests, req, s_reqComparator);
+    protected Request findTransferRequest(final long seq) {
+        return _transferRequests.get(seq);
     }
 
     @Override
@@ -26,6 +26,7 @@ public class ConnectedAgentAttache extends AgentAttache {
     @Override
     public synchronized void send(final Request req) throws AgentUnavailableException {
         try {
+            req.setCompressionCodec(_compressionCodec);
             _link.send(req.toBytes());
         } catch (final ClosedChannelException e) {
             throw new AgentUnavailableException("Channel is closed", _id);
@@ -1,12 +1,21 @@
 package com.cloud.agent.manager;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.inOrder;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
 
+import com.cloud.common.transport.Request;
 import com.cloud.utils.nio.Link;
 
+import java.nio.ByteBuffer;
+
 import org.junit.Test;
+import org.mockito.InOrder;
 
 public class ConnectedAgentAttacheTest {
 
@@ -63,4 +72,50 @@ public class ConnectedAgentAttacheTest {
 
         assertFalse(agentAttache1.equals("abc"));
     }
+
+    @Test
+    public void testSendNextSendsQueuedRequestsInSequenceOrder() throws Exception {
+        final Link link = mock(Link.class);
+        final ConnectedAgentAttache agentAttache = new ConnectedAgentAttache(null, 1, null, link, false);
+
+        final Request request3 = mockRequest(3);
+        final Request request1 = mockRequest(1);
+        final Request request2 = mockRequest(2);
+        agentAttache.addRequest(request3);
+        agentAttache.addRequest(request1);
+        agentAttache.addRequest(request2);
+        assertEquals(3, agentAttache.getQueueSize());
+        assertSame(request2, agentAttache.findRequest(2));
+
+        agentAttache.sendNext(0);
+        agentAttache.sendNext(1);
+        agentAttache.sendNext(2);
+
+        final InOrder inOrder = inOrder(link);
+        inOrder.verify(link).send(request1.toBytes());
+        inOrder.verify(link).send(request2.toBytes());
+        inOrder.verify(link).send(request3.toBytes());
+        assertEquals(0, agentAttache.getQueueSize());
+        assertEquals(Long.valueOf(3), agentAttache._currentSequence);
+    }
+
+    @Test
+    public void testCancelRemovesQueuedRequest() throws Exception {
+        final Link link = mock(Link.class);
+        final ConnectedAgentAttache agentAttache = new ConnectedAgentAttache(null, 1, null, link, false);
+
+        agentAttache.addRequest(mockRequest(1));
+        agentAttache.addRequest(mockRequest(2));
+        agentAttache.cancel(1);
+
+        assertNull(agentAttache.findRequest(1));
+        assertEquals(1, agentAttache.getQueueSize());
+    }
+
+    private Request mockRequest(final long sequence) {
+        final Request request = mock(Request.class);
+        when(request.getSequence()).thenReturn(sequence);
+        when(request.toBytes()).thenReturn(new ByteBuffer[]{ByteBuffer.allocate((int) sequence)});
+        return request;
+    }
 }
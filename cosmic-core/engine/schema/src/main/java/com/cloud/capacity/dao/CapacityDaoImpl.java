@@ -168,6 +168,7 @@ public class CapacityDaoImpl extends GenericDaoBase<CapacityVO, Long> implements
             +
             "from op_host_capacity capacity where cluster_id = ? and capacity_type = ?;";
     private final SearchBuilder<CapacityVO> _hostIdTypeSearch;
+    private final SearchBuilder<CapacityVO> _hostIdsTypesSearch;
     private final SearchBuilder<CapacityVO> _hostOrPoolIdSearch;
     private final SearchBuilder<CapacityVO> _allFieldsSearch;
 
@@ -196,6 +197,11 @@ public class CapacityDaoImpl extends GenericDaoBase<CapacityVO, Long> implements
         _hostIdTypeSearch.and("type", _hostIdTypeSearch.entity().getCapacityType(), SearchCriteria.Op.EQ);
         _hostIdTypeSearch.done();
 
+        _hostIdsTypesSearch = createSearchBuilder();
+        _hostIdsTypesSearch.and("hostIds", _hostIdsTypesSearch.entity().getHostOrPoolId(), SearchCriteria.Op.IN);
+        _hostIdsTypesSearch.and("types", _hostIdsTypesSearch.entity().getCapacityType(), SearchCriteria.Op.IN);
+        _hostIdsTypesSearch.done();
+
         _hostOrPoolIdSearch = createSearchBuilder();
         _hostOrPoolIdSearch.and("hostId", _hostOrPoolIdSearch.entity().getHostOrPoolId(), SearchCriteria.Op.EQ);
         _hostOrPoolIdSearch.done();
@@ -260,6 +266,17 @@ public class CapacityDaoImpl extends GenericDaoBase<CapacityVO, Long> implements
         return findOneBy(sc);
     }
 
+    @Override
+    public List<CapacityVO> listByHostIdsAndTypes(final List<Long> hostIds, final Short... capacityTypes) {
+        if (hostIds == null || hostIds.isEmpty()) {
+            return new ArrayList<>();
+        }
+        final SearchCriteria<CapacityVO> sc = _hostIdsTypesSearch.create();
+        sc.setParameters("hostIds", hostIds.toArray());
+        sc.setParameters("types", (Object[]) capacityTypes);
+        return listBy(sc);
+    }
+
     @Override
     public List<Long> listClustersInZoneOrPodByHostCapacities(final long id, final int requiredCpu, final long requiredRam, final short capacityTypeForOrdering, final boolean
             isZone) {
@@ -97,6 +97,11 @@ public interface VMInstanceDao extends GenericDao<VMInstanceVO, Long>, StateDao<
 
     public Long countActiveByHostId(long hostId);
 
+    /**
+     * @return the number of active vms by host id, for the hosts that have any
+     */
+    Map<Long, Long> countActiveByHostIds(List<Long> hostIds);
+
     Pair<List<Long>, Map<Long, Double>> listClusterIdsInZoneByVmCount(long zoneId, long accountId);
 
     Pair<List<Long>, Map<Long, Double>> listClusterIdsInPodByVmCount(long podId, long accountId);
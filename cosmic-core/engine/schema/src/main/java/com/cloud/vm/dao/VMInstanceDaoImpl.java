@@ -62,6 +62,9 @@ public class VMInstanceDaoImpl extends GenericDaoBase<VMInstanceVO, Long> implem
             "SELECT host.id, SUM(IF(vm.state IN ('Starting', 'Running') AND vm.account_id = ?, 1, 0)) FROM `cloud`.`host` host LEFT JOIN `cloud`.`vm_instance` vm ON host.id = vm.host_id " +
                     "WHERE host.data_center_id = ? AND host.type = 'Routing' AND host.removed is null ";
     private static final String ORDER_HOSTS_NUMBER_OF_VMS_FOR_ACCOUNT_PART2 = " GROUP BY host.id ORDER BY 2 ASC ";
+    private static final String COUNT_ACTIVE_VMS_BY_HOSTS =
+            "SELECT host_id, COUNT(*) FROM `cloud`.`vm_instance` WHERE state IN ('Running', 'Starting', 'Stopping', 'Migrating') AND removed IS NULL AND host_id IN (";
+    private static final String COUNT_ACTIVE_VMS_BY_HOSTS_PART2 = ") GROUP BY host_id";
     private static final String COUNT_VMS_BASED_ON_VGPU_TYPES1 =
             "SELECT pci, type, SUM(vmcount) FROM (SELECT MAX(IF(offering.name = 'pciDevice',value,'')) AS pci, MAX(IF(offering.name = 'vgpuType', value,'')) " +
                     "AS type, COUNT(DISTINCT vm.id) AS vmcount FROM service_offering_details offering INNER JOIN vm_instance vm ON offering.service_offering_id = vm" +
@@ -438,6 +441,35 @@ public class VMInstanceDaoImpl extends GenericDaoBase<VMInstanceVO, Long> implem
         return customSearch(sc, null).get(0);
     }
 
+    @Override
+    public Map<Long, Long> countActiveByHostIds(final List<Long> hostIds) {
+        final Map<Long, Long> counts = new HashMap<>();
+        if (hostIds == null || hostIds.isEmpty()) {
+            return counts;
+        }
+        final StringBuilder sql = new StringBuilder(COUNT_ACTIVE_VMS_BY_HOSTS);
+        for (int i = 0; i < hostIds.size(); i++) {
+            sql.append(i == 0 ? "?" : ", ?");
+        }
+        sql.append(COUNT_ACTIVE_VMS_BY_HOSTS_PART2);
+
+        final TransactionLegacy txn = TransactionLegacy.currentTxn();
+        PreparedStatement pstmt = null;
+        try {
+            pstmt = txn.prepareAutoCloseStatement(sql.toString());
+            for (int i = 0; i < hostIds.size(); i++) {
+                pstmt.setLong(i + 1, hostIds.get(i));
+            }
+            final ResultSet rs = pstmt.executeQuery();
+            while (rs.next()) {
+                counts.put(rs.getLong(1), rs.getLong(2));
+            }
+            return counts;
+        } catch (final SQLException e) {
+            throw new CloudRuntimeException("DB Exception on: " + pstmt, e);
+        }
+    }
+
     @Override
     public Pair<List<Long>, Map<Long, Double>> listClusterIdsInZoneByVmCount(final long zoneId, final long accountId) {
         final TransactionLegacy txn = TransactionLegacy.currentTxn();
@@ -1,7 +1,9 @@
 package com.cloud.dao;
 
 import java.io.Serializable;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 
 /**
  * Generic Entity Manager to retrieve database objects.
@@ -40,6 +42,28 @@ public interface EntityManager {
      */
     <T> T findByUuidIncludingRemoved(Class<T> entityType, String uuid);
 
+    /**
+     * Finds the database id of an entity by its uuid string, including removed entities.  The ids are cached, so
+     * repeated lookups of the same uuid do not go to the database.
+     *
+     * @param <T>        entity class
+     * @param entityType type of entity you're looking for.
+     * @param uuid       the unique id
+     * @return the id if found, null if not.
+     */
+    <T> Long findIdByUuidIncludingRemoved(Class<T> entityType, String uuid);
+
+    /**
+     * Finds the database ids of entities by their uuid strings, including removed entities.  The uuids that are not
+     * cached yet are looked up in one query.
+     *
+     * @param <T>        entity class
+     * @param entityType type of entity you're looking for.
+     * @param uuids      the unique ids
+     * @return the ids by uuid, uuids that were not found are left out.
+     */
+    <T> Map<String, Long> findIdsByUuidsIncludingRemoved(Class<T> entityType, Collection<String> uuids);
+
     /**
      * Lists all entities.  Use this method at your own risk.
      *
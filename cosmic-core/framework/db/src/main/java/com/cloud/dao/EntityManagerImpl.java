@@ -1,22 +1,36 @@
 package com.cloud.dao;
 
+import com.cloud.legacymodel.Identity;
+import com.cloud.legacymodel.InternalIdentity;
 import com.cloud.utils.component.ManagerBase;
 import com.cloud.utils.db.GenericDao;
 import com.cloud.utils.db.GenericDaoBase;
 import com.cloud.utils.db.GenericSearchBuilder;
 import com.cloud.utils.db.SearchBuilder;
 import com.cloud.utils.db.SearchCriteria;
+import com.cloud.utils.mgmt.JmxUtil;
 
 import javax.naming.ConfigurationException;
 import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
-import net.sf.ehcache.Cache;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 public class EntityManagerImpl extends ManagerBase implements EntityManager {
+    private static final Logger s_logger = LoggerFactory.getLogger(EntityManagerImpl.class);
+    // Entries are invalidated when an entity is expunged or gets another uuid, the time to live (in seconds) bounds how
+    // long a change made by another management server goes unnoticed
+    private static final int UUID_CACHE_SIZE = 100000;
+    private static final int UUID_CACHE_TIME_TO_LIVE = 60;
+
     String _name;
-    Cache _cache;
+    UuidCache _uuidCache;
 
     @Override
     public <T, K extends Serializable> T findById(final Class<T> entityType, final K id) {
@@ -38,6 +52,43 @@ public class EntityManagerImpl extends ManagerBase implements EntityManager {
         return dao.findByUuidIncludingRemoved(uuid);
     }
 
+    @Override
+    public <T> Long findIdByUuidIncludingRemoved(final Class<T> entityType, final String uuid) {
+        return findIdsByUuidsIncludingRemoved(entityType, Collections.singletonList(uuid)).get(uuid);
+    }
+
+    @Override
+    public <T> Map<String, Long> findIdsByUuidsIncludingRemoved(final Class<T> entityType, final Collection<String> uuids) {
+        final GenericDao<? extends T, ? extends Serializable> dao = GenericDaoBase.getDao(entityType);
+        final Class<?> beanType = dao.getEntityBeanType();
+        final long generation = _uuidCache != null ? _uuidCache.getGeneration(beanType) : 0;
+
+        final Map<String, Long> ids = new HashMap<>();
+        final List<String> missing = new ArrayList<>();
+        for (final String uuid : uuids) {
+            final Long id = _uuidCache != null ? _uuidCache.get(beanType, uuid) : null;
+            if (id != null) {
+                ids.put(uuid, id);
+            } else {
+                missing.add(uuid);
+            }
+        }
+        if (missing.isEmpty()) {
+            return ids;
+        }
+
+        for (final Map.Entry<String, ? extends Serializable> entry : dao.findIdsByUuidsIncludingRemoved(missing).entrySet()) {
+            if (entry.getValue() instanceof Number) {
+                final long id = ((Number) entry.getValue()).longValue();
+                ids.put(entry.getKey(), id);
+                if (_uuidCache != null) {
+                    _uuidCache.put(beanType, generation, entry.getKey(), id);
+                }
+            }
+        }
+        return ids;
+    }
+
     @Override
     public <T> List<? extends T> list(final Class<T> entityType) {
         final GenericDao<? extends T, ? extends Serializable> dao = GenericDaoBase.getDao(entityType);
@@ -58,7 +109,16 @@ public class EntityManagerImpl extends ManagerBase implements EntityManager {
 
     public <T> T persist(final T t) {
         final GenericDao<T, ? extends Serializable> dao = (GenericDao<T, ? extends Serializable>) GenericDaoBase.getDao((Class<T>) t.getClass());
-        return dao.persist(t);
+        final long generation = _uuidCache != null ? _uuidCache.getGeneration(dao.getEntityBeanType()) : 0;
+        final T persisted = dao.persist(t);
+        if (_uuidCache != null && persisted instanceof Identity && persisted instanceof InternalIdentity) {
+            // A uuid is usually used right after it is returned
+            final String uuid = ((Identity) persisted).getUuid();
+            if (uuid != null) {
+                _uuidCache.put(dao.getEntityBeanType(), generation, uuid, ((InternalIdentity) persisted).getId());
+            }
+        }
+        return persisted;
     }
 
     public <T> SearchBuilder<T> createSearchBuilder(final Class<T> entityType) {
@@ -80,6 +140,14 @@ public class EntityManagerImpl extends ManagerBase implements EntityManager {
     public boolean configure(final String name, final Map<String, Object> params) throws ConfigurationException {
         _name = name;
 
+        _uuidCache = new UuidCache(name + "-uuids", UUID_CACHE_SIZE, UUID_CACHE_TIME_TO_LIVE);
+        GenericDaoBase.setUuidCache(_uuidCache);
+        try {
+            JmxUtil.registerMBean("Uuid Cache", "Uuid Cache", _uuidCache);
+        } catch (final Exception e) {
+            s_logger.error("Unable to register mbean", e);
+        }
+
         return true;
     }
 
@@ -90,9 +158,16 @@ public class EntityManagerImpl extends ManagerBase implements EntityManager {
 
     @Override
     public boolean stop() {
+        if (_uuidCache != null && s_logger.isInfoEnabled()) {
+            s_logger.info("Uuid cache had " + _uuidCache.getHits() + " hits and " + _uuidCache.getMisses() + " misses");
+        }
         return true;
     }
 
+    public UuidCache getUuidCache() {
+        return _uuidCache;
+    }
+
     public <T, K> List<K> search(final Class<T> entityType, final SearchCriteria<K> sc) {
         final GenericDao<T, ? extends Serializable> dao = (GenericDao<T, ? extends Serializable>) GenericDaoBase.getDao(entityType);
         return dao.customSearch(sc, null);
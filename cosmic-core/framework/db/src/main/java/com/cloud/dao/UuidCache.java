@@ -0,0 +1,94 @@
+package com.cloud.dao;
+
+import javax.management.StandardMBean;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import net.sf.ehcache.Cache;
+import net.sf.ehcache.CacheManager;
+import net.sf.ehcache.Element;
+
+/**
+ * UuidCache maps the uuid of an entity to its database id, per entity bean type.  Only uuids that were found are
+ * cached.  A mapping goes stale when the uuid of the entity is updated or when the entity is expunged.  The DAO of
+ * the entity then invalidates the cached mappings of its type by moving the type to a new generation, which is part
+ * of the key.  Other management servers don't see that, so the entries also expire after a short time to live.
+ */
+public class UuidCache extends StandardMBean implements UuidCacheMBean {
+    private final Cache _cache;
+    private final AtomicLong _hits = new AtomicLong();
+    private final AtomicLong _misses = new AtomicLong();
+    private final Map<Class<?>, AtomicLong> _generations = new ConcurrentHashMap<>();
+
+    public UuidCache(final String name, final int maxElements, final int timeToLive) {
+        super(UuidCacheMBean.class, false);
+        final CacheManager cm = CacheManager.create();
+        if (cm.cacheExists(name)) {
+            cm.removeCache(name);
+        }
+        _cache = new Cache(name, maxElements, false, false, timeToLive, timeToLive);
+        cm.addCache(_cache);
+    }
+
+    public Long get(final Class<?> entityType, final String uuid) {
+        final Element element = _cache.get(key(entityType, getGeneration(entityType), uuid));
+        if (element == null) {
+            _misses.incrementAndGet();
+            return null;
+        }
+        _hits.incrementAndGet();
+        return (Long) element.getObjectValue();
+    }
+
+    /**
+     * Caches a mapping that was read from the database.  The generation must be taken before the read, so a mapping
+     * that was invalidated while it was being read is not cached under the current generation.
+     */
+    public void put(final Class<?> entityType, final long generation, final String uuid, final long id) {
+        _cache.put(new Element(key(entityType, generation, uuid), id));
+    }
+
+    public long getGeneration(final Class<?> entityType) {
+        final AtomicLong generation = _generations.get(entityType);
+        return generation == null ? 0 : generation.get();
+    }
+
+    /**
+     * Invalidates all cached mappings of the entity type, the old entries are no longer found and age out of the cache.
+     */
+    public void invalidate(final Class<?> entityType) {
+        _generations.computeIfAbsent(entityType, k -> new AtomicLong()).incrementAndGet();
+    }
+
+    private static String key(final Class<?> entityType, final long generation, final String uuid) {
+        return entityType.getName() + "/" + generation + "/" + uuid;
+    }
+
+    @Override
+    public long getSize() {
+        return _cache.getSize();
+    }
+
+    @Override
+    public long getHits() {
+        return _hits.get();
+    }
+
+    @Override
+    public long getMisses() {
+        return _misses.get();
+    }
+
+    @Override
+    public double getHitRate() {
+        final long hits = _hits.get();
+        final long total = hits + _misses.get();
+        return total == 0 ? 0 : (double) hits / total;
+    }
+
+    @Override
+    public void clear() {
+        _cache.removeAll();
+    }
+}
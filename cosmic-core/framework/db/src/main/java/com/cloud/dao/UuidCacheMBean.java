@@ -0,0 +1,14 @@
+package com.cloud.dao;
+
+public interface UuidCacheMBean {
+
+    long getSize();
+
+    long getHits();
+
+    long getMisses();
+
+    double getHitRate();
+
+    void clear();
+}
@@ -17,6 +17,8 @@ import java.util.Set;
 public class EcInfo {
     protected String insertSql;
     protected String selectSql;
+    // Selects the id and the element of the rows of many entities, the IN list of the ids is appended to it
+    protected String batchSelectSql;
     protected String clearSql;
     protected Class<?> targetClass;
     protected Class<?> rawClass;
@@ -52,12 +54,11 @@ public class EcInfo {
 
         final CollectionTable ct = attr.field.getAnnotation(CollectionTable.class);
         assert (ct.name().length() > 0) : "Please sepcify the table for " + attr.field.getName();
-        final StringBuilder selectBuf = new StringBuilder("SELECT ");
+        final StringBuilder selectBuf = new StringBuilder();
         final StringBuilder insertBuf = new StringBuilder("INSERT INTO ");
         final StringBuilder clearBuf = new StringBuilder("DELETE FROM ");
 
         clearBuf.append(ct.name()).append(" WHERE ");
-        selectBuf.append(attr.columnName);
         selectBuf.append(" FROM ").append(ct.name()).append(", ").append(attr.table);
         selectBuf.append(" WHERE ");
 
@@ -79,7 +80,9 @@ public class EcInfo {
             valuesBuf.append(", ");
         }
 
-        selectSql = selectBuf.append(idAttr.table).append(".").append(idAttr.columnName).append("=?").toString();
+        final String idColumn = idAttr.table + "." + idAttr.columnName;
+        selectSql = "SELECT " + attr.columnName + selectBuf + idColumn + "=?";
+        batchSelectSql = "SELECT " + idColumn + ", " + attr.columnName + selectBuf + idColumn + " IN (";
         insertBuf.append(attr.columnName).append(") ");
         valuesBuf.append("? FROM ").append(attr.table);
         valuesBuf.append(" WHERE ").append(idAttr.table).append(".").append(idAttr.columnName).append("=?");
@@ -0,0 +1,240 @@
+package com.cloud.utils.db;
+
+import com.cloud.legacymodel.exceptions.CloudRuntimeException;
+import com.cloud.legacymodel.network.Ip;
+import com.cloud.legacymodel.utils.Pair;
+import com.cloud.utils.DateUtil;
+import com.cloud.utils.crypt.DBEncryptionUtil;
+import com.cloud.utils.net.NetUtils;
+
+import javax.persistence.EnumType;
+import javax.persistence.Enumerated;
+import javax.persistence.Table;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.net.MalformedURLException;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TimeZone;
+import java.util.TreeMap;
+
+/**
+ * EntityRowMapper sets the fields of an entity from the rows of a result set with a given shape. The attribute of
+ * every column, how to read its value and the setter of its field are resolved once when the mapper is created, so
+ * mapping a row only reads the values and sets them.
+ */
+final class EntityRowMapper {
+    private static final MethodType SETTER_TYPE = MethodType.methodType(void.class, Object.class, Object.class);
+    private static final Object SKIP = new Object();
+
+    private final Class<?> _entityClass;
+    private final String[] _tableNames;
+    private final String[] _columnNames;
+    private final String[] _columnLabels;
+    private final ColumnMapper[] _columns;
+
+    EntityRowMapper(final Class<?> entityClass, final ResultSetMetaData meta, final Map<Pair<String, String>, Attribute> allColumns, final TimeZone timeZone)
+            throws SQLException {
+        final int count = meta.getColumnCount();
+        _entityClass = entityClass;
+        _tableNames = new String[count];
+        _columnNames = new String[count];
+        _columnLabels = new String[count];
+        _columns = new ColumnMapper[count];
+        for (int index = 1; index <= count; index++) {
+            _tableNames[index - 1] = meta.getTableName(index);
+            _columnNames[index - 1] = meta.getColumnName(index);
+            Attribute attr = allColumns.get(new Pair<>(_tableNames[index - 1], _columnNames[index - 1]));
+            if (attr == null) {
+                // work around for mysql bug to return original table name instead of view name in db view case
+                final Table tbl = entityClass.getSuperclass().getAnnotation(Table.class);
+                if (tbl != null) {
+                    _columnLabels[index - 1] = meta.getColumnLabel(index);
+                    attr = allColumns.get(new Pair<>(tbl.name(), _columnLabels[index - 1]));
+                }
+            }
+            assert (attr != null) : "How come I can't find " + meta.getCatalogName(index) + "." + meta.getColumnName(index);
+            _columns[index - 1] = new ColumnMapper(attr.field, timeZone);
+        }
+    }
+
+    /**
+     * @return whether the rows of the result set can be mapped to entities of the class with this mapper
+     */
+    boolean matches(final Class<?> entityClass, final ResultSetMetaData meta) throws SQLException {
+        if (entityClass != _entityClass || meta.getColumnCount() != _columns.length) {
+            return false;
+        }
+        for (int index = 1; index <= _columns.length; index++) {
+            if (!Objects.equals(_columnNames[index - 1], meta.getColumnName(index)) || !Objects.equals(_tableNames[index - 1], meta.getTableName(index))) {
+                return false;
+            }
+            if (_columnLabels[index - 1] != null && !_columnLabels[index - 1].equals(meta.getColumnLabel(index))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    void map(final Object entity, final ResultSet rs) throws SQLException {
+        for (int index = 1; index <= _columns.length; index++) {
+            _columns[index - 1].map(entity, rs, index);
+        }
+    }
+
+    private interface ValueReader {
+        /**
+         * @return the value of the column for the field, or SKIP to leave the field as it is
+         */
+        Object read(ResultSet rs, int index) throws SQLException;
+    }
+
+    private static final class ColumnMapper {
+        private final MethodHandle _setter;
+        private final ValueReader _reader;
+
+        ColumnMapper(final Field field, final TimeZone timeZone) {
+            try {
+                _setter = MethodHandles.lookup().unreflectSetter(field).asType(SETTER_TYPE);
+            } catch (final IllegalAccessException e) {
+                throw new CloudRuntimeException("Yikes! ", e);
+            }
+            _reader = createReader(field, timeZone);
+        }
+
+        void map(final Object entity, final ResultSet rs, final int index) throws SQLException {
+            final Object value = _reader.read(rs, index);
+            if (value == SKIP) {
+                return;
+            }
+            try {
+                _setter.invokeExact(entity, value);
+            } catch (final RuntimeException | Error e) {
+                throw e;
+            } catch (final Throwable e) {
+                throw new CloudRuntimeException("Yikes! ", e);
+            }
+        }
+
+        private static ValueReader createReader(final Field field, final TimeZone timeZone) {
+            final Class<?> type = field.getType();
+            if (type == String.class) {
+                final Encrypt encrypt = field.getAnnotation(Encrypt.class);
+                final boolean decrypt = encrypt != null && encrypt.encrypt();
+                return (rs, index) -> {
+                    final byte[] bytes = rs.getBytes(index);
+                    if (bytes == null) {
+                        return null;
+                    }
+                    try {
+                        final String str = new String(bytes, StandardCharsets.UTF_8);
+                        return decrypt ? DBEncryptionUtil.decrypt(str) : str;
+                    } catch (final IllegalArgumentException e) {
+                        assert (false);
+                        throw new CloudRuntimeException("IllegalArgumentException when converting UTF-8 data");
+                    }
+                };
+            } else if (type == long.class) {
+                return ResultSet::getLong;
+            } else if (type == Long.class) {
+                return (rs, index) -> rs.getObject(index) == null ? null : rs.getLong(index);
+            } else if (type.isEnum()) {
+                final Enumerated enumerated = field.getAnnotation(Enumerated.class);
+                final EnumType enumType = (enumerated == null) ? EnumType.STRING : enumerated.value();
+                final Enum<?>[] enums = (Enum<?>[]) type.getEnumConstants();
+                if (enumType == EnumType.STRING) {
+                    final Map<String, Enum<?>> byName = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+                    for (final Enum<?> e : enums) {
+                        byName.putIfAbsent(e.name(), e);
+                    }
+                    return (rs, index) -> {
+                        final String name = rs.getString(index);
+                        final Enum<?> e = name == null ? null : byName.get(name);
+                        return e == null ? SKIP : e;
+                    };
+                }
+                return (rs, index) -> {
+                    final int ordinal = rs.getInt(index);
+                    return ordinal >= 0 && ordinal < enums.length ? enums[ordinal] : SKIP;
+                };
+            } else if (type == int.class) {
+                return ResultSet::getInt;
+            } else if (type == Integer.class) {
+                return (rs, index) -> rs.getObject(index) == null ? null : rs.getInt(index);
+            } else if (type == Date.class) {
+                return (rs, index) -> rs.getDate(index) == null ? null : DateUtil.parseDateString(timeZone, rs.getString(index));
+            } else if (type == Calendar.class) {
+                return (rs, index) -> {
+                    if (rs.getDate(index) == null) {
+                        return null;
+                    }
+                    final Calendar cal = Calendar.getInstance();
+                    cal.setTime(DateUtil.parseDateString(timeZone, rs.getString(index)));
+                    return cal;
+                };
+            } else if (type == boolean.class) {
+                return ResultSet::getBoolean;
+            } else if (type == Boolean.class) {
+                return (rs, index) -> rs.getObject(index) == null ? null : rs.getBoolean(index);
+            } else if (type == URI.class) {
+                return (rs, index) -> {
+                    try {
+                        final String str = rs.getString(index);
+                        return str == null ? null : new URI(str);
+                    } catch (final URISyntaxException e) {
+                        throw new CloudRuntimeException("Invalid URI: " + rs.getString(index), e);
+                    }
+                };
+            } else if (type == URL.class) {
+                return (rs, index) -> {
+                    try {
+                        final String str = rs.getString(index);
+                        return str != null ? new URL(str) : null;
+                    } catch (final MalformedURLException e) {
+                        throw new CloudRuntimeException("Invalid URL: " + rs.getString(index), e);
+                    }
+                };
+            } else if (type == Ip.class) {
+                final Enumerated enumerated = field.getAnnotation(Enumerated.class);
+                final EnumType enumType = (enumerated == null) ? EnumType.STRING : enumerated.value();
+                if (enumType == EnumType.STRING) {
+                    return (rs, index) -> {
+                        final String s = rs.getString(index);
+                        return s == null ? null : new Ip(NetUtils.ip2Long(s));
+                    };
+                }
+                return (rs, index) -> new Ip(rs.getLong(index));
+            } else if (type == short.class) {
+                return ResultSet::getShort;
+            } else if (type == Short.class) {
+                return (rs, index) -> rs.getObject(index) == null ? null : rs.getShort(index);
+            } else if (type == float.class) {
+                return ResultSet::getFloat;
+            } else if (type == Float.class) {
+                return (rs, index) -> rs.getObject(index) == null ? null : rs.getFloat(index);
+            } else if (type == double.class) {
+                return ResultSet::getDouble;
+            } else if (type == Double.class) {
+                return (rs, index) -> rs.getObject(index) == null ? null : rs.getDouble(index);
+            } else if (type == byte.class) {
+                return ResultSet::getByte;
+            } else if (type == Byte.class) {
+                return (rs, index) -> rs.getObject(index) == null ? null : rs.getByte(index);
+            } else if (type == byte[].class) {
+                return ResultSet::getBytes;
+            }
+            return ResultSet::getObject;
+        }
+    }
+}
@@ -4,6 +4,7 @@ import com.cloud.legacymodel.utils.Pair;
 
 import javax.naming.ConfigurationException;
 import java.io.Serializable;
+import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 
@@ -43,6 +44,9 @@ public interface GenericDao<T, ID extends Serializable> {
     // Finds one unique VO using uuid including removed entities
     T findByUuidIncludingRemoved(String uuid);
 
+    // Finds the ids of the VOs with the given uuids, including removed entities, in one query
+    Map<String, ID> findIdsByUuidsIncludingRemoved(Collection<String> uuids);
+
     /**
      * @return VO object ready to be used for update.  It won't have any fields filled in.
      */
@@ -122,6 +126,15 @@ public interface GenericDao<T, ID extends Serializable> {
 
     int update(T entity, SearchCriteria<T> sc);
 
+    /**
+     * Updates the changed fields of the entity beans.  Entities with the same
+     * changes are updated with one batch of statements.
+     *
+     * @param entities the beans generated by this dao to update.
+     * @return number of rows updated.
+     */
+    int updateAll(List<T> entities);
+
     /**
      * Look for all active rows.
      *
@@ -194,6 +207,17 @@ public interface GenericDao<T, ID extends Serializable> {
      **/
     T persist(T entity);
 
+    /**
+     * Persist the entity beans with batches of statements.  The id fields of
+     * the entities are updated with the new ids.  Beans generated by this dao
+     * are updated instead.
+     *
+     * @param entities the beans to persist.
+     * @return The persisted versions of the objects in the same order.  An empty
+     * list is returned if there's no primary key specified in the VO object.
+     **/
+    List<T> persistAll(List<T> entities);
+
     /**
      * remove the entity bean.  This will call delete automatically if
      * the entity bean does not have a removed field.
@@ -220,6 +244,14 @@ public interface GenericDao<T, ID extends Serializable> {
      */
     boolean expunge(ID id);
 
+    /**
+     * Expunge the rows of the ids with batches of statements, even if they are REMOVED.
+     *
+     * @param ids
+     * @return true if removed.
+     */
+    boolean expungeAll(List<ID> ids);
+
     /**
      * remove the entity bean specified by the search criteria
      *
@@ -235,6 +267,16 @@ public interface GenericDao<T, ID extends Serializable> {
 
     public <K> K getNextInSequence(Class<K> clazz, String name);
 
+    /**
+     * Reserves a block of values of a sequence with one round trip, for
+     * callers that assign the ids of many entities before persisting them.
+     *
+     * @param name  name of the table generator.
+     * @param count number of values to reserve.
+     * @return the reserved values.
+     */
+    List<Long> getNextBlockInSequence(String name, int count);
+
     /**
      * Configure.
      *
@@ -1,5 +1,6 @@
 package com.cloud.utils.db;
 
+import com.cloud.dao.UuidCache;
 import com.cloud.legacymodel.exceptions.CloudRuntimeException;
 import com.cloud.legacymodel.network.Ip;
 import com.cloud.legacymodel.utils.Pair;
@@ -45,11 +46,14 @@ import java.util.Collections;
 import java.util.Date;
 import java.util.Enumeration;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.TimeZone;
 import java.util.UUID;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
 
 import net.sf.cglib.proxy.Callback;
 import net.sf.cglib.proxy.CallbackFilter;
@@ -104,6 +108,9 @@ public abstract class GenericDaoBase<T, ID extends Serializable> extends Compone
     protected static final String SHARE_MODE_CLAUSE = " LOCK IN SHARE MODE";
     protected static final String SELECT_LAST_INSERT_ID_SQL = "SELECT LAST_INSERT_ID()";
     protected static final SequenceFetcher s_seqFetcher = SequenceFetcher.getInstance();
+    private static final int MAX_ROW_MAPPERS = 32;
+    private static final int BATCH_SIZE = 500;
+    private static volatile UuidCache s_uuidCache;
     private final static Logger s_logger = LoggerFactory.getLogger(GenericDaoBase.class);
     // This is private on purpose.  Everyone should use createPartialSelectSql()
     private final Pair<StringBuilder, Attribute[]> _partialSelectSql;
@@ -115,6 +122,7 @@ public abstract class GenericDaoBase<T, ID extends Serializable> extends Compone
     protected StringBuilder _discriminatorClause;
     protected Map<String, Object> _discriminatorValues;
     protected String _selectByIdSql;
+    protected String _selectIdsByUuidsSql;
     protected String _count;
     protected String _distinctIdSql;
     protected Field _idField;
@@ -127,6 +135,11 @@ public abstract class GenericDaoBase<T, ID extends Serializable> extends Compone
     protected Map<String, Attribute> _allAttributes;
     protected List<Attribute> _ecAttributes;
     protected Map<Pair<String, String>, Attribute> _allColumns;
+    // Daos can load the element collections of list queries per entity instead of in batches of entities
+    protected boolean _batchLoadElementCollections = true;
+    private final AtomicLong _elementCollectionQueries = new AtomicLong();
+    // Row mappers of the result set shapes seen so far, there are only a few per DAO
+    private final List<EntityRowMapper> _rowMappers = new CopyOnWriteArrayList<>();
     protected Enhancer _enhancer;
     protected Factory _factory;
     protected Enhancer _searchEnhancer;
@@ -175,6 +188,7 @@ public abstract class GenericDaoBase<T, ID extends Serializable> extends Compone
         _allColumns = generator.getAllColumns();
 
         _selectByIdSql = buildSelectByIdSql(createPartialSelectSql(null, true));
+        _selectIdsByUuidsSql = buildSelectIdsByUuidsSql(generator);
         _removeSql = generator.buildRemoveSql();
         _deleteSqls = generator.buildDeleteSqls();
         _removed = generator.getRemovedAttribute();
@@ -206,6 +220,7 @@ public abstract class GenericDaoBase<T, ID extends Serializable> extends Compone
             s_logger.trace("Select SQL: " + _partialSelectSql.first().toString());
             s_logger.trace("Remove SQL: " + (_removeSql != null ? _removeSql.first() : "No remove sql"));
             s_logger.trace("Select by Id SQL: " + _selectByIdSql);
+            s_logger.trace("Select Ids by Uuids SQL: " + _selectIdsByUuidsSql);
             s_logger.trace("Table References: " + _tables);
             s_logger.trace("Insert SQLs:");
             for (final Pair<String, Attribute[]> insertSql : _insertSqls) {
@@ -252,6 +267,17 @@ public abstract class GenericDaoBase<T, ID extends Serializable> extends Compone
         return sql.toString();
     }
 
+    protected String buildSelectIdsByUuidsSql(final SqlGenerator generator) {
+        final Attribute uuidAttr = _allAttributes.get("uuid");
+        if (_idField == null || _idField.getAnnotation(EmbeddedId.class) != null || uuidAttr == null) {
+            return null;
+        }
+
+        final StringBuilder sql = generator.buildSelectSql(new Attribute[]{_idAttributes.get(_table)[0], uuidAttr}).first();
+        sql.append(uuidAttr.table).append(".").append(uuidAttr.columnName).append(" IN (");
+        return sql.toString();
+    }
+
     @Override
     @DB()
     public <J> GenericSearchBuilder<T, J> createSearchBuilder(final Class<J> resultType) {
@@ -282,6 +308,10 @@ public abstract class GenericDaoBase<T, ID extends Serializable> extends Compone
         return dao;
     }
 
+    public static void setUuidCache(final UuidCache uuidCache) {
+        s_uuidCache = uuidCache;
+    }
+
     @Override
     public Map<String, Attribute> getAllAttributes() {
         return _allAttributes;
@@ -503,6 +533,23 @@ public abstract class GenericDaoBase<T, ID extends Serializable> extends Compone
         return s_seqFetcher.getNextSequence(clazz, tg);
     }
 
+    @Override
+    @DB()
+    public List<Long> getNextBlockInSequence(final String name, final int count) {
+        final TableGenerator tg = _tgs.get(name);
+        assert (tg != null) : "Couldn't find Table generator using " + name;
+
+        final Long first = s_seqFetcher.getNextSequenceBlock(Long.class, tg, count);
+        if (first == null) {
+            throw new CloudRuntimeException("Unable to get a block of " + count + " values of sequence " + name);
+        }
+        final List<Long> values = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            values.add(first + (long) i * tg.allocationSize());
+        }
+        return values;
+    }
+
     @DB()
     protected List<T> listBy(final SearchCriteria<T> sc, final Filter filter) {
         if (_removed != null) {
@@ -685,6 +732,9 @@ public abstract class GenericDaoBase<T, ID extends Serializable> extends Compone
 
             final int result = pstmt.executeUpdate();
             txn.commit();
+            if (ub.has("uuid")) {
+                invalidateUuids();
+            }
             ub.clear();
             return result;
         } catch (final SQLException e) {
@@ -751,8 +801,17 @@ public abstract class GenericDaoBase<T, ID extends Serializable> extends Compone
                 txn.registerLock(pstmt.toString());
             }
             final ResultSet rs = pstmt.executeQuery();
+            EntityRowMapper mapper = null;
             while (rs.next()) {
-                result.add(toEntityBean(rs, cache));
+                if (mapper == null) {
+                    mapper = getEntityBeanRowMapper(rs);
+                }
+                result.add(toEntityBean(rs, mapper, false, false));
+            }
+            // Entities are cached only once their collections are loaded, so the cache never hands out partial ones
+            loadCollections(result);
+            if (cache) {
+                putInCache(result);
             }
             return result;
         } catch (final SQLException e) {
@@ -943,9 +1002,13 @@ public abstract class GenericDaoBase<T, ID extends Serializable> extends Compone
             final SelectType st = sc.getSelectType();
             final ArrayList<M> results = new ArrayList<>();
             final List<Field> fields = sc.getSelectFields();
+            EntityRowMapper mapper = null;
             while (rs.next()) {
                 if (st == SelectType.Entity) {
-                    results.add((M) toEntityBean(rs, false));
+                    if (mapper == null) {
+                        mapper = getEntityBeanRowMapper(rs);
+                    }
+                    results.add((M) toEntityBean(rs, mapper, false, false));
                 } else if (st == SelectType.Fields || st == SelectType.Result) {
                     final M m = sc.getResultType().newInstance();
                     for (int j = 1; j <= fields.size(); j++) {
@@ -956,6 +1019,9 @@ public abstract class GenericDaoBase<T, ID extends Serializable> extends Compone
                     results.add(getObject(sc.getResultType(), rs, 1));
                 }
             }
+            if (st == SelectType.Entity) {
+                loadCollections((List<T>) results);
+            }
 
             return results;
         } catch (final SQLException e) {
@@ -1048,13 +1114,34 @@ public abstract class GenericDaoBase<T, ID extends Serializable> extends Compone
 
     @DB()
     protected void toEntityBean(final ResultSet result, final T entity) throws SQLException {
+        toEntityBean(result, entity, getRowMapper(entity.getClass(), result), true);
+    }
+
+    private void toEntityBean(final ResultSet result, final T entity, final EntityRowMapper mapper, final boolean loadCollections) throws SQLException {
+        mapper.map(entity, result);
+        if (loadCollections) {
+            for (final Attribute attr : _ecAttributes) {
+                loadCollection(entity, attr);
+            }
+        }
+    }
+
+    /**
+     * Gets the mapper for the rows of the result set to entities of the class, the columns are resolved to attributes
+     * only the first time a result set of this shape is seen.
+     */
+    private EntityRowMapper getRowMapper(final Class<?> entityClass, final ResultSet result) throws SQLException {
         final ResultSetMetaData meta = result.getMetaData();
-        for (int index = 1, max = meta.getColumnCount(); index <= max; index++) {
-            setField(entity, result, meta, index);
+        for (final EntityRowMapper mapper : _rowMappers) {
+            if (mapper.matches(entityClass, meta)) {
+                return mapper;
+            }
         }
-        for (final Attribute attr : _ecAttributes) {
-            loadCollection(entity, attr);
+        final EntityRowMapper mapper = new EntityRowMapper(entityClass, meta, _allColumns, s_gmtTimeZone);
+        if (_rowMappers.size() < MAX_ROW_MAPPERS) {
+            _rowMappers.add(mapper);
         }
+        return mapper;
     }
 
     @DB()
@@ -1077,56 +1164,13 @@ public abstract class GenericDaoBase<T, ID extends Serializable> extends Compone
         final TransactionLegacy txn = TransactionLegacy.currentTxn();
         try (PreparedStatement pstmt = txn.prepareStatement(ec.selectSql)) {
             pstmt.setObject(1, _idField.get(entity));
+            _elementCollectionQueries.incrementAndGet();
             try (ResultSet rs = pstmt.executeQuery()) {
-                final ArrayList lst = new ArrayList();
-                if (ec.targetClass == Integer.class) {
-                    while (rs.next()) {
-                        lst.add(rs.getInt(1));
-                    }
-                } else if (ec.targetClass == Long.class) {
-                    while (rs.next()) {
-                        lst.add(rs.getLong(1));
-                    }
-                } else if (ec.targetClass == String.class) {
-                    while (rs.next()) {
-                        lst.add(rs.getString(1));
-                    }
-                } else if (ec.targetClass == Short.class) {
-                    while (rs.next()) {
-                        lst.add(rs.getShort(1));
-                    }
-                } else if (ec.targetClass == Date.class) {
-                    while (rs.next()) {
-                        lst.add(DateUtil.parseDateString(s_gmtTimeZone, rs.getString(1)));
-                    }
-                } else if (ec.targetClass == Boolean.class) {
-                    while (rs.next()) {
-                        lst.add(rs.getBoolean(1));
-                    }
-                } else {
-                    assert (false) : "You'll need to add more classeses";
-                }
-                if (ec.rawClass == null) {
-                    final Object[] array = (Object[]) Array.newInstance(ec.targetClass);
-                    lst.toArray(array);
-                    try {
-                        attr.field.set(entity, array);
-                    } catch (final IllegalArgumentException e) {
-                        throw new CloudRuntimeException("Come on we screen for this stuff, don't we?", e);
-                    } catch (final IllegalAccessException e) {
-                        throw new CloudRuntimeException("Come on we screen for this stuff, don't we?", e);
-                    }
-                } else {
-                    try {
-                        final Collection coll = (Collection) ec.rawClass.newInstance();
-                        coll.addAll(lst);
-                        attr.field.set(entity, coll);
-                    } catch (final IllegalAccessException e) {
-                        throw new CloudRuntimeException("Come on we screen for this stuff, don't we?", e);
-                    } catch (final InstantiationException e) {
-                        throw new CloudRuntimeException("Never should happen", e);
-                    }
+                final ArrayList<Object> lst = new ArrayList<>();
+                while (rs.next()) {
+                    lst.add(getCollectionElement(ec, rs, 1));
                 }
+                setCollection(entity, attr, lst);
             } catch (final SQLException e) {
                 throw new CloudRuntimeException("loadCollection: Exception : " + e.getMessage(), e);
             }
@@ -1139,6 +1183,121 @@ public abstract class GenericDaoBase<T, ID extends Serializable> extends Compone
         }
     }
 
+    /**
+     * Loads the element collections of the entities of a list query.  Unless the dao loads them per entity, every
+     * collection is loaded with one query for each batch of entities instead of one query per entity.
+     */
+    @DB()
+    protected void loadCollections(final List<T> entities) {
+        if (_ecAttributes.isEmpty() || entities.isEmpty()) {
+            return;
+        }
+        for (final Attribute attr : _ecAttributes) {
+            if (!_batchLoadElementCollections) {
+                for (final T entity : entities) {
+                    loadCollection(entity, attr);
+                }
+                continue;
+            }
+            for (int from = 0; from < entities.size(); from += BATCH_SIZE) {
+                loadCollections(entities.subList(from, Math.min(from + BATCH_SIZE, entities.size())), attr);
+            }
+        }
+    }
+
+    private void loadCollections(final List<T> entities, final Attribute attr) {
+        final EcInfo ec = (EcInfo) attr.attache;
+        final Map<Object, List<Object>> elements = new LinkedHashMap<>();
+        try {
+            for (final T entity : entities) {
+                elements.put(_idField.get(entity), new ArrayList<>());
+            }
+
+            final StringBuilder sql = new StringBuilder(ec.batchSelectSql);
+            for (int i = 0; i < elements.size(); i++) {
+                sql.append(i == 0 ? "?" : ", ?");
+            }
+            sql.append(")");
+
+            final TransactionLegacy txn = TransactionLegacy.currentTxn();
+            try (PreparedStatement pstmt = txn.prepareStatement(sql.toString())) {
+                int i = 1;
+                for (final Object id : elements.keySet()) {
+                    pstmt.setObject(i++, id);
+                }
+                _elementCollectionQueries.incrementAndGet();
+                try (ResultSet rs = pstmt.executeQuery()) {
+                    while (rs.next()) {
+                        final List<Object> lst = elements.get(getObject(_idField.getType(), rs, 1));
+                        if (lst != null) {
+                            lst.add(getCollectionElement(ec, rs, 2));
+                        }
+                    }
+                }
+            }
+
+            for (final T entity : entities) {
+                setCollection(entity, attr, elements.get(_idField.get(entity)));
+            }
+        } catch (final SQLException e) {
+            throw new CloudRuntimeException("loadCollections: Exception : " + e.getMessage(), e);
+        } catch (final IllegalArgumentException e) {
+            throw new CloudRuntimeException("loadCollections: Exception : " + e.getMessage(), e);
+        } catch (final IllegalAccessException e) {
+            throw new CloudRuntimeException("loadCollections: Exception : " + e.getMessage(), e);
+        }
+    }
+
+    private static Object getCollectionElement(final EcInfo ec, final ResultSet rs, final int index) throws SQLException {
+        if (ec.targetClass == Integer.class) {
+            return rs.getInt(index);
+        } else if (ec.targetClass == Long.class) {
+            return rs.getLong(index);
+        } else if (ec.targetClass == String.class) {
+            return rs.getString(index);
+        } else if (ec.targetClass == Short.class) {
+            return rs.getShort(index);
+        } else if (ec.targetClass == Date.class) {
+            return DateUtil.parseDateString(s_gmtTimeZone, rs.getString(index));
+        } else if (ec.targetClass == Boolean.class) {
+            return rs.getBoolean(index);
+        }
+        assert (false) : "You'll need to add more classeses";
+        return null;
+    }
+
+    private static void setCollection(final Object entity, final Attribute attr, final List<Object> lst) {
+        final EcInfo ec = (EcInfo) attr.attache;
+        if (ec.rawClass == null) {
+            final Object[] array = (Object[]) Array.newInstance(ec.targetClass, lst.size());
+            lst.toArray(array);
+            try {
+                attr.field.set(entity, array);
+            } catch (final IllegalArgumentException e) {
+                throw new CloudRuntimeException("Come on we screen for this stuff, don't we?", e);
+            } catch (final IllegalAccessException e) {
+                throw new CloudRuntimeException("Come on we screen for this stuff, don't we?", e);
+            }
+        } else {
+            try {
+                final Collection coll = (Collection) ec.rawClass.newInstance();
+                coll.addAll(lst);
+                attr.field.set(entity, coll);
+            } catch (final IllegalAccessException e) {
+                throw new CloudRuntimeException("Come on we screen for this stuff, don't we?", e);
+            } catch (final InstantiationException e) {
+                throw new CloudRuntimeException("Never should happen", e);
+            }
+        }
+    }
+
+    /**
+     * @return the number of queries run so far to load element collections, for tests
+     */
+    public long getElementCollectionQueries() {
+        return _elementCollectionQueries.get();
+    }
+
     @DB()
     protected void setField(final Object entity, final Field field, final ResultSet rs, final int index) throws SQLException {
         try {
@@ -1474,6 +1633,54 @@ public abstract class GenericDaoBase<T, ID extends Serializable> extends Compone
         return findOneIncludingRemovedBy(sc);
     }
 
+    @Override
+    @DB()
+    public Map<String, ID> findIdsByUuidsIncludingRemoved(final Collection<String> uuids) {
+        if (_selectIdsByUuidsSql == null) {
+            throw new CloudRuntimeException(_entityBeanType.getSimpleName() + " can not be looked up by uuid");
+        }
+        final Map<String, ID> ids = new HashMap<>();
+        if (uuids == null || uuids.isEmpty()) {
+            return ids;
+        }
+
+        // The uuids are looked up in chunks, so the IN list stays bounded
+        final List<String> uuidList = new ArrayList<>(uuids);
+        final TransactionLegacy txn = TransactionLegacy.currentTxn();
+        PreparedStatement pstmt = null;
+        try {
+            for (int from = 0; from < uuidList.size(); from += BATCH_SIZE) {
+                final List<String> chunk = uuidList.subList(from, Math.min(from + BATCH_SIZE, uuidList.size()));
+                final StringBuilder sql = new StringBuilder(_selectIdsByUuidsSql);
+                for (int i = 0; i < chunk.size(); i++) {
+                    sql.append("?,");
+                }
+                sql.setCharAt(sql.length() - 1, ')');
+
+                pstmt = txn.prepareAutoCloseStatement(sql.toString());
+                int i = 1;
+                for (final String uuid : chunk) {
+                    pstmt.setString(i++, uuid);
+                }
+                final ResultSet rs = pstmt.executeQuery();
+                while (rs.next()) {
+                    ids.put(rs.getString(2), (ID) getObject(_idField.getType(), rs, 1));
+                }
+            }
+            return ids;
+        } catch (final SQLException e) {
+            throw new CloudRuntimeException("DB Exception on: " + pstmt, e);
+        }
+    }
+
+    // Invalidates the uuid to id mappings of this entity type after a uuid was changed or an entity was expunged
+    protected void invalidateUuids() {
+        final UuidCache uuidCache = s_uuidCache;
+        if (uuidCache != null && _selectIdsByUuidsSql != null) {
+            uuidCache.invalidate(_entityBeanType);
+        }
+    }
+
     @Override
     @DB()
     public T findByIdIncludingRemoved(final ID id) {
@@ -1627,9 +1834,15 @@ public abstract class GenericDaoBase<T, ID extends Serializable> extends Compone
             }
 
             final ResultSet rs = pstmt.executeQuery();
+            EntityRowMapper mapper = null;
             while (rs.next()) {
-                result.add(toEntityBean(rs, true));
+                if (mapper == null) {
+                    mapper = getEntityBeanRowMapper(rs);
+                }
+                result.add(toEntityBean(rs, mapper, false, false));
             }
+            loadCollections(result);
+            putInCache(result);
             return result;
         } catch (final SQLException e) {
             throw new CloudRuntimeException("DB Exception on: " + pstmt, e);
@@ -1679,6 +1892,42 @@ public abstract class GenericDaoBase<T, ID extends Serializable> extends Compone
             if (_cache != null) {
                 _cache.remove(id);
             }
+            invalidateUuids();
+            return true;
+        } catch (final SQLException e) {
+            throw new CloudRuntimeException("DB Exception on: " + pstmt, e);
+        }
+    }
+
+    @Override
+    public boolean expungeAll(final List<ID> ids) {
+        final TransactionLegacy txn = TransactionLegacy.currentTxn();
+        PreparedStatement pstmt = null;
+        try {
+            txn.start();
+            for (final Pair<String, Attribute[]> deletSql : _deleteSqls) {
+                final Attribute[] attrs = deletSql.second();
+
+                pstmt = txn.prepareAutoCloseStatement(deletSql.first());
+
+                for (int from = 0; from < ids.size(); from += BATCH_SIZE) {
+                    for (final ID id : ids.subList(from, Math.min(from + BATCH_SIZE, ids.size()))) {
+                        for (int i = 0; i < attrs.length; i++) {
+                            prepareAttribute(i + 1, pstmt, attrs[i], id);
+                        }
+                        pstmt.addBatch();
+                    }
+                    pstmt.executeBatch();
+                }
+            }
+
+            txn.commit();
+            if (_cache != null) {
+                for (final ID id : ids) {
+                    _cache.remove(id);
+                }
+            }
+            invalidateUuids();
             return true;
         } catch (final SQLException e) {
             throw new CloudRuntimeException("DB Exception on: " + pstmt, e);
@@ -1710,7 +1959,11 @@ public abstract class GenericDaoBase<T, ID extends Serializable> extends Compone
             for (final Pair<Attribute, Object> value : sc.getValues()) {
                 prepareAttribute(++i, pstmt, value.first(), value.second());
             }
-            return pstmt.executeUpdate();
+            final int result = pstmt.executeUpdate();
+            if (result > 0) {
+                invalidateUuids();
+            }
+            return result;
         } catch (final SQLException e) {
             throw new CloudRuntimeException("DB Exception on: " + pstmt, e);
         }
@@ -1761,6 +2014,80 @@ public abstract class GenericDaoBase<T, ID extends Serializable> extends Compone
         return update(ub, sc, null);
     }
 
+    @Override
+    @DB()
+    public int updateAll(final List<T> entities) {
+        final Attribute idAttribute = _idAttributes.get(_table)[0];
+        final TransactionLegacy txn = TransactionLegacy.currentTxn();
+        PreparedStatement pstmt = null;
+        try {
+            txn.start();
+
+            // Entities with the same changes have the same update statement, they are updated in one batch
+            final Map<String, List<T>> batches = new LinkedHashMap<>();
+            boolean uuidChanged = false;
+            String whereClause = null;
+            for (final T entity : entities) {
+                assert Enhancer.isEnhanced(entity.getClass()) : "Entity is not generated by this dao";
+
+                final ID id = getId(entity);
+                if (_cache != null) {
+                    _cache.remove(id);
+                }
+                final UpdateBuilder ub = getUpdateBuilder(entity);
+                if (ub.getCollectionChanges() != null) {
+                    insertElementCollection(entity, idAttribute, id, ub.getCollectionChanges());
+                }
+                uuidChanged |= ub.has("uuid");
+
+                final StringBuilder sql = ub.toSql(_tables);
+                if (sql == null) {
+                    continue;
+                }
+                if (whereClause == null) {
+                    final SearchCriteria<T> sc = createSearchCriteria();
+                    sc.addAnd(idAttribute, SearchCriteria.Op.EQ, id);
+                    whereClause = sc.getWhereClause();
+                }
+                batches.computeIfAbsent(sql.append(whereClause).toString(), k -> new ArrayList<>()).add(entity);
+            }
+
+            int rowsUpdated = 0;
+            for (final Map.Entry<String, List<T>> batch : batches.entrySet()) {
+                pstmt = txn.prepareAutoCloseStatement(batch.getKey());
+                final List<T> batchEntities = batch.getValue();
+                for (int from = 0; from < batchEntities.size(); from += BATCH_SIZE) {
+                    final List<T> chunk = batchEntities.subList(from, Math.min(from + BATCH_SIZE, batchEntities.size()));
+                    for (final T entity : chunk) {
+                        int i = 1;
+                        for (final Ternary<Attribute, Boolean, Object> value : getUpdateBuilder(entity).getChanges()) {
+                            prepareAttribute(i++, pstmt, value.first(), value.third());
+                        }
+                        prepareAttribute(i, pstmt, idAttribute, getId(entity));
+                        pstmt.addBatch();
+                    }
+                    for (final int rows : pstmt.executeBatch()) {
+                        rowsUpdated += rows == Statement.SUCCESS_NO_INFO ? 1 : rows;
+                    }
+                    for (final T entity : chunk) {
+                        getUpdateBuilder(entity).clear();
+                    }
+                }
+            }
+
+            txn.commit();
+            if (uuidChanged) {
+                invalidateUuids();
+            }
+            return rowsUpdated;
+        } catch (final SQLException e) {
+            if (e.getSQLState().equals("23000") && e.getErrorCode() == 1062) {
+                throw new EntityExistsException("Entity already exists ", e);
+            }
+            throw new CloudRuntimeException("DB Exception on: " + pstmt, e);
+        }
+    }
+
     @Override
     public T persist(final T entity) {
         if (Enhancer.isEnhanced(entity.getClass())) {
@@ -1841,21 +2168,179 @@ public abstract class GenericDaoBase<T, ID extends Serializable> extends Compone
         return _idField != null ? findByIdIncludingRemoved(id) : null;
     }
 
+    @Override
+    public List<T> persistAll(final List<T> entities) {
+        final List<T> updates = new ArrayList<>();
+        // Rows getting a generated id are inserted apart from rows with an id of their own, so the generated keys of a
+        // batch belong to all of its rows
+        final List<T> generatedIds = new ArrayList<>();
+        final List<T> assignedIds = new ArrayList<>();
+        for (final T entity : entities) {
+            if (Enhancer.isEnhanced(entity.getClass())) {
+                if (_idField != null) {
+                    updates.add(entity);
+                    continue;
+                }
+
+                assert false : "Can't call persit if you don't have primary key";
+            }
+            if (_idField != null && isIdAssigned(getId(entity))) {
+                assignedIds.add(entity);
+            } else {
+                generatedIds.add(entity);
+            }
+        }
+
+        final TransactionLegacy txn = TransactionLegacy.currentTxn();
+        String sql = null;
+        try {
+            txn.start();
+            if (!updates.isEmpty()) {
+                updateAll(updates);
+            }
+
+            boolean first = true;
+            for (final Pair<String, Attribute[]> pair : _insertSqls) {
+                sql = pair.first();
+                insertBatches(txn, sql, pair.second(), assignedIds, false);
+                insertBatches(txn, sql, pair.second(), generatedIds, first);
+                first = false;
+            }
+
+            if (_ecAttributes != null && _ecAttributes.size() > 0) {
+                for (final T entity : assignedIds) {
+                    insertElementCollections(entity);
+                }
+                for (final T entity : generatedIds) {
+                    insertElementCollections(entity);
+                }
+            }
+            txn.commit();
+        } catch (final SQLException e) {
+            if (e.getSQLState().equals("23000") && e.getErrorCode() == 1062) {
+                throw new EntityExistsException("Entity already exists: ", e);
+            } else {
+                throw new CloudRuntimeException("DB Exception on: " + sql, e);
+            }
+        } catch (final IllegalArgumentException e) {
+            throw new CloudRuntimeException("Problem with getting the ec attribute ", e);
+        } catch (final IllegalAccessException e) {
+            throw new CloudRuntimeException("Problem with getting the ec attribute ", e);
+        }
+
+        return _idField != null ? findAllByIdsIncludingRemoved(entities) : new ArrayList<>();
+    }
+
+    private void insertBatches(final TransactionLegacy txn, final String sql, final Attribute[] attrs, final List<T> entities, final boolean generatedKeys)
+            throws SQLException, IllegalAccessException {
+        if (entities.isEmpty()) {
+            return;
+        }
+        final PreparedStatement pstmt = generatedKeys ? txn.prepareAutoCloseStatement(sql, Statement.RETURN_GENERATED_KEYS) : txn.prepareAutoCloseStatement(sql);
+        for (int from = 0; from < entities.size(); from += BATCH_SIZE) {
+            final List<T> batch = entities.subList(from, Math.min(from + BATCH_SIZE, entities.size()));
+            for (final T entity : batch) {
+                prepareAttributes(pstmt, entity, attrs, 1);
+                pstmt.addBatch();
+            }
+            pstmt.executeBatch();
+
+            if (generatedKeys && _idField != null) {
+                final ResultSet rs = pstmt.getGeneratedKeys();
+                for (final T entity : batch) {
+                    if (rs != null && rs.next()) {
+                        _idField.set(entity, rs.getObject(1));
+                    }
+                }
+            }
+        }
+    }
+
+    private void insertElementCollections(final T entity) throws SQLException, IllegalAccessException {
+        final HashMap<Attribute, Object> ecAttributes = new HashMap<>();
+        for (final Attribute attr : _ecAttributes) {
+            final Object ec = attr.field.get(entity);
+            if (ec != null) {
+                ecAttributes.put(attr, ec);
+            }
+        }
+
+        insertElementCollection(entity, _idAttributes.get(_table)[0], getId(entity), ecAttributes);
+    }
+
+    /**
+     * Finds the entities again by their ids, in batches of ids, and returns them in the same order.
+     */
+    private List<T> findAllByIdsIncludingRemoved(final List<T> entities) {
+        final List<ID> ids = new ArrayList<>(entities.size());
+        for (final T entity : entities) {
+            ids.add(getId(entity));
+        }
+
+        final Map<ID, T> found = new HashMap<>(ids.size());
+        for (int from = 0; from < ids.size(); from += BATCH_SIZE) {
+            final SearchCriteria<T> sc = createSearchCriteria();
+            sc.addAnd(_idAttributes.get(_table)[0], SearchCriteria.Op.IN, ids.subList(from, Math.min(from + BATCH_SIZE, ids.size())).toArray());
+            for (final T entity : searchIncludingRemoved(sc, null, null, false)) {
+                found.put(getId(entity), entity);
+            }
+        }
+
+        final List<T> result = new ArrayList<>(ids.size());
+        for (final ID id : ids) {
+            result.add(found.get(id));
+        }
+        return result;
+    }
+
+    private ID getId(final T entity) {
+        try {
+            return (ID) _idField.get(entity);
+        } catch (final IllegalAccessException e) {
+            throw new CloudRuntimeException("How can it be illegal access...come on", e);
+        }
+    }
+
+    private static boolean isIdAssigned(final Object id) {
+        return id != null && !(id instanceof Number && ((Number) id).longValue() == 0);
+    }
+
     @DB()
     protected T toEntityBean(final ResultSet result, final boolean cache) throws SQLException {
+        return toEntityBean(result, getEntityBeanRowMapper(result), cache, true);
+    }
+
+    /**
+     * Gets the mapper for the rows of the result set to entity beans, callers that map all rows of a statement get it
+     * once, so the other rows are mapped without looking at the result set meta data again.
+     */
+    private EntityRowMapper getEntityBeanRowMapper(final ResultSet result) throws SQLException {
+        return getRowMapper(_factory.getClass(), result);
+    }
+
+    private T toEntityBean(final ResultSet result, final EntityRowMapper mapper, final boolean cache, final boolean loadCollections) throws SQLException {
         final T entity = (T) _factory.newInstance(new Callback[]{NoOp.INSTANCE, new UpdateBuilder(this)});
 
-        toEntityBean(result, entity);
+        toEntityBean(result, entity, mapper, loadCollections);
 
-        if (cache && _cache != null) {
+        if (cache) {
+            putInCache(Collections.singletonList(entity));
+        }
+
+        return entity;
+    }
+
+    private void putInCache(final List<T> entities) {
+        if (_cache == null) {
+            return;
+        }
+        for (final T entity : entities) {
             try {
                 _cache.put(new Element(_idField.get(entity), entity));
             } catch (final Exception e) {
                 s_logger.debug("Can't put it in the cache", e);
             }
         }
-
-        return entity;
     }
 
     @Override
@@ -1873,6 +2358,7 @@ public abstract class GenericDaoBase<T, ID extends Serializable> extends Compone
 
             pstmt.executeUpdate();
             txn.commit();
+            invalidateUuids();
         } catch (final SQLException e) {
             throw new CloudRuntimeException("DB Exception on " + pstmt, e);
         }
@@ -3,10 +3,18 @@ package com.cloud.utils.db;
 import static java.lang.String.format;
 
 import com.cloud.utils.Profiler;
+import com.cloud.utils.mgmt.JmxUtil;
 
-import java.util.HashMap;
+import javax.management.StandardMBean;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.TreeMap;
 import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -29,11 +37,14 @@ import org.slf4j.LoggerFactory;
 //
 public class GlobalLock {
     protected final static Logger s_logger = LoggerFactory.getLogger(GlobalLock.class);
-    private static final Map<String, GlobalLock> s_lockMap = new HashMap<>();
+    // Interning only locks the bin of the name, the reference counts are atomic so no lock monitor is taken in a bin
+    private static final ConcurrentHashMap<String, GlobalLock> s_lockMap = new ConcurrentHashMap<>();
+    private static final ConcurrentHashMap<String, Contention> s_contention = new ConcurrentHashMap<>();
+    static final GlobalLockManager s_mgr = new GlobalLockManager();
     private final String name;
     private int lockCount = 0;
     private Thread ownerThread = null;
-    private int referenceCount = 0;
+    private final AtomicInteger referenceCount = new AtomicInteger();
     private long holdingStartTick = 0;
 
     private GlobalLock(final String name) {
@@ -41,31 +52,43 @@ public class GlobalLock {
     }
 
     public static GlobalLock getInternLock(final String name) {
-        synchronized (s_lockMap) {
-            if (s_lockMap.containsKey(name)) {
-                final GlobalLock lock = s_lockMap.get(name);
-                lock.addRef();
-                return lock;
-            } else {
-                final GlobalLock lock = new GlobalLock(name);
-                lock.addRef();
-                s_lockMap.put(name, lock);
-                return lock;
-            }
-        }
+        return s_lockMap.compute(name, (key, lock) -> {
+            final GlobalLock interned = lock != null ? lock : new GlobalLock(key);
+            interned.addRef();
+            return interned;
+        });
     }
 
-    private static void releaseInternLock(final String name) {
-        synchronized (s_lockMap) {
-            final GlobalLock lock = s_lockMap.get(name);
-            if (lock != null) {
-                if (lock.referenceCount == 0) {
-                    s_lockMap.remove(name);
-                }
-            } else {
-                s_logger.warn("Releasing " + name + ", but it is already released.");
-            }
+    private static void releaseInternLock(final GlobalLock lock) {
+        // Someone may have interned the lock again since its last reference was released
+        s_lockMap.computeIfPresent(lock.name, (key, interned) -> interned == lock && lock.referenceCount.get() == 0 ? null : interned);
+    }
+
+    static int getInternLockCount() {
+        return s_lockMap.size();
+    }
+
+    /**
+     * @return how often the locks of each name family were acquired or failed to be acquired, and how many of these
+     * attempts had to wait for another thread of this process. The family of a name is the name up to its first
+     * digit, re-entrant acquisitions are not counted.
+     */
+    public static List<Map<String, String>> getContention() {
+        final List<Map<String, String>> results = new ArrayList<>();
+        for (final Map.Entry<String, Contention> entry : new TreeMap<>(s_contention).entrySet()) {
+            final Map<String, String> map = new LinkedHashMap<>();
+            map.put("family", entry.getKey());
+            map.put("acquired", Long.toString(entry.getValue().acquired.sum()));
+            map.put("failed", Long.toString(entry.getValue().failed.sum()));
+            map.put("contended", Long.toString(entry.getValue().contended.sum()));
+            map.put("wait_ms", Long.toString(entry.getValue().waitMillis.sum()));
+            results.add(map);
         }
+        return results;
+    }
+
+    public static void resetContention() {
+        s_contention.clear();
     }
 
     public static <T> T executeWithLock(final String operationId, final int lockAcquisitionTimeout, final Callable<T> operation) throws Exception {
@@ -96,31 +119,18 @@ public class GlobalLock {
     }
 
     public int addRef() {
-        synchronized (this) {
-            referenceCount++;
-            return referenceCount;
-        }
+        return referenceCount.incrementAndGet();
     }
 
     public int releaseRef() {
-        final int refCount;
-
-        boolean needToRemove = false;
-        synchronized (this) {
-            referenceCount--;
-            refCount = referenceCount;
-
-            if (referenceCount < 0) {
-                s_logger.warn("Unmatched Global lock " + name + " reference usage detected, check your code!");
-            }
+        final int refCount = referenceCount.decrementAndGet();
 
-            if (referenceCount == 0) {
-                needToRemove = true;
-            }
+        if (refCount < 0) {
+            s_logger.warn("Unmatched Global lock " + name + " reference usage detected, check your code!");
         }
 
-        if (needToRemove) {
-            releaseInternLock(name);
+        if (refCount == 0) {
+            releaseInternLock(this);
         }
 
         return refCount;
@@ -130,6 +140,10 @@ public class GlobalLock {
         int remainingMilliSeconds = timeoutSeconds * 1000;
         final Profiler profiler = new Profiler();
         boolean interrupted = false;
+        boolean contended = false;
+        long waitMillis = 0;
+        // Stays null for re-entrant acquisitions, which are not counted
+        Boolean acquired = null;
         try {
             while (true) {
                 synchronized (this) {
@@ -153,8 +167,11 @@ public class GlobalLock {
                         }
                         profiler.stop();
 
+                        contended = true;
+                        waitMillis += profiler.getDurationInMillis();
                         remainingMilliSeconds -= profiler.getDurationInMillis();
                         if (remainingMilliSeconds < 0) {
+                            acquired = false;
                             return false;
                         }
 
@@ -170,6 +187,7 @@ public class GlobalLock {
                     synchronized (this) {
                         lockCount++;
                         holdingStartTick = System.currentTimeMillis();
+                        acquired = true;
 
                         if (s_logger.isTraceEnabled()) {
                             s_logger.trace("lock " + name + " is acquired, lock count :" + lockCount);
@@ -180,17 +198,34 @@ public class GlobalLock {
                     synchronized (this) {
                         ownerThread = null;
                         releaseRef();
+                        acquired = false;
                         return false;
                     }
                 }
             }
         } finally {
+            if (acquired != null) {
+                recordContention(acquired, contended, waitMillis);
+            }
             if (interrupted) {
                 Thread.currentThread().interrupt();
             }
         }
     }
 
+    private void recordContention(final boolean acquired, final boolean contended, final long waitMillis) {
+        final Contention contention = s_contention.computeIfAbsent(Merovingian2.getKeyPrefix(name), family -> new Contention());
+        if (acquired) {
+            contention.acquired.increment();
+        } else {
+            contention.failed.increment();
+        }
+        if (contended) {
+            contention.contended.increment();
+            contention.waitMillis.add(waitMillis);
+        }
+    }
+
     public boolean unlock() {
         synchronized (this) {
             if (ownerThread != null && ownerThread == Thread.currentThread()) {
@@ -221,4 +256,33 @@ public class GlobalLock {
     public String getName() {
         return name;
     }
+
+    private static class Contention {
+        final LongAdder acquired = new LongAdder();
+        final LongAdder failed = new LongAdder();
+        final LongAdder contended = new LongAdder();
+        final LongAdder waitMillis = new LongAdder();
+    }
+
+    protected static class GlobalLockManager extends StandardMBean implements GlobalLockMBean {
+
+        GlobalLockManager() {
+            super(GlobalLockMBean.class, false);
+            try {
+                JmxUtil.registerMBean("Global Locks", "Global Locks", this);
+            } catch (final Exception e) {
+                s_logger.error("Unable to register mbean", e);
+            }
+        }
+
+        @Override
+        public List<Map<String, String>> getContention() {
+            return GlobalLock.getContention();
+        }
+
+        @Override
+        public void resetContention() {
+            GlobalLock.resetContention();
+        }
+    }
 }
@@ -0,0 +1,14 @@
+package com.cloud.utils.db;
+
+import java.util.List;
+import java.util.Map;
+
+public interface GlobalLockMBean {
+
+    /**
+     * @return the acquisitions and the contention of the locks of this process per name family
+     */
+    List<Map<String, String>> getContention();
+
+    void resetContention();
+}
@@ -10,12 +10,18 @@ import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.ArrayList;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.TimeZone;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -35,11 +41,17 @@ public class Merovingian2 extends StandardMBean implements MerovingianMBean {
     private static final String SELECT_MGMT_LOCKS_SQL = SELECT_SQL + " WHERE mac=?";
     private static final String SELECT_THREAD_LOCKS_SQL = SELECT_SQL + " WHERE mac=? AND ip=?";
     private static final String CLEANUP_THREAD_LOCKS_SQL = "DELETE FROM op_lock WHERE mac=? AND ip=? AND thread=?";
+    private static final long MIN_BACKOFF_MS = 50;
+    private static final long MAX_BACKOFF_MS = 1000;
+    private static final long[] WAIT_TIME_BUCKETS_MS = {10, 100, 1000, 5000, 30000};
     private static Merovingian2 s_instance = null;
     private static final ThreadLocal<Count> s_tls = new ThreadLocal<>();
     private final long _msId;
     TimeZone _gmtTimeZone = TimeZone.getTimeZone("GMT");
     private ConnectionConcierge _concierge = null;
+    // Threads of this server waiting for a lock, by key
+    private final Map<String, Waiters> _waiters = new HashMap<>();
+    private final LockWaitTimes _waitTimes = new LockWaitTimes();
 
     private Merovingian2(final long msId) {
         super(MerovingianMBean.class, false);
@@ -92,28 +104,52 @@ public class Merovingian2 extends StandardMBean implements MerovingianMBean {
         if (s_logger.isTraceEnabled()) {
             s_logger.trace("Acquiring lck-" + key + " with wait time of " + timeInSeconds);
         }
-        final long startTime = InaccurateClock.getTime();
+        final long startTime = System.currentTimeMillis();
+        final long timeout = timeInSeconds * 1000l;
 
-        while ((InaccurateClock.getTime() - startTime) < (timeInSeconds * 1000l)) {
-            final int count = owns(key);
+        Waiters waiters = null;
+        long backoff = MIN_BACKOFF_MS;
+        try {
+            while (true) {
+                final long releases = waiters == null ? 0 : waiters.getReleases();
+                final int count = owns(key);
+
+                if (count >= 1) {
+                    return increment(key, threadName, threadId);
+                } else if (count == 0) {
+                    if (doAcquire(key, threadName, threadId)) {
+                        return true;
+                    }
+                }
 
-            if (count >= 1) {
-                return increment(key, threadName, threadId);
-            } else if (count == 0) {
-                if (doAcquire(key, threadName, threadId)) {
-                    return true;
+                final long waited = System.currentTimeMillis() - startTime;
+                if (waited >= timeout) {
+                    break;
                 }
-            }
-            try {
-                if (s_logger.isTraceEnabled()) {
-                    s_logger.trace("Sleeping more time while waiting for lck-" + key);
+                if (waiters == null) {
+                    // Try again right away, a release from now on wakes us up
+                    waiters = addWaiter(key);
+                    continue;
+                }
+                try {
+                    if (s_logger.isTraceEnabled()) {
+                        s_logger.trace("Sleeping more time while waiting for lck-" + key);
+                    }
+                    // Locks released by this server wake us up, for the other servers we back off
+                    if (!waiters.await(releases, Math.min(backoff, timeout - waited))) {
+                        backoff = Math.min(backoff * 2, MAX_BACKOFF_MS);
+                    }
+                } catch (final InterruptedException e) {
+                    s_logger.debug("[ignored] interupted while aquiring " + key);
                 }
-                Thread.sleep(5000);
-            } catch (final InterruptedException e) {
-                s_logger.debug("[ignored] interupted while aquiring " + key);
             }
+        } finally {
+            if (waiters != null) {
+                removeWaiter(key, waiters);
+            }
+            recordWaitTime(key, System.currentTimeMillis() - startTime);
         }
-        final String msg = "Timed out on acquiring lock " + key + " .  Waited for " + ((InaccurateClock.getTime() - startTime) / 1000) + "seconds";
+        final String msg = "Timed out on acquiring lock " + key + " .  Waited for " + ((System.currentTimeMillis() - startTime) / 1000) + "seconds";
         final Exception e = new CloudRuntimeException(msg);
         s_logger.warn(msg, e);
         return false;
@@ -244,8 +280,11 @@ public class Merovingian2 extends StandardMBean implements MerovingianMBean {
                     rel_sql_pstmt.setString(1, key);
                     rel_sql_pstmt.setLong(2, _msId);
                     final int result = rel_sql_pstmt.executeUpdate();
-                    if (result == 1 && s_logger.isTraceEnabled()) {
-                        s_logger.trace("lck-" + key + " removed");
+                    if (result == 1) {
+                        if (s_logger.isTraceEnabled()) {
+                            s_logger.trace("lck-" + key + " removed");
+                        }
+                        notifyWaiters(key);
                     }
                     decrCount();
                 } catch (final Exception e) {
@@ -314,6 +353,7 @@ public class Merovingian2 extends StandardMBean implements MerovingianMBean {
         try (PreparedStatement pstmt = _concierge.conn().prepareStatement(RELEASE_LOCK_SQL)) {
             pstmt.setString(1, key);
             final int rows = pstmt.executeUpdate();
+            notifyWaiters(key);
             return rows > 0;
         } catch (final Exception e) {
             s_logger.error("releaseLockAsLastResortAndIReallyKnowWhatIAmDoing : Exception: " + e.getMessage());
@@ -330,6 +370,9 @@ public class Merovingian2 extends StandardMBean implements MerovingianMBean {
                     pstmt.setLong(1, msId);
                     final int rows = pstmt.executeUpdate();
                     s_logger.info("Released " + rows + " locks for " + msId);
+                    if (rows > 0) {
+                        notifyAllWaiters();
+                    }
                 } catch (final Exception e) {
                     s_logger.error("cleanupForServer:Exception:" + e.getMessage());
                     throw new CloudRuntimeException("cleanupForServer:Exception:" + e.getMessage(), e);
@@ -382,7 +425,148 @@ public class Merovingian2 extends StandardMBean implements MerovingianMBean {
         }
     }
 
+    protected Waiters addWaiter(final String key) {
+        synchronized (_waiters) {
+            final Waiters waiters = _waiters.computeIfAbsent(key, k -> new Waiters());
+            waiters.count++;
+            return waiters;
+        }
+    }
+
+    protected void removeWaiter(final String key, final Waiters waiters) {
+        synchronized (_waiters) {
+            if (--waiters.count == 0) {
+                _waiters.remove(key);
+            }
+        }
+    }
+
+    protected void notifyWaiters(final String key) {
+        final Waiters waiters;
+        synchronized (_waiters) {
+            waiters = _waiters.get(key);
+        }
+        if (waiters != null) {
+            waiters.wakeUp();
+        }
+    }
+
+    protected void notifyAllWaiters() {
+        final List<Waiters> waiters;
+        synchronized (_waiters) {
+            waiters = new ArrayList<>(_waiters.values());
+        }
+        for (final Waiters w : waiters) {
+            w.wakeUp();
+        }
+    }
+
+    protected void recordWaitTime(final String key, final long millis) {
+        _waitTimes.record(key, millis);
+    }
+
+    /**
+     * @return the key up to its first digit, so the locks of the same kind of objects share their wait times
+     */
+    protected static String getKeyPrefix(final String key) {
+        int end = 0;
+        while (end < key.length() && !Character.isDigit(key.charAt(end))) {
+            end++;
+        }
+        while (end > 0 && !Character.isLetter(key.charAt(end - 1))) {
+            end--;
+        }
+        return end == 0 ? key : key.substring(0, end);
+    }
+
+    @Override
+    public List<Map<String, String>> getLockWaitTimes() {
+        return _waitTimes.toList();
+    }
+
+    @Override
+    public void resetLockWaitTimes() {
+        _waitTimes.clear();
+    }
+
     protected static class Count {
         public int count = 0;
     }
+
+    protected static class Waiters {
+        int count = 0;
+        private long releases = 0;
+
+        synchronized long getReleases() {
+            return releases;
+        }
+
+        synchronized void wakeUp() {
+            releases++;
+            notifyAll();
+        }
+
+        /**
+         * @return whether a lock was released since the given number of releases
+         */
+        synchronized boolean await(final long seen, final long millis) throws InterruptedException {
+            if (releases == seen && millis > 0) {
+                wait(millis);
+            }
+            return releases != seen;
+        }
+    }
+
+    protected static class WaitTimes {
+        private final AtomicLongArray _buckets = new AtomicLongArray(WAIT_TIME_BUCKETS_MS.length + 1);
+        private final AtomicLong _total = new AtomicLong();
+        private final AtomicLong _max = new AtomicLong();
+
+        void record(final long millis) {
+            int bucket = 0;
+            while (bucket < WAIT_TIME_BUCKETS_MS.length && millis >= WAIT_TIME_BUCKETS_MS[bucket]) {
+                bucket++;
+            }
+            _buckets.incrementAndGet(bucket);
+            _total.addAndGet(millis);
+            _max.accumulateAndGet(millis, Math::max);
+        }
+
+        Map<String, String> toMap(final String prefix) {
+            final Map<String, String> map = new LinkedHashMap<>();
+            long count = 0;
+            for (int i = 0; i < _buckets.length(); i++) {
+                count += _buckets.get(i);
+            }
+            map.put("prefix", prefix);
+            map.put("count", Long.toString(count));
+            map.put("total_ms", Long.toString(_total.get()));
+            map.put("max_ms", Long.toString(_max.get()));
+            for (int i = 0; i < WAIT_TIME_BUCKETS_MS.length; i++) {
+                map.put("<" + WAIT_TIME_BUCKETS_MS[i] + "ms", Long.toString(_buckets.get(i)));
+            }
+            map.put(">=" + WAIT_TIME_BUCKETS_MS[WAIT_TIME_BUCKETS_MS.length - 1] + "ms", Long.toString(_buckets.get(WAIT_TIME_BUCKETS_MS.length)));
+            return map;
+        }
+    }
+
+    protected static class LockWaitTimes {
+        private final ConcurrentHashMap<String, WaitTimes> _waitTimes = new ConcurrentHashMap<>();
+
+        void record(final String key, final long millis) {
+            _waitTimes.computeIfAbsent(getKeyPrefix(key), k -> new WaitTimes()).record(millis);
+        }
+
+        List<Map<String, String>> toList() {
+            final List<Map<String, String>> results = new ArrayList<>();
+            for (final Map.Entry<String, WaitTimes> entry : new TreeMap<>(_waitTimes).entrySet()) {
+                results.add(entry.getValue().toMap(entry.getKey()));
+            }
+            return results;
+        }
+
+        void clear() {
+            _waitTimes.clear();
+        }
+    }
 }
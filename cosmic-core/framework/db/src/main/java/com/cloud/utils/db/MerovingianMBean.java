@@ -12,4 +12,11 @@ public interface MerovingianMBean {
     boolean releaseLockAsLastResortAndIReallyKnowWhatIAmDoing(String key);
 
     void cleanupForServer(long msId);
+
+    /**
+     * @return the histogram of the time spent acquiring locks, per key prefix
+     */
+    List<Map<String, String>> getLockWaitTimes();
+
+    void resetLockWaitTimes();
 }
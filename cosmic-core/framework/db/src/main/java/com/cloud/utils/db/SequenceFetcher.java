@@ -43,7 +43,21 @@ public class SequenceFetcher {
     }
 
     public <T> T getNextSequence(final Class<T> clazz, final TableGenerator tg, final Object key, final boolean isRandom) {
-        final Future<T> future = _executors.submit(new Fetcher<>(clazz, tg, key, isRandom));
+        return fetch(new Fetcher<>(clazz, tg, key, isRandom, 1));
+    }
+
+    /**
+     * Reserves a block of count values of the sequence at once.
+     *
+     * @return the first value of the block, the others follow it at the allocation size of the table generator.
+     */
+    public <T> T getNextSequenceBlock(final Class<T> clazz, final TableGenerator tg, final int count) {
+        return fetch(new Fetcher<>(clazz, tg, null, false, count));
+    }
+
+    private <T> T fetch(final Fetcher<T> fetcher) {
+        final TableGenerator tg = fetcher._tg;
+        final Future<T> future = _executors.submit(fetcher);
         try {
             return future.get();
         } catch (final Exception e) {
@@ -65,12 +79,14 @@ public class SequenceFetcher {
         Class<T> _clazz;
         Object _key;
         boolean isRandom = false;
+        int _count;
 
-        protected Fetcher(final Class<T> clazz, final TableGenerator tg, final Object key, final boolean isRandom) {
+        protected Fetcher(final Class<T> clazz, final TableGenerator tg, final Object key, final boolean isRandom, final int count) {
             _tg = tg;
             _clazz = clazz;
             _key = key;
             this.isRandom = isRandom;
+            _count = count;
         }
 
         @Override
@@ -96,7 +112,7 @@ public class SequenceFetcher {
                     if (isRandom) {
                         updateStmt.setInt(2, random.nextInt(10) + 1);
                     } else {
-                        updateStmt.setInt(2, _tg.allocationSize());
+                        updateStmt.setInt(2, _tg.allocationSize() * _count);
                     }
                     if (_key == null) {
                         updateStmt.setString(3, _tg.pkColumnValue());
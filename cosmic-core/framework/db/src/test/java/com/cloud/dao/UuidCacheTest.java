@@ -0,0 +1,32 @@
+package com.cloud.dao;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class UuidCacheTest {
+
+    @Test
+    public void testInvalidateDropsMappingsOfType() {
+        final UuidCache cache = new UuidCache("UuidCacheTest-invalidate", 100, 60);
+        cache.put(String.class, cache.getGeneration(String.class), "uuid-1", 1L);
+        cache.put(Integer.class, cache.getGeneration(Integer.class), "uuid-2", 2L);
+
+        cache.invalidate(String.class);
+
+        Assert.assertNull(cache.get(String.class, "uuid-1"));
+        Assert.assertEquals(Long.valueOf(2L), cache.get(Integer.class, "uuid-2"));
+    }
+
+    @Test
+    public void testMappingReadBeforeInvalidateIsNotCached() {
+        final UuidCache cache = new UuidCache("UuidCacheTest-stale", 100, 60);
+        final long generation = cache.getGeneration(String.class);
+
+        // The entity is expunged while its id is being read from the database
+        cache.invalidate(String.class);
+        cache.put(String.class, generation, "uuid-1", 1L);
+
+        Assert.assertNull(cache.get(String.class, "uuid-1"));
+        Assert.assertEquals(1, cache.getMisses());
+    }
+}
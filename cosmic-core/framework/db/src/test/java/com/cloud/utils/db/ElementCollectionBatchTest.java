@@ -0,0 +1,143 @@
+package com.cloud.utils.db;
+
+import com.cloud.legacymodel.exceptions.CloudRuntimeException;
+
+import javax.persistence.CollectionTable;
+import javax.persistence.Column;
+import javax.persistence.ElementCollection;
+import javax.persistence.Entity;
+import javax.persistence.FetchType;
+import javax.persistence.GeneratedValue;
+import javax.persistence.GenerationType;
+import javax.persistence.Id;
+import javax.persistence.JoinColumn;
+import javax.persistence.Table;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests the loading of the element collections of list queries against the embedded database of the tests.
+ */
+public class ElementCollectionBatchTest {
+    private static final int ENTITIES = 5;
+
+    private final TaggedDao dao = new TaggedDao();
+    private TransactionLegacy txn;
+
+    @Before
+    public void setUp() {
+        execute("CREATE TABLE tagged (id bigint NOT NULL AUTO_INCREMENT, name varchar(255), PRIMARY KEY (id))");
+        execute("CREATE TABLE tagged_tags (tagged_id bigint NOT NULL, tag varchar(255))");
+        for (int i = 1; i <= ENTITIES; i++) {
+            execute("INSERT INTO tagged (id, name) VALUES (" + i + ", 'Record " + i + "')");
+            for (int j = 0; j < i; j++) {
+                execute("INSERT INTO tagged_tags (tagged_id, tag) VALUES (" + i + ", 'tag" + j + "')");
+            }
+        }
+        txn = TransactionLegacy.open("ElementCollectionBatchTest");
+    }
+
+    @After
+    public void tearDown() {
+        txn.close();
+        execute("DROP TABLE IF EXISTS tagged_tags");
+        execute("DROP TABLE IF EXISTS tagged");
+    }
+
+    @Test
+    public void testListLoadsCollectionsInOneQuery() {
+        final List<TaggedVO> entities = dao.listAll();
+
+        Assert.assertEquals(ENTITIES, entities.size());
+        assertTags(entities);
+        Assert.assertEquals(1, dao.getElementCollectionQueries());
+    }
+
+    @Test
+    public void testListLoadsCollectionsPerEntity() {
+        dao._batchLoadElementCollections = false;
+        final List<TaggedVO> entities = dao.listAll();
+
+        Assert.assertEquals(ENTITIES, entities.size());
+        assertTags(entities);
+        Assert.assertEquals(ENTITIES, dao.getElementCollectionQueries());
+    }
+
+    @Test
+    public void testListCachesEntitiesWithCollections() throws Exception {
+        final Map<String, Object> params = new HashMap<>();
+        params.put("cache.size", "100");
+        dao.configure("ElementCollectionBatchTest-cache", params);
+
+        Assert.assertEquals(ENTITIES, dao.listAll().size());
+        final TaggedVO vo = dao.findById(3L);
+
+        // Served from the cache, which only got the entities after their collections were loaded
+        Assert.assertEquals(3, vo.tags.size());
+        Assert.assertEquals(1, dao.getElementCollectionQueries());
+    }
+
+    @Test
+    public void testFindByIdLoadsCollection() {
+        final TaggedVO vo = dao.findById(3L);
+
+        Assert.assertEquals(3, vo.tags.size());
+        Assert.assertEquals(1, dao.getElementCollectionQueries());
+    }
+
+    private static void assertTags(final List<TaggedVO> entities) {
+        for (final TaggedVO vo : entities) {
+            final List<String> expected = new ArrayList<>();
+            for (int j = 0; j < vo.id; j++) {
+                expected.add("tag" + j);
+            }
+            final List<String> tags = new ArrayList<>(vo.tags);
+            Collections.sort(tags);
+            Assert.assertEquals(expected, tags);
+        }
+    }
+
+    private static void execute(final String sql) {
+        try (
+                Connection conn = TransactionLegacy.getStandaloneConnection();
+                PreparedStatement pstmt = conn.prepareStatement(sql)
+        ) {
+            pstmt.execute();
+        } catch (final SQLException e) {
+            throw new CloudRuntimeException("Problem with sql", e);
+        }
+    }
+
+    @Entity
+    @Table(name = "tagged")
+    public static class TaggedVO {
+        @Id
+        @GeneratedValue(strategy = GenerationType.IDENTITY)
+        long id;
+
+        @Column(name = "name")
+        String name;
+
+        @ElementCollection(targetClass = String.class, fetch = FetchType.EAGER)
+        @Column(name = "tag")
+        @CollectionTable(name = "tagged_tags", joinColumns = @JoinColumn(name = "tagged_id"))
+        List<String> tags;
+
+        public TaggedVO() {
+        }
+    }
+
+    public static class TaggedDao extends GenericDaoBase<TaggedVO, Long> implements GenericDao<TaggedVO, Long> {
+    }
+}
@@ -0,0 +1,105 @@
+package com.cloud.utils.db;
+
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.util.TimeZone;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.runners.MockitoJUnitRunner;
+
+@RunWith(MockitoJUnitRunner.class)
+public class EntityRowMapperTest {
+    private static final String[] COLUMNS = {"id", "fld_int", "fld_long", "fld_string"};
+
+    @Mock
+    ResultSet resultSet;
+    @Mock
+    ResultSetMetaData metaData;
+
+    private EntityRowMapper mapper;
+
+    @Before
+    public void setUp() throws SQLException {
+        Mockito.when(metaData.getColumnCount()).thenReturn(COLUMNS.length);
+        for (int index = 1; index <= COLUMNS.length; index++) {
+            Mockito.when(metaData.getTableName(index)).thenReturn("test");
+            Mockito.when(metaData.getColumnName(index)).thenReturn(COLUMNS[index - 1]);
+        }
+        mapper = new EntityRowMapper(DbTestVO.class, metaData, new SqlGenerator(DbTestVO.class).getAllColumns(), TimeZone.getTimeZone("GMT"));
+    }
+
+    @Test
+    public void mapRow() throws SQLException {
+        Mockito.when(resultSet.getLong(1)).thenReturn(10L);
+        Mockito.when(resultSet.getInt(2)).thenReturn(20);
+        Mockito.when(resultSet.getObject(3)).thenReturn(30L);
+        Mockito.when(resultSet.getLong(3)).thenReturn(30L);
+        Mockito.when(resultSet.getBytes(4)).thenReturn("forty".getBytes());
+
+        final DbTestVO vo = new DbTestVO();
+        mapper.map(vo, resultSet);
+
+        Assert.assertEquals(10L, vo.id);
+        Assert.assertEquals(20, vo.getFieldInt());
+        Assert.assertEquals(30L, vo.getFieldLong());
+        Assert.assertEquals("forty", vo.getFieldString());
+    }
+
+    @Test
+    public void mapRowWithNulls() throws SQLException {
+        final DbTestVO vo = new DbTestVO();
+        vo.fieldLong = 1L;
+        vo.fieldString = "value";
+        mapper.map(vo, resultSet);
+
+        Assert.assertNull(vo.fieldLong);
+        Assert.assertNull(vo.fieldString);
+        Mockito.verify(resultSet, Mockito.never()).getLong(3);
+    }
+
+    @Test
+    public void matchesSameShape() throws SQLException {
+        Assert.assertTrue(mapper.matches(DbTestVO.class, metaData));
+        Assert.assertFalse(mapper.matches(DbAnnotatedBase.class, metaData));
+
+        Mockito.when(metaData.getColumnName(4)).thenReturn("fld_other");
+        Assert.assertFalse(mapper.matches(DbTestVO.class, metaData));
+
+        Mockito.when(metaData.getColumnCount()).thenReturn(3);
+        Assert.assertFalse(mapper.matches(DbTestVO.class, metaData));
+    }
+
+    @Test
+    public void mapManyRows() throws SQLException {
+        final DbTestDao dao = new DbTestDao();
+        for (int row = 0; row < 1000; row++) {
+            final boolean nulls = row % 10 == 0;
+            Mockito.when(resultSet.getLong(1)).thenReturn((long) row);
+            Mockito.when(resultSet.getInt(2)).thenReturn(row * 2);
+            Mockito.when(resultSet.getObject(3)).thenReturn(nulls ? null : row * 3L);
+            Mockito.when(resultSet.getLong(3)).thenReturn(nulls ? 0L : row * 3L);
+            Mockito.when(resultSet.getBytes(4)).thenReturn(nulls ? null : ("Record " + row).getBytes());
+
+            final DbTestVO mapped = new DbTestVO();
+            mapper.map(mapped, resultSet);
+
+            // The row mapper must set the same values as the per column lookup it replaces
+            final DbTestVO expected = new DbTestVO();
+            for (int index = 1; index <= COLUMNS.length; index++) {
+                dao.setField(expected, resultSet, metaData, index);
+            }
+
+            Assert.assertEquals(expected.id, mapped.id);
+            Assert.assertEquals(expected.fieldInt, mapped.fieldInt);
+            Assert.assertEquals(expected.fieldLong, mapped.fieldLong);
+            Assert.assertEquals(expected.fieldString, mapped.fieldString);
+        }
+        Mockito.verify(resultSet, Mockito.never()).getMetaData();
+    }
+}
@@ -0,0 +1,116 @@
+package com.cloud.utils.db;
+
+import com.cloud.legacymodel.exceptions.CloudRuntimeException;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests the batched persist, update and expunge of GenericDaoBase against the embedded database of the tests, which
+ * is used when the cosmic.tests.mockdb system property is set.
+ */
+public class GenericDaoBatchTest {
+    private static final int ENTITIES = 1200;
+
+    private final DbTestDao dao = new DbTestDao();
+    private TransactionLegacy txn;
+
+    @Before
+    public void setUp() {
+        try (
+                Connection conn = TransactionLegacy.getStandaloneConnection();
+                PreparedStatement pstmt = conn.prepareStatement("CREATE TABLE test (id bigint NOT NULL AUTO_INCREMENT, fld_int int, fld_long bigint, fld_string varchar(255), " +
+                        "PRIMARY KEY (id))")
+        ) {
+            pstmt.execute();
+        } catch (final SQLException e) {
+            throw new CloudRuntimeException("Problem with sql", e);
+        }
+        txn = TransactionLegacy.open("GenericDaoBatchTest");
+    }
+
+    @After
+    public void tearDown() {
+        txn.close();
+        try (
+                Connection conn = TransactionLegacy.getStandaloneConnection();
+                PreparedStatement pstmt = conn.prepareStatement("DROP TABLE IF EXISTS test")
+        ) {
+            pstmt.execute();
+        } catch (final SQLException e) {
+            throw new CloudRuntimeException("Problem with sql", e);
+        }
+    }
+
+    @Test
+    public void testPersistAll() {
+        final List<DbTestVO> persisted = dao.persistAll(createEntities(ENTITIES));
+
+        Assert.assertEquals(ENTITIES, persisted.size());
+        final Set<Long> ids = new HashSet<>();
+        for (int i = 0; i < ENTITIES; i++) {
+            final DbTestVO vo = persisted.get(i);
+            Assert.assertEquals(i, vo.getFieldInt());
+            Assert.assertEquals("Record " + i, vo.getFieldString());
+            ids.add(vo.id);
+        }
+        Assert.assertEquals(ENTITIES, ids.size());
+        Assert.assertEquals(ENTITIES, dao.listAll().size());
+    }
+
+    @Test
+    public void testUpdateAll() {
+        final List<DbTestVO> persisted = dao.persistAll(createEntities(10));
+        final List<DbTestVO> updates = new ArrayList<>();
+        for (final DbTestVO vo : persisted) {
+            final DbTestVO update = dao.createForUpdate(vo.id);
+            GenericDaoBase.getUpdateBuilder(update).set(update, "fieldString", "Updated " + vo.getFieldInt());
+            if (vo.getFieldInt() % 2 == 0) {
+                GenericDaoBase.getUpdateBuilder(update).set(update, "fieldLong", 42L);
+            }
+            updates.add(update);
+        }
+
+        Assert.assertEquals(10, dao.updateAll(updates));
+
+        for (final DbTestVO vo : persisted) {
+            final DbTestVO found = dao.findById(vo.id);
+            Assert.assertEquals("Updated " + vo.getFieldInt(), found.getFieldString());
+            Assert.assertEquals(vo.getFieldInt() % 2 == 0 ? 42L : vo.getFieldInt(), found.getFieldLong());
+        }
+    }
+
+    @Test
+    public void testExpungeAll() {
+        final List<DbTestVO> persisted = dao.persistAll(createEntities(10));
+
+        Assert.assertTrue(dao.expungeAll(Arrays.asList(persisted.get(0).id, persisted.get(5).id, persisted.get(9).id)));
+
+        Assert.assertEquals(7, dao.listAll().size());
+        Assert.assertNull(dao.findById(persisted.get(5).id));
+        Assert.assertNotNull(dao.findById(persisted.get(4).id));
+    }
+
+    private static List<DbTestVO> createEntities(final int count) {
+        final List<DbTestVO> entities = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            final DbTestVO vo = new DbTestVO();
+            vo.fieldInt = i;
+            vo.fieldLong = (long) i;
+            vo.fieldString = "Record " + i;
+            entities.add(vo);
+        }
+        return entities;
+    }
+}
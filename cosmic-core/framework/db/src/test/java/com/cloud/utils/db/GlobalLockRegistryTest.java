@@ -0,0 +1,143 @@
+package com.cloud.utils.db;
+
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mockito;
+import org.powermock.api.mockito.PowerMockito;
+import org.powermock.core.classloader.annotations.PowerMockIgnore;
+import org.powermock.core.classloader.annotations.PrepareForTest;
+import org.powermock.modules.junit4.PowerMockRunner;
+
+/**
+ * Stress tests the interning of the in-process part of GlobalLock, and counts the contention between the threads of
+ * the process. The database lock itself is mocked.
+ */
+@RunWith(PowerMockRunner.class)
+@PrepareForTest(DbUtil.class)
+@PowerMockIgnore("javax.management.*")
+public class GlobalLockRegistryTest {
+    private static final int THREADS = 16;
+    private static final int ITERATIONS = 20000;
+    private static final int NAMES = 8;
+
+    @Test
+    public void testInternAndRelease() {
+        final int before = GlobalLock.getInternLockCount();
+        final GlobalLock lock = GlobalLock.getInternLock("registry.1");
+        final GlobalLock other = GlobalLock.getInternLock("registry.2");
+
+        Assert.assertSame(lock, GlobalLock.getInternLock("registry.1"));
+        Assert.assertNotSame(lock, other);
+        Assert.assertEquals(before + 2, GlobalLock.getInternLockCount());
+
+        Assert.assertEquals(1, lock.releaseRef());
+        Assert.assertEquals(0, lock.releaseRef());
+        Assert.assertEquals(0, other.releaseRef());
+        Assert.assertEquals(before, GlobalLock.getInternLockCount());
+    }
+
+    @Test
+    public void testConcurrentInternAndRelease() throws Exception {
+        final int before = GlobalLock.getInternLockCount();
+        final ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        try {
+            final List<Callable<Integer>> tasks = new ArrayList<>();
+            for (int i = 0; i < THREADS; i++) {
+                tasks.add(() -> {
+                    int mismatches = 0;
+                    for (int j = 0; j < ITERATIONS; j++) {
+                        final String name = "stress." + ThreadLocalRandom.current().nextInt(NAMES);
+                        final GlobalLock first = GlobalLock.getInternLock(name);
+                        final GlobalLock second = GlobalLock.getInternLock(name);
+                        // While a reference is held the name must stay interned to the same lock
+                        if (first != second || !name.equals(first.getName())) {
+                            mismatches++;
+                        }
+                        second.releaseRef();
+                        first.releaseRef();
+                    }
+                    return mismatches;
+                });
+            }
+            for (final Future<Integer> future : executor.invokeAll(tasks)) {
+                Assert.assertEquals(0, future.get().intValue());
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        Assert.assertEquals(before, GlobalLock.getInternLockCount());
+    }
+
+    @Test
+    public void testContentionIsCountedPerFamily() throws Exception {
+        PowerMockito.mockStatic(DbUtil.class);
+        PowerMockito.when(DbUtil.getGlobalLock(Mockito.anyString(), Mockito.anyInt())).thenReturn(true);
+        PowerMockito.when(DbUtil.releaseGlobalLock(Mockito.anyString())).thenReturn(true);
+        GlobalLock.resetContention();
+
+        final GlobalLock lock = GlobalLock.getInternLock("contention.1");
+        try {
+            Assert.assertTrue(lock.lock(10));
+            // Re-entrant acquisitions are not counted
+            Assert.assertTrue(lock.lock(10));
+            Assert.assertTrue(lock.unlock());
+
+            final AtomicBoolean timedOut = new AtomicBoolean();
+            final Thread failing = new Thread(() -> timedOut.set(!lock.lock(1)));
+            failing.start();
+            failing.join(10000L);
+            Assert.assertTrue(timedOut.get());
+
+            final AtomicBoolean acquired = new AtomicBoolean();
+            final Thread waiting = new Thread(() -> {
+                if (lock.lock(10)) {
+                    acquired.set(true);
+                    lock.unlock();
+                }
+            });
+            waiting.start();
+            while (waiting.getState() != Thread.State.TIMED_WAITING && waiting.isAlive()) {
+                Thread.sleep(10);
+            }
+            Assert.assertTrue(lock.unlock());
+            waiting.join(10000L);
+            Assert.assertTrue(acquired.get());
+        } finally {
+            lock.releaseRef();
+        }
+
+        final Map<String, String> contention = getFamily(GlobalLock.getContention(), "contention");
+        Assert.assertEquals("2", contention.get("acquired"));
+        Assert.assertEquals("1", contention.get("failed"));
+        Assert.assertEquals("2", contention.get("contended"));
+        Assert.assertTrue(Long.parseLong(contention.get("wait_ms")) > 0);
+
+        // The same numbers are published through JMX
+        Assert.assertEquals(GlobalLock.getContention(), GlobalLock.s_mgr.getContention());
+        Assert.assertTrue(ManagementFactory.getPlatformMBeanServer().isRegistered(new ObjectName("com.cloud:type=Global Locks, name=Global Locks")));
+    }
+
+    private static Map<String, String> getFamily(final List<Map<String, String>> contention, final String family) {
+        for (final Map<String, String> map : contention) {
+            if (family.equals(map.get("family"))) {
+                return map;
+            }
+        }
+        Assert.fail("No contention recorded for " + family);
+        return null;
+    }
+}
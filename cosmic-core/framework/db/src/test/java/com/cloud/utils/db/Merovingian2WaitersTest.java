@@ -0,0 +1,109 @@
+package com.cloud.utils.db;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests the parts of Merovingian2 that don't need the database: waking up the waiters of a lock and keeping the wait
+ * times per key prefix.
+ */
+public class Merovingian2WaitersTest {
+
+    @Test
+    public void testWaiterIsWokenUpOnRelease() throws Exception {
+        final Merovingian2.Waiters waiters = new Merovingian2.Waiters();
+        final long seen = waiters.getReleases();
+        final CountDownLatch waiting = new CountDownLatch(1);
+        final AtomicBoolean released = new AtomicBoolean();
+        final Thread waiter = new Thread(() -> {
+            waiting.countDown();
+            try {
+                released.set(waiters.await(seen, 10000L));
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        waiter.start();
+        Assert.assertTrue(waiting.await(10, TimeUnit.SECONDS));
+
+        final long start = System.currentTimeMillis();
+        waiters.wakeUp();
+        waiter.join(10000L);
+
+        Assert.assertTrue(released.get());
+        Assert.assertTrue(System.currentTimeMillis() - start < 5000L);
+    }
+
+    @Test
+    public void testReleaseBeforeAwaitIsNotMissed() throws Exception {
+        final Merovingian2.Waiters waiters = new Merovingian2.Waiters();
+        final long seen = waiters.getReleases();
+        waiters.wakeUp();
+
+        final long start = System.currentTimeMillis();
+        Assert.assertTrue(waiters.await(seen, 10000L));
+        Assert.assertTrue(System.currentTimeMillis() - start < 5000L);
+    }
+
+    @Test
+    public void testAwaitTimesOutWithoutRelease() throws Exception {
+        final Merovingian2.Waiters waiters = new Merovingian2.Waiters();
+
+        Assert.assertFalse(waiters.await(waiters.getReleases(), 100L));
+    }
+
+    @Test
+    public void testWaitTimeBuckets() {
+        final Merovingian2.WaitTimes waitTimes = new Merovingian2.WaitTimes();
+        waitTimes.record(5L);
+        waitTimes.record(50L);
+        waitTimes.record(60000L);
+
+        final Map<String, String> map = waitTimes.toMap("vm");
+        Assert.assertEquals("vm", map.get("prefix"));
+        Assert.assertEquals("3", map.get("count"));
+        Assert.assertEquals("60055", map.get("total_ms"));
+        Assert.assertEquals("60000", map.get("max_ms"));
+        Assert.assertEquals("1", map.get("<10ms"));
+        Assert.assertEquals("1", map.get("<100ms"));
+        Assert.assertEquals("0", map.get("<1000ms"));
+        Assert.assertEquals("1", map.get(">=30000ms"));
+    }
+
+    @Test
+    public void testLockWaitTimesPerKeyPrefix() {
+        final Merovingian2.LockWaitTimes lockWaitTimes = new Merovingian2.LockWaitTimes();
+        lockWaitTimes.record("vm.1", 5L);
+        lockWaitTimes.record("vm.2", 2000L);
+        lockWaitTimes.record("secStorageVm-1", 50L);
+
+        final List<Map<String, String>> waitTimes = lockWaitTimes.toList();
+        Assert.assertEquals(2, waitTimes.size());
+        Assert.assertEquals("secStorageVm", waitTimes.get(0).get("prefix"));
+        Assert.assertEquals("1", waitTimes.get(0).get("count"));
+        Assert.assertEquals("1", waitTimes.get(0).get("<100ms"));
+        Assert.assertEquals("vm", waitTimes.get(1).get("prefix"));
+        Assert.assertEquals("2", waitTimes.get(1).get("count"));
+        Assert.assertEquals("2005", waitTimes.get(1).get("total_ms"));
+        Assert.assertEquals("2000", waitTimes.get(1).get("max_ms"));
+        Assert.assertEquals("1", waitTimes.get(1).get("<10ms"));
+        Assert.assertEquals("1", waitTimes.get(1).get("<5000ms"));
+
+        lockWaitTimes.clear();
+        Assert.assertTrue(lockWaitTimes.toList().isEmpty());
+    }
+
+    @Test
+    public void testGetKeyPrefix() {
+        Assert.assertEquals("vm", Merovingian2.getKeyPrefix("vm.1234"));
+        Assert.assertEquals("secStorageVm", Merovingian2.getKeyPrefix("secStorageVm-12"));
+        Assert.assertEquals("EventPurge", Merovingian2.getKeyPrefix("EventPurge"));
+        Assert.assertEquals("1234", Merovingian2.getKeyPrefix("1234"));
+    }
+}
@@ -0,0 +1,109 @@
+package com.cloud.framework.messagebus;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * AsyncMessageSubscriber delivers messages to a subscriber on an executor
+ * instead of on the publishing thread, so a slow subscriber does not hold up
+ * the publisher.  Messages are delivered one at a time and in the order they
+ * were published.  At most maxPendingMessages are queued; when the subscriber
+ * falls further behind, new messages are dropped and counted.
+ */
+public class AsyncMessageSubscriber implements MessageSubscriber {
+    private static final Logger s_logger = LoggerFactory.getLogger(AsyncMessageSubscriber.class);
+
+    private final MessageSubscriber _subscriber;
+    private final Executor _executor;
+    private final int _maxPendingMessages;
+
+    private final Queue<Message> _pendingMessages = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger _pendingCount = new AtomicInteger();
+    private final AtomicBoolean _draining = new AtomicBoolean();
+    private final AtomicLong _dropped = new AtomicLong();
+
+    public AsyncMessageSubscriber(final MessageSubscriber subscriber, final Executor executor, final int maxPendingMessages) {
+        assert (subscriber != null);
+        assert (executor != null);
+        _subscriber = subscriber;
+        _executor = executor;
+        _maxPendingMessages = maxPendingMessages;
+    }
+
+    public MessageSubscriber getSubscriber() {
+        return _subscriber;
+    }
+
+    public int getPendingCount() {
+        return _pendingCount.get();
+    }
+
+    public long getDroppedCount() {
+        return _dropped.get();
+    }
+
+    @Override
+    public void onPublishMessage(final String senderAddress, final String subject, final Object args) {
+        if (_pendingCount.incrementAndGet() > _maxPendingMessages) {
+            _pendingCount.decrementAndGet();
+            final long dropped = _dropped.incrementAndGet();
+            if (dropped == 1 || dropped % 1000 == 0) {
+                s_logger.warn("Subscriber " + _subscriber + " is falling behind, dropped " + dropped + " messages so far, last one on subject " + subject);
+            }
+            return;
+        }
+        _pendingMessages.offer(new Message(senderAddress, subject, args));
+        scheduleDrain();
+    }
+
+    private void scheduleDrain() {
+        if (_draining.compareAndSet(false, true)) {
+            try {
+                _executor.execute(this::drain);
+            } catch (final RejectedExecutionException e) {
+                _draining.set(false);
+                s_logger.warn("Unable to schedule message delivery to subscriber " + _subscriber, e);
+            }
+        }
+    }
+
+    private void drain() {
+        try {
+            Message message;
+            while ((message = _pendingMessages.poll()) != null) {
+                _pendingCount.decrementAndGet();
+                try {
+                    _subscriber.onPublishMessage(message._senderAddress, message._subject, message._args);
+                } catch (final RuntimeException e) {
+                    s_logger.warn("Subscriber " + _subscriber + " failed to handle message on subject " + message._subject, e);
+                }
+            }
+        } finally {
+            _draining.set(false);
+        }
+        // A message may have been queued after the last poll but before the flag was cleared
+        if (!_pendingMessages.isEmpty()) {
+            scheduleDrain();
+        }
+    }
+
+    private static class Message {
+        private final String _senderAddress;
+        private final String _subject;
+        private final Object _args;
+
+        public Message(final String senderAddress, final String subject, final Object args) {
+            _senderAddress = senderAddress;
+            _subject = subject;
+            _args = args;
+        }
+    }
+}
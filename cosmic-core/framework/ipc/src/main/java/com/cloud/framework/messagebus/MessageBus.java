@@ -9,6 +9,12 @@ public interface MessageBus {
 
     void subscribe(String subject, MessageSubscriber subscriber);
 
+    /**
+     * Subscribes with asynchronous delivery: messages are handed to the subscriber on a separate thread,
+     * in order, and dropped when more than maxPendingMessages are waiting to be delivered.
+     */
+    void subscribe(String subject, MessageSubscriber subscriber, int maxPendingMessages);
+
     void unsubscribe(String subject, MessageSubscriber subscriber);
 
     void clearAll();
@@ -2,58 +2,44 @@ package com.cloud.framework.messagebus;
 
 import com.cloud.framework.serializer.MessageSerializer;
 import com.cloud.legacymodel.exceptions.CloudRuntimeException;
+import com.cloud.utils.concurrency.NamedThreadFactory;
 import com.cloud.utils.db.TransactionLegacy;
 
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+/**
+ * MessageBusBase delivers messages published on a subject to the subscribers
+ * of that subject and of all its parent subjects, deepest first, ending with
+ * the subscribers of the root subject "/".  Subjects are dot separated paths,
+ * a message on "Host.123" reaches subscribers of "Host.123", "Host" and "/".
+ * <p>
+ * Subscribers are indexed by subject in a concurrent map of copy-on-write
+ * lists, so publishing does not take any lock and subscribing or
+ * unsubscribing, also from within a subscriber, never waits for a publish.
+ */
 public class MessageBusBase implements MessageBus {
 
     private static final Logger s_logger = LoggerFactory.getLogger(MessageBusBase.class);
-    private final Gate _gate;
-    private final List<ActionRecord> _pendingActions;
-    private final SubscriptionNode _subscriberRoot;
+    private static final String ROOT_SUBJECT = "/";
+
+    private final ConcurrentHashMap<String, CopyOnWriteArrayList<MessageSubscriber>> _subscribers = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, TopicStatistics> _statistics = new ConcurrentHashMap<>();
+    private volatile ExecutorService _asyncExecutor;
     private MessageSerializer _messageSerializer;
 
     public MessageBusBase() {
-        _gate = new Gate();
-        _pendingActions = new ArrayList<>();
-
-        _subscriberRoot = new SubscriptionNode(null, "/", null);
-    }
-
-    private static SubscriptionNode locate(final String[] subjectPathTokens, final SubscriptionNode current, final List<SubscriptionNode> chainFromTop, final boolean createPath) {
-
-        assert (current != null);
-        assert (subjectPathTokens != null);
-        assert (subjectPathTokens.length > 0);
-
-        if (chainFromTop != null) {
-            chainFromTop.add(current);
-        }
-
-        SubscriptionNode next = current.getChild(subjectPathTokens[0]);
-        if (next == null) {
-            if (createPath) {
-                next = new SubscriptionNode(current, subjectPathTokens[0], null);
-                current.addChild(subjectPathTokens[0], next);
-            } else {
-                return null;
-            }
-        }
-
-        if (subjectPathTokens.length > 1) {
-            return locate(Arrays.copyOfRange(subjectPathTokens, 1, subjectPathTokens.length), next, chainFromTop, createPath);
-        } else {
-            return next;
-        }
     }
 
     @Override
@@ -70,66 +56,39 @@ public class MessageBusBase implements MessageBus {
     public void subscribe(final String subject, final MessageSubscriber subscriber) {
         assert (subject != null);
         assert (subscriber != null);
-        if (_gate.enter()) {
-            if (s_logger.isTraceEnabled()) {
-                s_logger.trace("Enter gate in message bus subscribe");
-            }
-            try {
-                final SubscriptionNode current = locate(subject, null, true);
-                assert (current != null);
-                current.addSubscriber(subscriber);
-            } finally {
-                _gate.leave();
-            }
-        } else {
-            synchronized (_pendingActions) {
-                _pendingActions.add(new ActionRecord(ActionType.Subscribe, subject, subscriber));
-            }
-        }
+        _subscribers.compute(subject, (key, subscribers) -> {
+            final CopyOnWriteArrayList<MessageSubscriber> list = subscribers != null ? subscribers : new CopyOnWriteArrayList<>();
+            list.addIfAbsent(subscriber);
+            return list;
+        });
+    }
+
+    @Override
+    public void subscribe(final String subject, final MessageSubscriber subscriber, final int maxPendingMessages) {
+        subscribe(subject, new AsyncMessageSubscriber(subscriber, getAsyncExecutor(), maxPendingMessages));
     }
 
     @Override
     public void unsubscribe(final String subject, final MessageSubscriber subscriber) {
-        if (_gate.enter()) {
-            if (s_logger.isTraceEnabled()) {
-                s_logger.trace("Enter gate in message bus unsubscribe");
-            }
-            try {
-                if (subject != null) {
-                    final SubscriptionNode current = locate(subject, null, false);
-                    if (current != null) {
-                        current.removeSubscriber(subscriber, false);
-                    }
-                } else {
-                    _subscriberRoot.removeSubscriber(subscriber, true);
-                }
-            } finally {
-                _gate.leave();
-            }
+        if (subject != null) {
+            removeSubscriber(subject, subscriber);
         } else {
-            synchronized (_pendingActions) {
-                _pendingActions.add(new ActionRecord(ActionType.Unsubscribe, subject, subscriber));
+            for (final String key : _subscribers.keySet()) {
+                removeSubscriber(key, subscriber);
             }
         }
     }
 
+    private void removeSubscriber(final String subject, final MessageSubscriber subscriber) {
+        _subscribers.computeIfPresent(subject, (key, subscribers) -> {
+            subscribers.removeIf(s -> s == subscriber || s instanceof AsyncMessageSubscriber && ((AsyncMessageSubscriber) s).getSubscriber() == subscriber);
+            return subscribers.isEmpty() ? null : subscribers;
+        });
+    }
+
     @Override
     public void clearAll() {
-        if (_gate.enter()) {
-            if (s_logger.isTraceEnabled()) {
-                s_logger.trace("Enter gate in message bus clearAll");
-            }
-            try {
-                _subscriberRoot.clearAll();
-                doPrune();
-            } finally {
-                _gate.leave();
-            }
-        } else {
-            synchronized (_pendingActions) {
-                _pendingActions.add(new ActionRecord(ActionType.ClearAll, null, null));
-            }
-        }
+        _subscribers.clear();
     }
 
     @Override
@@ -139,94 +98,58 @@ public class MessageBusBase implements MessageBus {
             final String errMsg = "NO EVENT PUBLISH CAN BE WRAPPED WITHIN DB TRANSACTION!";
             s_logger.error(errMsg, new CloudRuntimeException(errMsg));
         }
-        if (_gate.enter(true)) {
-            if (s_logger.isTraceEnabled()) {
-                s_logger.trace("Enter gate in message bus publish");
-            }
-            try {
-                final List<SubscriptionNode> chainFromTop = new ArrayList<>();
-                final SubscriptionNode current = locate(subject, chainFromTop, false);
 
-                if (current != null) {
-                    current.notifySubscribers(senderAddress, subject, args);
-                }
-
-                Collections.reverse(chainFromTop);
-                for (final SubscriptionNode node : chainFromTop) {
-                    node.notifySubscribers(senderAddress, subject, args);
-                }
-            } finally {
-                _gate.leave();
+        final long startTick = System.nanoTime();
+        int fanOut = 0;
+        if (!ROOT_SUBJECT.equals(subject)) {
+            String current = subject;
+            while (current != null) {
+                fanOut += notifySubscribers(current, senderAddress, subject, args);
+                final int index = current.lastIndexOf('.');
+                current = index > 0 ? current.substring(0, index) : null;
             }
         }
-    }
+        fanOut += notifySubscribers(ROOT_SUBJECT, senderAddress, subject, args);
 
-    private void doPrune() {
-        final List<SubscriptionNode> trimNodes = new ArrayList<>();
-        _subscriberRoot.prune(trimNodes);
+        _statistics.computeIfAbsent(subject, k -> new TopicStatistics()).record(fanOut, System.nanoTime() - startTick);
+    }
 
-        while (trimNodes.size() > 0) {
-            final SubscriptionNode node = trimNodes.remove(0);
-            final SubscriptionNode parent = node.getParent();
-            if (parent != null) {
-                parent.removeChild(node.getNodeKey());
-                if (parent.isTrimmable()) {
-                    trimNodes.add(parent);
-                }
-            }
+    private int notifySubscribers(final String key, final String senderAddress, final String subject, final Object args) {
+        final List<MessageSubscriber> subscribers = _subscribers.get(key);
+        if (subscribers == null) {
+            return 0;
         }
+        int count = 0;
+        for (final MessageSubscriber subscriber : subscribers) {
+            subscriber.onPublishMessage(senderAddress, subject, args);
+            count++;
+        }
+        return count;
     }
 
-    private void onGateOpen() {
-        synchronized (_pendingActions) {
-            ActionRecord record = null;
-            while (_pendingActions.size() > 0) {
-                record = _pendingActions.remove(0);
-                switch (record.getType()) {
-                    case Subscribe: {
-                        final SubscriptionNode current = locate(record.getSubject(), null, true);
-                        assert (current != null);
-                        current.addSubscriber(record.getSubscriber());
-                    }
-                    break;
-
-                    case Unsubscribe:
-                        if (record.getSubject() != null) {
-                            final SubscriptionNode current = locate(record.getSubject(), null, false);
-                            if (current != null) {
-                                current.removeSubscriber(record.getSubscriber(), false);
-                            }
-                        } else {
-                            _subscriberRoot.removeSubscriber(record.getSubscriber(), true);
-                        }
-                        break;
-
-                    case ClearAll:
-                        _subscriberRoot.clearAll();
-                        break;
-
-                    case Prune:
-                        doPrune();
-                        break;
-
-                    default:
-                        assert (false);
-                        break;
+    private ExecutorService getAsyncExecutor() {
+        if (_asyncExecutor == null) {
+            synchronized (this) {
+                if (_asyncExecutor == null) {
+                    _asyncExecutor = Executors.newCachedThreadPool(new NamedThreadFactory("MessageBus-Async"));
                 }
             }
         }
+        return _asyncExecutor;
     }
 
-    private SubscriptionNode locate(final String subject, final List<SubscriptionNode> chainFromTop, final boolean createPath) {
-
-        assert (subject != null);
-        // "/" is special name for root node
-        if (subject.equals("/")) {
-            return _subscriberRoot;
-        }
+    /**
+     * @return a snapshot of the publish statistics, keyed by subject.
+     */
+    public Map<String, TopicStatistics> getStatistics() {
+        return Collections.unmodifiableMap(new HashMap<>(_statistics));
+    }
 
-        final String[] subjectPathTokens = subject.split("\\.");
-        return locate(subjectPathTokens, _subscriberRoot, chainFromTop, createPath);
+    /**
+     * @return the subjects that currently have subscribers.
+     */
+    public List<String> getSubscribedSubjects() {
+        return new ArrayList<>(_subscribers.keySet());
     }
 
     private boolean noDbTxn() {
@@ -234,184 +157,48 @@ public class MessageBusBase implements MessageBus {
         return !txn.dbTxnStarted();
     }
 
-    //
-    // Support inner classes
-    //
-    private static enum ActionType {
-        Subscribe, Unsubscribe, ClearAll, Prune
-    }
-
-    private static class ActionRecord {
-        private final ActionType _type;
-        private final String _subject;
-        private final MessageSubscriber _subscriber;
+    public static class TopicStatistics {
+        private final AtomicLong _published = new AtomicLong();
+        private final AtomicLong _delivered = new AtomicLong();
+        private final AtomicLong _publishNanos = new AtomicLong();
+        private final AtomicLong _maxPublishNanos = new AtomicLong();
 
-        public ActionRecord(final ActionType type, final String subject, final MessageSubscriber subscriber) {
-            _type = type;
-            _subject = subject;
-            _subscriber = subscriber;
-        }
-
-        public ActionType getType() {
-            return _type;
-        }
-
-        public String getSubject() {
-            return _subject;
-        }
-
-        public MessageSubscriber getSubscriber() {
-            return _subscriber;
-        }
-    }
-
-    private static class SubscriptionNode {
-        private final String _nodeKey;
-        private final List<MessageSubscriber> _subscribers;
-        private final Map<String, SubscriptionNode> _children;
-        private final SubscriptionNode _parent;
-
-        public SubscriptionNode(final SubscriptionNode parent, final String nodeKey, final MessageSubscriber subscriber) {
-            assert (nodeKey != null);
-            _parent = parent;
-            _nodeKey = nodeKey;
-            _subscribers = new ArrayList<>();
-
-            if (subscriber != null) {
-                _subscribers.add(subscriber);
-            }
-
-            _children = new HashMap<>();
-        }
-
-        public SubscriptionNode getParent() {
-            return _parent;
-        }
-
-        public String getNodeKey() {
-            return _nodeKey;
-        }
-
-        public List<MessageSubscriber> getSubscriber() {
-            return _subscribers;
-        }
-
-        public void addSubscriber(final MessageSubscriber subscriber) {
-            if (!_subscribers.contains(subscriber)) {
-                _subscribers.add(subscriber);
+        private void record(final int fanOut, final long nanos) {
+            _published.incrementAndGet();
+            _delivered.addAndGet(fanOut);
+            _publishNanos.addAndGet(nanos);
+            long max;
+            while (nanos > (max = _maxPublishNanos.get()) && !_maxPublishNanos.compareAndSet(max, nanos)) {
+                // retry until the maximum is updated or another thread recorded a longer publish
             }
         }
 
-        public void removeSubscriber(final MessageSubscriber subscriber, final boolean recursively) {
-            if (recursively) {
-                for (final Map.Entry<String, SubscriptionNode> entry : _children.entrySet()) {
-                    entry.getValue().removeSubscriber(subscriber, true);
-                }
-            }
-            _subscribers.remove(subscriber);
+        public long getPublishedCount() {
+            return _published.get();
         }
 
-        public SubscriptionNode getChild(final String key) {
-            return _children.get(key);
+        public long getDeliveredCount() {
+            return _delivered.get();
         }
 
-        public void addChild(final String key, final SubscriptionNode childNode) {
-            _children.put(key, childNode);
+        public double getAverageFanOut() {
+            final long published = getPublishedCount();
+            return published == 0 ? 0 : (double) getDeliveredCount() / published;
         }
 
-        public void removeChild(final String key) {
-            _children.remove(key);
+        public long getAveragePublishNanos() {
+            final long published = getPublishedCount();
+            return published == 0 ? 0 : _publishNanos.get() / published;
         }
 
-        public void clearAll() {
-            // depth-first
-            for (final Map.Entry<String, SubscriptionNode> entry : _children.entrySet()) {
-                entry.getValue().clearAll();
-            }
-            _subscribers.clear();
+        public long getMaxPublishNanos() {
+            return _maxPublishNanos.get();
         }
 
-        public void prune(final List<SubscriptionNode> trimNodes) {
-            assert (trimNodes != null);
-
-            for (final Map.Entry<String, SubscriptionNode> entry : _children.entrySet()) {
-                entry.getValue().prune(trimNodes);
-            }
-
-            if (isTrimmable()) {
-                trimNodes.add(this);
-            }
-        }
-
-        public void notifySubscribers(final String senderAddress, final String subject, final Object args) {
-            for (final MessageSubscriber subscriber : _subscribers) {
-                subscriber.onPublishMessage(senderAddress, subject, args);
-            }
-        }
-
-        public boolean isTrimmable() {
-            return _children.size() == 0 && _subscribers.size() == 0;
-        }
-    }
-
-    private class Gate {
-        private int _reentranceCount;
-        private Thread _gateOwner;
-
-        public Gate() {
-            _reentranceCount = 0;
-            _gateOwner = null;
-        }
-
-        public boolean enter() {
-            return enter(false);
-        }
-
-        public boolean enter(final boolean wait) {
-            while (true) {
-                synchronized (this) {
-                    if (_reentranceCount == 0) {
-                        assert (_gateOwner == null);
-
-                        _reentranceCount++;
-                        _gateOwner = Thread.currentThread();
-                        return true;
-                    } else {
-                        if (wait) {
-                            try {
-                                wait();
-                            } catch (final InterruptedException e) {
-                                s_logger.debug("[ignored] interupted while guarding re-entrance on message bus.");
-                            }
-                        } else {
-                            break;
-                        }
-                    }
-                }
-            }
-
-            return false;
-        }
-
-        public void leave() {
-            synchronized (this) {
-                if (_reentranceCount > 0) {
-                    try {
-                        assert (_gateOwner == Thread.currentThread());
-
-                        onGateOpen();
-                    } finally {
-                        if (s_logger.isTraceEnabled()) {
-                            s_logger.trace("Open gate of message bus");
-                        }
-                        _reentranceCount--;
-                        assert (_reentranceCount == 0);
-                        _gateOwner = null;
-
-                        notifyAll();
-                    }
-                }
-            }
+        @Override
+        public String toString() {
+            return "published=" + getPublishedCount() + ", fanOut=" + String.format("%.2f", getAverageFanOut()) + ", avgPublishUs=" + getAveragePublishNanos() / 1000 +
+                    ", maxPublishUs=" + getMaxPublishNanos() / 1000;
         }
     }
 }
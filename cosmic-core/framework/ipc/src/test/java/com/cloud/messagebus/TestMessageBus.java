@@ -1,11 +1,18 @@
 package com.cloud.messagebus;
 
+import com.cloud.framework.messagebus.AsyncMessageSubscriber;
 import com.cloud.framework.messagebus.MessageBus;
 import com.cloud.framework.messagebus.MessageDetector;
 import com.cloud.framework.messagebus.MessageSubscriber;
 import com.cloud.framework.messagebus.PublishScope;
 
 import javax.inject.Inject;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 
 import junit.framework.TestCase;
 import org.junit.Assert;
@@ -101,6 +108,72 @@ public class TestMessageBus extends TestCase {
         _messageBus.clearAll();
     }
 
+    @Test
+    public void testSubscribeFromWithinSubscriber() {
+        final MessageSubscriber lateSubscriber = Mockito.mock(MessageSubscriber.class);
+        _messageBus.subscribe("Host", new MessageSubscriber() {
+            @Override
+            public void onPublishMessage(final String senderAddress, final String subject, final Object args) {
+                _messageBus.subscribe("Host", lateSubscriber);
+            }
+        });
+
+        _messageBus.publish(null, "Host", PublishScope.LOCAL, null);
+        Mockito.verify(lateSubscriber, Mockito.times(0)).onPublishMessage(null, "Host", null);
+
+        _messageBus.publish(null, "Host", PublishScope.LOCAL, null);
+        Mockito.verify(lateSubscriber).onPublishMessage(null, "Host", null);
+
+        _messageBus.clearAll();
+    }
+
+    @Test
+    public void testAsyncSubscriber() throws InterruptedException {
+        final CountDownLatch latch = new CountDownLatch(2);
+        final List<String> subjects = new CopyOnWriteArrayList<>();
+        final MessageSubscriber subscriber = new MessageSubscriber() {
+            @Override
+            public void onPublishMessage(final String senderAddress, final String subject, final Object args) {
+                subjects.add(subject);
+                latch.countDown();
+            }
+        };
+        _messageBus.subscribe("Host", subscriber, 10);
+
+        _messageBus.publish(null, "Host.1", PublishScope.LOCAL, null);
+        _messageBus.publish(null, "Host.2", PublishScope.LOCAL, null);
+
+        Assert.assertTrue(latch.await(10, TimeUnit.SECONDS));
+        Assert.assertEquals(Arrays.asList("Host.1", "Host.2"), subjects);
+
+        _messageBus.unsubscribe("Host", subscriber);
+        _messageBus.publish(null, "Host.3", PublishScope.LOCAL, null);
+        Assert.assertEquals(2, subjects.size());
+
+        _messageBus.clearAll();
+    }
+
+    @Test
+    public void testAsyncSubscriberDropsWhenFull() throws InterruptedException {
+        final CountDownLatch blocked = new CountDownLatch(1);
+        final MessageSubscriber subscriber = new MessageSubscriber() {
+            @Override
+            public void onPublishMessage(final String senderAddress, final String subject, final Object args) {
+                try {
+                    blocked.await();
+                } catch (final InterruptedException e) {
+                    s_logger.debug("[ignored] .");
+                }
+            }
+        };
+        final AsyncMessageSubscriber asyncSubscriber = new AsyncMessageSubscriber(subscriber, Executors.newSingleThreadExecutor(), 2);
+        for (int i = 0; i < 10; i++) {
+            asyncSubscriber.onPublishMessage(null, "Host", null);
+        }
+        Assert.assertTrue(asyncSubscriber.getDroppedCount() >= 7);
+        blocked.countDown();
+    }
+
     public void testMessageDetector() {
         final MessageDetector detector = new MessageDetector();
         detector.open(_messageBus, new String[]{"VM", "Host"});
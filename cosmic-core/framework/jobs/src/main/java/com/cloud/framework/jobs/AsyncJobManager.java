@@ -75,6 +75,14 @@ public interface AsyncJobManager extends Manager {
 
     AsyncJob queryJob(long jobId, boolean updatePollTime);
 
+    /**
+     * Queries a job, waiting for it to complete first if it is still in progress.
+     *
+     * @param waitInMilliSeconds maximum time to wait for the job to complete, limited by job.query.max.wait
+     * @return the job, either completed or still in progress after the wait timed out
+     */
+    AsyncJob queryJob(long jobId, boolean updatePollTime, long waitInMilliSeconds);
+
     String marshallResultObject(Serializable obj);
 
     Object unmarshallResultObject(AsyncJob job);
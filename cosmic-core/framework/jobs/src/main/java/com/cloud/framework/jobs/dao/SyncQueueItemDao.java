@@ -3,6 +3,7 @@ package com.cloud.framework.jobs.dao;
 import com.cloud.framework.jobs.impl.SyncQueueItemVO;
 import com.cloud.utils.db.GenericDao;
 
+import java.util.Date;
 import java.util.List;
 
 public interface SyncQueueItemDao extends GenericDao<SyncQueueItemVO, Long> {
@@ -17,4 +18,11 @@ public interface SyncQueueItemDao extends GenericDao<SyncQueueItemVO, Long> {
     public List<SyncQueueItemVO> getBlockedQueueItems(long thresholdMs, boolean exclusive);
 
     public Long getQueueItemIdByContentIdAndType(long contentId, String contentType);
+
+    /**
+     * Claims a queue item for processing, unless it is already claimed.
+     *
+     * @return true if the item was claimed, false if another management server claimed it first.
+     */
+    public boolean claimQueueItem(long id, Long msid, long processNumber, Date processTime);
 }
@@ -28,6 +28,7 @@ public class SyncQueueItemDaoImpl extends GenericDaoBase<SyncQueueItemVO, Long>
     private static final Logger s_logger = LoggerFactory.getLogger(SyncQueueItemDaoImpl.class);
     final GenericSearchBuilder<SyncQueueItemVO, Long> queueIdSearch;
     final GenericSearchBuilder<SyncQueueItemVO, Integer> queueActiveItemSearch;
+    final SearchBuilder<SyncQueueItemVO> unclaimedItemSearch;
 
     public SyncQueueItemDaoImpl() {
         super();
@@ -42,6 +43,11 @@ public class SyncQueueItemDaoImpl extends GenericDaoBase<SyncQueueItemVO, Long>
         queueActiveItemSearch.and("processNumber", queueActiveItemSearch.entity().getLastProcessNumber(), Op.NNULL);
         queueActiveItemSearch.select(null, Func.COUNT, queueActiveItemSearch.entity().getId());
         queueActiveItemSearch.done();
+
+        unclaimedItemSearch = createSearchBuilder();
+        unclaimedItemSearch.and("id", unclaimedItemSearch.entity().getId(), Op.EQ);
+        unclaimedItemSearch.and("lastProcessNumber", unclaimedItemSearch.entity().getLastProcessNumber(), Op.NULL);
+        unclaimedItemSearch.done();
     }
 
     @Override
@@ -153,4 +159,16 @@ public class SyncQueueItemDaoImpl extends GenericDaoBase<SyncQueueItemVO, Long>
 
         return id.size() == 0 ? null : id.get(0);
     }
+
+    @Override
+    public boolean claimQueueItem(final long id, final Long msid, final long processNumber, final Date processTime) {
+        final SearchCriteria<SyncQueueItemVO> sc = unclaimedItemSearch.create();
+        sc.setParameters("id", id);
+
+        final SyncQueueItemVO item = createForUpdate();
+        item.setLastProcessMsid(msid);
+        item.setLastProcessNumber(processNumber);
+        item.setLastProcessTime(processTime);
+        return update(item, sc) > 0;
+    }
 }
@@ -75,6 +75,11 @@ public class AsyncJobManagerImpl extends ManagerBase implements AsyncJobManager,
     private static final ConfigKey<Integer> VmJobLockTimeout = new ConfigKey<>("Advanced",
             Integer.class, "vm.job.lock.timeout", "1800",
             "Time in seconds to wait in acquiring lock to submit a vm worker job", false);
+    private static final ConfigKey<Integer> JobStateCacheSize = new ConfigKey<>("Advanced", Integer.class, "job.state.cache.size", "1000",
+            "Number of jobs completed on this management server that are kept in memory to answer job queries without going to the database", true,
+            ConfigKey.Scope.Global);
+    private static final ConfigKey<Integer> JobQueryMaxWait = new ConfigKey<>("Advanced", Integer.class, "job.query.max.wait", "30",
+            "Maximum time (in seconds) a job query is allowed to wait for the job to complete", true, ConfigKey.Scope.Global);
 
     private static final Logger s_logger = LoggerFactory.getLogger(AsyncJobManagerImpl.class);
 
@@ -83,6 +88,7 @@ public class AsyncJobManagerImpl extends ManagerBase implements AsyncJobManager,
     private static final int MAX_ONETIME_SCHEDULE_SIZE = 50;
     private static final int HEARTBEAT_INTERVAL = 2000;
     private static final int GC_INTERVAL = 10000;                // 10 seconds
+    private static final int JOB_QUERY_CHECK_INTERVAL = 2000;
     private final ScheduledExecutorService _heartbeatScheduler = Executors.newScheduledThreadPool(1, new NamedThreadFactory("AsyncJobMgr-Heartbeat"));
     @Inject
     private SyncQueueItemDao _queueItemDao;
@@ -101,6 +107,7 @@ public class AsyncJobManagerImpl extends ManagerBase implements AsyncJobManager,
     @Inject
     private VMInstanceDao _vmInstanceDao;
     private volatile long _executionRunNumber = 1;
+    private AsyncJobStateCache _jobStateCache;
     private ExecutorService _apiJobExecutor;
     private ExecutorService _workerJobExecutor;
     private GenericSearchBuilder<SyncQueueItemVO, Long> ContentIdsSearch;
@@ -123,7 +130,7 @@ public class AsyncJobManagerImpl extends ManagerBase implements AsyncJobManager,
 
     @Override
     public ConfigKey<?>[] getConfigKeys() {
-        return new ConfigKey<?>[]{JobExpireMinutes, JobCancelThresholdMinutes, VmJobLockTimeout};
+        return new ConfigKey<?>[]{JobExpireMinutes, JobCancelThresholdMinutes, VmJobLockTimeout, JobStateCacheSize, JobQueryMaxWait};
     }
 
     @Override
@@ -387,21 +394,23 @@ public class AsyncJobManagerImpl extends ManagerBase implements AsyncJobManager,
                 throw new CloudRuntimeException("Failed to acquire lock in submitting async job: " + job.getCmd() + " with timeout value = " + VmJobLockTimeout.value());
             }
 
+            final SyncQueueVO queue;
             try {
                 // lock is acquired
-                return Transaction.execute(new TransactionCallback<Long>() {
+                queue = Transaction.execute(new TransactionCallback<SyncQueueVO>() {
                     @Override
-                    public Long doInTransaction(final TransactionStatus status) {
+                    public SyncQueueVO doInTransaction(final TransactionStatus status) {
                         job.setInitMsid(getMsid());
                         dao.persist(job);
 
-                        syncAsyncJobExecution(job, syncObjType, syncObjId, 1);
-                        return job.getId();
+                        return queueJob(job, syncObjType, syncObjId, 1);
                     }
                 });
             } finally {
                 _vmInstanceDao.unlockFromLockTable(String.valueOf(syncObjId));
             }
+            dispatchQueue(queue.getId());
+            return job.getId();
         } catch (final Exception e) {
             final String errMsg = "Unable to schedule async job for command " + job.getCmd() + ", unexpected exception.";
             s_logger.warn(errMsg, e);
@@ -480,6 +489,7 @@ public class AsyncJobManagerImpl extends ManagerBase implements AsyncJobManager,
             }
         });
 
+        _jobStateCache.jobCompleted(job);
         publishOnEventBus(job, "complete"); // publish before the instance type and ID are wiped out
 
         //
@@ -579,15 +589,20 @@ public class AsyncJobManagerImpl extends ManagerBase implements AsyncJobManager,
 
     @Override
     public void syncAsyncJobExecution(final AsyncJob job, final String syncObjType, final long syncObjId, final long queueSizeLimit) {
+        final SyncQueueVO queue = queueJob(job, syncObjType, syncObjId, queueSizeLimit);
+        dispatchQueue(queue.getId());
+    }
+
+    private SyncQueueVO queueJob(final AsyncJob job, final String syncObjType, final long syncObjId, final long queueSizeLimit) {
         if (s_logger.isDebugEnabled()) {
             s_logger.debug("Sync job-" + job.getId() + " execution on object " + syncObjType + "." + syncObjId);
         }
 
-        SyncQueueVO queue = null;
-        queue = _queueMgr.queue(syncObjType, syncObjId, SyncQueueItem.AsyncJobContentType, job.getId(), queueSizeLimit);
+        final SyncQueueVO queue = _queueMgr.queue(syncObjType, syncObjId, SyncQueueItem.AsyncJobContentType, job.getId(), queueSizeLimit);
         if (queue == null) {
             throw new CloudRuntimeException("Unable to insert queue item into database, DB is full?");
         }
+        return queue;
     }
 
     @Override
@@ -600,14 +615,32 @@ public class AsyncJobManagerImpl extends ManagerBase implements AsyncJobManager,
 
         msgDetector.open(_messageBus, topics);
         try {
+            final long jobId = job.getId();
             final long startTick = System.currentTimeMillis();
+            long lastCheckTick = 0;
             while (timeoutInMiliseconds < 0 || System.currentTimeMillis() - startTick < timeoutInMiliseconds) {
-                msgDetector.waitAny(checkIntervalInMilliSeconds);
-                job = _jobDao.findById(job.getId());
-                if (job != null && job.getStatus().done()) {
+                if (timeoutInMiliseconds < 0) {
+                    msgDetector.waitAny(checkIntervalInMilliSeconds);
+                } else {
+                    // Don't wait a whole check interval past the timeout, waitAny needs at least 100 ms though
+                    final long remaining = timeoutInMiliseconds - (System.currentTimeMillis() - startTick);
+                    msgDetector.waitAny(Math.max(100L, Math.min(checkIntervalInMilliSeconds, remaining)));
+                }
+                if (_jobStateCache.getCompletedJob(jobId) != null) {
                     return true;
                 }
 
+                // Every job completion wakes up all waiters, only go to the database once per check interval
+                // to pick up jobs that were completed on other management servers
+                final long currentTick = System.currentTimeMillis();
+                if (currentTick - lastCheckTick >= checkIntervalInMilliSeconds) {
+                    lastCheckTick = currentTick;
+                    job = _jobDao.findById(jobId);
+                    if (job != null && job.getStatus().done()) {
+                        return true;
+                    }
+                }
+
                 if (predicate.checkCondition()) {
                     return true;
                 }
@@ -621,6 +654,11 @@ public class AsyncJobManagerImpl extends ManagerBase implements AsyncJobManager,
 
     @Override
     public AsyncJob queryJob(final long jobId, final boolean updatePollTime) {
+        final AsyncJobVO completedJob = _jobStateCache.getCompletedJob(jobId);
+        if (completedJob != null) {
+            return completedJob;
+        }
+
         final AsyncJobVO job = _jobDao.findById(jobId);
 
         if (updatePollTime) {
@@ -630,6 +668,18 @@ public class AsyncJobManagerImpl extends ManagerBase implements AsyncJobManager,
         return job;
     }
 
+    @Override
+    public AsyncJob queryJob(final long jobId, final boolean updatePollTime, final long waitInMilliSeconds) {
+        final long wait = Math.min(waitInMilliSeconds, JobQueryMaxWait.value() * 1000L);
+        if (wait > 0 && _jobStateCache.getCompletedJob(jobId) == null) {
+            final AsyncJobVO job = _jobDao.findById(jobId);
+            if (job != null && !job.getStatus().done()) {
+                waitAndCheck(job, new String[0], JOB_QUERY_CHECK_INTERVAL, wait, () -> false);
+            }
+        }
+        return queryJob(jobId, updatePollTime);
+    }
+
     @Override
     public String marshallResultObject(final Serializable obj) {
         if (obj != null) {
@@ -735,6 +785,9 @@ public class AsyncJobManagerImpl extends ManagerBase implements AsyncJobManager,
 
             @Override
             protected void runInContext() {
+                // Queue items are claimed row by row, so management servers can dequeue concurrently
+                dequeueAndExecute();
+
                 final GlobalLock scanLock = GlobalLock.getInternLock("AsyncJobManagerHeartbeat");
                 try {
                     if (scanLock.lock(ACQUIRE_GLOBAL_LOCK_TIMEOUT_FOR_COOPERATION)) {
@@ -749,7 +802,7 @@ public class AsyncJobManagerImpl extends ManagerBase implements AsyncJobManager,
                 }
             }
 
-            protected void reallyRun() {
+            private void dequeueAndExecute() {
                 try {
                     final List<SyncQueueItemVO> l = _queueMgr.dequeueFromAny(getMsid(), MAX_ONETIME_SCHEDULE_SIZE);
                     if (l != null && l.size() > 0) {
@@ -760,7 +813,13 @@ public class AsyncJobManagerImpl extends ManagerBase implements AsyncJobManager,
                             executeQueueItem(item, false);
                         }
                     }
+                } catch (final Throwable e) {
+                    s_logger.error("Unexpected exception when trying to execute queue item, ", e);
+                }
+            }
 
+            protected void reallyRun() {
+                try {
                     final List<Long> standaloneWakeupJobs = wakeupScan();
                     for (final Long jobId : standaloneWakeupJobs) {
                         // TODO, we assume that all jobs in this category is API job only
@@ -770,17 +829,42 @@ public class AsyncJobManagerImpl extends ManagerBase implements AsyncJobManager,
                         }
                     }
                 } catch (final Throwable e) {
-                    s_logger.error("Unexpected exception when trying to execute queue item, ", e);
+                    s_logger.error("Unexpected exception when trying to wake up jobs, ", e);
                 }
             }
         };
     }
 
+    /**
+     * Dispatches a queue this management server just put a job in right away, instead of leaving it
+     * for the next heartbeat.  It runs on the heartbeat thread, after the caller had the chance to
+     * commit; if the item is not visible yet the heartbeat picks it up as before.
+     */
+    private void dispatchQueue(final long queueId) {
+        try {
+            _heartbeatScheduler.execute(new ManagedContextRunnable() {
+                @Override
+                protected void runInContext() {
+                    checkQueue(queueId);
+                }
+            });
+        } catch (final RejectedExecutionException e) {
+            s_logger.debug("Unable to dispatch sync queue-" + queueId + " right away, leaving it for the heartbeat");
+        }
+    }
+
     @DB
     private Runnable getGCTask() {
         return new ManagedContextRunnable() {
             @Override
             protected void runInContext() {
+                _jobStateCache.setMaxEntries(JobStateCacheSize.value());
+                _jobStateCache.setMaxAge(JobExpireMinutes.value() * 60000);
+                _jobStateCache.removeExpired();
+                if (s_logger.isTraceEnabled()) {
+                    s_logger.trace("Job state cache: " + _jobStateCache);
+                }
+
                 final GlobalLock scanLock = GlobalLock.getInternLock("AsyncJobManagerGC");
                 try {
                     if (scanLock.lock(ACQUIRE_GLOBAL_LOCK_TIMEOUT_FOR_COOPERATION)) {
@@ -860,6 +944,7 @@ public class AsyncJobManagerImpl extends ManagerBase implements AsyncJobManager,
         Transaction.execute(new TransactionCallbackNoReturn() {
             @Override
             public void doInTransactionWithoutResult(final TransactionStatus status) {
+                _jobStateCache.remove(job.getId());
                 _jobDao.expunge(job.getId());
                 // purge corresponding sync queue item
                 _queueMgr.purgeAsyncJobQueueItemId(job.getId());
@@ -946,6 +1031,8 @@ public class AsyncJobManagerImpl extends ManagerBase implements AsyncJobManager,
         ContentIdsSearch = _queueItemDao.createSearchBuilder(Long.class);
         ContentIdsSearch.selectFields(ContentIdsSearch.entity().getContentId()).done();
 
+        _jobStateCache = new AsyncJobStateCache(JobStateCacheSize.value(), JobExpireMinutes.value() * 60000);
+
         AsyncJobExecutionContext.init(this, _joinMapDao);
         OutcomeImpl.init(this);
 
@@ -0,0 +1,158 @@
+package com.cloud.framework.jobs.impl;
+
+import java.util.Date;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * AsyncJobStateCache keeps the jobs completed on this management server in
+ * memory, so waiting for or polling a finished job does not need to go back
+ * to the database.  Only completed jobs are cached: their state no longer
+ * changes, so a cached entry is always up to date.  Jobs that are not in the
+ * cache are either still running or were completed on a peer, and have to be
+ * looked up in the database.
+ *
+ * The cache keeps its own copy of every job and hands out copies, so callers
+ * can't change the cached state.  A job may be expunged by the cleanup of any
+ * management server once it is older than the job expire time, so entries are
+ * dropped at that age instead of relying on the server that expunges it.
+ */
+public class AsyncJobStateCache {
+    /**
+     * Entries are dropped this much before the job expires, to allow for clock differences between the
+     * management servers.
+     */
+    static final long EXPIRY_MARGIN = 60000L;
+
+    private final ConcurrentHashMap<Long, AsyncJobVO> _completedJobs = new ConcurrentHashMap<>();
+    private final Queue<Long> _completionOrder = new ConcurrentLinkedQueue<>();
+    private volatile int _maxEntries;
+    private volatile long _maxAge;
+
+    private final AtomicLong _hits = new AtomicLong();
+    private final AtomicLong _misses = new AtomicLong();
+
+    public AsyncJobStateCache(final int maxEntries, final long maxAge) {
+        _maxEntries = maxEntries;
+        _maxAge = maxAge;
+    }
+
+    public void setMaxEntries(final int maxEntries) {
+        _maxEntries = maxEntries;
+    }
+
+    /**
+     * @param maxAge milliseconds after its creation a job may be expunged
+     */
+    public void setMaxAge(final long maxAge) {
+        _maxAge = maxAge;
+    }
+
+    /**
+     * Records a completed job, evicting the oldest completed jobs when the cache is full.
+     */
+    public void jobCompleted(final AsyncJobVO job) {
+        if (_maxEntries <= 0 || !job.getStatus().done() || isExpired(job)) {
+            return;
+        }
+        if (_completedJobs.put(job.getId(), copyOf(job)) == null) {
+            _completionOrder.offer(job.getId());
+        }
+        while (_completedJobs.size() > _maxEntries) {
+            final Long oldest = _completionOrder.poll();
+            if (oldest == null) {
+                break;
+            }
+            _completedJobs.remove(oldest);
+        }
+    }
+
+    /**
+     * @return a copy of the completed job, or null if the job is not known to be completed.
+     */
+    public AsyncJobVO getCompletedJob(final long jobId) {
+        final AsyncJobVO job = _completedJobs.get(jobId);
+        if (job == null) {
+            _misses.incrementAndGet();
+            return null;
+        }
+        if (isExpired(job)) {
+            remove(jobId);
+            _misses.incrementAndGet();
+            return null;
+        }
+        _hits.incrementAndGet();
+        return copyOf(job);
+    }
+
+    public void remove(final long jobId) {
+        if (_completedJobs.remove(jobId) != null) {
+            _completionOrder.remove(jobId);
+        }
+    }
+
+    /**
+     * Drops the jobs that may have been expunged by any of the management servers.
+     */
+    public void removeExpired() {
+        if (_completedJobs.values().removeIf(this::isExpired)) {
+            _completionOrder.removeIf(jobId -> !_completedJobs.containsKey(jobId));
+        }
+    }
+
+    private boolean isExpired(final AsyncJobVO job) {
+        final Date created = job.getCreated();
+        return created != null && created.getTime() < System.currentTimeMillis() - Math.max(0L, _maxAge - EXPIRY_MARGIN);
+    }
+
+    private static AsyncJobVO copyOf(final AsyncJobVO job) {
+        final AsyncJobVO copy = new AsyncJobVO();
+        copy.setId(job.getId());
+        copy.setUuid(job.getUuid());
+        copy.setType(job.getType());
+        copy.setDispatcher(job.getDispatcher());
+        copy.setPendingSignals(job.getPendingSignals());
+        copy.setUserId(job.getUserId());
+        copy.setAccountId(job.getAccountId());
+        copy.setCmd(job.getCmd());
+        copy.setCmdVersion(job.getCmdVersion());
+        copy.setCmdInfo(job.getCmdInfo());
+        copy.setStatus(job.getStatus());
+        copy.setProcessStatus(job.getProcessStatus());
+        copy.setResultCode(job.getResultCode());
+        copy.setResult(job.getResult());
+        copy.setInstanceType(job.getInstanceType());
+        copy.setInstanceId(job.getInstanceId());
+        copy.setInitMsid(job.getInitMsid());
+        copy.setCompleteMsid(job.getCompleteMsid());
+        copy.setExecutingMsid(job.getExecutingMsid());
+        copy.setCreated(copyOf(job.getCreated()));
+        copy.setLastUpdated(copyOf(job.getLastUpdated()));
+        copy.setLastPolled(copyOf(job.getLastPolled()));
+        copy.setRelated(job.getRelated());
+        return copy;
+    }
+
+    private static Date copyOf(final Date date) {
+        return date == null ? null : new Date(date.getTime());
+    }
+
+    public int size() {
+        return _completedJobs.size();
+    }
+
+    public long getHits() {
+        return _hits.get();
+    }
+
+    public long getMisses() {
+        return _misses.get();
+    }
+
+    @Override
+    public String toString() {
+        return "AsyncJobStateCache[size=" + size() + ", hits=" + getHits() + ", misses=" + getMisses() + "]";
+    }
+}
@@ -67,7 +67,7 @@ public class SyncQueueManagerImpl extends ManagerBase implements SyncQueueManage
             return Transaction.execute(new TransactionCallback<SyncQueueItemVO>() {
                 @Override
                 public SyncQueueItemVO doInTransaction(final TransactionStatus status) {
-                    final SyncQueueVO queueVO = _syncQueueDao.findById(queueId);
+                    final SyncQueueVO queueVO = _syncQueueDao.lockRow(queueId, true);
                     if (queueVO == null) {
                         s_logger.error("Sync queue(id: " + queueId + ") does not exist");
                         return null;
@@ -76,24 +76,9 @@ public class SyncQueueManagerImpl extends ManagerBase implements SyncQueueManage
                     if (queueReadyToProcess(queueVO)) {
                         final SyncQueueItemVO itemVO = _syncQueueItemDao.getNextQueueItem(queueVO.getId());
                         if (itemVO != null) {
-                            Long processNumber = queueVO.getLastProcessNumber();
-                            if (processNumber == null) {
-                                processNumber = new Long(1);
-                            } else {
-                                processNumber = processNumber + 1;
+                            if (claimItem(queueVO, itemVO, msid)) {
+                                return itemVO;
                             }
-                            final Date dt = DateUtil.currentGMTTime();
-                            queueVO.setLastProcessNumber(processNumber);
-                            queueVO.setLastUpdated(dt);
-                            queueVO.setQueueSize(queueVO.getQueueSize() + 1);
-                            _syncQueueDao.update(queueVO.getId(), queueVO);
-
-                            itemVO.setLastProcessMsid(msid);
-                            itemVO.setLastProcessNumber(processNumber);
-                            itemVO.setLastProcessTime(dt);
-                            _syncQueueItemDao.update(itemVO.getId(), itemVO);
-
-                            return itemVO;
                         } else {
                             if (s_logger.isDebugEnabled()) {
                                 s_logger.debug("Sync queue (" + queueId + ") is currently empty");
@@ -121,47 +106,76 @@ public class SyncQueueManagerImpl extends ManagerBase implements SyncQueueManage
 
         final List<SyncQueueItemVO> resultList = new ArrayList<>();
 
+        final List<SyncQueueItemVO> l;
         try {
-            Transaction.execute(new TransactionCallbackNoReturn() {
+            l = Transaction.execute(new TransactionCallback<List<SyncQueueItemVO>>() {
                 @Override
-                public void doInTransactionWithoutResult(final TransactionStatus status) {
-                    final List<SyncQueueItemVO> l = _syncQueueItemDao.getNextQueueItems(maxItems);
-                    if (l != null && l.size() > 0) {
-                        for (final SyncQueueItemVO item : l) {
-                            final SyncQueueVO queueVO = _syncQueueDao.findById(item.getQueueId());
-                            final SyncQueueItemVO itemVO = _syncQueueItemDao.findById(item.getId());
-                            if (queueReadyToProcess(queueVO) && itemVO != null && itemVO.getLastProcessNumber() == null) {
-                                Long processNumber = queueVO.getLastProcessNumber();
-                                if (processNumber == null) {
-                                    processNumber = new Long(1);
-                                } else {
-                                    processNumber = processNumber + 1;
-                                }
-
-                                final Date dt = DateUtil.currentGMTTime();
-                                queueVO.setLastProcessNumber(processNumber);
-                                queueVO.setLastUpdated(dt);
-                                queueVO.setQueueSize(queueVO.getQueueSize() + 1);
-                                _syncQueueDao.update(queueVO.getId(), queueVO);
-
-                                itemVO.setLastProcessMsid(msid);
-                                itemVO.setLastProcessNumber(processNumber);
-                                itemVO.setLastProcessTime(dt);
-                                _syncQueueItemDao.update(item.getId(), itemVO);
-
-                                resultList.add(itemVO);
-                            }
-                        }
-                    }
+                public List<SyncQueueItemVO> doInTransaction(final TransactionStatus status) {
+                    return _syncQueueItemDao.getNextQueueItems(maxItems);
                 }
             });
-
-            return resultList;
         } catch (final Exception e) {
             s_logger.error("Unexpected exception: ", e);
+            return null;
+        }
+        if (l == null || l.isEmpty()) {
+            return resultList;
         }
 
-        return null;
+        // Each item is claimed in its own short transaction that only locks the row of its queue, so management
+        // servers dequeueing at the same time only wait for each other on the same queue, and skip the items
+        // the others claimed first
+        for (final SyncQueueItemVO item : l) {
+            try {
+                final boolean claimed = Transaction.execute(new TransactionCallback<Boolean>() {
+                    @Override
+                    public Boolean doInTransaction(final TransactionStatus status) {
+                        final SyncQueueVO queueVO = _syncQueueDao.lockRow(item.getQueueId(), true);
+                        return queueVO != null && queueReadyToProcess(queueVO) && claimItem(queueVO, item, msid);
+                    }
+                });
+                if (claimed) {
+                    resultList.add(item);
+                }
+            } catch (final Exception e) {
+                s_logger.error("Unexpected exception while claiming sync queue item " + item.getId() + ": ", e);
+            }
+        }
+
+        return resultList;
+    }
+
+    /**
+     * Claims the item for this management server and bumps the process number of its queue.
+     * The queue row must be locked by the caller.
+     *
+     * @return false if the item was already claimed by another management server.
+     */
+    private boolean claimItem(final SyncQueueVO queueVO, final SyncQueueItemVO itemVO, final Long msid) {
+        Long processNumber = queueVO.getLastProcessNumber();
+        if (processNumber == null) {
+            processNumber = new Long(1);
+        } else {
+            processNumber = processNumber + 1;
+        }
+
+        final Date dt = DateUtil.currentGMTTime();
+        if (!_syncQueueItemDao.claimQueueItem(itemVO.getId(), msid, processNumber, dt)) {
+            if (s_logger.isDebugEnabled()) {
+                s_logger.debug("Sync queue item " + itemVO.getId() + " is already claimed by another management server");
+            }
+            return false;
+        }
+
+        queueVO.setLastProcessNumber(processNumber);
+        queueVO.setLastUpdated(dt);
+        queueVO.setQueueSize(queueVO.getQueueSize() + 1);
+        _syncQueueDao.update(queueVO.getId(), queueVO);
+
+        itemVO.setLastProcessMsid(msid);
+        itemVO.setLastProcessNumber(processNumber);
+        itemVO.setLastProcessTime(dt);
+        return true;
     }
 
     @Override
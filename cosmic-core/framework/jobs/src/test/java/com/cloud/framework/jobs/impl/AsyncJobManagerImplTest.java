@@ -0,0 +1,112 @@
+package com.cloud.framework.jobs.impl;
+
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.cloud.framework.jobs.AsyncJob;
+import com.cloud.framework.jobs.dao.AsyncJobDao;
+import com.cloud.framework.messagebus.MessageBus;
+import com.cloud.framework.messagebus.MessageSubscriber;
+import com.cloud.jobs.JobInfo;
+
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+public class AsyncJobManagerImplTest {
+    private static final long JOB_ID = 42L;
+
+    private final List<MessageSubscriber> _subscribers = new CopyOnWriteArrayList<>();
+    private AsyncJobManagerImpl _jobManager;
+    private AsyncJobDao _jobDao;
+    private AsyncJobStateCache _jobStateCache;
+
+    @Before
+    public void setUp() {
+        _jobDao = mock(AsyncJobDao.class);
+        final MessageBus messageBus = mock(MessageBus.class);
+        doAnswer(invocation -> _subscribers.add((MessageSubscriber) invocation.getArguments()[1]))
+                .when(messageBus).subscribe(anyString(), any(MessageSubscriber.class));
+        doAnswer(invocation -> _subscribers.remove(invocation.getArguments()[1]))
+                .when(messageBus).unsubscribe(anyString(), any(MessageSubscriber.class));
+        _jobStateCache = new AsyncJobStateCache(10, 3600000L);
+
+        _jobManager = new AsyncJobManagerImpl();
+        ReflectionTestUtils.setField(_jobManager, "_jobDao", _jobDao);
+        ReflectionTestUtils.setField(_jobManager, "_messageBus", messageBus);
+        ReflectionTestUtils.setField(_jobManager, "_jobStateCache", _jobStateCache);
+    }
+
+    @After
+    public void tearDown() {
+        ((ExecutorService) ReflectionTestUtils.getField(_jobManager, "_heartbeatScheduler")).shutdownNow();
+    }
+
+    @Test
+    public void testQueryCompletedJobDoesNotWait() {
+        _jobStateCache.jobCompleted(AsyncJobStateCacheTest.job(JOB_ID, JobInfo.Status.SUCCEEDED, new Date()));
+
+        final long start = System.currentTimeMillis();
+        final AsyncJob job = _jobManager.queryJob(JOB_ID, true, 10000L);
+
+        Assert.assertEquals(JobInfo.Status.SUCCEEDED, job.getStatus());
+        Assert.assertTrue(System.currentTimeMillis() - start < 1000L);
+        verify(_jobDao, never()).findById(anyLong());
+    }
+
+    @Test
+    public void testQueryWaitsUntilJobCompletes() throws Exception {
+        when(_jobDao.findById(JOB_ID)).thenReturn(AsyncJobStateCacheTest.job(JOB_ID, JobInfo.Status.IN_PROGRESS, new Date()));
+
+        final Thread completion = new Thread(() -> {
+            try {
+                Thread.sleep(300L);
+            } catch (final InterruptedException e) {
+                return;
+            }
+            // What completeAsyncJob does once the job is updated in the database
+            _jobStateCache.jobCompleted(AsyncJobStateCacheTest.job(JOB_ID, JobInfo.Status.SUCCEEDED, new Date()));
+            for (final MessageSubscriber subscriber : _subscribers) {
+                subscriber.onPublishMessage(null, AsyncJob.Topics.JOB_STATE, JOB_ID);
+            }
+        });
+        completion.start();
+
+        final long start = System.currentTimeMillis();
+        final AsyncJob job = _jobManager.queryJob(JOB_ID, true, 10000L);
+        final long elapsed = System.currentTimeMillis() - start;
+        completion.join();
+
+        // Woken up by the completion, not by the next check of the database
+        Assert.assertEquals(JobInfo.Status.SUCCEEDED, job.getStatus());
+        Assert.assertTrue(elapsed >= 250L);
+        Assert.assertTrue(elapsed < 1500L);
+        Assert.assertTrue(_subscribers.isEmpty());
+    }
+
+    @Test
+    public void testQueryReturnsRunningJobAfterTimeout() {
+        when(_jobDao.findById(JOB_ID)).thenReturn(AsyncJobStateCacheTest.job(JOB_ID, JobInfo.Status.IN_PROGRESS, new Date()));
+
+        final long start = System.currentTimeMillis();
+        final AsyncJob job = _jobManager.queryJob(JOB_ID, false, 500L);
+        final long elapsed = System.currentTimeMillis() - start;
+
+        Assert.assertEquals(JobInfo.Status.IN_PROGRESS, job.getStatus());
+        Assert.assertTrue(elapsed >= 500L);
+        Assert.assertTrue(elapsed < 1500L);
+    }
+}
@@ -0,0 +1,82 @@
+package com.cloud.framework.jobs.impl;
+
+import com.cloud.jobs.JobInfo;
+
+import java.util.Date;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class AsyncJobStateCacheTest {
+
+    private static final long MAX_AGE = 3600000L;
+
+    static AsyncJobVO job(final long id, final JobInfo.Status status, final Date created) {
+        final AsyncJobVO job = new AsyncJobVO();
+        job.setId(id);
+        job.setStatus(status);
+        job.setResult("result-" + id);
+        job.setCreated(created);
+        job.setLastUpdated(new Date(created.getTime()));
+        return job;
+    }
+
+    @Test
+    public void testOnlyCompletedJobsAreCached() {
+        final AsyncJobStateCache cache = new AsyncJobStateCache(10, MAX_AGE);
+        cache.jobCompleted(job(1L, JobInfo.Status.IN_PROGRESS, new Date()));
+        cache.jobCompleted(job(2L, JobInfo.Status.SUCCEEDED, new Date()));
+
+        Assert.assertNull(cache.getCompletedJob(1L));
+        Assert.assertEquals("result-2", cache.getCompletedJob(2L).getResult());
+        Assert.assertEquals(1L, cache.getHits());
+        Assert.assertEquals(1L, cache.getMisses());
+    }
+
+    @Test
+    public void testCallersGetCopies() {
+        final AsyncJobStateCache cache = new AsyncJobStateCache(10, MAX_AGE);
+        final AsyncJobVO completed = job(1L, JobInfo.Status.SUCCEEDED, new Date());
+        cache.jobCompleted(completed);
+
+        // Neither the completed job nor a job handed out changes what the cache returns
+        completed.setResult("changed");
+        final AsyncJobVO first = cache.getCompletedJob(1L);
+        first.setLastPolled(new Date());
+        first.getLastUpdated().setTime(0L);
+
+        final AsyncJobVO second = cache.getCompletedJob(1L);
+        Assert.assertNotSame(first, second);
+        Assert.assertEquals("result-1", second.getResult());
+        Assert.assertNull(second.getLastPolled());
+        Assert.assertEquals(completed.getCreated(), second.getLastUpdated());
+    }
+
+    @Test
+    public void testOldestJobsAreEvicted() {
+        final AsyncJobStateCache cache = new AsyncJobStateCache(2, MAX_AGE);
+        for (long id = 1; id <= 3; id++) {
+            cache.jobCompleted(job(id, JobInfo.Status.SUCCEEDED, new Date()));
+        }
+
+        Assert.assertEquals(2, cache.size());
+        Assert.assertNull(cache.getCompletedJob(1L));
+        Assert.assertNotNull(cache.getCompletedJob(3L));
+    }
+
+    @Test
+    public void testJobsOldEnoughToBeExpungedAreDropped() {
+        final AsyncJobStateCache cache = new AsyncJobStateCache(10, MAX_AGE);
+        final long now = System.currentTimeMillis();
+        cache.jobCompleted(job(1L, JobInfo.Status.SUCCEEDED, new Date(now - MAX_AGE / 2)));
+        cache.jobCompleted(job(2L, JobInfo.Status.FAILED, new Date(now - MAX_AGE / 2)));
+        cache.jobCompleted(job(3L, JobInfo.Status.SUCCEEDED, new Date(now - MAX_AGE)));
+        Assert.assertEquals(2, cache.size());
+
+        // Another management server may expunge the jobs once the expire time passes
+        cache.setMaxAge(MAX_AGE / 4);
+        Assert.assertNull(cache.getCompletedJob(1L));
+        cache.removeExpired();
+        Assert.assertEquals(0, cache.size());
+    }
+}
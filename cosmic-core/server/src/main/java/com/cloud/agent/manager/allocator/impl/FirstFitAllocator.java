@@ -3,6 +3,7 @@ package com.cloud.agent.manager.allocator.impl;
 import com.cloud.agent.manager.allocator.HostAllocator;
 import com.cloud.capacity.CapacityManager;
 import com.cloud.capacity.CapacityVO;
+import com.cloud.capacity.HostCapacitySnapshot;
 import com.cloud.capacity.dao.CapacityDao;
 import com.cloud.configuration.Config;
 import com.cloud.dc.ClusterDetailsDao;
@@ -149,7 +150,6 @@ public class FirstFitAllocator extends AdapterBase implements HostAllocator {
 
                 if (hasSvcOfferingTag && hasTemplateTag) {
                     hostsMatchingOfferingTag.retainAll(hostsMatchingTemplateTag);
-                    clusterHosts = _hostDao.listByHostTag(type, clusterId, podId, dcId, hostTagOnTemplate);
                     if (s_logger.isDebugEnabled()) {
                         s_logger.debug("Found " + hostsMatchingOfferingTag.size() + " Hosts satisfying both tags, host ids are:" + hostsMatchingOfferingTag);
                     }
@@ -268,7 +268,14 @@ public class FirstFitAllocator extends AdapterBase implements HostAllocator {
 
         final long serviceOfferingId = offering.getId();
         final List<Host> suitableHosts = new ArrayList<>();
-        ServiceOfferingDetailsVO offeringDetails = null;
+        final ServiceOfferingDetailsVO offeringDetails = _serviceOfferingDetailsDao.findDetail(serviceOfferingId, GPU.Keys.vgpuType.toString());
+        final ServiceOfferingDetailsVO groupName = offeringDetails != null ? _serviceOfferingDetailsDao.findDetail(serviceOfferingId, GPU.Keys.pciDevice.toString()) : null;
+        final int cpu_requested = offering.getCpu();
+        final long ram_requested = offering.getRamSize() * 1024L * 1024L;
+
+        // Capacity of all candidates at once, instead of querying it host by host
+        final Map<Long, HostCapacitySnapshot> capacities = _capacityMgr.getHostCapacitySnapshots(hosts);
+        final Map<Long, Float[]> clusterOvercommitRatios = new HashMap<>();
 
         for (final Host host : hosts) {
             if (suitableHosts.size() == returnUpTo) {
@@ -281,8 +288,10 @@ public class FirstFitAllocator extends AdapterBase implements HostAllocator {
                 continue;
             }
 
+            final HostCapacitySnapshot capacity = capacities.get(host.getId());
+
             //find number of guest VMs occupying capacity on this host.
-            if (_capacityMgr.checkIfHostReachMaxGuestLimit(host)) {
+            if (capacity != null ? capacity.reachedMaxGuestLimit() : _capacityMgr.checkIfHostReachMaxGuestLimit(host)) {
                 if (s_logger.isDebugEnabled()) {
                     s_logger.debug("Host name: " + host.getName() + ", hostId: " + host.getId() +
                             " already has max Running VMs(count includes system VMs), skipping this and trying other available hosts");
@@ -292,8 +301,7 @@ public class FirstFitAllocator extends AdapterBase implements HostAllocator {
             }
 
             // Check if GPU device is required by offering and host has the availability
-            if ((offeringDetails = _serviceOfferingDetailsDao.findDetail(serviceOfferingId, GPU.Keys.vgpuType.toString())) != null) {
-                final ServiceOfferingDetailsVO groupName = _serviceOfferingDetailsDao.findDetail(serviceOfferingId, GPU.Keys.pciDevice.toString());
+            if (offeringDetails != null) {
                 if (!_resourceMgr.isGPUDeviceAvailable(host.getId(), groupName.getValue(), offeringDetails.getValue())) {
                     s_logger.info("Host name: " + host.getName() + ", hostId: " + host.getId() + " does not have required GPU devices available");
                     avoid.addHost(host.getId());
@@ -301,17 +309,25 @@ public class FirstFitAllocator extends AdapterBase implements HostAllocator {
                 }
             }
 
-            final int cpu_requested = offering.getCpu();
-            final long ram_requested = offering.getRamSize() * 1024L * 1024L;
-            final Cluster cluster = _clusterDao.findById(host.getClusterId());
-            final ClusterDetailsVO clusterDetailsCpuOvercommit = _clusterDetailsDao.findDetail(cluster.getId(), "cpuOvercommitRatio");
-            final ClusterDetailsVO clusterDetailsRamOvercommmt = _clusterDetailsDao.findDetail(cluster.getId(), "memoryOvercommitRatio");
-            final Float cpuOvercommitRatio = Float.parseFloat(clusterDetailsCpuOvercommit.getValue());
-            final Float memoryOvercommitRatio = Float.parseFloat(clusterDetailsRamOvercommmt.getValue());
-
-            final boolean hostHasCpuCapability = _capacityMgr.checkIfHostHasCpuCapability(host.getId(), offering.getCpu());
-            final boolean hostHasCapacity = _capacityMgr.checkIfHostHasCapacity(host.getId(), cpu_requested, ram_requested, false, cpuOvercommitRatio, memoryOvercommitRatio,
-                    considerReservedCapacity);
+            final Float[] overcommitRatios = clusterOvercommitRatios.computeIfAbsent(host.getClusterId(), clusterId -> {
+                final Cluster cluster = _clusterDao.findById(clusterId);
+                final ClusterDetailsVO clusterDetailsCpuOvercommit = _clusterDetailsDao.findDetail(cluster.getId(), "cpuOvercommitRatio");
+                final ClusterDetailsVO clusterDetailsRamOvercommmt = _clusterDetailsDao.findDetail(cluster.getId(), "memoryOvercommitRatio");
+                return new Float[]{Float.parseFloat(clusterDetailsCpuOvercommit.getValue()), Float.parseFloat(clusterDetailsRamOvercommmt.getValue())};
+            });
+            final Float cpuOvercommitRatio = overcommitRatios[0];
+            final Float memoryOvercommitRatio = overcommitRatios[1];
+
+            final boolean hostHasCpuCapability;
+            final boolean hostHasCapacity;
+            if (capacity != null) {
+                hostHasCpuCapability = host.getCpus() != null && host.getCpus() >= cpu_requested;
+                hostHasCapacity = capacity.hasCapacity(cpu_requested, ram_requested, false, cpuOvercommitRatio, memoryOvercommitRatio, considerReservedCapacity);
+            } else {
+                hostHasCpuCapability = _capacityMgr.checkIfHostHasCpuCapability(host.getId(), offering.getCpu());
+                hostHasCapacity = _capacityMgr.checkIfHostHasCapacity(host.getId(), cpu_requested, ram_requested, false, cpuOvercommitRatio, memoryOvercommitRatio,
+                        considerReservedCapacity);
+            }
 
             if (hostHasCpuCapability && hostHasCapacity) {
                 if (s_logger.isDebugEnabled()) {
@@ -2,52 +2,74 @@ package com.cloud.api;
 
 import com.cloud.acl.RoleType;
 import com.cloud.context.CallContext;
-import com.cloud.legacymodel.user.Account;
 import com.cloud.serializer.Param;
 
+import java.util.concurrent.ConcurrentHashMap;
+
 import com.google.gson.ExclusionStrategy;
 import com.google.gson.FieldAttributes;
+import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
 
 /**
  * The ApiResonseGsonHelper is different from ApiGsonHelper - it registers one more adapter for String type required for api response encoding
+ * <p>
+ * Which fields end up in a response depends on the account type of the caller, and Gson decides which fields to serialize once per class.
+ * The Gson instances are therefore cached per account type, so each of them only works out the fields of a response class once.
  */
 public class ApiResponseGsonHelper {
-    private static final GsonBuilder s_gBuilder;
-    private static final GsonBuilder s_gLogBuilder;
+    private static final ConcurrentHashMap<Short, Gson> s_gsons = new ConcurrentHashMap<>();
+    private static final ConcurrentHashMap<Short, Gson> s_logGsons = new ConcurrentHashMap<>();
 
-    static {
-        s_gBuilder = new GsonBuilder().setDateFormat("yyyy-MM-dd'T'HH:mm:ssZ");
-        s_gBuilder.setVersion(1.3);
-        s_gBuilder.registerTypeAdapter(ResponseObject.class, new ResponseObjectTypeAdapter());
-        s_gBuilder.registerTypeAdapter(String.class, new EncodedStringTypeAdapter());
-        s_gBuilder.setExclusionStrategies(new SuperclassExclusionStrategy(), new ApiResponseExclusionStrategy());
+    /**
+     * @return the account type of the calling account, or -1 when there is no caller, which leaves out every field that is restricted to some roles
+     */
+    public static short getCallerAccountType() {
+        final CallContext context = CallContext.current();
+        if (context == null || context.getCallingAccount() == null) {
+            return -1;
+        }
+        return context.getCallingAccount().getType();
+    }
 
-        s_gLogBuilder = new GsonBuilder().setDateFormat("yyyy-MM-dd'T'HH:mm:ssZ");
-        s_gLogBuilder.setVersion(1.3);
-        s_gLogBuilder.registerTypeAdapter(ResponseObject.class, new ResponseObjectTypeAdapter());
-        s_gLogBuilder.registerTypeAdapter(String.class, new EncodedStringTypeAdapter());
-        s_gLogBuilder.setExclusionStrategies(new SuperclassExclusionStrategy(), new LogExclusionStrategy());
+    private static GsonBuilder createBuilder(final ExclusionStrategy exclusionStrategy) {
+        final GsonBuilder builder = new GsonBuilder().setDateFormat("yyyy-MM-dd'T'HH:mm:ssZ");
+        builder.setVersion(1.3);
+        builder.registerTypeAdapter(ResponseObject.class, new ResponseObjectTypeAdapter());
+        builder.registerTypeAdapter(String.class, new EncodedStringTypeAdapter());
+        builder.setExclusionStrategies(new SuperclassExclusionStrategy(), exclusionStrategy);
+        return builder;
     }
 
-    public static GsonBuilder getBuilder() {
-        return s_gBuilder;
+    /**
+     * @return the Gson to serialize api responses for a caller of the given account type
+     */
+    public static Gson getGson(final short accountType) {
+        return s_gsons.computeIfAbsent(accountType, type -> createBuilder(new ApiResponseExclusionStrategy(type)).create());
     }
 
-    public static GsonBuilder getLogBuilder() {
-        return s_gLogBuilder;
+    /**
+     * @return the Gson to serialize api responses for the api log, it leaves out the sensitive fields
+     */
+    public static Gson getLogGson(final short accountType) {
+        return s_logGsons.computeIfAbsent(accountType, type -> createBuilder(new LogExclusionStrategy(type)).create());
     }
 
     private static class ApiResponseExclusionStrategy implements ExclusionStrategy {
+        private final short _accountType;
+
+        ApiResponseExclusionStrategy(final short accountType) {
+            _accountType = accountType;
+        }
+
         public boolean shouldSkipField(final FieldAttributes f) {
             final Param param = f.getAnnotation(Param.class);
             if (param != null) {
                 final RoleType[] allowedRoles = param.authorized();
                 if (allowedRoles.length > 0) {
                     boolean permittedParameter = false;
-                    final Account caller = CallContext.current().getCallingAccount();
                     for (final RoleType allowedRole : allowedRoles) {
-                        if (allowedRole.getValue() == caller.getType()) {
+                        if (allowedRole.getValue() == _accountType) {
                             permittedParameter = true;
                             break;
                         }
@@ -66,6 +88,10 @@ public class ApiResponseGsonHelper {
     }
 
     private static class LogExclusionStrategy extends ApiResponseExclusionStrategy implements ExclusionStrategy {
+        LogExclusionStrategy(final short accountType) {
+            super(accountType);
+        }
+
         public boolean shouldSkipField(final FieldAttributes f) {
             final Param param = f.getAnnotation(Param.class);
             boolean skip = (param != null && param.isSensitive());
@@ -1566,6 +1566,9 @@ public class ApiResponseHelper implements ResponseGenerator {
             this._accountMgr.checkAccess(caller, null, true, jobOwner);
         }
 
+        if (cmd.getTimeout() != null && cmd.getTimeout() > 0) {
+            return createAsyncJobResponse(this._jobMgr.queryJob(cmd.getId(), true, cmd.getTimeout() * 1000L));
+        }
         return createAsyncJobResponse(this._jobMgr.queryJob(cmd.getId(), true));
     }
 
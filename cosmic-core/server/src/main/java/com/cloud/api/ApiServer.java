@@ -23,6 +23,7 @@ import com.cloud.api.command.user.vm.ListVMsCmd;
 import com.cloud.api.command.user.vmgroup.ListVMGroupsCmd;
 import com.cloud.api.command.user.volume.ListVolumesCmd;
 import com.cloud.api.command.user.zone.ListZonesCmd;
+import com.cloud.api.dispatch.CommandBindingPlan;
 import com.cloud.api.dispatch.DispatchChainFactory;
 import com.cloud.api.dispatch.DispatchTask;
 import com.cloud.api.response.ApiResponseSerializer;
@@ -267,6 +268,9 @@ public class ApiServer extends ManagerBase implements HttpRequestHandler, ApiSer
                 s_apiNameCmdClassMap.put(apiName, apiCmdList);
             }
             apiCmdList.add(cmdClass);
+
+            // Build the parameter binding plan now, instead of on the first call of the command
+            CommandBindingPlan.forClass(cmdClass);
         }
 
         setEncodeApiResponse(Boolean.valueOf(_configDao.getValue(Config.EncodeApiResponse.key())));
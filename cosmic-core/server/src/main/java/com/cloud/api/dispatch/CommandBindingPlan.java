@@ -0,0 +1,204 @@
+package com.cloud.api.dispatch;
+
+import com.cloud.acl.RoleType;
+import com.cloud.api.ACL;
+import com.cloud.api.BaseCmd;
+import com.cloud.api.BaseCmd.CommandType;
+import com.cloud.api.EntityReference;
+import com.cloud.api.Parameter;
+import com.cloud.api.command.admin.resource.ArchiveAlertsCmd;
+import com.cloud.api.command.admin.resource.DeleteAlertsCmd;
+import com.cloud.api.command.user.event.ArchiveEventsCmd;
+import com.cloud.api.command.user.event.DeleteEventsCmd;
+import com.cloud.api.command.user.event.ListEventsCmd;
+import com.cloud.legacymodel.exceptions.CloudRuntimeException;
+import com.cloud.utils.ReflectUtil;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * CommandBindingPlan holds everything the dispatch workers need to know about the parameters of an API command
+ * class: the annotated fields, their types, limits, allowed roles and entity types, and method handles to read
+ * and write them. It is built once per command class, so dispatching a command does not need to walk the class
+ * hierarchy and read the annotations again.
+ */
+public class CommandBindingPlan {
+    private static final ConcurrentHashMap<Class<?>, CommandBindingPlan> s_plans = new ConcurrentHashMap<>();
+    private static final MethodType SETTER_TYPE = MethodType.methodType(void.class, Object.class, Object.class);
+    private static final MethodType GETTER_TYPE = MethodType.methodType(Object.class, Object.class);
+
+    private final Class<?> _cmdClass;
+    private final List<ParamBinding> _bindings;
+    private final Map<String, ParamBinding> _bindingsByName;
+    private final boolean _legacyDateFormat;
+
+    private CommandBindingPlan(final Class<?> cmdClass) {
+        _cmdClass = cmdClass;
+        final List<ParamBinding> bindings = new ArrayList<>();
+        final Map<String, ParamBinding> bindingsByName = new HashMap<>();
+        final MethodHandles.Lookup lookup = MethodHandles.lookup();
+        for (final Field field : ReflectUtil.getAllFieldsForClass(cmdClass, BaseCmd.class)) {
+            final Parameter parameterAnnotation = field.getAnnotation(Parameter.class);
+            if (parameterAnnotation == null || !parameterAnnotation.expose()) {
+                continue;
+            }
+            final ParamBinding binding = new ParamBinding(lookup, field, parameterAnnotation);
+            bindings.add(binding);
+            bindingsByName.putIfAbsent(binding.getName().toLowerCase(Locale.ROOT), binding);
+        }
+        _bindings = Collections.unmodifiableList(bindings);
+        _bindingsByName = bindingsByName;
+
+        // These commands accept dates with and without a time, see setFieldValue
+        _legacyDateFormat = ListEventsCmd.class.isAssignableFrom(cmdClass) || DeleteEventsCmd.class.isAssignableFrom(cmdClass) ||
+                ArchiveEventsCmd.class.isAssignableFrom(cmdClass) || ArchiveAlertsCmd.class.isAssignableFrom(cmdClass) || DeleteAlertsCmd.class.isAssignableFrom(cmdClass);
+    }
+
+    public static CommandBindingPlan forClass(final Class<?> cmdClass) {
+        return s_plans.computeIfAbsent(cmdClass, CommandBindingPlan::new);
+    }
+
+    public Class<?> getCmdClass() {
+        return _cmdClass;
+    }
+
+    public List<ParamBinding> getBindings() {
+        return _bindings;
+    }
+
+    /**
+     * @param name parameter name, matched case insensitively
+     * @return the binding of the parameter, or null if the command has no such parameter
+     */
+    public ParamBinding getBinding(final String name) {
+        return _bindingsByName.get(name.toLowerCase(Locale.ROOT));
+    }
+
+    public boolean usesLegacyDateFormat() {
+        return _legacyDateFormat;
+    }
+
+    public static class ParamBinding {
+        private final Field _field;
+        private final Parameter _annotation;
+        private final String _name;
+        private final CommandType _type;
+        private final CommandType _collectionType;
+        private final boolean _required;
+        private final int _length;
+        private final long _roleMask;
+        private final Class<?>[] _entityClasses;
+        private final ACL _acl;
+        private final MethodHandle _setter;
+        private final MethodHandle _getter;
+
+        ParamBinding(final MethodHandles.Lookup lookup, final Field field, final Parameter annotation) {
+            _field = field;
+            _annotation = annotation;
+            _name = annotation.name();
+            _type = annotation.type();
+            _collectionType = annotation.collectionType();
+            _required = annotation.required();
+            _length = annotation.length();
+            _acl = field.getAnnotation(ACL.class);
+
+            // Account types a caller needs to pass this parameter, 0 when everybody may pass it
+            long roleMask = 0;
+            for (final RoleType role : annotation.authorized()) {
+                roleMask |= 1L << role.getValue();
+            }
+            _roleMask = roleMask;
+
+            final Class<?>[] entityTypes = annotation.entityType();
+            final EntityReference entityReference = entityTypes.length > 0 ? entityTypes[0].getAnnotation(EntityReference.class) : null;
+            _entityClasses = entityReference != null ? entityReference.value() : null;
+
+            try {
+                field.setAccessible(true);
+                _setter = lookup.unreflectSetter(field).asType(SETTER_TYPE);
+                _getter = lookup.unreflectGetter(field).asType(GETTER_TYPE);
+            } catch (final IllegalAccessException e) {
+                throw new CloudRuntimeException("Unable to access parameter field " + field.getName() + " of " + field.getDeclaringClass().getName(), e);
+            }
+        }
+
+        /**
+         * The account type of the caller has to equal the value of one of the authorized roles.
+         */
+        public boolean isAllowedFor(final short accountType) {
+            return _roleMask == 0 || (accountType >= 0 && accountType < Long.SIZE && (_roleMask & (1L << accountType)) != 0);
+        }
+
+        public void set(final Object cmd, final Object value) throws IllegalAccessException {
+            try {
+                _setter.invokeExact(cmd, value);
+            } catch (final ClassCastException e) {
+                // Let reflection deal with widening conversions, or report the mismatch the way it always did
+                _field.set(cmd, value);
+            } catch (final RuntimeException | Error e) {
+                throw e;
+            } catch (final Throwable t) {
+                throw new CloudRuntimeException("Unable to set parameter " + _name, t);
+            }
+        }
+
+        public Object get(final Object cmd) {
+            try {
+                return _getter.invokeExact(cmd);
+            } catch (final RuntimeException | Error e) {
+                throw e;
+            } catch (final Throwable t) {
+                throw new CloudRuntimeException("Unable to get parameter " + _name, t);
+            }
+        }
+
+        public Field getField() {
+            return _field;
+        }
+
+        public Parameter getAnnotation() {
+            return _annotation;
+        }
+
+        public String getName() {
+            return _name;
+        }
+
+        public CommandType getType() {
+            return _type;
+        }
+
+        public CommandType getCollectionType() {
+            return _collectionType;
+        }
+
+        public boolean isRequired() {
+            return _required;
+        }
+
+        public int getLength() {
+            return _length;
+        }
+
+        /**
+         * @return the entity classes of the @EntityReference of the parameter's entity type, or null if it has none
+         */
+        public Class<?>[] getEntityClasses() {
+            return _entityClasses;
+        }
+
+        public ACL getAcl() {
+            return _acl;
+        }
+    }
+}
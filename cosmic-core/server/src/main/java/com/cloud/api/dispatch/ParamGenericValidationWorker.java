@@ -2,12 +2,15 @@ package com.cloud.api.dispatch;
 
 import com.cloud.api.ApiConstants;
 import com.cloud.api.BaseCmd;
-import com.cloud.api.Parameter;
+import com.cloud.api.dispatch.CommandBindingPlan.ParamBinding;
+import com.cloud.context.CallContext;
 
-import java.lang.reflect.Field;
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
+import java.util.Set;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -23,6 +26,7 @@ import org.slf4j.LoggerFactory;
 public class ParamGenericValidationWorker implements DispatchWorker {
 
     protected static final List<String> defaultParamNames = new ArrayList<>();
+    private static final Set<String> s_defaultParamNamesLowerCase = new HashSet<>();
     protected static final String ERROR_MSG_PREFIX = "Unknown parameters :";
     static Logger s_logger = LoggerFactory.getLogger(ParamGenericValidationWorker.class.getName());
 
@@ -52,6 +56,12 @@ public class ParamGenericValidationWorker implements DispatchWorker {
         defaultParamNames.add(ApiConstants.UUID);
         defaultParamNames.add(ApiConstants.ID);
         defaultParamNames.add("_");
+        defaultParamNames.add("expires");
+        defaultParamNames.add("signatureversion");
+
+        for (final String name : defaultParamNames) {
+            s_defaultParamNamesLowerCase.add(name.toLowerCase(Locale.ROOT));
+        }
     }
 
     @Override
@@ -59,20 +69,13 @@ public class ParamGenericValidationWorker implements DispatchWorker {
         final BaseCmd cmd = task.getCmd();
         final Map params = task.getParams();
 
-        final List<String> expectedParamNames = getParamNamesForCommand(cmd);
+        final CommandBindingPlan plan = CommandBindingPlan.forClass(cmd.getClass());
+        final short callerType = CallContext.current().getCallingAccount().getType();
 
         final StringBuilder errorMsg = new StringBuilder(ERROR_MSG_PREFIX);
         boolean foundUnknownParam = false;
         for (final Object actualParamName : params.keySet()) {
-            // If none of the expected params matches, we have an unknown param
-            boolean matchedCurrentParam = false;
-            for (final String expectedName : expectedParamNames) {
-                if (expectedName.equalsIgnoreCase((String) actualParamName)) {
-                    matchedCurrentParam = true;
-                    break;
-                }
-            }
-            if (!matchedCurrentParam && !((String) actualParamName).equalsIgnoreCase("expires") && !((String) actualParamName).equalsIgnoreCase("signatureversion")) {
+            if (!isExpectedParam(plan, callerType, (String) actualParamName)) {
                 errorMsg.append(" ").append(actualParamName);
                 foundUnknownParam = true;
             }
@@ -83,15 +86,13 @@ public class ParamGenericValidationWorker implements DispatchWorker {
         }
     }
 
-    protected List<String> getParamNamesForCommand(final BaseCmd cmd) {
-        final List<String> paramNames = new ArrayList<>();
+    protected boolean isExpectedParam(final CommandBindingPlan plan, final short callerType, final String paramName) {
         // The expected param names are all the specific for the current command class ...
-        for (final Field field : cmd.getParamFields()) {
-            final Parameter parameterAnnotation = field.getAnnotation(Parameter.class);
-            paramNames.add(parameterAnnotation.name());
+        final ParamBinding binding = plan.getBinding(paramName);
+        if (binding != null && binding.isAllowedFor(callerType)) {
+            return true;
         }
         // ... plus the default ones
-        paramNames.addAll(defaultParamNames);
-        return paramNames;
+        return s_defaultParamNamesLowerCase.contains(paramName.toLowerCase(Locale.ROOT));
     }
 }
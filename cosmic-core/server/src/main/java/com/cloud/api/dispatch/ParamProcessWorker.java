@@ -9,17 +9,11 @@ import com.cloud.api.ApiErrorCode;
 import com.cloud.api.BaseAsyncCreateCmd;
 import com.cloud.api.BaseCmd;
 import com.cloud.api.BaseCmd.CommandType;
-import com.cloud.api.EntityReference;
 import com.cloud.api.Parameter;
 import com.cloud.api.ServerApiException;
-import com.cloud.api.command.admin.resource.ArchiveAlertsCmd;
-import com.cloud.api.command.admin.resource.DeleteAlertsCmd;
-import com.cloud.api.command.user.event.ArchiveEventsCmd;
-import com.cloud.api.command.user.event.DeleteEventsCmd;
-import com.cloud.api.command.user.event.ListEventsCmd;
+import com.cloud.api.dispatch.CommandBindingPlan.ParamBinding;
 import com.cloud.context.CallContext;
 import com.cloud.dao.EntityManager;
-import com.cloud.legacymodel.InternalIdentity;
 import com.cloud.legacymodel.acl.ControlledEntity;
 import com.cloud.legacymodel.exceptions.CloudRuntimeException;
 import com.cloud.legacymodel.exceptions.InvalidParameterValueException;
@@ -34,12 +28,16 @@ import java.text.ParseException;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.Calendar;
+import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.StringTokenizer;
 import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -47,6 +45,7 @@ import org.slf4j.LoggerFactory;
 public class ParamProcessWorker implements DispatchWorker {
 
     private static final Logger s_logger = LoggerFactory.getLogger(ParamProcessWorker.class.getName());
+    private static final Pattern UUID_PATTERN = Pattern.compile("^[0-9a-f]{8}-[0-9a-f]{4}-[0-9a-f]{4}-[0-9a-f]{4}-[0-9a-f]{12}$");
     public final DateFormat inputFormat = new SimpleDateFormat("yyyy-MM-dd");
     public final DateFormat newInputFormat = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss");
 
@@ -75,13 +74,19 @@ public class ParamProcessWorker implements DispatchWorker {
     public void processParameters(final BaseCmd cmd, final Map params) {
         final Map<Object, AccessType> entitiesToAccess = new HashMap<>();
 
-        final List<Field> cmdFields = cmd.getParamFields();
+        final CommandBindingPlan plan = CommandBindingPlan.forClass(cmd.getClass());
+        final short callerType = CallContext.current().getCallingAccount().getType();
 
-        for (final Field field : cmdFields) {
-            final Parameter parameterAnnotation = field.getAnnotation(Parameter.class);
-            final Object paramObj = params.get(parameterAnnotation.name());
+        for (final ParamBinding binding : plan.getBindings()) {
+            if (!binding.isAllowedFor(callerType)) {
+                s_logger.debug("Ignoring paremeter " + binding.getName() + " as the caller is not authorized to pass it in");
+                continue;
+            }
+            final Field field = binding.getField();
+            final Parameter parameterAnnotation = binding.getAnnotation();
+            final Object paramObj = params.get(binding.getName());
             if (paramObj == null) {
-                if (parameterAnnotation.required()) {
+                if (binding.isRequired()) {
                     throw new ServerApiException(ApiErrorCode.PARAM_ERROR, "Unable to execute API command " +
                             cmd.getCommandName().substring(0, cmd.getCommandName().length() - 8) +
                             " due to missing parameter " + parameterAnnotation.name());
@@ -91,7 +96,7 @@ public class ParamProcessWorker implements DispatchWorker {
 
             // marshall the parameter into the correct type and set the field value
             try {
-                setFieldValue(field, cmd, paramObj, parameterAnnotation);
+                setFieldValue(binding, plan, cmd, paramObj);
             } catch (final IllegalArgumentException argEx) {
                 if (s_logger.isDebugEnabled()) {
                     s_logger.debug("Unable to execute API command " + cmd.getCommandName() + " due to invalid value " + paramObj + " for parameter " +
@@ -121,8 +126,8 @@ public class ParamProcessWorker implements DispatchWorker {
 
             //check access on the resource this field points to
             try {
-                final ACL checkAccess = field.getAnnotation(ACL.class);
-                final CommandType fieldType = parameterAnnotation.type();
+                final ACL checkAccess = binding.getAcl();
+                final CommandType fieldType = binding.getType();
 
                 if (checkAccess != null) {
                     // Verify that caller can perform actions in behalf of vm
@@ -133,19 +138,18 @@ public class ParamProcessWorker implements DispatchWorker {
                     // for maps, specify access to be checkd on key or value.
                     // Find the controlled entity DBid by uuid
 
-                    if (parameterAnnotation.entityType() != null && parameterAnnotation.entityType().length > 0
-                            && parameterAnnotation.entityType()[0].getAnnotation(EntityReference.class) != null) {
-                        final Class<?>[] entityList = parameterAnnotation.entityType()[0].getAnnotation(EntityReference.class).value();
+                    final Class<?>[] entityList = binding.getEntityClasses();
+                    if (entityList != null) {
 
                         // Check if the parameter type is a single
                         // Id or list of id's/name's
                         switch (fieldType) {
                             case LIST:
-                                final CommandType listType = parameterAnnotation.collectionType();
+                                final CommandType listType = binding.getCollectionType();
                                 switch (listType) {
                                     case LONG:
                                     case UUID:
-                                        final List<Long> listParam = (List<Long>) field.get(cmd);
+                                        final List<Long> listParam = (List<Long>) binding.get(cmd);
                                         for (final Long entityId : listParam) {
                                             for (final Class entity : entityList) {
                                                 final Object entityObj = _entityMgr.findById(entity, entityId);
@@ -171,7 +175,7 @@ public class ParamProcessWorker implements DispatchWorker {
                             case LONG:
                             case UUID:
                                 for (final Class entity : entityList) {
-                                    final Object entityObj = _entityMgr.findById(entity, (Long) field.get(cmd));
+                                    final Object entityObj = _entityMgr.findById(entity, (Long) binding.get(cmd));
                                     if (entityObj != null) {
                                         entitiesToAccess.put(entityObj, checkAccess.accessType());
                                         break;
@@ -187,34 +191,30 @@ public class ParamProcessWorker implements DispatchWorker {
                 s_logger.error("Error initializing command " + cmd.getCommandName() + ", field " + field.getName() + " is not accessible.");
                 throw new CloudRuntimeException("Internal error initializing parameters for command " + cmd.getCommandName() + " [field " + field.getName() +
                         " is not accessible]");
-            } catch (final IllegalAccessException e) {
-                s_logger.error("Error initializing command " + cmd.getCommandName() + ", field " + field.getName() + " is not accessible.");
-                throw new CloudRuntimeException("Internal error initializing parameters for command " + cmd.getCommandName() + " [field " + field.getName() +
-                        " is not accessible]");
             }
         }
 
         doAccessChecks(cmd, entitiesToAccess);
     }
 
-    private void setFieldValue(final Field field, final BaseCmd cmdObj, final Object paramObj, final Parameter annotation) throws IllegalArgumentException, ParseException {
+    private void setFieldValue(final ParamBinding binding, final CommandBindingPlan plan, final BaseCmd cmdObj, final Object paramObj) throws IllegalArgumentException,
+            ParseException {
+        final Field field = binding.getField();
         try {
-            field.setAccessible(true);
-            final CommandType fieldType = annotation.type();
+            final CommandType fieldType = binding.getType();
             switch (fieldType) {
                 case BOOLEAN:
-                    field.set(cmdObj, Boolean.valueOf(paramObj.toString()));
+                    binding.set(cmdObj, Boolean.valueOf(paramObj.toString()));
                     break;
                 case DATE:
                     // This piece of code is for maintaining backward compatibility
                     // and support both the date formats(Bug 9724)
-                    if (cmdObj instanceof ListEventsCmd || cmdObj instanceof DeleteEventsCmd || cmdObj instanceof ArchiveEventsCmd ||
-                            cmdObj instanceof ArchiveAlertsCmd || cmdObj instanceof DeleteAlertsCmd) {
+                    if (plan.usesLegacyDateFormat()) {
                         final boolean isObjInNewDateFormat = isObjInNewDateFormat(paramObj.toString());
                         if (isObjInNewDateFormat) {
                             final DateFormat newFormat = newInputFormat;
                             synchronized (newFormat) {
-                                field.set(cmdObj, newFormat.parse(paramObj.toString()));
+                                binding.set(cmdObj, newFormat.parse(paramObj.toString()));
                             }
                         } else {
                             final DateFormat format = inputFormat;
@@ -225,14 +225,14 @@ public class ParamProcessWorker implements DispatchWorker {
                                 } else if (field.getName().equals("endDate")) {
                                     date = messageDate(date, 23, 59, 59);
                                 }
-                                field.set(cmdObj, date);
+                                binding.set(cmdObj, date);
                             }
                         }
                     } else {
                         final DateFormat format = inputFormat;
                         synchronized (format) {
                             format.setLenient(false);
-                            field.set(cmdObj, format.parse(paramObj.toString()));
+                            binding.set(cmdObj, format.parse(paramObj.toString()));
                         }
                     }
                     break;
@@ -241,7 +241,7 @@ public class ParamProcessWorker implements DispatchWorker {
                     // we ignore blank or null values and defer to the command to set a default
                     // value for optional parameters ...
                     if (paramObj != null && isNotBlank(paramObj.toString())) {
-                        field.set(cmdObj, Float.valueOf(paramObj.toString()));
+                        binding.set(cmdObj, Float.valueOf(paramObj.toString()));
                     }
                     break;
                 case DOUBLE:
@@ -249,7 +249,7 @@ public class ParamProcessWorker implements DispatchWorker {
                     // we ignore blank or null values and defer to the command to set a default
                     // value for optional parameters ...
                     if (paramObj != null && isNotBlank(paramObj.toString())) {
-                        field.set(cmdObj, Double.valueOf(paramObj.toString()));
+                        binding.set(cmdObj, Double.valueOf(paramObj.toString()));
                     }
                     break;
                 case INTEGER:
@@ -257,66 +257,71 @@ public class ParamProcessWorker implements DispatchWorker {
                     // we ignore blank or null values and defer to the command to set a default
                     // value for optional parameters ...
                     if (paramObj != null && isNotBlank(paramObj.toString())) {
-                        field.set(cmdObj, Integer.valueOf(paramObj.toString()));
+                        binding.set(cmdObj, Integer.valueOf(paramObj.toString()));
                     }
                     break;
                 case LIST:
                     final List listParam = new ArrayList();
                     final StringTokenizer st = new StringTokenizer(paramObj.toString(), ",");
-                    while (st.hasMoreTokens()) {
-                        final String token = st.nextToken();
-                        final CommandType listType = annotation.collectionType();
-                        switch (listType) {
-                            case INTEGER:
-                                listParam.add(Integer.valueOf(token));
-                                break;
-                            case UUID:
-                                if (token.isEmpty()) {
+                    final CommandType listType = binding.getCollectionType();
+                    if (listType == CommandType.UUID) {
+                        // Translate all uuids of the list at once
+                        final List<String> uuids = new ArrayList<>();
+                        while (st.hasMoreTokens()) {
+                            final String token = st.nextToken();
+                            if (!token.isEmpty()) {
+                                uuids.add(token);
+                            }
+                        }
+                        listParam.addAll(translateUuidsToInternalIds(uuids, binding));
+                    } else {
+                        while (st.hasMoreTokens()) {
+                            final String token = st.nextToken();
+                            switch (listType) {
+                                case INTEGER:
+                                    listParam.add(Integer.valueOf(token));
                                     break;
+                                case LONG: {
+                                    listParam.add(Long.valueOf(token));
                                 }
-                                final Long internalId = translateUuidToInternalId(token, annotation);
-                                listParam.add(internalId);
                                 break;
-                            case LONG: {
-                                listParam.add(Long.valueOf(token));
+                                case SHORT:
+                                    listParam.add(Short.valueOf(token));
+                                    break;
+                                case STRING:
+                                    listParam.add(token);
+                                    break;
                             }
-                            break;
-                            case SHORT:
-                                listParam.add(Short.valueOf(token));
-                                break;
-                            case STRING:
-                                listParam.add(token);
-                                break;
                         }
                     }
-                    field.set(cmdObj, listParam);
+                    binding.set(cmdObj, listParam);
                     break;
                 case UUID:
-                    final Long internalId = translateUuidToInternalId(paramObj.toString(), annotation);
-                    field.set(cmdObj, internalId);
+                    final Long internalId = translateUuidToInternalId(paramObj.toString(), binding);
+                    binding.set(cmdObj, internalId);
                     break;
                 case LONG:
-                    field.set(cmdObj, Long.valueOf(paramObj.toString()));
+                    binding.set(cmdObj, Long.valueOf(paramObj.toString()));
                     break;
                 case SHORT:
-                    field.set(cmdObj, Short.valueOf(paramObj.toString()));
+                    binding.set(cmdObj, Short.valueOf(paramObj.toString()));
                     break;
                 case STRING:
                     if ((paramObj != null)) {
-                        if (paramObj.toString().length() > annotation.length()) {
-                            s_logger.error("Value greater than max allowed length " + annotation.length() + " for param: " + field.getName());
-                            throw new InvalidParameterValueException("Value greater than max allowed length " + annotation.length() + " for param: " + field.getName());
+                        if (paramObj.toString().length() > binding.getLength()) {
+                            s_logger.error("Value greater than max allowed length " + binding.getLength() + " for param: " + field.getName());
+                            throw new InvalidParameterValueException("Value greater than max allowed length " + binding.getLength() + " for param: " + field.getName());
                         } else {
-                            field.set(cmdObj, paramObj.toString());
+                            binding.set(cmdObj, paramObj.toString());
                         }
                     }
                     break;
                 case TZDATE:
-                    field.set(cmdObj, DateUtil.parseTZDateString(paramObj.toString()));
+                    binding.set(cmdObj, DateUtil.parseTZDateString(paramObj.toString()));
                     break;
                 case MAP:
                 default:
-                    field.set(cmdObj, paramObj);
+                    binding.set(cmdObj, paramObj);
                     break;
             }
         } catch (final IllegalAccessException ex) {
@@ -362,53 +367,64 @@ public class ParamProcessWorker implements DispatchWorker {
         return cal.getTime();
     }
 
-    private Long translateUuidToInternalId(final String uuid, final Parameter annotation) {
-        if (uuid.equals("-1")) {
-            // FIXME: This is to handle a lot of hardcoded special cases where -1 is sent
-            // APITODO: Find and get rid of all hardcoded params in API Cmds and service layer
-            return -1L;
-        }
-        Long internalId = null;
-        // Match against Java's UUID regex to check if input is uuid string
-        final boolean isUuid = uuid.matches("^[0-9a-f]{8}-[0-9a-f]{4}-[0-9a-f]{4}-[0-9a-f]{4}-[0-9a-f]{12}$");
-        // Enforce that it's uuid
-        if (!isUuid) {
-            throw new InvalidParameterValueException("Invalid parameter value: Not a uuid: " + uuid);
-        }
+    private Long translateUuidToInternalId(final String uuid, final ParamBinding binding) {
+        return translateUuidsToInternalIds(Collections.singletonList(uuid), binding).get(0);
+    }
 
-        // There may be multiple entities defined on the @EntityReference of a Response.class
-        // UUID CommandType would expect only one entityType, so use the first entityType
-        final Class<?>[] entities = annotation.entityType()[0].getAnnotation(EntityReference.class).value();
-
-        // Go through each entity which is an interface to a VO class and get a VO object
-        // Try to getId() for the object using reflection, break on first non-null value
-        for (final Class<?> entity : entities) {
-            // For backward compatibility, we search within removed entities and let service layer deal
-            // with removed ones, return empty response or error
-            final Object objVO = _entityMgr.findByUuidIncludingRemoved(entity, uuid);
-            if (objVO == null) {
+    private List<Long> translateUuidsToInternalIds(final List<String> uuids, final ParamBinding binding) {
+        final Set<String> unresolved = new LinkedHashSet<>();
+        for (final String uuid : uuids) {
+            if (uuid.equals("-1")) {
+                // FIXME: This is to handle a lot of hardcoded special cases where -1 is sent
+                // APITODO: Find and get rid of all hardcoded params in API Cmds and service layer
                 continue;
             }
-            // Invoke the getId method, get the internal long ID
-            // If that fails hide exceptions as the uuid may not exist                                         s
-            try {
-                internalId = ((InternalIdentity) objVO).getId();
-            } catch (final IllegalArgumentException e) {
-            } catch (final NullPointerException e) {
+            // Match against Java's UUID regex to check if input is uuid string
+            // Enforce that it's uuid
+            if (!UUID_PATTERN.matcher(uuid).matches()) {
+                throw new InvalidParameterValueException("Invalid parameter value: Not a uuid: " + uuid);
+            }
+            unresolved.add(uuid);
+        }
+
+        final Map<String, Long> internalIds = new HashMap<>();
+        if (!unresolved.isEmpty()) {
+            // There may be multiple entities defined on the @EntityReference of a Response.class
+            // UUID CommandType would expect only one entityType, so use the first entityType
+            final Class<?>[] entities = binding.getEntityClasses();
+            if (entities == null) {
+                throw new InvalidParameterValueException("Invalid parameter " + binding.getName() + " value=" + unresolved.iterator().next() +
+                        " due to incorrect parameter annotation for the field in api cmd class.");
             }
-            // Return on first non-null Id for the uuid entity
-            if (internalId != null) {
-                CallContext.current().putContextParameter(entity, uuid);
-                break;
+
+            // Go through each entity which is an interface to a VO class, the first entity that knows a uuid wins
+            for (final Class<?> entity : entities) {
+                if (unresolved.isEmpty()) {
+                    break;
+                }
+                // For backward compatibility, we search within removed entities and let service layer deal
+                // with removed ones, return empty response or error
+                final Map<String, Long> ids = _entityMgr.findIdsByUuidsIncludingRemoved(entity, unresolved);
+                for (final Map.Entry<String, Long> id : ids.entrySet()) {
+                    internalIds.put(id.getKey(), id.getValue());
+                    unresolved.remove(id.getKey());
+                    CallContext.current().putContextParameter(entity, id.getKey());
+                }
             }
         }
-        if (internalId == null) {
-            if (s_logger.isDebugEnabled()) {
-                s_logger.debug("Object entity uuid = " + uuid + " does not exist in the database.");
+
+        final List<Long> result = new ArrayList<>(uuids.size());
+        for (final String uuid : uuids) {
+            final Long internalId = uuid.equals("-1") ? Long.valueOf(-1L) : internalIds.get(uuid);
+            if (internalId == null) {
+                if (s_logger.isDebugEnabled()) {
+                    s_logger.debug("Object entity uuid = " + uuid + " does not exist in the database.");
+                }
+                throw new InvalidParameterValueException("Invalid parameter " + binding.getName() + " value=" + uuid +
+                        " due to incorrect long value format, or entity does not exist or due to incorrect parameter annotation for the field in api cmd class.");
             }
-            throw new InvalidParameterValueException("Invalid parameter " + annotation.name() + " value=" + uuid +
-                    " due to incorrect long value format, or entity does not exist or due to incorrect parameter annotation for the field in api cmd class.");
+            result.add(internalId);
         }
-        return internalId;
+        return result;
     }
 }
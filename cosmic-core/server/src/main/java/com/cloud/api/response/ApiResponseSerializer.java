@@ -7,21 +7,27 @@ import com.cloud.api.ApiResponseGsonHelper;
 import com.cloud.api.ApiServer;
 import com.cloud.api.BaseCmd;
 import com.cloud.api.ResponseObject;
-import com.cloud.context.CallContext;
 import com.cloud.legacymodel.exceptions.CloudRuntimeException;
 import com.cloud.legacymodel.exceptions.ExceptionProxyObject;
-import com.cloud.legacymodel.user.Account;
 import com.cloud.serializer.Param;
 import com.cloud.utils.HttpUtils;
 import com.cloud.utils.encoding.URLEncoder;
 
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.lang.reflect.Field;
 import java.lang.reflect.Modifier;
+import java.nio.CharBuffer;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Date;
 import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -33,22 +39,35 @@ import org.slf4j.LoggerFactory;
 public class ApiResponseSerializer {
     private static final Logger s_logger = LoggerFactory.getLogger(ApiResponseSerializer.class.getName());
     private static final Pattern s_unicodeEscapePattern = Pattern.compile("\\\\u([0-9A-Fa-f]{4})");
+    private static final ConcurrentHashMap<Class<?>, XmlField[]> s_xmlFields = new ConcurrentHashMap<>();
 
     public static String toSerializedString(final ResponseObject result, final String responseType) {
-        s_logger.trace("===Serializing Response===");
-        if (HttpUtils.RESPONSE_TYPE_JSON.equalsIgnoreCase(responseType)) {
-            return toJSONSerializedString(result, new StringBuilder());
-        } else {
-            return toXMLSerializedString(result, new StringBuilder());
-        }
+        return toSerializedStringWithSecureLogs(result, responseType, new StringBuilder());
     }
 
     public static String toSerializedStringWithSecureLogs(final ResponseObject result, final String responseType, final StringBuilder log) {
+        if (result == null || log == null) {
+            return null;
+        }
+        final StringWriter out = new StringWriter();
+        try {
+            writeSerialized(result, responseType, out, log);
+        } catch (final IOException e) {
+            throw new CloudRuntimeException("Unable to serialize response " + result.getResponseName(), e);
+        }
+        return out.toString();
+    }
+
+    /**
+     * Serializes the response straight into the given writer, and the same response without its sensitive fields into the log.
+     */
+    public static void writeSerialized(final ResponseObject result, final String responseType, final Writer out, final StringBuilder log) throws IOException {
         s_logger.trace("===Serializing Response===");
+        final short callerType = ApiResponseGsonHelper.getCallerAccountType();
         if (HttpUtils.RESPONSE_TYPE_JSON.equalsIgnoreCase(responseType)) {
-            return toJSONSerializedString(result, log);
+            writeJSON(result, callerType, out, log);
         } else {
-            return toXMLSerializedString(result, log);
+            writeXML(result, callerType, out, log);
         }
     }
 
@@ -62,134 +81,110 @@ public class ApiResponseSerializer {
     }
 
     public static String toJSONSerializedString(final ResponseObject result, final StringBuilder log) {
-        if (result != null && log != null) {
-            final Gson responseBuilder = ApiResponseGsonHelper.getBuilder().excludeFieldsWithModifiers(Modifier.TRANSIENT).create();
-            final Gson logBuilder = ApiResponseGsonHelper.getLogBuilder().excludeFieldsWithModifiers(Modifier.TRANSIENT).create();
-
-            final StringBuilder sb = new StringBuilder();
-
-            sb.append("{\"").append(result.getResponseName()).append("\":");
-            log.append("{\"").append(result.getResponseName()).append("\":");
-            if (result instanceof ListResponse) {
-                final List<? extends ResponseObject> responses = ((ListResponse) result).getResponses();
-                final Integer count = ((ListResponse) result).getCount();
-                final boolean nonZeroCount = (count != null && count.longValue() != 0);
-                if (nonZeroCount) {
-                    sb.append("{\"").append(ApiConstants.COUNT).append("\":").append(count);
-                    log.append("{\"").append(ApiConstants.COUNT).append("\":").append(count);
-                }
+        return toSerializedStringWithSecureLogs(result, HttpUtils.RESPONSE_TYPE_JSON, log);
+    }
 
-                if ((responses != null) && !responses.isEmpty()) {
-                    String jsonStr = responseBuilder.toJson(responses.get(0));
-                    jsonStr = unescape(jsonStr);
-                    String logStr = logBuilder.toJson(responses.get(0));
-                    logStr = unescape(logStr);
+    private static void writeJSON(final ResponseObject result, final short callerType, final Writer sb, final StringBuilder log) throws IOException {
+        final Gson responseBuilder = ApiResponseGsonHelper.getGson(callerType);
+        final Gson logBuilder = ApiResponseGsonHelper.getLogGson(callerType);
+        final UnescapingWriter json = new UnescapingWriter(sb);
+        final UnescapingWriter jsonLog = new UnescapingWriter(log);
 
-                    if (nonZeroCount) {
-                        sb.append(",\"").append(responses.get(0).getObjectName()).append("\":[").append(jsonStr);
-                        log.append(",\"").append(responses.get(0).getObjectName()).append("\":[").append(logStr);
-                    }
+        sb.append("{\"").append(result.getResponseName()).append("\":");
+        log.append("{\"").append(result.getResponseName()).append("\":");
+        if (result instanceof ListResponse) {
+            final List<? extends ResponseObject> responses = ((ListResponse) result).getResponses();
+            final Integer count = ((ListResponse) result).getCount();
+            final boolean nonZeroCount = (count != null && count.longValue() != 0);
+            if (nonZeroCount) {
+                sb.append("{\"").append(ApiConstants.COUNT).append("\":").append(String.valueOf(count));
+                log.append("{\"").append(ApiConstants.COUNT).append("\":").append(count);
+            }
 
-                    for (int i = 1; i < ((ListResponse) result).getResponses().size(); i++) {
-                        jsonStr = responseBuilder.toJson(responses.get(i));
-                        jsonStr = unescape(jsonStr);
-                        logStr = logBuilder.toJson(responses.get(i));
-                        logStr = unescape(logStr);
-                        sb.append(",").append(jsonStr);
-                        log.append(",").append(logStr);
-                    }
-                    sb.append("]}");
-                    log.append("]}");
-                } else {
-                    if (!nonZeroCount) {
-                        sb.append("{");
-                        log.append("{");
-                    }
+            if ((responses != null) && !responses.isEmpty()) {
+                if (nonZeroCount) {
+                    sb.append(",\"").append(responses.get(0).getObjectName()).append("\":[");
+                    log.append(",\"").append(responses.get(0).getObjectName()).append("\":[");
+                    json.write(responseBuilder, responses.get(0));
+                    jsonLog.write(logBuilder, responses.get(0));
+                }
 
-                    sb.append("}");
-                    log.append("}");
+                for (int i = 1; i < responses.size(); i++) {
+                    sb.append(",");
+                    log.append(",");
+                    json.write(responseBuilder, responses.get(i));
+                    jsonLog.write(logBuilder, responses.get(i));
                 }
-            } else if (result instanceof SuccessResponse) {
-                sb.append("{\"success\":\"").append(((SuccessResponse) result).getSuccess()).append("\"}");
-                log.append("{\"success\":\"").append(((SuccessResponse) result).getSuccess()).append("\"}");
-            } else if (result instanceof ExceptionResponse) {
-                String jsonErrorText = responseBuilder.toJson(result);
-                jsonErrorText = unescape(jsonErrorText);
-                sb.append(jsonErrorText);
-                log.append(jsonErrorText);
+                sb.append("]}");
+                log.append("]}");
             } else {
-                String jsonStr = responseBuilder.toJson(result);
-                if (jsonStr != null && !jsonStr.isEmpty()) {
-                    jsonStr = unescape(jsonStr);
-                    if (result instanceof AsyncJobResponse || result instanceof CreateCmdResponse || result instanceof AuthenticationCmdResponse) {
-                        sb.append(jsonStr);
-                    } else {
-                        sb.append("{\"").append(result.getObjectName()).append("\":").append(jsonStr).append("}");
-                    }
-                } else {
-                    sb.append("{}");
-                }
-                String logStr = logBuilder.toJson(result);
-                if (logStr != null && !logStr.isEmpty()) {
-                    logStr = unescape(logStr);
-                    if (result instanceof AsyncJobResponse || result instanceof CreateCmdResponse || result instanceof AuthenticationCmdResponse) {
-                        log.append(logStr);
-                    } else {
-                        log.append("{\"").append(result.getObjectName()).append("\":").append(logStr).append("}");
-                    }
-                } else {
-                    log.append("{}");
+                if (!nonZeroCount) {
+                    sb.append("{");
+                    log.append("{");
                 }
+
+                sb.append("}");
+                log.append("}");
             }
+        } else if (result instanceof SuccessResponse) {
+            sb.append("{\"success\":\"").append(String.valueOf(((SuccessResponse) result).getSuccess())).append("\"}");
+            log.append("{\"success\":\"").append(((SuccessResponse) result).getSuccess()).append("\"}");
+        } else if (result instanceof ExceptionResponse) {
+            final String jsonErrorText = unescape(responseBuilder.toJson(result));
+            sb.append(jsonErrorText);
+            log.append(jsonErrorText);
+        } else if (result instanceof AsyncJobResponse || result instanceof CreateCmdResponse || result instanceof AuthenticationCmdResponse) {
+            json.write(responseBuilder, result);
+            jsonLog.write(logBuilder, result);
+        } else {
+            sb.append("{\"").append(result.getObjectName()).append("\":");
+            log.append("{\"").append(result.getObjectName()).append("\":");
+            json.write(responseBuilder, result);
+            jsonLog.write(logBuilder, result);
             sb.append("}");
             log.append("}");
-            return sb.toString();
         }
-        return null;
+        sb.append("}");
+        log.append("}");
     }
 
-    private static String toXMLSerializedString(final ResponseObject result, final StringBuilder log) {
-        if (result != null && log != null) {
-            final StringBuilder sb = new StringBuilder();
-            sb.append("<?xml version=\"1.0\" encoding=\"UTF-8\"?>");
-            sb.append("<").append(result.getResponseName()).append(" cosmic-version=\"").append(ApiDBUtils.getVersion()).append("\">");
-            log.append("<?xml version=\"1.0\" encoding=\"UTF-8\"?>");
-            log.append("<").append(result.getResponseName()).append(" cosmic-version=\"").append(ApiDBUtils.getVersion()).append("\">");
+    private static void writeXML(final ResponseObject result, final short callerType, final Writer sb, final StringBuilder log) throws IOException {
+        sb.append("<?xml version=\"1.0\" encoding=\"UTF-8\"?>");
+        sb.append("<").append(result.getResponseName()).append(" cosmic-version=\"").append(ApiDBUtils.getVersion()).append("\">");
+        log.append("<?xml version=\"1.0\" encoding=\"UTF-8\"?>");
+        log.append("<").append(result.getResponseName()).append(" cosmic-version=\"").append(ApiDBUtils.getVersion()).append("\">");
 
-            if (result instanceof ListResponse) {
-                final Integer count = ((ListResponse) result).getCount();
+        if (result instanceof ListResponse) {
+            final Integer count = ((ListResponse) result).getCount();
 
-                if (count != null && count != 0) {
-                    sb.append("<").append(ApiConstants.COUNT).append(">").append(((ListResponse) result).getCount()).append("</").append(ApiConstants.COUNT).append(">");
-                    log.append("<").append(ApiConstants.COUNT).append(">").append(((ListResponse) result).getCount()).append("</").append(ApiConstants.COUNT).append(">");
-                }
-                final List<? extends ResponseObject> responses = ((ListResponse) result).getResponses();
-                if ((responses != null) && !responses.isEmpty()) {
-                    for (final ResponseObject obj : responses) {
-                        serializeResponseObjXML(sb, log, obj);
-                    }
+            if (count != null && count != 0) {
+                sb.append("<").append(ApiConstants.COUNT).append(">").append(String.valueOf(count)).append("</").append(ApiConstants.COUNT).append(">");
+                log.append("<").append(ApiConstants.COUNT).append(">").append(count).append("</").append(ApiConstants.COUNT).append(">");
+            }
+            final List<? extends ResponseObject> responses = ((ListResponse) result).getResponses();
+            if ((responses != null) && !responses.isEmpty()) {
+                for (final ResponseObject obj : responses) {
+                    serializeResponseObjXML(sb, log, obj, callerType);
                 }
+            }
+        } else {
+            if (result instanceof CreateCmdResponse || result instanceof AsyncJobResponse || result instanceof AuthenticationCmdResponse) {
+                serializeResponseObjFieldsXML(sb, log, result, callerType);
             } else {
-                if (result instanceof CreateCmdResponse || result instanceof AsyncJobResponse || result instanceof AuthenticationCmdResponse) {
-                    serializeResponseObjFieldsXML(sb, log, result);
-                } else {
-                    serializeResponseObjXML(sb, log, result);
-                }
+                serializeResponseObjXML(sb, log, result, callerType);
             }
-
-            sb.append("</").append(result.getResponseName()).append(">");
-            log.append("</").append(result.getResponseName()).append(">");
-            return sb.toString();
         }
-        return null;
+
+        sb.append("</").append(result.getResponseName()).append(">");
+        log.append("</").append(result.getResponseName()).append(">");
     }
 
-    private static void serializeResponseObjXML(final StringBuilder sb, final StringBuilder log, final ResponseObject obj) {
+    private static void serializeResponseObjXML(final Writer sb, final StringBuilder log, final ResponseObject obj, final short callerType) throws IOException {
         if (!(obj instanceof SuccessResponse) && !(obj instanceof ExceptionResponse)) {
             sb.append("<").append(obj.getObjectName()).append(">");
             log.append("<").append(obj.getObjectName()).append(">");
         }
-        serializeResponseObjFieldsXML(sb, log, obj);
+        serializeResponseObjFieldsXML(sb, log, obj, callerType);
         if (!(obj instanceof SuccessResponse) && !(obj instanceof ExceptionResponse)) {
             sb.append("</").append(obj.getObjectName()).append(">");
             log.append("</").append(obj.getObjectName()).append(">");
@@ -205,55 +200,38 @@ public class ApiResponseSerializer {
         return fields.toArray(new Field[]{});
     }
 
-    private static void serializeResponseObjFieldsXML(final StringBuilder sb, final StringBuilder log, final ResponseObject obj) {
+    private static XmlField[] getXmlFields(final Class<?> clz) {
+        return s_xmlFields.computeIfAbsent(clz, c -> {
+            final List<XmlField> xmlFields = new ArrayList<>();
+            for (final Field field : getFlattenFields(c)) {
+                if ((field.getModifiers() & Modifier.TRANSIENT) != 0) {
+                    continue; // skip transient fields
+                }
+                final SerializedName serializedName = field.getAnnotation(SerializedName.class);
+                if (serializedName == null) {
+                    continue; // skip fields w/o serialized name
+                }
+                xmlFields.add(new XmlField(field, serializedName.value(), field.getAnnotation(Param.class)));
+            }
+            return xmlFields.toArray(new XmlField[xmlFields.size()]);
+        });
+    }
+
+    private static void serializeResponseObjFieldsXML(final Writer sb, final StringBuilder log, final ResponseObject obj, final short callerType) throws IOException {
         boolean isAsync = false;
         if (obj instanceof AsyncJobResponse) {
             isAsync = true;
         }
 
-        final Field[] fields = getFlattenFields(obj.getClass());
-        for (final Field field : fields) {
-            if ((field.getModifiers() & Modifier.TRANSIENT) != 0) {
-                continue; // skip transient fields
-            }
-
-            final SerializedName serializedName = field.getAnnotation(SerializedName.class);
-            if (serializedName == null) {
-                continue; // skip fields w/o serialized name
-            }
-
-            boolean logField = true;
-            final Param param = field.getAnnotation(Param.class);
-            if (param != null) {
-                final RoleType[] allowedRoles = param.authorized();
-                if (allowedRoles.length > 0) {
-                    boolean permittedParameter = false;
-                    final Account caller = CallContext.current().getCallingAccount();
-                    for (final RoleType allowedRole : allowedRoles) {
-                        if (allowedRole.getValue() == caller.getType()) {
-                            permittedParameter = true;
-                            break;
-                        }
-                    }
-                    if (!permittedParameter) {
-                        s_logger.trace("Ignoring parameter " + param.name() + " as the caller is not authorized to see it");
-                        continue;
-                    }
-                }
-                if (param.isSensitive()) {
-                    logField = false;
-                }
+        for (final XmlField xmlField : getXmlFields(obj.getClass())) {
+            if (!xmlField.isAllowedFor(callerType)) {
+                s_logger.trace("Ignoring parameter " + xmlField.param.name() + " as the caller is not authorized to see it");
+                continue;
             }
+            final boolean logField = xmlField.param == null || !xmlField.param.isSensitive();
+            final String serializedName = xmlField.name;
 
-            field.setAccessible(true);
-            final Object fieldValue;
-            try {
-                fieldValue = field.get(obj);
-            } catch (final IllegalArgumentException e) {
-                throw new CloudRuntimeException("how illegal is it?", e);
-            } catch (final IllegalAccessException e) {
-                throw new CloudRuntimeException("come on...we set accessible already", e);
-            }
+            final Object fieldValue = xmlField.get(obj);
             if (fieldValue != null) {
                 if (fieldValue instanceof ResponseObject) {
                     final ResponseObject subObj = (ResponseObject) fieldValue;
@@ -261,7 +239,7 @@ public class ApiResponseSerializer {
                         sb.append("<jobresult>");
                         log.append("<jobresult>");
                     }
-                    serializeResponseObjXML(sb, log, subObj);
+                    serializeResponseObjXML(sb, log, subObj, callerType);
                     if (isAsync) {
                         sb.append("</jobresult>");
                         log.append("</jobresult>");
@@ -272,10 +250,8 @@ public class ApiResponseSerializer {
                     for (final Object value : subResponseList) {
                         if (value instanceof ResponseObject) {
                             final ResponseObject subObj = (ResponseObject) value;
-                            if (serializedName != null) {
-                                subObj.setObjectName(serializedName.value());
-                            }
-                            serializeResponseObjXML(sb, log, subObj);
+                            subObj.setObjectName(serializedName);
+                            serializeResponseObjXML(sb, log, subObj, callerType);
                         } else if (value instanceof ExceptionProxyObject) {
                             // Only exception reponses carry a list of
                             // ExceptionProxyObject objects.
@@ -283,44 +259,43 @@ public class ApiResponseSerializer {
                             // If this is the first IdentityProxy field
                             // encountered, put in a uuidList tag.
                             if (!usedUuidList) {
-                                sb.append("<" + serializedName.value() + ">");
-                                log.append("<" + serializedName.value() + ">");
+                                sb.append("<").append(serializedName).append(">");
+                                log.append("<").append(serializedName).append(">");
                                 usedUuidList = true;
                             }
-                            sb.append("<" + "uuid" + ">" + idProxy.getUuid() + "</" + "uuid" + ">");
-                            log.append("<" + "uuid" + ">" + idProxy.getUuid() + "</" + "uuid" + ">");
+                            sb.append("<uuid>").append(idProxy.getUuid()).append("</uuid>");
+                            log.append("<uuid>").append(idProxy.getUuid()).append("</uuid>");
                             // Append the new descriptive property also.
                             final String idFieldName = idProxy.getDescription();
                             if (idFieldName != null) {
-                                sb.append("<" + "uuidProperty" + ">" + idFieldName + "</" + "uuidProperty" + ">");
-                                log.append("<" + "uuidProperty" + ">" + idFieldName + "</" + "uuidProperty" + ">");
+                                sb.append("<uuidProperty>").append(idFieldName).append("</uuidProperty>");
+                                log.append("<uuidProperty>").append(idFieldName).append("</uuidProperty>");
                             }
                         } else if (value instanceof String) {
-                            sb.append("<").append(serializedName.value()).append(">").append(value).append("</").append(serializedName.value()).append(">");
+                            sb.append("<").append(serializedName).append(">").append((String) value).append("</").append(serializedName).append(">");
                             if (logField) {
-                                log.append("<").append(serializedName.value()).append(">").append(value).append("</").append(serializedName.value()).append(">");
+                                log.append("<").append(serializedName).append(">").append((String) value).append("</").append(serializedName).append(">");
                             }
                         }
                     }
                     if (usedUuidList) {
                         // close the uuidList.
-                        sb.append("</").append(serializedName.value()).append(">");
-                        log.append("</").append(serializedName.value()).append(">");
+                        sb.append("</").append(serializedName).append(">");
+                        log.append("</").append(serializedName).append(">");
                     }
                 } else if (fieldValue instanceof Date) {
-                    sb.append("<").append(serializedName.value()).append(">").append(BaseCmd.getDateString((Date) fieldValue)).append("</").append(serializedName.value()).append
-                            (">");
-                    log.append("<").append(serializedName.value()).append(">").append(BaseCmd.getDateString((Date) fieldValue)).append("</").append(serializedName.value())
-                       .append(">");
+                    final String dateString = BaseCmd.getDateString((Date) fieldValue);
+                    sb.append("<").append(serializedName).append(">").append(dateString).append("</").append(serializedName).append(">");
+                    log.append("<").append(serializedName).append(">").append(dateString).append("</").append(serializedName).append(">");
                 } else {
                     String resultString = escapeSpecialXmlChars(fieldValue.toString());
                     if (!(obj instanceof ExceptionResponse)) {
                         resultString = encodeParam(resultString);
                     }
 
-                    sb.append("<").append(serializedName.value()).append(">").append(resultString).append("</").append(serializedName.value()).append(">");
+                    sb.append("<").append(serializedName).append(">").append(resultString).append("</").append(serializedName).append(">");
                     if (logField) {
-                        log.append("<").append(serializedName.value()).append(">").append(resultString).append("</").append(serializedName.value()).append(">");
+                        log.append("<").append(serializedName).append(">").append(resultString).append("</").append(serializedName).append(">");
                     }
                 }
             }
@@ -361,4 +336,130 @@ public class ApiResponseSerializer {
         }
         return value;
     }
+
+    /**
+     * A serialized field of a response class, together with what the xml serializer needs to know about it.
+     */
+    private static class XmlField {
+        private static final MethodType GETTER_TYPE = MethodType.methodType(Object.class, Object.class);
+
+        final String name;
+        final Param param;
+        final MethodHandle getter;
+
+        XmlField(final Field field, final String name, final Param param) {
+            this.name = name;
+            this.param = param;
+            try {
+                field.setAccessible(true);
+                final MethodHandle handle = MethodHandles.lookup().unreflectGetter(field);
+                getter = (Modifier.isStatic(field.getModifiers()) ? MethodHandles.dropArguments(handle, 0, Object.class) : handle).asType(GETTER_TYPE);
+            } catch (final IllegalAccessException e) {
+                throw new CloudRuntimeException("come on...we set accessible already", e);
+            }
+        }
+
+        boolean isAllowedFor(final short callerType) {
+            if (param == null || param.authorized().length == 0) {
+                return true;
+            }
+            for (final RoleType allowedRole : param.authorized()) {
+                if (allowedRole.getValue() == callerType) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        Object get(final ResponseObject obj) {
+            try {
+                return getter.invokeExact((Object) obj);
+            } catch (final RuntimeException | Error e) {
+                throw e;
+            } catch (final Throwable t) {
+                throw new CloudRuntimeException("how illegal is it?", t);
+            }
+        }
+    }
+
+    /**
+     * Writes the json that Gson produces, with the unicode escapes of Gson turned back into the characters they stand for, the same
+     * as {@link #unescape(String)} does. Doing it while writing saves building a string per serialized object.
+     */
+    private static class UnescapingWriter extends Writer {
+        private final Appendable _out;
+        private final char[] _pending = new char[6];
+        private int _pendingLength = 0;
+
+        UnescapingWriter(final Appendable out) {
+            _out = out;
+        }
+
+        void write(final Gson gson, final Object src) throws IOException {
+            gson.toJson(src, this);
+            flushPending();
+        }
+
+        @Override
+        public void write(final char[] cbuf, final int off, final int len) throws IOException {
+            // Pass on everything up to the next backslash in one go
+            final int end = off + len;
+            int run = off;
+            for (int i = off; i < end; i++) {
+                if (_pendingLength == 0 && cbuf[i] != '\\') {
+                    continue;
+                }
+                if (i > run) {
+                    _out.append(CharBuffer.wrap(cbuf, run, i - run));
+                }
+                write(cbuf[i]);
+                run = i + 1;
+            }
+            if (end > run) {
+                _out.append(CharBuffer.wrap(cbuf, run, end - run));
+            }
+        }
+
+        @Override
+        public void write(final int c) throws IOException {
+            final char ch = (char) c;
+            if (_pendingLength == 0) {
+                if (ch == '\\') {
+                    _pending[_pendingLength++] = ch;
+                } else {
+                    _out.append(ch);
+                }
+                return;
+            }
+
+            final boolean expected = _pendingLength == 1 ? ch == 'u' : Character.digit(ch, 16) != -1;
+            if (!expected) {
+                flushPending();
+                write(c);
+                return;
+            }
+            _pending[_pendingLength++] = ch;
+            if (_pendingLength == _pending.length) {
+                _out.append((char) Integer.parseInt(new String(_pending, 2, 4), 16));
+                _pendingLength = 0;
+            }
+        }
+
+        private void flushPending() throws IOException {
+            for (int i = 0; i < _pendingLength; i++) {
+                _out.append(_pending[i]);
+            }
+            _pendingLength = 0;
+        }
+
+        @Override
+        public void flush() throws IOException {
+            flushPending();
+        }
+
+        @Override
+        public void close() throws IOException {
+            flushPending();
+        }
+    }
 }
@@ -117,12 +117,14 @@ public class CapacityManagerImpl extends ManagerBase implements CapacityManager,
     private MessageBus _messageBus;
     private int _vmCapacityReleaseInterval;
     private ScheduledExecutorService _executor;
+    private HostCapacityCache _hostCapacityCache;
 
     @Override
     public boolean configure(final String name, final Map<String, Object> params) throws ConfigurationException {
         this._vmCapacityReleaseInterval = NumbersUtil.parseInt(this._configDao.getValue(Config.CapacitySkipcountingHours.key()), 3600);
 
         this._executor = Executors.newScheduledThreadPool(1, new NamedThreadFactory("HostCapacity-Checker"));
+        this._hostCapacityCache = new HostCapacityCache(this._capacityDao, this._vmDao, this._hypervisorCapabilitiesDao);
         VirtualMachine.State.getStateMachine().registerListener(this);
         this._agentManager.registerForHostEvents(new StorageCapacityListener(this._capacityDao, this._storageMgr), true, false, false);
         this._agentManager.registerForHostEvents(new ComputeCapacityListener(this._capacityDao, this), true, false, false);
@@ -157,6 +159,11 @@ public class CapacityManagerImpl extends ManagerBase implements CapacityManager,
         final Pair<Long, Long> hosts = (Pair<Long, Long>) opaque;
         final Long oldHostId = hosts.first();
 
+        // The number of active vms on these hosts may have changed
+        this._hostCapacityCache.invalidate(oldHostId);
+        this._hostCapacityCache.invalidate(vm.getHostId());
+        this._hostCapacityCache.invalidate(vm.getLastHostId());
+
         final State oldState = transition.getCurrentState();
         final State newState = transition.getToState();
         final Event event = transition.getEvent();
@@ -311,6 +318,7 @@ public class CapacityManagerImpl extends ManagerBase implements CapacityManager,
                     CapacityManagerImpl.this._capacityDao.update(capacityMemory.getId(), capacityMemory);
                 }
             });
+            this._hostCapacityCache.invalidate(hostId);
 
             return true;
         } catch (final Exception e) {
@@ -407,6 +415,7 @@ public class CapacityManagerImpl extends ManagerBase implements CapacityManager,
                     CapacityManagerImpl.this._capacityDao.update(capacityMem.getId(), capacityMem);
                 }
             });
+            this._hostCapacityCache.invalidate(hostId);
         } catch (final Exception e) {
             s_logger.error("Exception allocating VM capacity", e);
         }
@@ -683,6 +692,12 @@ public class CapacityManagerImpl extends ManagerBase implements CapacityManager,
                 }
             });
         }
+        this._hostCapacityCache.invalidate(host.getId());
+    }
+
+    @Override
+    public Map<Long, HostCapacitySnapshot> getHostCapacitySnapshots(final List<? extends Host> hosts) {
+        return this._hostCapacityCache.get(hosts, HostCapacitySnapshotTtl.value() * 1000L);
     }
 
     @Override
@@ -905,6 +920,7 @@ public class CapacityManagerImpl extends ManagerBase implements CapacityManager,
 
     @Override
     public void processCancelMaintenaceEventAfter(final Long hostId) {
+        this._hostCapacityCache.invalidate(hostId);
         updateCapacityForHost(this._hostDao.findById(hostId));
     }
 
@@ -918,6 +934,7 @@ public class CapacityManagerImpl extends ManagerBase implements CapacityManager,
     public void processPrepareMaintenaceEventAfter(final Long hostId) {
         this._capacityDao.removeBy(Capacity.CAPACITY_TYPE_MEMORY, null, null, null, hostId);
         this._capacityDao.removeBy(Capacity.CAPACITY_TYPE_CPU, null, null, null, hostId);
+        this._hostCapacityCache.invalidate(hostId);
     }
 
     @Override
@@ -928,6 +945,6 @@ public class CapacityManagerImpl extends ManagerBase implements CapacityManager,
     @Override
     public ConfigKey<?>[] getConfigKeys() {
         return new ConfigKey<?>[]{CpuOverprovisioningFactor, MemOverprovisioningFactor, StorageCapacityDisableThreshold, StorageOverprovisioningFactor,
-                StorageIopsOverprovisioningFactor, StorageAllocatedCapacityDisableThreshold};
+                StorageIopsOverprovisioningFactor, StorageAllocatedCapacityDisableThreshold, HostCapacitySnapshotTtl};
     }
 }
@@ -0,0 +1,114 @@
+package com.cloud.capacity;
+
+import com.cloud.capacity.dao.CapacityDao;
+import com.cloud.hypervisor.dao.HypervisorCapabilitiesDao;
+import com.cloud.legacymodel.dc.Host;
+import com.cloud.vm.dao.VMInstanceDao;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * HostCapacityCache keeps a {@link HostCapacitySnapshot} per host for the allocators.  Hosts that are missing, or
+ * whose snapshot is older than the ttl, are loaded from the database in one go.  The capacity manager drops the
+ * snapshot of a host whenever it changes the capacity of that host or the host changes state, so the next
+ * allocation reloads it.  Changes made by other management servers are picked up when the ttl expires.
+ * <p>
+ * Every snapshot is stamped with the value of a counter taken before it was loaded, and every invalidation moves the
+ * counter forward.  A snapshot stamped before the last invalidation of its host was read while the host changed,
+ * so it is never handed out, even when it is stored after the invalidation.
+ */
+public class HostCapacityCache {
+    private final CapacityDao _capacityDao;
+    private final VMInstanceDao _vmDao;
+    private final HypervisorCapabilitiesDao _hypervisorCapabilitiesDao;
+    private final ConcurrentHashMap<Long, StampedSnapshot> _snapshots = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<Long, Long> _invalidated = new ConcurrentHashMap<>();
+    private final AtomicLong _stamps = new AtomicLong();
+
+    public HostCapacityCache(final CapacityDao capacityDao, final VMInstanceDao vmDao, final HypervisorCapabilitiesDao hypervisorCapabilitiesDao) {
+        _capacityDao = capacityDao;
+        _vmDao = vmDao;
+        _hypervisorCapabilitiesDao = hypervisorCapabilitiesDao;
+    }
+
+    public Map<Long, HostCapacitySnapshot> get(final List<? extends Host> hosts, final long ttl) {
+        final Map<Long, HostCapacitySnapshot> result = new HashMap<>();
+        final Map<Long, Host> toLoad = new HashMap<>();
+        for (final Host host : hosts) {
+            final StampedSnapshot stamped = _snapshots.get(host.getId());
+            if (stamped != null && isValid(host.getId(), stamped) && !stamped.snapshot.isOlderThan(ttl)) {
+                result.put(host.getId(), stamped.snapshot);
+            } else {
+                toLoad.put(host.getId(), host);
+            }
+        }
+        if (!toLoad.isEmpty()) {
+            final long stamp = _stamps.get();
+            final Map<Long, HostCapacitySnapshot> loaded = load(toLoad);
+            for (final Map.Entry<Long, HostCapacitySnapshot> entry : loaded.entrySet()) {
+                _snapshots.put(entry.getKey(), new StampedSnapshot(entry.getValue(), stamp));
+            }
+            result.putAll(loaded);
+        }
+        return result;
+    }
+
+    private boolean isValid(final long hostId, final StampedSnapshot stamped) {
+        final Long invalidated = _invalidated.get(hostId);
+        return invalidated == null || stamped.stamp >= invalidated;
+    }
+
+    private Map<Long, HostCapacitySnapshot> load(final Map<Long, Host> hosts) {
+        final List<Long> hostIds = new ArrayList<>(hosts.keySet());
+        final Map<Long, CapacityVO> cpuCapacities = new HashMap<>();
+        final Map<Long, CapacityVO> memCapacities = new HashMap<>();
+        for (final CapacityVO capacity : _capacityDao.listByHostIdsAndTypes(hostIds, Capacity.CAPACITY_TYPE_CPU, Capacity.CAPACITY_TYPE_MEMORY)) {
+            if (capacity.getCapacityType() == Capacity.CAPACITY_TYPE_CPU) {
+                cpuCapacities.put(capacity.getHostOrPoolId(), capacity);
+            } else {
+                memCapacities.put(capacity.getHostOrPoolId(), capacity);
+            }
+        }
+        final Map<Long, Long> activeVms = _vmDao.countActiveByHostIds(hostIds);
+        final Map<String, Long> maxGuestsLimits = new HashMap<>();
+
+        final Map<Long, HostCapacitySnapshot> snapshots = new HashMap<>();
+        for (final Host host : hosts.values()) {
+            final CapacityVO cpu = cpuCapacities.get(host.getId());
+            final CapacityVO mem = memCapacities.get(host.getId());
+            if (cpu == null || mem == null) {
+                continue;
+            }
+            final String hypervisor = host.getHypervisorType() + "-" + host.getHypervisorVersion();
+            final Long maxGuests = maxGuestsLimits.computeIfAbsent(hypervisor,
+                    k -> _hypervisorCapabilitiesDao.getMaxGuestsLimit(host.getHypervisorType(), host.getHypervisorVersion()));
+            final Long vmCount = activeVms.get(host.getId());
+            snapshots.put(host.getId(), new HostCapacitySnapshot(host.getId(), cpu.getUsedCapacity(), cpu.getReservedCapacity(), cpu.getTotalCapacity(),
+                    mem.getUsedCapacity(), mem.getReservedCapacity(), mem.getTotalCapacity(), vmCount == null ? 0 : vmCount,
+                    maxGuests == null ? Long.MAX_VALUE : maxGuests));
+        }
+        return snapshots;
+    }
+
+    public void invalidate(final Long hostId) {
+        if (hostId != null) {
+            _invalidated.merge(hostId, _stamps.incrementAndGet(), Math::max);
+            _snapshots.remove(hostId);
+        }
+    }
+
+    private static final class StampedSnapshot {
+        private final HostCapacitySnapshot snapshot;
+        private final long stamp;
+
+        private StampedSnapshot(final HostCapacitySnapshot snapshot, final long stamp) {
+            this.snapshot = snapshot;
+            this.stamp = stamp;
+        }
+    }
+}
@@ -1646,7 +1646,16 @@ public enum Config {
             null),
 
     // StatsCollector
-    StatsOutPutGraphiteHost("Advanced", ManagementServer.class, String.class, "stats.output.uri", "", "URI to additionally send StatsCollector statistics to", null),
+    StatsOutPutGraphiteHost("Advanced", ManagementServer.class, String.class, "stats.output.uri", "",
+            "Comma separated URIs to additionally send StatsCollector statistics to, like graphite://host:2003/prefix, prometheus://0.0.0.0:9595/ or file:///path", null),
+    StatsOutputQueueSize("Advanced", ManagementServer.class, Integer.class, "stats.output.queue.size", "64",
+            "Number of StatsCollector metric batches queued per output before the oldest are dropped", null),
+    StatsCollectorParallelism("Advanced", ManagementServer.class, Integer.class, "stats.collector.parallelism", "16",
+            "Maximum number of hosts the StatsCollector collects host and vm statistics from at the same time", null),
+    StatsCollectorHostTimeout("Advanced", ManagementServer.class, Long.class, "stats.collector.host.timeout", "30000",
+            "Time (in milliseconds) a host may take to return its statistics before it is skipped for the current collection", null),
+    StatsCollectorPartialResultPolicy("Advanced", ManagementServer.class, String.class, "stats.collector.partial.result.policy", "keep_previous",
+            "What to do with the statistics of hosts that did not answer in time in a collection: keep_previous or drop", null),
 
     SSVMPSK("Hidden", ManagementServer.class, String.class, "upload.post.secret.key", "", "PSK with SSVM", null);
 
@@ -12,11 +12,6 @@ import com.cloud.hypervisor.xenserver.resource.XenServer620SP1Resource;
 import com.cloud.legacymodel.communication.answer.Answer;
 import com.cloud.legacymodel.communication.command.Command;
 
-import java.util.Hashtable;
-import java.util.Set;
-
-import org.reflections.Reflections;
-
 public class CitrixRequestWrapper extends RequestWrapper {
 
     private static final CitrixRequestWrapper instance;
@@ -25,54 +20,28 @@ public class CitrixRequestWrapper extends RequestWrapper {
         instance = new CitrixRequestWrapper();
     }
 
-    Reflections baseWrappers = new Reflections("com.cloud.hypervisor.xenserver.resource.wrapper.xenbase");
-    Set<Class<? extends CommandWrapper>> baseSet = this.baseWrappers.getSubTypesOf(CommandWrapper.class);
-
-    Reflections xenServer56Wrappers = new Reflections("com.cloud.hypervisor.xenserver.resource.wrapper.xen56");
-    Set<Class<? extends CommandWrapper>> xenServer56Set = this.xenServer56Wrappers.getSubTypesOf(CommandWrapper.class);
-
-    Reflections xenServer56P1Wrappers = new Reflections("com.cloud.hypervisor.xenserver.resource.wrapper.xen56p1");
-    Set<Class<? extends CommandWrapper>> xenServer56P1Set = this.xenServer56P1Wrappers.getSubTypesOf(CommandWrapper.class);
-
-    Reflections xenServer610Wrappers = new Reflections("com.cloud.hypervisor.xenserver.resource.wrapper.xen610");
-    Set<Class<? extends CommandWrapper>> xenServer610Set = this.xenServer610Wrappers.getSubTypesOf(CommandWrapper.class);
-
-    Reflections xenServer620SP1Wrappers = new Reflections("com.cloud.hypervisor.xenserver.resource.wrapper.xen620sp1");
-    Set<Class<? extends CommandWrapper>> xenServer620SP1Set = this.xenServer620SP1Wrappers.getSubTypesOf(CommandWrapper.class);
-
-    Reflections xcpWrappers = new Reflections("com.cloud.hypervisor.xenserver.resource.wrapper.xcp");
-    Set<Class<? extends CommandWrapper>> xcpSet = this.xcpWrappers.getSubTypesOf(CommandWrapper.class);
-
     private CitrixRequestWrapper() {
         init();
     }
 
     private void init() {
-
-        final Hashtable<Class<? extends Command>, CommandWrapper> citrixCommands = processAnnotations(this.baseSet);
-        final Hashtable<Class<? extends Command>, CommandWrapper> xenServer56Commands = processAnnotations(this.xenServer56Set);
-        final Hashtable<Class<? extends Command>, CommandWrapper> xenServer56P1Commands = processAnnotations(this.xenServer56P1Set);
-        final Hashtable<Class<? extends Command>, CommandWrapper> xenServer610Commands = processAnnotations(this.xenServer610Set);
-        final Hashtable<Class<? extends Command>, CommandWrapper> xenServer620SP1Commands = processAnnotations(this.xenServer620SP1Set);
-        final Hashtable<Class<? extends Command>, CommandWrapper> xcpServerResourceCommand = processAnnotations(this.xcpSet);
-
         // CitrixResourceBase commands
-        this.resources.put(CitrixResourceBase.class, citrixCommands);
+        this.resources.register(CitrixResourceBase.class, ResourceWrapperIndex.createWrappers());
 
         // XenServer56Resource commands
-        this.resources.put(XenServer56Resource.class, xenServer56Commands);
+        this.resources.register(XenServer56Resource.class, com.cloud.hypervisor.xenserver.resource.wrapper.xen56.ResourceWrapperIndex.createWrappers());
 
         // XenServer56FP1Resource commands
-        this.resources.put(XenServer56FP1Resource.class, xenServer56P1Commands);
+        this.resources.register(XenServer56FP1Resource.class, com.cloud.hypervisor.xenserver.resource.wrapper.xen56p1.ResourceWrapperIndex.createWrappers());
 
         // XenServer620SP1Resource commands
-        this.resources.put(XenServer620SP1Resource.class, xenServer620SP1Commands);
+        this.resources.register(XenServer620SP1Resource.class, com.cloud.hypervisor.xenserver.resource.wrapper.xen620sp1.ResourceWrapperIndex.createWrappers());
 
         // XenServer610Resource commands
-        this.resources.put(XenServer610Resource.class, xenServer610Commands);
+        this.resources.register(XenServer610Resource.class, com.cloud.hypervisor.xenserver.resource.wrapper.xen610.ResourceWrapperIndex.createWrappers());
 
         // XcpServerResource commands
-        this.resources.put(XcpServerResource.class, xcpServerResourceCommand);
+        this.resources.register(XcpServerResource.class, com.cloud.hypervisor.xenserver.resource.wrapper.xcp.ResourceWrapperIndex.createWrappers());
     }
 
     public static CitrixRequestWrapper getInstance() {
@@ -81,16 +50,7 @@ public class CitrixRequestWrapper extends RequestWrapper {
 
     @Override
     public Answer execute(final Command command, final ServerResource serverResource) {
-        final Class<? extends ServerResource> resourceClass = serverResource.getClass();
-
-        final Hashtable<Class<? extends Command>, CommandWrapper> resourceCommands = retrieveResource(command, resourceClass);
-
-        CommandWrapper<Command, Answer, ServerResource> commandWrapper = retrieveCommands(command.getClass(), resourceCommands);
-
-        while (commandWrapper == null) {
-            //Could not find the command in the given resource, will traverse the family tree.
-            commandWrapper = retryWhenAllFails(command, resourceClass, resourceCommands);
-        }
+        final CommandWrapper<Command, Answer, ServerResource> commandWrapper = retrieveCommandWrapper(command, serverResource.getClass());
 
         return commandWrapper.execute(command, serverResource);
     }
@@ -0,0 +1,254 @@
+package com.cloud.server;
+
+import com.cloud.common.managed.context.ManagedContextRunnable;
+import com.cloud.host.HostVO;
+import com.cloud.utils.concurrency.NamedThreadFactory;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.Function;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * HostStatsFanOut sends the per host stats commands of a collector sweep concurrently, with a bounded
+ * number of hosts in flight.  A host that does not answer within the host timeout, or that has not
+ * answered when the sweep deadline passes, is skipped for this sweep instead of holding up the others.
+ * The collector decides what to do with the hosts that were skipped, see {@link PartialResultPolicy}.  A
+ * host that answered without stats, or whose call failed, is not skipped: it did answer, so it has no
+ * current stats and the collector should not keep its previous ones.
+ */
+public class HostStatsFanOut {
+    private static final Logger s_logger = LoggerFactory.getLogger(HostStatsFanOut.class);
+
+    /**
+     * Upper bounds, in milliseconds, of the buckets of the per host latency histogram.  The last bucket
+     * counts everything slower than the last bound.
+     */
+    static final long[] LATENCY_BUCKETS = {10L, 50L, 100L, 250L, 500L, 1000L, 2500L, 5000L, 10000L, 30000L};
+
+    private final String _name;
+    private final ThreadPoolExecutor _executor;
+    private final AtomicLongArray _latencies = new AtomicLongArray(LATENCY_BUCKETS.length + 1);
+    private final AtomicLong _sweeps = new AtomicLong();
+    private final AtomicLong _skippedHosts = new AtomicLong();
+    private final AtomicLong _failedHosts = new AtomicLong();
+    private volatile long _lastSweepDuration = -1L;
+    private volatile int _lastSweepSkipped = 0;
+
+    public HostStatsFanOut(final String name, final int parallelism) {
+        _name = name;
+        final int threads = Math.max(1, parallelism);
+        _executor = new ThreadPoolExecutor(threads, threads, 60L, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), new NamedThreadFactory(name));
+        _executor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Runs the task for each host and waits for the answers.
+     *
+     * @param hosts       hosts to collect from
+     * @param task        per host call, returning null when the host has nothing to report
+     * @param hostTimeout milliseconds a host may take once its call has started
+     * @param deadline    milliseconds the whole sweep may take
+     * @return the answers of the hosts that replied in time, the ids of the hosts that did not, and the ids of
+     * the hosts that replied without stats or failed
+     */
+    public <T> SweepResult<T> collect(final List<HostVO> hosts, final Function<HostVO, T> task, final long hostTimeout, final long deadline) {
+        final long sweepStart = System.currentTimeMillis();
+        final long sweepEnd = sweepStart + deadline;
+        final ConcurrentHashMap<Long, T> answers = new ConcurrentHashMap<>();
+        final Set<Long> failed = ConcurrentHashMap.newKeySet();
+        final Map<Long, HostCall> calls = new LinkedHashMap<>();
+        final List<Long> skipped = new ArrayList<>();
+
+        for (final HostVO host : hosts) {
+            final long hostId = host.getId();
+            final HostCall call = new HostCall();
+            call.future = _executor.submit(new ManagedContextRunnable() {
+                @Override
+                protected void runInContext() {
+                    call.start = System.currentTimeMillis();
+                    call.started.countDown();
+                    try {
+                        final T answer = task.apply(host);
+                        if (answer != null) {
+                            answers.put(hostId, answer);
+                        } else {
+                            failed.add(hostId);
+                        }
+                    } catch (final Exception e) {
+                        failed.add(hostId);
+                        s_logger.warn(_name + " failed to collect stats from host " + hostId + ": " + e.getMessage());
+                    } finally {
+                        recordLatency(System.currentTimeMillis() - call.start);
+                    }
+                }
+            });
+            calls.put(hostId, call);
+        }
+
+        // The calls start in submission order, so waiting for them in that order never waits on a host
+        // that still has to get a thread while an earlier one is done
+        boolean interrupted = false;
+        for (final Map.Entry<Long, HostCall> entry : calls.entrySet()) {
+            final HostCall call = entry.getValue();
+            if (interrupted) {
+                call.future.cancel(true);
+                skipped.add(entry.getKey());
+                continue;
+            }
+            try {
+                if (!call.started.await(Math.max(0L, sweepEnd - System.currentTimeMillis()), TimeUnit.MILLISECONDS)) {
+                    throw new TimeoutException();
+                }
+                final long callEnd = Math.min(sweepEnd, call.start + hostTimeout);
+                call.future.get(Math.max(0L, callEnd - System.currentTimeMillis()), TimeUnit.MILLISECONDS);
+            } catch (final TimeoutException e) {
+                call.future.cancel(true);
+                skipped.add(entry.getKey());
+            } catch (final InterruptedException e) {
+                call.future.cancel(true);
+                skipped.add(entry.getKey());
+                interrupted = true;
+            } catch (final ExecutionException | CancellationException e) {
+                failed.add(entry.getKey());
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+
+        // A host may still answer while it is being cancelled, that answer is too late for this sweep
+        final Map<Long, T> sweepAnswers = new HashMap<>(answers);
+        sweepAnswers.keySet().removeAll(skipped);
+        final List<Long> sweepFailed = new ArrayList<>(failed);
+        sweepFailed.removeAll(skipped);
+
+        final long duration = System.currentTimeMillis() - sweepStart;
+        _sweeps.incrementAndGet();
+        _skippedHosts.addAndGet(skipped.size());
+        _failedHosts.addAndGet(sweepFailed.size());
+        _lastSweepDuration = duration;
+        _lastSweepSkipped = skipped.size();
+
+        if (!skipped.isEmpty() || !sweepFailed.isEmpty()) {
+            s_logger.info(_name + " sweep over " + hosts.size() + " hosts took " + duration + " ms, skipped hosts: " + skipped + ", hosts without stats: " + sweepFailed);
+        } else if (s_logger.isDebugEnabled()) {
+            s_logger.debug(_name + " sweep over " + hosts.size() + " hosts took " + duration + " ms");
+        }
+
+        return new SweepResult<>(sweepAnswers, skipped, sweepFailed);
+    }
+
+    private void recordLatency(final long millis) {
+        int bucket = 0;
+        while (bucket < LATENCY_BUCKETS.length && millis > LATENCY_BUCKETS[bucket]) {
+            bucket++;
+        }
+        _latencies.incrementAndGet(bucket);
+    }
+
+    public void shutdown() {
+        _executor.shutdownNow();
+    }
+
+    public long getLastSweepDuration() {
+        return _lastSweepDuration;
+    }
+
+    public int getLastSweepSkipped() {
+        return _lastSweepSkipped;
+    }
+
+    public long getSweepCount() {
+        return _sweeps.get();
+    }
+
+    public long getSkippedHostCount() {
+        return _skippedHosts.get();
+    }
+
+    public long getFailedHostCount() {
+        return _failedHosts.get();
+    }
+
+    /**
+     * @return the per host latency histogram, keyed by the upper bound of each bucket in milliseconds.
+     * The bucket of the calls slower than the largest bound is keyed by {@link Long#MAX_VALUE}.
+     */
+    public Map<Long, Long> getLatencyHistogram() {
+        final Map<Long, Long> histogram = new LinkedHashMap<>();
+        for (int i = 0; i < LATENCY_BUCKETS.length; i++) {
+            histogram.put(LATENCY_BUCKETS[i], _latencies.get(i));
+        }
+        histogram.put(Long.MAX_VALUE, _latencies.get(LATENCY_BUCKETS.length));
+        return histogram;
+    }
+
+    /**
+     * What a collector does with the hosts that were skipped in a sweep.
+     */
+    public enum PartialResultPolicy {
+        /**
+         * Keep the stats of the previous sweep for the skipped hosts, the hosts that timed out.
+         */
+        KEEP_PREVIOUS,
+        /**
+         * Only keep the stats of the hosts that answered in this sweep.
+         */
+        DROP
+    }
+
+    private static class HostCall {
+        private final CountDownLatch started = new CountDownLatch(1);
+        private long start;
+        private Future<?> future;
+    }
+
+    public static class SweepResult<T> {
+        private final Map<Long, T> _answers;
+        private final List<Long> _skipped;
+        private final List<Long> _failed;
+
+        SweepResult(final Map<Long, T> answers, final List<Long> skipped, final List<Long> failed) {
+            _answers = Collections.unmodifiableMap(answers);
+            _skipped = Collections.unmodifiableList(skipped);
+            _failed = Collections.unmodifiableList(failed);
+        }
+
+        public Map<Long, T> getAnswers() {
+            return _answers;
+        }
+
+        /**
+         * @return the hosts that did not answer in time
+         */
+        public List<Long> getSkipped() {
+            return _skipped;
+        }
+
+        /**
+         * @return the hosts that answered without stats, or whose call failed
+         */
+        public List<Long> getFailed() {
+            return _failed;
+        }
+    }
+}
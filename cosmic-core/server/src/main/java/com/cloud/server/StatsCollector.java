@@ -29,6 +29,8 @@ import com.cloud.model.enumeration.HostType;
 import com.cloud.model.enumeration.HypervisorType;
 import com.cloud.model.enumeration.VirtualMachineType;
 import com.cloud.resource.ResourceManager;
+import com.cloud.server.metrics.MetricsBatch;
+import com.cloud.server.metrics.MetricsExporter;
 import com.cloud.service.dao.ServiceOfferingDao;
 import com.cloud.storage.StorageManager;
 import com.cloud.storage.VolumeVO;
@@ -49,8 +51,6 @@ import com.cloud.utils.db.SearchCriteria;
 import com.cloud.utils.db.Transaction;
 import com.cloud.utils.db.TransactionCallbackNoReturn;
 import com.cloud.utils.db.TransactionStatus;
-import com.cloud.utils.graphite.GraphiteClient;
-import com.cloud.utils.graphite.GraphiteException;
 import com.cloud.utils.net.MacAddress;
 import com.cloud.utils.usage.UsageUtils;
 import com.cloud.vm.UserVmManager;
@@ -60,8 +60,6 @@ import com.cloud.vm.dao.UserVmDao;
 import com.cloud.vm.dao.VMInstanceDao;
 
 import javax.inject.Inject;
-import java.net.URI;
-import java.net.URISyntaxException;
 import java.util.ArrayList;
 import java.util.Calendar;
 import java.util.Date;
@@ -98,12 +96,15 @@ public class StatsCollector extends ManagerBase implements ComponentMethodInterc
     long volumeStatsInterval = -1L;
     int vmDiskStatsInterval = 0;
     List<Long> hostIds = null;
-    String externalStatsPrefix = "";
-    String externalStatsHost = null;
-    int externalStatsPort = -1;
-    boolean externalStatsEnabled = false;
-    ExternalStatsProtocol externalStatsType = ExternalStatsProtocol.NONE;
+    int statsCollectorParallelism = 16;
+    long statsCollectorHostTimeout = 30000L;
+    HostStatsFanOut.PartialResultPolicy partialResultPolicy = HostStatsFanOut.PartialResultPolicy.KEEP_PREVIOUS;
     private ScheduledExecutorService _executor = null;
+    private MetricsExporter _metricsExporter;
+    private HostStatsFanOut _hostStatsFanOut;
+    private HostStatsFanOut _gpuStatsFanOut;
+    private HostStatsFanOut _vmStatsFanOut;
+    private HostStatsFanOut _vmDiskStatsFanOut;
     @Inject
     private AgentManager _agentMgr;
     @Inject
@@ -172,35 +173,27 @@ public class StatsCollector extends ManagerBase implements ComponentMethodInterc
         volumeStatsInterval = NumbersUtil.parseLong(configs.get("volume.stats.interval"), -1L);
         vmDiskStatsInterval = NumbersUtil.parseInt(configs.get("vm.disk.stats.interval"), 0);
 
-        /* URI to send statistics to. Currently only Graphite is supported */
-        final String externalStatsUri = configs.get("stats.output.uri");
-        if (externalStatsUri != null && !externalStatsUri.equals("")) {
+        statsCollectorParallelism = NumbersUtil.parseInt(configs.get("stats.collector.parallelism"), 16);
+        statsCollectorHostTimeout = NumbersUtil.parseLong(configs.get("stats.collector.host.timeout"), 30000L);
+        final String policy = configs.get("stats.collector.partial.result.policy");
+        if (policy != null && !policy.equals("")) {
             try {
-                final URI uri = new URI(externalStatsUri);
-                final String scheme = uri.getScheme();
-
-                try {
-                    externalStatsType = ExternalStatsProtocol.valueOf(scheme.toUpperCase());
-                } catch (final IllegalArgumentException e) {
-                    s_logger.info(scheme + " is not a valid protocol for external statistics. No statistics will be send.");
-                }
-
-                externalStatsHost = uri.getHost();
-                externalStatsPort = uri.getPort();
-                externalStatsPrefix = uri.getPath().substring(1);
-
-                /* Append a dot (.) to the prefix if it is set */
-                if (externalStatsPrefix != null && !externalStatsPrefix.equals("")) {
-                    externalStatsPrefix += ".";
-                } else {
-                    externalStatsPrefix = "";
-                }
-
-                externalStatsEnabled = true;
-            } catch (final URISyntaxException e) {
-                s_logger.debug("Failed to parse external statistics URI: " + e.getMessage());
+                partialResultPolicy = HostStatsFanOut.PartialResultPolicy.valueOf(policy.toUpperCase());
+            } catch (final IllegalArgumentException e) {
+                s_logger.info(policy + " is not a valid partial result policy for the stats collector, using " + partialResultPolicy);
             }
         }
+        _hostStatsFanOut = new HostStatsFanOut("HostStatsCollector", statsCollectorParallelism);
+        _gpuStatsFanOut = new HostStatsFanOut("GpuStatsCollector", statsCollectorParallelism);
+        _vmStatsFanOut = new HostStatsFanOut("VmStatsCollector", statsCollectorParallelism);
+        _vmDiskStatsFanOut = new HostStatsFanOut("VmDiskStatsCollector", statsCollectorParallelism);
+
+        /* URIs to send statistics to, see MetricsExporter for the supported sinks */
+        if (_metricsExporter != null) {
+            _metricsExporter.shutdown();
+        }
+        _metricsExporter = new MetricsExporter(MetricsExporter.createSinks(configs.get("stats.output.uri")),
+                NumbersUtil.parseInt(configs.get("stats.output.queue.size"), MetricsExporter.DEFAULT_QUEUE_SIZE));
 
         if (hostStatsInterval > 0) {
             _executor.scheduleWithFixedDelay(new HostCollector(), 15000L, hostStatsInterval, TimeUnit.MILLISECONDS);
@@ -270,6 +263,25 @@ public class StatsCollector extends ManagerBase implements ComponentMethodInterc
         return true;
     }
 
+    @Override
+    public boolean stop() {
+        if (_executor != null) {
+            _executor.shutdownNow();
+        }
+        if (_diskStatsUpdateExecutor != null) {
+            _diskStatsUpdateExecutor.shutdownNow();
+        }
+        for (final HostStatsFanOut fanOut : new HostStatsFanOut[]{_hostStatsFanOut, _gpuStatsFanOut, _vmStatsFanOut, _vmDiskStatsFanOut}) {
+            if (fanOut != null) {
+                fanOut.shutdown();
+            }
+        }
+        if (_metricsExporter != null) {
+            _metricsExporter.shutdown();
+        }
+        return true;
+    }
+
     public VmStats getVmStats(final long id) {
         return _VmStats.get(id);
     }
@@ -294,18 +306,27 @@ public class StatsCollector extends ManagerBase implements ComponentMethodInterc
         return _storagePoolStats.get(id);
     }
 
-    public enum ExternalStatsProtocol {
-        NONE("none"), GRAPHITE("graphite");
-        String _type;
+    public HostStatsFanOut getHostStatsFanOut() {
+        return _hostStatsFanOut;
+    }
 
-        ExternalStatsProtocol(final String type) {
-            _type = type;
-        }
+    public HostStatsFanOut getVmStatsFanOut() {
+        return _vmStatsFanOut;
+    }
 
-        @Override
-        public String toString() {
-            return _type;
-        }
+    public HostStatsFanOut getVmDiskStatsFanOut() {
+        return _vmDiskStatsFanOut;
+    }
+
+    public MetricsExporter getMetricsExporter() {
+        return _metricsExporter;
+    }
+
+    private void addSweepMetrics(final MetricsBatch batch, final String collector, final HostStatsFanOut fanOut, final HostStatsFanOut.SweepResult<?> sweep) {
+        batch.add("cloudstack.stats.collector." + collector + ".sweep.duration_ms", fanOut.getLastSweepDuration());
+        batch.add("cloudstack.stats.collector." + collector + ".sweep.hosts", sweep.getAnswers().size());
+        batch.add("cloudstack.stats.collector." + collector + ".sweep.skipped", sweep.getSkipped().size());
+        batch.add("cloudstack.stats.collector." + collector + ".sweep.failed", sweep.getFailed().size());
     }
 
     class HostCollector extends ManagedContextRunnable {
@@ -326,15 +347,43 @@ public class StatsCollector extends ManagerBase implements ComponentMethodInterc
             sc.addAnd("type", SearchCriteria.Op.NEQ, HostType.L2Networking.toString());
             final ConcurrentHashMap<Long, HostStats> hostStats = new ConcurrentHashMap<>();
             final List<HostVO> hosts = _hostDao.search(sc, null);
-            for (final HostVO host : hosts) {
+            final HostStatsFanOut.SweepResult<HostStats> sweep = _hostStatsFanOut.collect(hosts, host -> {
                 final HostStatsEntry stats = (HostStatsEntry) _resourceMgr.getHostStatistics(host.getId());
-                if (stats != null) {
-                    hostStats.put(host.getId(), stats);
-                } else {
+                if (stats == null) {
                     s_logger.warn("Received invalid host stats for host: " + host.getId());
                 }
+                return stats;
+            }, statsCollectorHostTimeout, hostStatsInterval);
+            hostStats.putAll(sweep.getAnswers());
+            // Only the hosts that timed out keep their stats, a host that answered without stats has none
+            if (partialResultPolicy == HostStatsFanOut.PartialResultPolicy.KEEP_PREVIOUS) {
+                for (final Long hostId : sweep.getSkipped()) {
+                    final HostStats previous = _hostStats.get(hostId);
+                    if (previous != null) {
+                        hostStats.put(hostId, previous);
+                    }
+                }
             }
             _hostStats = hostStats;
+
+            if (_metricsExporter.isEnabled()) {
+                final MetricsBatch batch = new MetricsBatch("hosts");
+                for (final HostVO host : hosts) {
+                    final HostStats stats = sweep.getAnswers().get(host.getId());
+                    if (stats == null) {
+                        continue;
+                    }
+                    final String uuid = host.getUuid();
+                    batch.add("cloudstack.stats.hosts", uuid, "cpu.utilization", stats.getCpuUtilization());
+                    batch.add("cloudstack.stats.hosts", uuid, "memory.total_kbs", stats.getTotalMemoryKBs());
+                    batch.add("cloudstack.stats.hosts", uuid, "memory.free_kbs", stats.getFreeMemoryKBs());
+                    batch.add("cloudstack.stats.hosts", uuid, "network.read_kbs", stats.getNetworkReadKBs());
+                    batch.add("cloudstack.stats.hosts", uuid, "network.write_kbs", stats.getNetworkWriteKBs());
+                }
+                addSweepMetrics(batch, "hosts", _hostStatsFanOut, sweep);
+                _metricsExporter.publish(batch);
+            }
+
             // Get a subset of hosts with GPU support from the list of "hosts"
             List<HostVO> gpuEnabledHosts = new ArrayList<>();
             if (hostIds != null) {
@@ -347,11 +396,10 @@ public class StatsCollector extends ManagerBase implements ComponentMethodInterc
                 // Check for all the hosts managed by CloudStack.
                 gpuEnabledHosts = hosts;
             }
-            for (final HostVO host : gpuEnabledHosts) {
-                final HashMap<String, HashMap<String, VgpuTypesInfo>> groupDetails = _resourceMgr.getGPUStatistics(host);
-                if (groupDetails != null) {
-                    _resourceMgr.updateGPUDetails(host.getId(), groupDetails);
-                }
+            final HostStatsFanOut.SweepResult<HashMap<String, HashMap<String, VgpuTypesInfo>>> gpuSweep =
+                    _gpuStatsFanOut.collect(gpuEnabledHosts, host -> _resourceMgr.getGPUStatistics(host), statsCollectorHostTimeout, hostStatsInterval);
+            for (final Map.Entry<Long, HashMap<String, HashMap<String, VgpuTypesInfo>>> groupDetails : gpuSweep.getAnswers().entrySet()) {
+                _resourceMgr.updateGPUDetails(groupDetails.getKey(), groupDetails.getValue());
             }
             hostIds = _hostGpuGroupsDao.listHostIds();
         }
@@ -373,10 +421,10 @@ public class StatsCollector extends ManagerBase implements ComponentMethodInterc
             sc.addAnd("type", SearchCriteria.Op.NEQ, HostType.SecondaryStorageVM.toString());
             final List<HostVO> hosts = _hostDao.search(sc, null);
 
-            /* HashMap for metrics to be send to Graphite */
-            final HashMap metrics = new HashMap<>();
+            /* Metrics of all hosts of this sweep, send to the external stats collectors at once */
+            final MetricsBatch batch = new MetricsBatch("instances");
 
-            for (final HostVO host : hosts) {
+            final HostStatsFanOut.SweepResult<HashMap<Long, VmStatsEntry>> sweep = _vmStatsFanOut.collect(hosts, host -> {
                 final List<UserVmVO> vms = _userVmDao.listRunningByHostId(host.getId());
                 final List<Long> vmIds = new ArrayList<>();
 
@@ -384,7 +432,21 @@ public class StatsCollector extends ManagerBase implements ComponentMethodInterc
                     vmIds.add(vm.getId());
                 }
 
-                final HashMap<Long, VmStatsEntry> vmStatsById = _userVmMgr.getVirtualMachineStatistics(host.getId(), host.getName(), vmIds);
+                return _userVmMgr.getVirtualMachineStatistics(host.getId(), host.getName(), vmIds);
+            }, statsCollectorHostTimeout, hostAndVmStatsInterval);
+
+            final List<Long> hostsWithoutStats = new ArrayList<>(sweep.getFailed());
+            if (partialResultPolicy == HostStatsFanOut.PartialResultPolicy.DROP) {
+                hostsWithoutStats.addAll(sweep.getSkipped());
+            }
+            for (final Long hostId : hostsWithoutStats) {
+                for (final UserVmVO vm : _userVmDao.listRunningByHostId(hostId)) {
+                    _VmStats.remove(vm.getId());
+                }
+            }
+
+            for (final HostVO host : hosts) {
+                final HashMap<Long, VmStatsEntry> vmStatsById = sweep.getAnswers().get(host.getId());
 
                 if (vmStatsById != null) {
                     VmStatsEntry statsInMemory;
@@ -412,50 +474,33 @@ public class StatsCollector extends ManagerBase implements ComponentMethodInterc
                         }
 
                         /**
-                         * Add statistics to HashMap only when they should be send to a external stats collector
-                         * Performance wise it seems best to only append to the HashMap when needed
+                         * Add statistics to the batch only when they should be send to a external stats collector
+                         * Performance wise it seems best to only look up the vm when needed
                          */
-                        if (externalStatsEnabled) {
+                        if (_metricsExporter.isEnabled()) {
                             final VMInstanceVO vmVO = _vmInstance.findById(vmId);
-                            final String vmName = vmVO.getUuid();
-
-                            metrics.put(externalStatsPrefix + "cloudstack.stats.instances." + vmName + ".cpu.num", statsForCurrentIteration.getNumCPUs());
-                            metrics.put(externalStatsPrefix + "cloudstack.stats.instances." + vmName + ".cpu.utilization", statsForCurrentIteration.getCPUUtilization());
-                            metrics.put(externalStatsPrefix + "cloudstack.stats.instances." + vmName + ".network.read_kbs", statsForCurrentIteration.getNetworkReadKBs());
-                            metrics.put(externalStatsPrefix + "cloudstack.stats.instances." + vmName + ".network.write_kbs", statsForCurrentIteration.getNetworkWriteKBs());
-                            metrics.put(externalStatsPrefix + "cloudstack.stats.instances." + vmName + ".disk.write_kbs", statsForCurrentIteration.getDiskWriteKBs());
-                            metrics.put(externalStatsPrefix + "cloudstack.stats.instances." + vmName + ".disk.read_kbs", statsForCurrentIteration.getDiskReadKBs());
-                            metrics.put(externalStatsPrefix + "cloudstack.stats.instances." + vmName + ".disk.write_iops", statsForCurrentIteration.getDiskWriteIOs());
-                            metrics.put(externalStatsPrefix + "cloudstack.stats.instances." + vmName + ".disk.read_iops", statsForCurrentIteration.getDiskReadIOs());
-                        }
-                    }
-
-                    /**
-                     * Send the metrics to a external stats collector
-                     * We send it on a per-host basis to prevent that we flood the host
-                     * Currently only Graphite is supported
-                     */
-                    if (!metrics.isEmpty()) {
-                        if (externalStatsType != null && externalStatsType == ExternalStatsProtocol.GRAPHITE) {
-
-                            if (externalStatsPort == -1) {
-                                externalStatsPort = 2003;
-                            }
-
-                            s_logger.debug("Sending VmStats of host " + host.getId() + " to Graphite host " + externalStatsHost + ":" + externalStatsPort);
-
-                            try {
-                                final GraphiteClient g = new GraphiteClient(externalStatsHost, externalStatsPort);
-                                g.sendMetrics(metrics);
-                            } catch (final GraphiteException e) {
-                                s_logger.debug("Failed sending VmStats to Graphite host " + externalStatsHost + ":" + externalStatsPort + ": " + e.getMessage());
+                            if (vmVO == null) {
+                                continue;
                             }
-
-                            metrics.clear();
+                            final String uuid = vmVO.getUuid();
+
+                            batch.add("cloudstack.stats.instances", uuid, "cpu.num", statsForCurrentIteration.getNumCPUs());
+                            batch.add("cloudstack.stats.instances", uuid, "cpu.utilization", statsForCurrentIteration.getCPUUtilization());
+                            batch.add("cloudstack.stats.instances", uuid, "network.read_kbs", statsForCurrentIteration.getNetworkReadKBs());
+                            batch.add("cloudstack.stats.instances", uuid, "network.write_kbs", statsForCurrentIteration.getNetworkWriteKBs());
+                            batch.add("cloudstack.stats.instances", uuid, "disk.write_kbs", statsForCurrentIteration.getDiskWriteKBs());
+                            batch.add("cloudstack.stats.instances", uuid, "disk.read_kbs", statsForCurrentIteration.getDiskReadKBs());
+                            batch.add("cloudstack.stats.instances", uuid, "disk.write_iops", statsForCurrentIteration.getDiskWriteIOs());
+                            batch.add("cloudstack.stats.instances", uuid, "disk.read_iops", statsForCurrentIteration.getDiskReadIOs());
                         }
                     }
                 }
             }
+
+            if (_metricsExporter.isEnabled()) {
+                addSweepMetrics(batch, "instances", _vmStatsFanOut, sweep);
+                _metricsExporter.publish(batch);
+            }
         }
     }
 
@@ -511,29 +556,35 @@ public class StatsCollector extends ManagerBase implements ComponentMethodInterc
         protected void runInContext() {
             // collect the vm disk statistics(total) from hypervisor. added by weizhou, 2013.03.
             try {
+                final SearchCriteria<HostVO> sc = _hostDao.createSearchCriteria();
+                sc.addAnd("status", SearchCriteria.Op.EQ, HostStatus.Up.toString());
+                sc.addAnd("resourceState", SearchCriteria.Op.NIN, ResourceState.Maintenance, ResourceState.PrepareForMaintenance,
+                        ResourceState.ErrorInMaintenance);
+                sc.addAnd("type", SearchCriteria.Op.EQ, HostType.Routing.toString());
+                sc.addAnd("hypervisorType", SearchCriteria.Op.EQ, HypervisorType.KVM); // support KVM only util 2013.06.25
+                final List<HostVO> hosts = _hostDao.search(sc, null);
+
+                // Ask the hosts outside of the transaction, so a slow host does not keep it open
+                final HostStatsFanOut.SweepResult<HashMap<Long, List<VmDiskStatsEntry>>> sweep = _vmDiskStatsFanOut.collect(hosts, host -> {
+                    final List<UserVmVO> vms = _userVmDao.listRunningByHostId(host.getId());
+                    final List<Long> vmIds = new ArrayList<>();
+
+                    for (final UserVmVO vm : vms) {
+                        if (vm.getType() == VirtualMachineType.User) // user vm
+                        {
+                            vmIds.add(vm.getId());
+                        }
+                    }
+
+                    return _userVmMgr.getVmDiskStatistics(host.getId(), host.getName(), vmIds);
+                }, statsCollectorHostTimeout, vmDiskStatsInterval * 1000L);
+
+                final MetricsBatch batch = new MetricsBatch("volumes");
                 Transaction.execute(new TransactionCallbackNoReturn() {
                     @Override
                     public void doInTransactionWithoutResult(final TransactionStatus status) {
-                        final SearchCriteria<HostVO> sc = _hostDao.createSearchCriteria();
-                        sc.addAnd("status", SearchCriteria.Op.EQ, HostStatus.Up.toString());
-                        sc.addAnd("resourceState", SearchCriteria.Op.NIN, ResourceState.Maintenance, ResourceState.PrepareForMaintenance,
-                                ResourceState.ErrorInMaintenance);
-                        sc.addAnd("type", SearchCriteria.Op.EQ, HostType.Routing.toString());
-                        sc.addAnd("hypervisorType", SearchCriteria.Op.EQ, HypervisorType.KVM); // support KVM only util 2013.06.25
-                        final List<HostVO> hosts = _hostDao.search(sc, null);
-
                         for (final HostVO host : hosts) {
-                            final List<UserVmVO> vms = _userVmDao.listRunningByHostId(host.getId());
-                            final List<Long> vmIds = new ArrayList<>();
-
-                            for (final UserVmVO vm : vms) {
-                                if (vm.getType() == VirtualMachineType.User) // user vm
-                                {
-                                    vmIds.add(vm.getId());
-                                }
-                            }
-
-                            final HashMap<Long, List<VmDiskStatsEntry>> vmDiskStatsById = _userVmMgr.getVmDiskStatistics(host.getId(), host.getName(), vmIds);
+                            final HashMap<Long, List<VmDiskStatsEntry>> vmDiskStatsById = sweep.getAnswers().get(host.getId());
                             if (vmDiskStatsById == null) {
                                 continue;
                             }
@@ -553,6 +604,13 @@ public class StatsCollector extends ManagerBase implements ComponentMethodInterc
                                         break;
                                     }
                                     final VolumeVO volume = volumes.get(0);
+                                    if (_metricsExporter.isEnabled()) {
+                                        final String uuid = volume.getUuid();
+                                        batch.add("cloudstack.stats.volumes", uuid, "disk.read_bytes", vmDiskStat.getBytesRead());
+                                        batch.add("cloudstack.stats.volumes", uuid, "disk.write_bytes", vmDiskStat.getBytesWrite());
+                                        batch.add("cloudstack.stats.volumes", uuid, "disk.read_ios", vmDiskStat.getIORead());
+                                        batch.add("cloudstack.stats.volumes", uuid, "disk.write_ios", vmDiskStat.getIOWrite());
+                                    }
                                     final VmDiskStatisticsVO previousVmDiskStats =
                                             _vmDiskStatsDao.findBy(userVm.getAccountId(), userVm.getDataCenterId(), vmId, volume.getId());
                                     final VmDiskStatisticsVO vmDiskStat_lock = _vmDiskStatsDao.lock(userVm.getAccountId(), userVm.getDataCenterId(), vmId, volume.getId());
@@ -631,6 +689,11 @@ public class StatsCollector extends ManagerBase implements ComponentMethodInterc
                         }
                     }
                 });
+
+                if (_metricsExporter.isEnabled()) {
+                    addSweepMetrics(batch, "volumes", _vmDiskStatsFanOut, sweep);
+                    _metricsExporter.publish(batch);
+                }
             } catch (final Exception e) {
                 s_logger.warn("Error while collecting vm disk stats from hosts", e);
             }
@@ -644,6 +707,7 @@ public class StatsCollector extends ManagerBase implements ComponentMethodInterc
                 s_logger.debug("StorageCollector is running...");
             }
 
+            final MetricsBatch batch = new MetricsBatch("storage");
             final List<DataStore> stores = _dataStoreMgr.listImageStores();
             final ConcurrentHashMap<Long, StorageStats> storageStats = new ConcurrentHashMap<>();
             for (final DataStore store : stores) {
@@ -663,6 +727,8 @@ public class StatsCollector extends ManagerBase implements ComponentMethodInterc
                     answer = ssAhost.sendMessageOrBreak(command);
                     if (answer != null && answer.getResult()) {
                         storageStats.put(storeId, (StorageStats) answer);
+                        batch.add("cloudstack.stats.imagestores", store.getUuid(), "capacity_bytes", ((StorageStats) answer).getCapacityBytes());
+                        batch.add("cloudstack.stats.imagestores", store.getUuid(), "used_bytes", ((StorageStats) answer).getByteUsed());
                         s_logger.trace("HostId: " + storeId + " Used: " + ((StorageStats) answer).getByteUsed() + " Total Available: " +
                                 ((StorageStats) answer).getCapacityBytes());
                     }
@@ -686,6 +752,8 @@ public class StatsCollector extends ManagerBase implements ComponentMethodInterc
                     final Answer answer = _storageManager.sendToPool(pool, command);
                     if (answer != null && answer.getResult()) {
                         storagePoolStats.put(pool.getId(), (StorageStats) answer);
+                        batch.add("cloudstack.stats.storagepools", pool.getUuid(), "capacity_bytes", ((StorageStats) answer).getCapacityBytes());
+                        batch.add("cloudstack.stats.storagepools", pool.getUuid(), "used_bytes", ((StorageStats) answer).getByteUsed());
 
                         // Seems like we have dynamically updated the pool size since the prev. size and the current do not match
                         if (_storagePoolStats.get(poolId) != null && _storagePoolStats.get(poolId).getCapacityBytes() != ((StorageStats) answer).getCapacityBytes()) {
@@ -700,6 +768,7 @@ public class StatsCollector extends ManagerBase implements ComponentMethodInterc
                 }
             }
             _storagePoolStats = storagePoolStats;
+            _metricsExporter.publish(batch);
         }
     }
 }
@@ -0,0 +1,42 @@
+package com.cloud.server.metrics;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Appends metrics to a local file in the Graphite plaintext format, one metric per line.  Meant for
+ * testing and troubleshooting the metrics of a management server without running a metrics backend.
+ */
+public class FileSink implements MetricsSink {
+    private final Path _path;
+    private final String _prefix;
+
+    public FileSink(final Path path, final String prefix) {
+        _path = path;
+        _prefix = prefix;
+    }
+
+    @Override
+    public String getName() {
+        return "file://" + _path;
+    }
+
+    @Override
+    public void export(final MetricsBatch batch) throws IOException {
+        try (BufferedWriter writer = Files.newBufferedWriter(_path, StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
+            for (final Metric metric : batch.getMetrics()) {
+                writer.write(_prefix);
+                writer.write(metric.toString());
+                writer.newLine();
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+    }
+}
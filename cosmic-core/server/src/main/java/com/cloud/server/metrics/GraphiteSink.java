@@ -0,0 +1,95 @@
+package com.cloud.server.metrics;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Sends metrics to Graphite using the plaintext protocol over one TCP connection, which is kept open
+ * between batches and reopened when writing to it fails.
+ */
+public class GraphiteSink implements MetricsSink {
+    private static final Logger s_logger = LoggerFactory.getLogger(GraphiteSink.class);
+
+    public static final int DEFAULT_PORT = 2003;
+    private static final int CONNECT_TIMEOUT = 5000;
+
+    private final String _host;
+    private final int _port;
+    private final String _prefix;
+    private Socket _socket;
+    private Writer _writer;
+
+    public GraphiteSink(final String host, final int port, final String prefix) {
+        _host = host;
+        _port = port == -1 ? DEFAULT_PORT : port;
+        _prefix = prefix;
+    }
+
+    @Override
+    public String getName() {
+        return "graphite://" + _host + ":" + _port;
+    }
+
+    @Override
+    public void export(final MetricsBatch batch) throws IOException {
+        try {
+            write(batch);
+        } catch (final IOException e) {
+            // The connection may have been closed by Graphite since the last batch, try once more on a new one
+            s_logger.debug("Failed writing to " + getName() + ", reconnecting: " + e.getMessage());
+            close();
+            write(batch);
+        }
+    }
+
+    private void write(final MetricsBatch batch) throws IOException {
+        if (_writer == null) {
+            connect();
+        }
+        try {
+            for (final Metric metric : batch.getMetrics()) {
+                _writer.write(_prefix);
+                _writer.write(metric.toString());
+                _writer.write('\n');
+            }
+            _writer.flush();
+        } catch (final IOException e) {
+            close();
+            throw e;
+        }
+    }
+
+    private void connect() throws IOException {
+        final Socket socket = new Socket();
+        try {
+            socket.connect(new InetSocketAddress(_host, _port), CONNECT_TIMEOUT);
+            socket.setKeepAlive(true);
+        } catch (final IOException e) {
+            socket.close();
+            throw e;
+        }
+        _socket = socket;
+        _writer = new BufferedWriter(new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8));
+    }
+
+    @Override
+    public void close() {
+        if (_socket != null) {
+            try {
+                _socket.close();
+            } catch (final IOException e) {
+                s_logger.debug("Failed closing connection to " + getName() + ": " + e.getMessage());
+            }
+        }
+        _socket = null;
+        _writer = null;
+    }
+}
@@ -0,0 +1,73 @@
+package com.cloud.server.metrics;
+
+/**
+ * A single measured value, with the time it was measured in seconds since epoch.  The metric of an
+ * entity, like a host or an instance, also knows its group and uuid: Graphite gets the uuid in the
+ * name, Prometheus gets it as label of a metric name shared by all entities of the group.
+ */
+public class Metric {
+    private final String _group;
+    private final String _uuid;
+    private final String _field;
+    private final double _value;
+    private final long _timestamp;
+
+    public Metric(final String name, final double value, final long timestamp) {
+        this(name, null, null, value, timestamp);
+    }
+
+    public Metric(final String group, final String uuid, final String field, final double value, final long timestamp) {
+        _group = group;
+        _uuid = uuid;
+        _field = field;
+        _value = value;
+        _timestamp = timestamp;
+    }
+
+    /**
+     * @return the full name, including the uuid of the entity when there is one.
+     */
+    public String getName() {
+        if (_uuid == null) {
+            return _group;
+        }
+        return _group + "." + _uuid + "." + _field;
+    }
+
+    /**
+     * @return the name without the uuid of the entity, the same for all entities of a group.
+     */
+    public String getFamily() {
+        if (_uuid == null) {
+            return _group;
+        }
+        return _group + "." + _field;
+    }
+
+    public String getUuid() {
+        return _uuid;
+    }
+
+    public double getValue() {
+        return _value;
+    }
+
+    public long getTimestamp() {
+        return _timestamp;
+    }
+
+    /**
+     * @return the value without a fraction when it is a whole number, as counters usually are.
+     */
+    public String getFormattedValue() {
+        if (_value == Math.rint(_value) && !Double.isInfinite(_value)) {
+            return Long.toString((long) _value);
+        }
+        return Double.toString(_value);
+    }
+
+    @Override
+    public String toString() {
+        return getName() + " " + getFormattedValue() + " " + _timestamp;
+    }
+}
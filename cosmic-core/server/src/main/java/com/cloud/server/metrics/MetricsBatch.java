@@ -0,0 +1,50 @@
+package com.cloud.server.metrics;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * MetricsBatch collects the metrics of one collector sweep, so they are handed to the sinks at once
+ * instead of one host at a time.
+ */
+public class MetricsBatch {
+    private final String _source;
+    private final long _timestamp;
+    private final List<Metric> _metrics = new ArrayList<>();
+
+    public MetricsBatch(final String source) {
+        _source = source;
+        _timestamp = System.currentTimeMillis() / 1000;
+    }
+
+    public MetricsBatch add(final String name, final double value) {
+        _metrics.add(new Metric(name, value, _timestamp));
+        return this;
+    }
+
+    public MetricsBatch add(final String group, final String uuid, final String field, final double value) {
+        _metrics.add(new Metric(group, uuid, field, value, _timestamp));
+        return this;
+    }
+
+    public String getSource() {
+        return _source;
+    }
+
+    public long getTimestamp() {
+        return _timestamp;
+    }
+
+    public List<Metric> getMetrics() {
+        return Collections.unmodifiableList(_metrics);
+    }
+
+    public int size() {
+        return _metrics.size();
+    }
+
+    public boolean isEmpty() {
+        return _metrics.isEmpty();
+    }
+}
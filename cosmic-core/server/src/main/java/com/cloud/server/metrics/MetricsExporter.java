@@ -0,0 +1,183 @@
+package com.cloud.server.metrics;
+
+import com.cloud.utils.concurrency.NamedThreadFactory;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * MetricsExporter hands the metric batches of the StatsCollector to the configured sinks.  Every sink
+ * has its own thread and a bounded queue of batches: publishing never waits for a sink, when a sink
+ * cannot keep up its oldest queued batch is dropped to make room for the new one.
+ */
+public class MetricsExporter {
+    private static final Logger s_logger = LoggerFactory.getLogger(MetricsExporter.class);
+
+    public static final int DEFAULT_QUEUE_SIZE = 64;
+
+    private final List<SinkWorker> _workers = new ArrayList<>();
+    private final ExecutorService _executor;
+
+    public MetricsExporter(final List<MetricsSink> sinks, final int queueSize) {
+        for (final MetricsSink sink : sinks) {
+            _workers.add(new SinkWorker(sink, Math.max(1, queueSize)));
+        }
+        _executor = Executors.newFixedThreadPool(Math.max(1, _workers.size()), new NamedThreadFactory("MetricsExporter"));
+        for (final SinkWorker worker : _workers) {
+            _executor.execute(worker);
+        }
+    }
+
+    /**
+     * Creates the sinks for a comma separated list of URIs, like graphite://host:2003/prefix,
+     * prometheus://0.0.0.0:9595/ or file:///var/log/cosmic/metrics.log.  The path of a graphite or
+     * prometheus URI is used as prefix for the metric names.  URIs that cannot be used are logged and skipped.
+     */
+    public static List<MetricsSink> createSinks(final String uris) {
+        final List<MetricsSink> sinks = new ArrayList<>();
+        if (uris == null || uris.trim().isEmpty()) {
+            return sinks;
+        }
+        for (final String value : uris.split(",")) {
+            if (value.trim().isEmpty()) {
+                continue;
+            }
+            try {
+                final MetricsSink sink = createSink(new URI(value.trim()));
+                if (sink != null) {
+                    sinks.add(sink);
+                }
+            } catch (final URISyntaxException | IOException e) {
+                s_logger.warn("Unable to create metrics sink for " + value + ": " + e.getMessage());
+            }
+        }
+        return sinks;
+    }
+
+    private static MetricsSink createSink(final URI uri) throws IOException {
+        final String scheme = uri.getScheme() == null ? "" : uri.getScheme().toLowerCase();
+        switch (scheme) {
+            case "graphite":
+                return new GraphiteSink(uri.getHost(), uri.getPort(), prefixOf(uri));
+            case "prometheus":
+                return new PrometheusSink(uri.getHost(), uri.getPort(), prefixOf(uri).replace('.', '_'));
+            case "file":
+                return new FileSink(Paths.get(uri.getPath()), "");
+            default:
+                s_logger.info(scheme + " is not a valid protocol for external statistics. No statistics will be send to " + uri);
+                return null;
+        }
+    }
+
+    private static String prefixOf(final URI uri) {
+        final String path = uri.getPath();
+        if (path == null || path.length() <= 1) {
+            return "";
+        }
+        return path.substring(1) + ".";
+    }
+
+    public boolean isEnabled() {
+        return !_workers.isEmpty();
+    }
+
+    /**
+     * Queues a batch for every sink, without waiting for any of them.
+     */
+    public void publish(final MetricsBatch batch) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        for (final SinkWorker worker : _workers) {
+            worker.offer(batch);
+        }
+    }
+
+    public List<SinkWorker> getWorkers() {
+        return Collections.unmodifiableList(_workers);
+    }
+
+    public void shutdown() {
+        _executor.shutdownNow();
+        for (final SinkWorker worker : _workers) {
+            worker._sink.close();
+        }
+    }
+
+    public static class SinkWorker implements Runnable {
+        private final MetricsSink _sink;
+        private final BlockingQueue<MetricsBatch> _queue;
+        private final AtomicLong _exported = new AtomicLong();
+        private final AtomicLong _dropped = new AtomicLong();
+        private final AtomicLong _failed = new AtomicLong();
+
+        SinkWorker(final MetricsSink sink, final int queueSize) {
+            _sink = sink;
+            _queue = new ArrayBlockingQueue<>(queueSize);
+        }
+
+        void offer(final MetricsBatch batch) {
+            while (!_queue.offer(batch)) {
+                if (_queue.poll() != null) {
+                    final long dropped = _dropped.incrementAndGet();
+                    if (dropped == 1 || dropped % 100 == 0) {
+                        s_logger.warn("Metrics sink " + _sink.getName() + " is not keeping up, dropped " + dropped + " batches so far");
+                    }
+                }
+            }
+        }
+
+        @Override
+        public void run() {
+            while (!Thread.currentThread().isInterrupted()) {
+                final MetricsBatch batch;
+                try {
+                    batch = _queue.take();
+                } catch (final InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+                try {
+                    _sink.export(batch);
+                    _exported.incrementAndGet();
+                } catch (final IOException | RuntimeException e) {
+                    _failed.incrementAndGet();
+                    s_logger.debug("Failed sending " + batch.size() + " " + batch.getSource() + " metrics to " + _sink.getName() + ": " + e.getMessage());
+                }
+            }
+        }
+
+        public MetricsSink getSink() {
+            return _sink;
+        }
+
+        public int getQueued() {
+            return _queue.size();
+        }
+
+        public long getExportedCount() {
+            return _exported.get();
+        }
+
+        public long getDroppedCount() {
+            return _dropped.get();
+        }
+
+        public long getFailedCount() {
+            return _failed.get();
+        }
+    }
+}
@@ -0,0 +1,24 @@
+package com.cloud.server.metrics;
+
+import java.io.IOException;
+
+/**
+ * A destination for the metrics of the StatsCollector.  A sink is only called from its own export
+ * thread, so implementations do not need to be thread safe towards {@link #export(MetricsBatch)}.
+ */
+public interface MetricsSink {
+
+    /**
+     * @return a name identifying the sink in logs.
+     */
+    String getName();
+
+    /**
+     * Writes a batch of metrics.  The names of the metrics still have to be prefixed by the sink.
+     *
+     * @throws IOException when the batch could not be written, the batch is then dropped
+     */
+    void export(MetricsBatch batch) throws IOException;
+
+    void close();
+}
@@ -0,0 +1,128 @@
+package com.cloud.server.metrics;
+
+import com.cloud.utils.concurrency.NamedThreadFactory;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Serves the metrics of the latest sweep of each collector on a Prometheus scrape endpoint.  Exporting
+ * a batch only replaces the metrics kept for its collector, the scrape renders whatever is there.  The
+ * uuid of a host, instance, volume or store is exported as label, so the metric names stay fixed.
+ */
+public class PrometheusSink implements MetricsSink {
+    private static final Logger s_logger = LoggerFactory.getLogger(PrometheusSink.class);
+
+    public static final int DEFAULT_PORT = 9595;
+    public static final String PATH = "/metrics";
+    private static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+
+    private final String _prefix;
+    private final ConcurrentHashMap<String, MetricsBatch> _latest = new ConcurrentHashMap<>();
+    private final HttpServer _server;
+    private final ExecutorService _executor = Executors.newSingleThreadExecutor(new NamedThreadFactory("PrometheusSink"));
+
+    public PrometheusSink(final String host, final int port, final String prefix) throws IOException {
+        _prefix = prefix;
+        final InetSocketAddress address = host == null ? new InetSocketAddress(port == -1 ? DEFAULT_PORT : port)
+                : new InetSocketAddress(host, port == -1 ? DEFAULT_PORT : port);
+        _server = HttpServer.create(address, 0);
+        _server.createContext(PATH, this::handleScrape);
+        _server.setExecutor(_executor);
+        _server.start();
+        s_logger.info("Serving StatsCollector metrics on http://" + address.getHostString() + ":" + address.getPort() + PATH);
+    }
+
+    @Override
+    public String getName() {
+        return "prometheus://" + _server.getAddress().getHostString() + ":" + _server.getAddress().getPort();
+    }
+
+    @Override
+    public void export(final MetricsBatch batch) {
+        _latest.put(batch.getSource(), batch);
+    }
+
+    private void handleScrape(final HttpExchange exchange) throws IOException {
+        try {
+            final byte[] body = render().getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", CONTENT_TYPE);
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        } finally {
+            exchange.close();
+        }
+    }
+
+    /**
+     * Renders the metrics in the text exposition format.  All samples of a metric name are written
+     * together after its TYPE line, the uuid of an entity is a label instead of part of the name.
+     */
+    String render() {
+        final Map<String, List<Metric>> families = new TreeMap<>();
+        for (final MetricsBatch batch : _latest.values()) {
+            for (final Metric metric : batch.getMetrics()) {
+                families.computeIfAbsent(sanitize(_prefix + metric.getFamily()), name -> new ArrayList<>()).add(metric);
+            }
+        }
+
+        final StringBuilder sb = new StringBuilder();
+        for (final Map.Entry<String, List<Metric>> family : families.entrySet()) {
+            sb.append("# TYPE ").append(family.getKey()).append(" gauge\n");
+            for (final Metric metric : family.getValue()) {
+                sb.append(family.getKey());
+                if (metric.getUuid() != null) {
+                    sb.append("{uuid=\"").append(escapeLabelValue(metric.getUuid())).append("\"}");
+                }
+                sb.append(' ').append(metric.getFormattedValue()).append('\n');
+            }
+        }
+        return sb.toString();
+    }
+
+    static String escapeLabelValue(final String value) {
+        return value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+
+    /**
+     * Prometheus metric names only allow letters, digits, underscores and colons, and can't start with a digit.
+     */
+    static String sanitize(final String name) {
+        final StringBuilder sb = new StringBuilder(name.length() + 1);
+        if (!name.isEmpty() && name.charAt(0) >= '0' && name.charAt(0) <= '9') {
+            sb.append('_');
+        }
+        for (int i = 0; i < name.length(); i++) {
+            final char c = name.charAt(i);
+            if ((c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || c == '_' || c == ':' || (c >= '0' && c <= '9')) {
+                sb.append(c);
+            } else {
+                sb.append('_');
+            }
+        }
+        return sb.toString();
+    }
+
+    @Override
+    public void close() {
+        _server.stop(0);
+        _executor.shutdownNow();
+        _latest.clear();
+    }
+}
@@ -0,0 +1,121 @@
+package com.cloud.api.dispatch;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import com.cloud.acl.RoleType;
+import com.cloud.api.BaseCmd;
+import com.cloud.api.Parameter;
+import com.cloud.api.ServerApiException;
+import com.cloud.api.command.user.event.ListEventsCmd;
+import com.cloud.api.dispatch.CommandBindingPlan.ParamBinding;
+import com.cloud.legacymodel.user.Account;
+
+import org.junit.Test;
+
+public class CommandBindingPlanTest {
+
+    @Test
+    public void testPlanIsBuiltOncePerClass() {
+        assertSame(CommandBindingPlan.forClass(TestCmd.class), CommandBindingPlan.forClass(TestCmd.class));
+    }
+
+    @Test
+    public void testOnlyExposedParametersAreBound() {
+        final CommandBindingPlan plan = CommandBindingPlan.forClass(TestCmd.class);
+
+        assertEquals(4, plan.getBindings().size());
+        assertNull(plan.getBinding("hiddenparam"));
+        assertNull(plan.getBinding("nosuchparam"));
+    }
+
+    @Test
+    public void testBindingLookupIgnoresCase() {
+        final ParamBinding binding = CommandBindingPlan.forClass(TestCmd.class).getBinding("StrParam");
+
+        assertEquals("strparam", binding.getName());
+        assertEquals(BaseCmd.CommandType.STRING, binding.getType());
+        assertEquals(10, binding.getLength());
+        assertTrue(binding.isRequired());
+        assertNull(binding.getEntityClasses());
+    }
+
+    @Test
+    public void testAuthorizedRoles() {
+        final CommandBindingPlan plan = CommandBindingPlan.forClass(TestCmd.class);
+        final ParamBinding adminOnly = plan.getBinding("adminparam");
+        final ParamBinding everybody = plan.getBinding("strparam");
+
+        // The account type has to equal the value of one of the authorized roles
+        assertTrue(adminOnly.isAllowedFor((short) RoleType.Admin.getValue()));
+        assertTrue(adminOnly.isAllowedFor((short) RoleType.DomainAdmin.getValue()));
+        assertFalse(adminOnly.isAllowedFor((short) RoleType.User.getValue()));
+        assertFalse(adminOnly.isAllowedFor(Account.ACCOUNT_TYPE_NORMAL));
+        assertFalse(adminOnly.isAllowedFor((short) -1));
+        assertTrue(everybody.isAllowedFor(Account.ACCOUNT_TYPE_NORMAL));
+        assertTrue(everybody.isAllowedFor(Account.ACCOUNT_TYPE_DOMAIN_ADMIN));
+    }
+
+    @Test
+    public void testSetAndGet() throws Exception {
+        final CommandBindingPlan plan = CommandBindingPlan.forClass(TestCmd.class);
+        final TestCmd cmd = new TestCmd();
+
+        plan.getBinding("strparam").set(cmd, "foo");
+        plan.getBinding("intparam").set(cmd, 42);
+        plan.getBinding("adminparam").set(cmd, 7);
+
+        assertEquals("foo", cmd.strparam);
+        assertEquals(42, cmd.intparam);
+        assertEquals(7L, cmd.adminparam);
+        assertEquals("foo", plan.getBinding("strparam").get(cmd));
+        assertEquals(42, plan.getBinding("intparam").get(cmd));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testSetWithWrongTypeFails() throws Exception {
+        CommandBindingPlan.forClass(TestCmd.class).getBinding("intparam").set(new TestCmd(), "foo");
+    }
+
+    @Test
+    public void testLegacyDateFormat() {
+        assertTrue(CommandBindingPlan.forClass(ListEventsCmd.class).usesLegacyDateFormat());
+        assertFalse(CommandBindingPlan.forClass(TestCmd.class).usesLegacyDateFormat());
+    }
+
+    public static class TestCmd extends BaseCmd {
+
+        @Parameter(name = "strparam", required = true, length = 10)
+        String strparam;
+
+        @Parameter(name = "intparam", type = CommandType.INTEGER)
+        int intparam;
+
+        @Parameter(name = "adminparam", type = CommandType.LONG, authorized = {RoleType.Admin, RoleType.DomainAdmin})
+        private long adminparam;
+
+        @Parameter(name = "boolparam", type = CommandType.BOOLEAN)
+        Boolean boolparam;
+
+        @Parameter(name = "hiddenparam", expose = false)
+        String hiddenparam;
+
+        @Override
+        public void execute() throws ServerApiException {
+            // well documented nothing
+        }
+
+        @Override
+        public String getCommandName() {
+            return "test";
+        }
+
+        @Override
+        public long getEntityOwnerId() {
+            return 0;
+        }
+    }
+}
@@ -3,7 +3,10 @@ package com.cloud.api.dispatch;
 import com.cloud.api.BaseCmd;
 import com.cloud.api.Parameter;
 import com.cloud.api.ServerApiException;
+import com.cloud.api.response.ZoneResponse;
 import com.cloud.context.CallContext;
+import com.cloud.dao.EntityManager;
+import com.cloud.legacymodel.dc.DataCenter;
 import com.cloud.legacymodel.exceptions.ConcurrentOperationException;
 import com.cloud.legacymodel.exceptions.InsufficientCapacityException;
 import com.cloud.legacymodel.exceptions.NetworkRuleConflictException;
@@ -13,13 +16,17 @@ import com.cloud.legacymodel.user.Account;
 import com.cloud.legacymodel.user.User;
 import com.cloud.user.AccountManager;
 
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 
 import org.junit.After;
 import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
+import org.mockito.Matchers;
 import org.mockito.Mock;
 import org.mockito.Mockito;
 import org.mockito.runners.MockitoJUnitRunner;
@@ -30,6 +37,9 @@ public class ParamProcessWorkerTest {
     @Mock
     protected AccountManager accountManager;
 
+    @Mock
+    protected EntityManager entityManager;
+
     protected ParamProcessWorker paramProcessWorker;
 
     @Before
@@ -37,6 +47,7 @@ public class ParamProcessWorkerTest {
         CallContext.register(Mockito.mock(User.class), Mockito.mock(Account.class));
         paramProcessWorker = new ParamProcessWorker();
         paramProcessWorker._accountMgr = accountManager;
+        paramProcessWorker._entityMgr = entityManager;
     }
 
     @After
@@ -58,6 +69,33 @@ public class ParamProcessWorkerTest {
         Assert.assertTrue(Double.compare(cmd.doubleparam1, 11.89) == 0);
     }
 
+    @Test
+    public void processParametersTranslatesUuidListAtOnce() {
+        final String uuid1 = "1b4e28ba-2fa1-11d2-883f-0016d3cca427";
+        final String uuid2 = "6fa459ea-ee8a-3ca4-894e-db77e160355e";
+        final Map<String, Long> ids = new HashMap<>();
+        ids.put(uuid1, 1L);
+        ids.put(uuid2, 2L);
+        Mockito.when(entityManager.findIdsByUuidsIncludingRemoved(Matchers.eq(DataCenter.class), Matchers.anyCollectionOf(String.class))).thenReturn(ids);
+
+        final HashMap<String, String> params = new HashMap<>();
+        params.put("zoneids", uuid2 + "," + uuid1 + ",-1");
+        final TestCmd cmd = new TestCmd();
+        paramProcessWorker.processParameters(cmd, params);
+
+        Assert.assertEquals(Arrays.asList(2L, 1L, -1L), cmd.zoneids);
+        Mockito.verify(entityManager, Mockito.times(1)).findIdsByUuidsIncludingRemoved(Matchers.eq(DataCenter.class), Matchers.anyCollectionOf(String.class));
+    }
+
+    @Test(expected = ServerApiException.class)
+    public void processParametersRejectsUnknownUuid() {
+        Mockito.when(entityManager.findIdsByUuidsIncludingRemoved(Matchers.eq(DataCenter.class), Matchers.anyCollectionOf(String.class))).thenReturn(new HashMap<>());
+
+        final HashMap<String, String> params = new HashMap<>();
+        params.put("zoneids", "1b4e28ba-2fa1-11d2-883f-0016d3cca427");
+        paramProcessWorker.processParameters(new TestCmd(), params);
+    }
+
     public static class TestCmd extends BaseCmd {
 
         @Parameter(name = "strparam1")
@@ -72,6 +110,9 @@ public class ParamProcessWorkerTest {
         @Parameter(name = "doubleparam1", type = CommandType.DOUBLE)
         double doubleparam1;
 
+        @Parameter(name = "zoneids", type = CommandType.LIST, collectionType = CommandType.UUID, entityType = ZoneResponse.class)
+        List<Long> zoneids;
+
         @Override
         public void execute() throws ResourceUnavailableException, InsufficientCapacityException, ServerApiException, ConcurrentOperationException,
                 ResourceAllocationException, NetworkRuleConflictException {
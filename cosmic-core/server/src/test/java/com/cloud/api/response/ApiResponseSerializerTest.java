@@ -0,0 +1,102 @@
+package com.cloud.api.response;
+
+import static org.junit.Assert.assertEquals;
+
+import com.cloud.acl.RoleType;
+import com.cloud.api.BaseResponse;
+import com.cloud.context.CallContext;
+import com.cloud.legacymodel.user.Account;
+import com.cloud.legacymodel.user.User;
+import com.cloud.serializer.Param;
+import com.cloud.utils.HttpUtils;
+
+import java.util.Arrays;
+
+import com.google.gson.annotations.SerializedName;
+import org.junit.After;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+public class ApiResponseSerializerTest {
+
+    private void registerCaller(final short accountType) {
+        final Account account = Mockito.mock(Account.class);
+        Mockito.when(account.getType()).thenReturn(accountType);
+        CallContext.register(Mockito.mock(User.class), account);
+    }
+
+    @After
+    public void cleanup() {
+        CallContext.unregister();
+    }
+
+    private static ListResponse<TestResponse> listResponse() {
+        final ListResponse<TestResponse> response = new ListResponse<>();
+        response.setResponseName("listtestsresponse");
+        response.setResponses(Arrays.asList(new TestResponse("a<b&c"), new TestResponse("d")));
+        return response;
+    }
+
+    @Test
+    public void testJsonListResponse() {
+        registerCaller(Account.ACCOUNT_TYPE_NORMAL);
+        final StringBuilder log = new StringBuilder();
+
+        final String json = ApiResponseSerializer.toSerializedStringWithSecureLogs(listResponse(), HttpUtils.RESPONSE_TYPE_JSON, log);
+
+        assertEquals("{\"listtestsresponse\":{\"count\":2,\"test\":[{\"name\":\"a<b&c\",\"password\":\"secret\"},{\"name\":\"d\",\"password\":\"secret\"}]}}", json);
+        assertEquals("{\"listtestsresponse\":{\"count\":2,\"test\":[{\"name\":\"a<b&c\"},{\"name\":\"d\"}]}}", log.toString());
+    }
+
+    @Test
+    public void testJsonListResponseForAdmin() {
+        registerCaller((short) RoleType.Admin.getValue());
+
+        final String json = ApiResponseSerializer.toSerializedString(listResponse(), HttpUtils.RESPONSE_TYPE_JSON);
+
+        assertEquals("{\"listtestsresponse\":{\"count\":2,\"test\":[{\"name\":\"a<b&c\",\"password\":\"secret\",\"hostname\":\"host\"},"
+                + "{\"name\":\"d\",\"password\":\"secret\",\"hostname\":\"host\"}]}}", json);
+    }
+
+    @Test
+    public void testJsonSingleResponse() {
+        registerCaller(Account.ACCOUNT_TYPE_NORMAL);
+        final TestResponse response = new TestResponse("a\\u003cb");
+        response.setResponseName("createtestresponse");
+
+        final String json = ApiResponseSerializer.toSerializedString(response, HttpUtils.RESPONSE_TYPE_JSON);
+
+        assertEquals(ApiResponseSerializer.unescape("{\"createtestresponse\":{\"test\":{\"name\":\"a\\\\u003cb\",\"password\":\"secret\"}}}"), json);
+    }
+
+    @Test
+    public void testJsonEmptyListResponse() {
+        registerCaller(Account.ACCOUNT_TYPE_NORMAL);
+        final ListResponse<TestResponse> response = new ListResponse<>();
+        response.setResponseName("listtestsresponse");
+
+        assertEquals("{\"listtestsresponse\":{}}", ApiResponseSerializer.toSerializedString(response, HttpUtils.RESPONSE_TYPE_JSON));
+    }
+
+    public static class TestResponse extends BaseResponse {
+        // Static fields are left out of the responses
+        private static final String KIND = "test";
+
+        @SerializedName("name")
+        @Param(description = "the name")
+        private final String name;
+
+        @SerializedName("password")
+        @Param(description = "the password", isSensitive = true)
+        private final String password = "secret";
+
+        @SerializedName("hostname")
+        @Param(description = "the host", authorized = {RoleType.Admin})
+        private final String hostName = "host";
+
+        public TestResponse(final String name) {
+            this.name = name;
+            setObjectName(KIND);
+        }
+    }
+}
@@ -0,0 +1,113 @@
+package com.cloud.capacity;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.anyList;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.cloud.capacity.dao.CapacityDao;
+import com.cloud.hypervisor.dao.HypervisorCapabilitiesDao;
+import com.cloud.legacymodel.dc.Host;
+import com.cloud.model.enumeration.HypervisorType;
+import com.cloud.vm.dao.VMInstanceDao;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Matchers;
+
+public class HostCapacityCacheTest {
+
+    private CapacityDao _capacityDao;
+    private VMInstanceDao _vmDao;
+    private HypervisorCapabilitiesDao _hypervisorCapabilitiesDao;
+    private HostCapacityCache _cache;
+    private List<Host> _hosts;
+
+    private static Host host(final long id) {
+        final Host host = mock(Host.class);
+        when(host.getId()).thenReturn(id);
+        when(host.getHypervisorType()).thenReturn(HypervisorType.KVM);
+        when(host.getHypervisorVersion()).thenReturn("1.0");
+        return host;
+    }
+
+    private static CapacityVO capacity(final long hostId, final short type, final long used, final long total) {
+        final CapacityVO capacity = new CapacityVO(hostId, 1L, 1L, 1L, used, total, type);
+        capacity.setReservedCapacity(0L);
+        return capacity;
+    }
+
+    @Before
+    public void setUp() {
+        _capacityDao = mock(CapacityDao.class);
+        _vmDao = mock(VMInstanceDao.class);
+        _hypervisorCapabilitiesDao = mock(HypervisorCapabilitiesDao.class);
+        _cache = new HostCapacityCache(_capacityDao, _vmDao, _hypervisorCapabilitiesDao);
+        _hosts = Arrays.asList(host(1L), host(2L), host(3L));
+
+        when(_capacityDao.listByHostIdsAndTypes(anyList(), Matchers.<Short>anyVararg())).thenReturn(Arrays.asList(
+                capacity(1L, Capacity.CAPACITY_TYPE_CPU, 4L, 8L), capacity(1L, Capacity.CAPACITY_TYPE_MEMORY, 1024L, 4096L),
+                capacity(2L, Capacity.CAPACITY_TYPE_CPU, 8L, 8L), capacity(2L, Capacity.CAPACITY_TYPE_MEMORY, 1024L, 4096L),
+                capacity(3L, Capacity.CAPACITY_TYPE_CPU, 0L, 8L)));
+        when(_vmDao.countActiveByHostIds(anyList())).thenReturn(Collections.singletonMap(1L, 50L));
+        when(_hypervisorCapabilitiesDao.getMaxGuestsLimit(Matchers.any(HypervisorType.class), anyString())).thenReturn(50L);
+    }
+
+    @Test
+    public void testLoadsCapacityOfAllHostsAtOnce() {
+        final Map<Long, HostCapacitySnapshot> snapshots = _cache.get(_hosts, 30000L);
+
+        // host 3 has no memory capacity and is left out
+        assertEquals(2, snapshots.size());
+        assertTrue(snapshots.get(1L).reachedMaxGuestLimit());
+        assertFalse(snapshots.get(2L).reachedMaxGuestLimit());
+        assertTrue(snapshots.get(1L).hasCapacity(2, 1024L, false, 1.0f, 1.0f, true));
+        assertFalse(snapshots.get(2L).hasCapacity(2, 1024L, false, 1.0f, 1.0f, true));
+        assertTrue(snapshots.get(2L).hasCapacity(2, 1024L, false, 1.5f, 1.0f, true));
+
+        verify(_capacityDao, times(1)).listByHostIdsAndTypes(anyList(), Matchers.<Short>anyVararg());
+        verify(_hypervisorCapabilitiesDao, times(1)).getMaxGuestsLimit(Matchers.any(HypervisorType.class), anyString());
+    }
+
+    @Test
+    public void testSnapshotsAreReusedUntilInvalidated() {
+        _cache.get(_hosts.subList(0, 2), 30000L);
+        _cache.get(_hosts.subList(0, 2), 30000L);
+        verify(_capacityDao, times(1)).listByHostIdsAndTypes(anyList(), Matchers.<Short>anyVararg());
+
+        _cache.invalidate(1L);
+        _cache.get(_hosts.subList(0, 2), 30000L);
+        verify(_capacityDao, times(2)).listByHostIdsAndTypes(anyList(), Matchers.<Short>anyVararg());
+    }
+
+    @Test
+    public void testExpiredSnapshotsAreReloaded() {
+        _cache.get(_hosts.subList(0, 2), 30000L);
+        _cache.get(_hosts.subList(0, 2), -1L);
+        verify(_capacityDao, times(2)).listByHostIdsAndTypes(anyList(), Matchers.<Short>anyVararg());
+    }
+
+    @Test
+    public void testSnapshotInvalidatedWhileLoadingIsReloaded() {
+        when(_vmDao.countActiveByHostIds(anyList())).thenAnswer(invocation -> {
+            // The capacity of host 1 changes while the snapshots are being read
+            _cache.invalidate(1L);
+            return Collections.emptyMap();
+        });
+        _cache.get(_hosts.subList(0, 2), 30000L);
+
+        when(_vmDao.countActiveByHostIds(anyList())).thenReturn(Collections.emptyMap());
+        _cache.get(_hosts.subList(0, 2), 30000L);
+        verify(_capacityDao, times(1)).listByHostIdsAndTypes(Matchers.eq(Collections.singletonList(1L)), Matchers.<Short>anyVararg());
+    }
+}
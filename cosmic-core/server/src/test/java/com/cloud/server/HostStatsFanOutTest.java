@@ -0,0 +1,132 @@
+package com.cloud.server;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import com.cloud.host.HostVO;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Test;
+
+public class HostStatsFanOutTest {
+
+    private final HostStatsFanOut _fanOut = new HostStatsFanOut("HostStatsFanOutTest", 4);
+
+    @After
+    public void tearDown() {
+        _fanOut.shutdown();
+    }
+
+    private static List<HostVO> hosts(final long... ids) {
+        final List<HostVO> hosts = new ArrayList<>();
+        for (final long id : ids) {
+            final HostVO host = mock(HostVO.class);
+            when(host.getId()).thenReturn(id);
+            hosts.add(host);
+        }
+        return hosts;
+    }
+
+    @Test
+    public void testCollectsAnswersOfAllHosts() {
+        final HostStatsFanOut.SweepResult<String> result = _fanOut.collect(hosts(1L, 2L, 3L), host -> "host-" + host.getId(), 5000L, 10000L);
+
+        assertEquals(3, result.getAnswers().size());
+        assertEquals("host-2", result.getAnswers().get(2L));
+        assertTrue(result.getSkipped().isEmpty());
+        assertEquals(1L, _fanOut.getSweepCount());
+    }
+
+    @Test
+    public void testSlowHostsAreSkippedAndFailingHostsAreNot() {
+        final HostStatsFanOut.SweepResult<String> result = _fanOut.collect(hosts(1L, 2L, 3L, 4L), host -> {
+            if (host.getId() == 2L) {
+                try {
+                    Thread.sleep(10000L);
+                } catch (final InterruptedException e) {
+                    return "interrupted";
+                }
+            } else if (host.getId() == 3L) {
+                throw new RuntimeException("host is unreachable");
+            } else if (host.getId() == 4L) {
+                return null;
+            }
+            return "host-" + host.getId();
+        }, 200L, 10000L);
+
+        assertEquals(1, result.getAnswers().size());
+        assertEquals("host-1", result.getAnswers().get(1L));
+        assertEquals(Collections.singletonList(2L), result.getSkipped());
+        assertEquals(2, result.getFailed().size());
+        assertTrue(result.getFailed().containsAll(Arrays.asList(3L, 4L)));
+        assertEquals(1, _fanOut.getLastSweepSkipped());
+        assertEquals(2L, _fanOut.getFailedHostCount());
+        assertTrue(_fanOut.getLastSweepDuration() < 5000L);
+    }
+
+    @Test
+    public void testHostTimeoutStartsWhenTheCallStarts() {
+        final HostStatsFanOut fanOut = new HostStatsFanOut("HostStatsFanOutTest-serial", 1);
+        try {
+            // Every host takes most of the host timeout, but none of them exceeds it
+            final HostStatsFanOut.SweepResult<String> result = fanOut.collect(hosts(1L, 2L, 3L), host -> {
+                try {
+                    Thread.sleep(150L);
+                } catch (final InterruptedException e) {
+                    return null;
+                }
+                return "host-" + host.getId();
+            }, 300L, 10000L);
+
+            assertEquals(3, result.getAnswers().size());
+            assertTrue(result.getSkipped().isEmpty());
+        } finally {
+            fanOut.shutdown();
+        }
+    }
+
+    @Test
+    public void testHostsWaitingForAThreadAreSkippedAtTheDeadline() {
+        final HostStatsFanOut fanOut = new HostStatsFanOut("HostStatsFanOutTest-deadline", 1);
+        final AtomicInteger calls = new AtomicInteger();
+        try {
+            final HostStatsFanOut.SweepResult<String> result = fanOut.collect(hosts(1L, 2L), host -> {
+                calls.incrementAndGet();
+                try {
+                    Thread.sleep(10000L);
+                } catch (final InterruptedException e) {
+                    return null;
+                }
+                return "host-" + host.getId();
+            }, 5000L, 200L);
+
+            assertTrue(result.getAnswers().isEmpty());
+            assertEquals(Arrays.asList(1L, 2L), result.getSkipped());
+            assertTrue(result.getFailed().isEmpty());
+            assertEquals(1, calls.get());
+            assertTrue(fanOut.getLastSweepDuration() < 5000L);
+        } finally {
+            fanOut.shutdown();
+        }
+    }
+
+    @Test
+    public void testLatencyHistogramCountsEveryHost() {
+        _fanOut.collect(hosts(1L, 2L, 3L, 4L, 5L), host -> host.getId(), 5000L, 10000L);
+
+        long total = 0;
+        for (final Map.Entry<Long, Long> bucket : _fanOut.getLatencyHistogram().entrySet()) {
+            total += bucket.getValue();
+        }
+        assertEquals(5L, total);
+    }
+}
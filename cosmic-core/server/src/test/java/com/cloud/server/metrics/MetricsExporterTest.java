@@ -0,0 +1,138 @@
+package com.cloud.server.metrics;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+public class MetricsExporterTest {
+
+    @Test
+    public void testCreateSinks() throws IOException {
+        final Path file = Files.createTempFile("metrics", ".log");
+        final List<MetricsSink> sinks = MetricsExporter.createSinks("graphite://localhost:2003/cosmic, file://" + file + ",unknown://host");
+        try {
+            assertEquals(2, sinks.size());
+            assertTrue(sinks.get(0) instanceof GraphiteSink);
+            assertTrue(sinks.get(1) instanceof FileSink);
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    @Test
+    public void testNoSinksConfigured() {
+        final MetricsExporter exporter = new MetricsExporter(MetricsExporter.createSinks(""), 4);
+        try {
+            assertEquals(false, exporter.isEnabled());
+            exporter.publish(new MetricsBatch("hosts").add("cloudstack.stats.hosts.uuid.cpu.utilization", 1.5));
+        } finally {
+            exporter.shutdown();
+        }
+    }
+
+    @Test
+    public void testFileSinkWritesBatch() throws Exception {
+        final Path file = Files.createTempFile("metrics", ".log");
+        final MetricsExporter exporter = new MetricsExporter(Collections.singletonList(new FileSink(file, "test.")), 4);
+        try {
+            exporter.publish(new MetricsBatch("instances").add("cpu.num", 2).add("cpu.utilization", 12.5));
+            final MetricsExporter.SinkWorker worker = exporter.getWorkers().get(0);
+            for (int i = 0; i < 100 && worker.getExportedCount() == 0; i++) {
+                Thread.sleep(50);
+            }
+
+            final List<String> lines = Files.readAllLines(file);
+            assertEquals(2, lines.size());
+            assertTrue(lines.get(0).startsWith("test.cpu.num 2 "));
+            assertTrue(lines.get(1).startsWith("test.cpu.utilization 12.5 "));
+        } finally {
+            exporter.shutdown();
+            Files.deleteIfExists(file);
+        }
+    }
+
+    @Test
+    public void testSlowSinkDropsOldestBatches() throws Exception {
+        final CountDownLatch release = new CountDownLatch(1);
+        final MetricsSink slowSink = new MetricsSink() {
+            @Override
+            public String getName() {
+                return "slow";
+            }
+
+            @Override
+            public void export(final MetricsBatch batch) throws IOException {
+                try {
+                    release.await(10, TimeUnit.SECONDS);
+                } catch (final InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+        final MetricsExporter exporter = new MetricsExporter(Collections.singletonList(slowSink), 2);
+        try {
+            final long start = System.currentTimeMillis();
+            for (int i = 0; i < 10; i++) {
+                exporter.publish(new MetricsBatch("hosts").add("metric", i));
+            }
+            assertTrue(System.currentTimeMillis() - start < 1000);
+
+            final MetricsExporter.SinkWorker worker = exporter.getWorkers().get(0);
+            assertEquals(2, worker.getQueued());
+            assertTrue(worker.getDroppedCount() >= 7);
+        } finally {
+            release.countDown();
+            exporter.shutdown();
+        }
+    }
+
+    @Test
+    public void testPrometheusNames() {
+        assertEquals("cloudstack_stats_instances_0a1b_c2_cpu_num", PrometheusSink.sanitize("cloudstack.stats.instances.0a1b-c2.cpu.num"));
+        assertEquals("_9lives", PrometheusSink.sanitize("9lives"));
+    }
+
+    @Test
+    public void testEntityMetricNames() {
+        final Metric metric = new Metric("cloudstack.stats.hosts", "0a1b-c2", "cpu.utilization", 1.5, 0);
+        assertEquals("cloudstack.stats.hosts.0a1b-c2.cpu.utilization", metric.getName());
+        assertEquals("cloudstack.stats.hosts.cpu.utilization", metric.getFamily());
+    }
+
+    @Test
+    public void testPrometheusRendersUuidAsLabel() throws IOException {
+        final PrometheusSink sink = new PrometheusSink("127.0.0.1", 0, "cosmic_");
+        try {
+            sink.export(new MetricsBatch("hosts")
+                    .add("cloudstack.stats.hosts", "uuid-1", "cpu.utilization", 1.5)
+                    .add("cloudstack.stats.hosts", "uuid-2", "cpu.utilization", 2)
+                    .add("cloudstack.stats.collector.hosts.sweep.hosts", 2));
+
+            assertEquals("# TYPE cosmic_cloudstack_stats_collector_hosts_sweep_hosts gauge\n"
+                    + "cosmic_cloudstack_stats_collector_hosts_sweep_hosts 2\n"
+                    + "# TYPE cosmic_cloudstack_stats_hosts_cpu_utilization gauge\n"
+                    + "cosmic_cloudstack_stats_hosts_cpu_utilization{uuid=\"uuid-1\"} 1.5\n"
+                    + "cosmic_cloudstack_stats_hosts_cpu_utilization{uuid=\"uuid-2\"} 2\n", sink.render());
+        } finally {
+            sink.close();
+        }
+    }
+
+    @Test
+    public void testPrometheusLabelEscaping() {
+        assertEquals("a\\\\b\\\"c\\n", PrometheusSink.escapeLabelValue("a\\b\"c\n"));
+    }
+}
@@ -0,0 +1,112 @@
+#!/usr/bin/python
+# -- coding: utf-8 --
+
+# Applies a bundle of configuration items in one go. The bundle holds the items in the format of
+# ConfigItem.getAggregateCommand(): a file to write between <file> tags with its path on the first
+# line, and a command to run between <script> tags. Items are applied in order and processing stops
+# at the first item that fails. The result of every applied item is printed as a json list.
+#
+# The bundle is removed as soon as it is read. "--check" tells the management server that the script
+# is there, "--remove <bundle>" removes a bundle that was copied but never applied.
+
+import json
+import logging
+import os
+import subprocess
+import sys
+
+LOG_DIR = "/var/log/cosmic/router"
+BUNDLE_PREFIX = "/var/cache/cloud/config_bundle."
+
+if not os.path.isdir(LOG_DIR):
+    os.makedirs(LOG_DIR, 0o755)
+
+logging.basicConfig(filename="/var/log/cosmic/router/router.log", level=logging.DEBUG,
+                    format='%(asctime)s %(levelname)s  %(filename)s %(funcName)s:%(lineno)d %(message)s')
+
+
+def parse(bundle):
+    items = []
+    lines = bundle.split("\n")
+    i = 0
+    while i < len(lines):
+        if lines[i] == "<file>":
+            end = lines.index("</file>", i + 2)
+            items.append(("file", lines[i + 1], "\n".join(lines[i + 2:end])))
+            i = end + 1
+        elif lines[i] == "<script>":
+            end = lines.index("</script>", i + 1)
+            items.append(("script", "\n".join(lines[i + 1:end]), None))
+            i = end + 1
+        else:
+            i += 1
+    return items
+
+
+def write_file(path, contents):
+    directory = os.path.dirname(path)
+    if not os.path.isdir(directory):
+        os.makedirs(directory, 0o755)
+    # Same mode as the files copied with scp
+    fd = os.open(path, os.O_WRONLY | os.O_CREAT | os.O_TRUNC, 0o600)
+    with os.fdopen(fd, "w") as f:
+        f.write(contents)
+    return True, ""
+
+
+def run_script(command):
+    process = subprocess.Popen(command, shell=True, stdout=subprocess.PIPE, stderr=subprocess.STDOUT)
+    output = process.communicate()[0]
+    if isinstance(output, bytes):
+        output = output.decode("utf-8", "replace")
+    return process.returncode == 0, output.strip()
+
+
+def remove_bundle(path):
+    if not path.startswith(BUNDLE_PREFIX) or "/" in path[len(BUNDLE_PREFIX):]:
+        logging.error("Refusing to remove %s, it is not a bundle" % path)
+        return False
+    try:
+        os.remove(path)
+    except OSError:
+        pass
+    return True
+
+
+def main(argv):
+    if len(argv) == 2 and argv[1] == "--check":
+        print("ok")
+        return 0
+    if len(argv) == 3 and argv[1] == "--remove":
+        return 0 if remove_bundle(argv[2]) else 1
+    if len(argv) != 2:
+        logging.error("Invalid usage")
+        return 1
+
+    try:
+        with open(argv[1]) as f:
+            items = parse(f.read())
+    finally:
+        remove_bundle(argv[1])
+    logging.info("Applying %d configuration items of bundle %s" % (len(items), argv[1]))
+
+    results = []
+    for kind, target, contents in items:
+        try:
+            if kind == "file":
+                success, details = write_file(target, contents)
+            else:
+                success, details = run_script(target)
+        except Exception as e:
+            success, details = False, str(e)
+        results.append({"success": success, "details": details})
+        if not success:
+            logging.error("Applying %s %s of bundle %s failed: %s" % (kind, target, argv[1], details))
+            break
+
+    print(json.dumps(results))
+    return 0 if all(result["success"] for result in results) else 1
+
+
+if __name__ == "__main__":
+    sys.exit(main(sys.argv))
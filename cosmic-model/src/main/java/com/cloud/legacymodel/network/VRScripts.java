@@ -12,11 +12,14 @@ public class VRScripts {
     public static final String STATICNAT_RULES_CONFIG = "staticnat_rules.json";
     public static final String LOAD_BALANCER_CONFIG = "load_balancer.json";
     public static final String VR_CONFIG = "vr.json";
+    public static final String CONFIG_BUNDLE = "config_bundle";
 
     public final static int DEFAULT_EXECUTEINVR_TIMEOUT = 120; //Seconds
 
     // Present inside the router
+    public static final String ROUTER_SCRIPTS_LOCATION = "/opt/cosmic/router/";
     public static final String UPDATE_CONFIG = "bin/update_config.py";
+    public static final String APPLY_CONFIG_BUNDLE = "bin/apply_config_bundle.py";
     public static final String S2SVPN_CHECK = "scripts/checks2svpn.py";
     public static final String RVR_CHECK = "scripts/checkrouter.sh";
     public static final String VERSION = "scripts/get_template_version.sh";